@@ -13,6 +13,7 @@
  */
 package com.sap.cloud.sfsf.timeoff;
 
+import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEventsList;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
@@ -21,6 +22,14 @@ import rx.Observable;
 
 public interface CalendarServiceProvider {
 
+   /**
+    * Identifies the provider in dead letters, so a failed event is replayed only against the provider it failed for.
+    * Must be stable across restarts and nodes.
+    */
+   default String getName() {
+     return getClass().getSimpleName();
+   }
+
    Observable<Void> create(SFSFEmployeeTime employeeTime, String requestId);
 
    Observable<Void> update(SFSFEmployeeTime employeeTime, String requestId);
@@ -29,4 +38,10 @@ public interface CalendarServiceProvider {
 
    Observable<CalendarEventsList> getConflicting(SFSFEmployeeTimeList employeeTime);
 
+   /**
+    * The out-of-office event created for the given employee time, used to reconcile the calendar with SFSF. Completes
+    * empty if there is no such event.
+    */
+   Observable<CalendarEvent> getOutOfOffice(SFSFEmployeeTime employeeTime);
+
 }
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+/**
+ * Named progress markers of background jobs, e.g. the watermark of the last reconciled change. Implementations are
+ * thread-safe.
+ */
+public interface CheckpointStore {
+
+  /**
+   * Longest value every implementation can save.
+   */
+  int MAX_VALUE_LENGTH = 2048;
+
+  /**
+   * @return the saved value, or <code>null</code> if the checkpoint was never saved
+   */
+  String load(String name);
+
+  void save(String name, String value);
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.List;
+
+/**
+ * The nodes of the cluster the users are partitioned over, each identified by its base URL, e.g.
+ * <code>https://timeoff-1.example.com</code>. Implementations are thread-safe.
+ */
+public interface ClusterMembership {
+
+  /**
+   * @return the base URL of this node
+   */
+  String getSelf();
+
+  /**
+   * @return the base URLs of the live nodes, including this one
+   */
+  List<String> getMembers();
+
+  /**
+   * Leaves the cluster, e.g. on shutdown.
+   */
+  default void stop() {}
+}
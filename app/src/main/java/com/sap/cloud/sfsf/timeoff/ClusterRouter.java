@@ -0,0 +1,284 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.JAXBElement;
+
+import com.sap.cloud.commons.cluster.ConsistentHashRing;
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.commons.tenancy.TenantFilter;
+import com.sap.cloud.commons.tracing.Span;
+import com.sap.cloud.commons.tracing.TraceContext;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.Events;
+import com.sap.cloud.sfsf.notification.ExternalEvent;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+import com.sap.cloud.sfsf.notification.Param;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ws.client.core.WebServiceOperations;
+import org.springframework.ws.transport.HeadersAwareSenderWebServiceConnection;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+/**
+ * Partitions the users over the nodes of the cluster with consistent hashing, so the events of a user are handled,
+ * one after the other, by the node holding the user's cached EmployeeTimes and profile. Google credentials are shared
+ * by all nodes, see <code>GoogleCredentialService</code>.
+ *
+ * Events of users owned by another node are forwarded to that node's notification endpoint as a new ExternalEvent,
+ * marked with the {@value #FORWARDED_BY_PARAM} parameter so the owner handles them itself. The EmployeeTime read to
+ * find the owner travels with the event in the {@value #EMPLOYEE_TIME_PARAM} parameter, signed with the cluster
+ * token, so the owner need not read it again. The ring is rebuilt when the members change; users of the tenants are
+ * partitioned independently.
+ *
+ * The cluster token is required: the owner's {@link TenantFilter} only trusts the tenant of a forwarded event with
+ * it, without it every event of a non-default tenant would be rejected by its owner.
+ */
+public class ClusterRouter {
+
+  static final String FORWARDED_BY_PARAM = "forwardedBy";
+  static final String EMPLOYEE_TIME_PARAM = "employeeTime";
+  static final String SIGNATURE_PARAM = "employeeTimeSignature";
+  static final String ENDPOINT_PATH = "/services/NotifyImplPort";
+  static final String FORWARD_STAGE = "cluster.forward";
+
+  private static final String X_REQUEST_ID = "X-Request-ID";
+  private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class);
+
+  private final ClusterMembership membership;
+  private final int virtualNodes;
+  private final WebServiceOperations webService;
+  private final String clusterToken;
+  private final SecretKeySpec signingKey;
+  private volatile ConsistentHashRing ring;
+
+  /**
+   * @param clusterToken the secret the owner's {@link TenantFilter} expects with the tenant of a forwarded event, also
+   *          signing the EmployeeTimes passed on
+   * @throws IllegalArgumentException if the token is <code>null</code> or empty
+   */
+  public ClusterRouter(final ClusterMembership membership, final int virtualNodes,
+      final WebServiceOperations webService, final String clusterToken) {
+    if (clusterToken == null || clusterToken.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Cluster mode requires " + TenantFilter.CLUSTER_TOKEN_PROPERTY + ", the same on all nodes");
+    }
+    this.membership = membership;
+    this.virtualNodes = virtualNodes;
+    this.webService = webService;
+    this.clusterToken = clusterToken;
+    signingKey = new SecretKeySpec(clusterToken.getBytes(StandardCharsets.UTF_8), SIGNATURE_ALGORITHM);
+  }
+
+  /**
+   * @return the base URL of the node owning the given user of the current tenant
+   */
+  public String ownerOf(final String userId) {
+    return ring().ownerOf(TenantContext.qualify(userId));
+  }
+
+  /**
+   * @return whether this node owns the given user of the current tenant; users of unknown id are handled anywhere
+   */
+  public boolean owns(final String userId) {
+    return userId == null || getSelf().equals(ownerOf(userId));
+  }
+
+  /**
+   * @return the base URL of this node
+   */
+  public String getSelf() {
+    return membership.getSelf();
+  }
+
+  /**
+   * @return whether the event was forwarded by another node and must be handled here
+   */
+  public static boolean isForwarded(final EenAlertRequestData event) {
+    return event.getParams() != null
+        && event.getParams().getParam().stream().anyMatch(param -> FORWARDED_BY_PARAM.equals(param.getName()));
+  }
+
+  /**
+   * @return the externalCode the event was raised for, or <code>null</code> if it has none
+   */
+  public static String externalCodeOf(final EenAlertRequestData event) {
+    return event.getEntityKeys() == null ? null
+        : event.getEntityKeys().getEntityKey().stream().filter(key -> "externalCode".equals(key.getName()))
+            .map(Param::getValue).findFirst().orElse(null);
+  }
+
+  /**
+   * @return the EmployeeTime passed on with a forwarded event, or <code>null</code> if there is none or it was not
+   *         signed by a node of this cluster for the event's externalCode and the current tenant
+   */
+  public String employeeTimeOf(final EenAlertRequestData event) {
+    final String employeeTime = param(event, EMPLOYEE_TIME_PARAM);
+    final String signature = param(event, SIGNATURE_PARAM);
+    if (employeeTime == null || signature == null) {
+      return null;
+    }
+    if (!MessageDigest.isEqual(sign(event, employeeTime).getBytes(StandardCharsets.US_ASCII),
+        signature.getBytes(StandardCharsets.US_ASCII))) {
+      logger.warn("Ignoring the EmployeeTime of event {} with an invalid signature", externalCodeOf(event));
+      return null;
+    }
+    return employeeTime;
+  }
+
+  /**
+   * Sends the events to the owning node, with the request id, trace and tenant of the current request.
+   *
+   * @param employeeTimes the EmployeeTimes already read, by event, passed on so the owner need not read them again
+   * @return the owner's responses, one per entity
+   */
+  public Observable<EenAlertResponsePayload> forward(final String owner, final List<EenAlertRequestData> events,
+      final Map<EenAlertRequestData, String> employeeTimes, final String requestId) {
+    return Observable.fromCallable(() -> send(owner, events, employeeTimes, requestId)).subscribeOn(Schedulers.io())
+        .flatMapIterable(responses -> responses);
+  }
+
+  private List<EenAlertResponsePayload> send(final String owner, final List<EenAlertRequestData> events,
+      final Map<EenAlertRequestData, String> employeeTimes, final String requestId) {
+    final Events forwarded = new Events();
+    for (final EenAlertRequestData event : events) {
+      markForwarded(event);
+      final String employeeTime = employeeTimes.get(event);
+      if (employeeTime != null) {
+        event.getParams().getParam().removeIf(param -> EMPLOYEE_TIME_PARAM.equals(param.getName())
+            || SIGNATURE_PARAM.equals(param.getName()));
+        addParam(event, EMPLOYEE_TIME_PARAM, employeeTime);
+        addParam(event, SIGNATURE_PARAM, sign(event, employeeTime));
+      }
+      forwarded.getEvent().add(event);
+    }
+    final String tenantId = TenantContext.current();
+    final TraceContext trace = TraceContext.current();
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try (Span span = Span.start(FORWARD_STAGE + " ExternalEvent")) {
+      final Object response = webService.marshalSendAndReceive(owner + ENDPOINT_PATH,
+          new ExternalEvent().setEvents(forwarded), message -> {
+            final TransportContext context = TransportContextHolder.getTransportContext();
+            if (context != null) {
+              addHeaders(context.getConnection(), requestId, tenantId, trace);
+            }
+          });
+      outcome = Metrics.SUCCESS;
+      span.success();
+      return responses((ExternalEventResponse) (response instanceof JAXBElement
+          ? ((JAXBElement<?>) response).getValue() : response));
+    } finally {
+      Metrics.record(FORWARD_STAGE, "ExternalEvent", outcome, start);
+    }
+  }
+
+  private void markForwarded(final EenAlertRequestData event) {
+    if (!isForwarded(event)) {
+      addParam(event, FORWARDED_BY_PARAM, membership.getSelf());
+    }
+  }
+
+  private static void addParam(final EenAlertRequestData event, final String name, final String value) {
+    if (event.getParams() == null) {
+      event.setParams(new EenAlertRequestData.Params());
+    }
+    final Param param = new Param();
+    param.setName(name);
+    param.setValue(value);
+    event.getParams().getParam().add(param);
+  }
+
+  private static String param(final EenAlertRequestData event, final String name) {
+    return event.getParams() == null ? null
+        : event.getParams().getParam().stream().filter(param -> name.equals(param.getName())).map(Param::getValue)
+            .findFirst().orElse(null);
+  }
+
+  /**
+   * @return the signature of the EmployeeTime for the event's externalCode and the current tenant
+   */
+  private String sign(final EenAlertRequestData event, final String employeeTime) {
+    try {
+      final Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+      mac.init(signingKey);
+      mac.update((TenantContext.current() + '\n' + externalCodeOf(event) + '\n').getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(mac.doFinal(employeeTime.getBytes(StandardCharsets.UTF_8)));
+    } catch (final GeneralSecurityException e) {
+      throw new IllegalStateException("Could not sign with " + SIGNATURE_ALGORITHM, e);
+    }
+  }
+
+  private void addHeaders(final WebServiceConnection connection, final String requestId,
+      final String tenantId, final TraceContext trace) throws IOException {
+    if (!(connection instanceof HeadersAwareSenderWebServiceConnection)) {
+      return;
+    }
+    final HeadersAwareSenderWebServiceConnection headers = (HeadersAwareSenderWebServiceConnection) connection;
+    if (requestId != null) {
+      headers.addRequestHeader(X_REQUEST_ID, requestId);
+    }
+    if (trace != null) {
+      headers.addRequestHeader(TraceContext.TRACEPARENT_HEADER, trace.toTraceparent());
+    }
+    headers.addRequestHeader(TenantFilter.X_CLUSTER_TOKEN, clusterToken);
+    if (!TenantContext.DEFAULT_TENANT.equals(tenantId)) {
+      headers.addRequestHeader(TenantFilter.X_TENANT_ID, tenantId);
+    }
+  }
+
+  private static List<EenAlertResponsePayload> responses(final ExternalEventResponse response) {
+    if (response == null) {
+      return Collections.emptyList();
+    }
+    if (!response.getEntityResponsePayload().isEmpty()) {
+      return response.getEntityResponsePayload();
+    }
+    return response.getResponsePayload() == null ? Collections.emptyList()
+        : Collections.singletonList(response.getResponsePayload());
+  }
+
+  private ConsistentHashRing ring() {
+    final List<String> members = new ArrayList<>(new TreeSet<>(membership.getMembers()));
+    ConsistentHashRing current = ring;
+    if (current == null || !current.getNodes().equals(members)) {
+      current = new ConsistentHashRing(members, virtualNodes);
+      ring = current;
+    }
+    return current;
+  }
+}
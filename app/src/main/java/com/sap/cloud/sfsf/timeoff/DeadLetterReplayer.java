@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Scheduler;
+
+/**
+ * Replays dead letters against the calendar services.
+ *
+ * At most <code>concurrency</code> replays run at the same time and a new one is started at most every
+ * <code>1 / ratePerSecond</code> seconds. The snapshot kept in the dead letter is replayed as is, so SFSF is not called
+ * again, and only against the calendar service provider it failed for, so the others are not updated twice.
+ * Successfully replayed entries are removed from the store, failed ones are recorded again with an incremented
+ * attempt count.
+ */
+public class DeadLetterReplayer {
+
+  private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayer.class);
+
+  private final EmployeeTimeEventHandler eventHandler;
+  private final DeadLetterStore store;
+  private final int concurrency;
+  private final long intervalMicros;
+  private final Scheduler scheduler;
+
+  public DeadLetterReplayer(final EmployeeTimeEventHandler eventHandler, final DeadLetterStore store,
+      final int concurrency, final int ratePerSecond, final Scheduler scheduler) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be positive");
+    }
+    this.eventHandler = eventHandler;
+    this.store = store;
+    this.concurrency = concurrency;
+    intervalMicros = ratePerSecond > 0 ? TimeUnit.SECONDS.toMicros(1) / ratePerSecond : 0;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * @return one response per dead letter, with the dead letter id as entity id
+   */
+  public Observable<EenAlertResponsePayload> replay(final List<DeadLetter> deadLetters, final String requestId) {
+    logger.info("Replaying {} dead letter(s)", deadLetters.size());
+    Observable<DeadLetter> paced = Observable.from(deadLetters);
+    if (intervalMicros > 0) {
+      paced = paced.concatMap(deadLetter -> Observable.just(deadLetter).delay(intervalMicros, TimeUnit.MICROSECONDS,
+          scheduler));
+    }
+    return paced.flatMap(deadLetter -> replay(deadLetter, requestId).subscribeOn(scheduler), concurrency);
+  }
+
+  private Observable<EenAlertResponsePayload> replay(final DeadLetter deadLetter, final String requestId) {
+    final Observable<SFSFEmployeeTime> employeeTimeObs = Observable.just(deadLetter.getEmployeeTime());
+    final Observable<EenAlertResponsePayload> response;
+    switch (deadLetter.getAction()) {
+      case CREATE:
+        response = eventHandler.onCreateEvent(employeeTimeObs, requestId, deadLetter.getProvider());
+        break;
+      case UPDATE:
+        response = eventHandler.onUpdateEvent(employeeTimeObs, requestId, deadLetter.getProvider());
+        break;
+      case DELETE:
+        response = eventHandler.onCancelEvent(employeeTimeObs, requestId, deadLetter.getProvider());
+        break;
+      default:
+        return Observable.empty();
+    }
+    return response.doOnNext(payload -> {
+      if (payload.getErrorCode() == null) {
+        store.remove(deadLetter);
+      }
+      payload.setEntityId(deadLetter.getId());
+    });
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+
+/**
+ * EmployeeTime events that could not be applied to a calendar service, one entry per event, action and provider.
+ * Entries belong to the tenant current when they were recorded and are only listed and looked up for that tenant.
+ * Implementations are thread-safe.
+ */
+public interface DeadLetterStore {
+
+  /**
+   * Records the failure, or increments the attempt count of the entry if the same event already failed for the
+   * provider.
+   */
+  DeadLetter record(SFSFEmployeeTime employeeTime, Action action, String provider, Throwable error);
+
+  /**
+   * @return all entries of the current tenant, oldest failure first
+   */
+  List<DeadLetter> list();
+
+  /**
+   * @param ids the entries of the current tenant to look up, unknown ids are ignored
+   */
+  List<DeadLetter> get(Collection<String> ids);
+
+  /**
+   * Removes the entry unless it was replaced by a newer failure in the meantime.
+   */
+  boolean remove(DeadLetter deadLetter);
+
+  int size();
+
+  static String id(final SFSFEmployeeTime employeeTime, final Action action, final String provider) {
+    return employeeTime.getExternalCode() == null ? UUID.randomUUID().toString()
+        : employeeTime.getExternalCode() + ":" + action + ":" + provider;
+  }
+
+  static String message(final Throwable error) {
+    return error.getMessage() == null ? error.getClass().getName() : error.getMessage();
+  }
+}
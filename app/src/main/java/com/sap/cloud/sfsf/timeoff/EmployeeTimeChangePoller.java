@@ -0,0 +1,264 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+
+/**
+ * Polls SFSF for changed EmployeeTime entities, for tenants that cannot send Intelligent Services notifications.
+ *
+ * Every poll reads the approved and cancelled entities modified since the saved watermark, oldest first and following
+ * the server-driven <code>__next</code> links, and hands them to the {@link TimeoffNotificationHandler} as if they had
+ * been notified. The watermark is saved after every handled page, whatever the outcome of its entities: a calendar
+ * failure is dead-lettered by the {@link EmployeeTimeEventHandler} for the failing provider, other failures are only
+ * reported and left to the reconciliation. A failing SFSF call leaves the watermark where it was.
+ *
+ * The changes query is inclusive, so the externalCodes already handled at the watermark are saved with it and skipped
+ * by the next poll, also after a restart. ExternalCodes beyond the length of one checkpoint value, e.g. of a mass
+ * approval sharing one modification time, are saved in numbered continuation checkpoints.
+ *
+ * In cluster mode, see {@link #withClusterRouter(ClusterRouter)}, every node polls and only handles the entities of
+ * the users it owns, with a watermark of its own.
+ *
+ * The interval adapts to the traffic: a poll that found changes schedules the next one after
+ * <code>minInterval</code>, an idle or failed poll doubles the interval up to <code>maxInterval</code>.
+ */
+public class EmployeeTimeChangePoller {
+
+  static final String WATERMARK_CHECKPOINT = "polling.watermark";
+
+  private static final String SEPARATOR = " ";
+  private static final String CONTINUATIONS_SEPARATOR = ";";
+  private static final String CONTINUATION_SUFFIX = "#";
+  // room for the watermark and the number of continuations in the first value
+  private static final int CHUNK_LENGTH = CheckpointStore.MAX_VALUE_LENGTH - 64;
+
+  private static final Logger logger = LoggerFactory.getLogger(EmployeeTimeChangePoller.class);
+
+  private final SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+  private final TimeoffNotificationHandler notificationHandler;
+  private final CheckpointStore checkpoints;
+  private final int pageSize;
+  private final long minIntervalMillis;
+  private final long maxIntervalMillis;
+  private final Duration initialLookback;
+  private final Clock clock;
+  private final Scheduler scheduler;
+  private final AtomicBoolean running = new AtomicBoolean();
+  private ClusterRouter clusterRouter;
+
+  // the changes query is inclusive, entities handled at the watermark are not handled again
+  private final Set<String> handledAtWatermark = new LinkedHashSet<>();
+  private OffsetDateTime watermark;
+  private long intervalMillis;
+  private Worker worker;
+
+  public EmployeeTimeChangePoller(final SFSFEmployeeTimeService sfsfEmployeeTimeSvc,
+      final TimeoffNotificationHandler notificationHandler, final CheckpointStore checkpoints, final int pageSize,
+      final Duration minInterval, final Duration maxInterval, final Duration initialLookback, final Clock clock,
+      final Scheduler scheduler) {
+    if (pageSize < 1 || minInterval.isNegative() || minInterval.isZero() || maxInterval.compareTo(minInterval) < 0) {
+      throw new IllegalArgumentException("pageSize and minInterval must be positive, maxInterval at least minInterval");
+    }
+    this.sfsfEmployeeTimeSvc = sfsfEmployeeTimeSvc;
+    this.notificationHandler = notificationHandler;
+    this.checkpoints = checkpoints;
+    this.pageSize = pageSize;
+    minIntervalMillis = minInterval.toMillis();
+    maxIntervalMillis = maxInterval.toMillis();
+    this.initialLookback = initialLookback;
+    this.clock = clock;
+    this.scheduler = scheduler;
+    intervalMillis = minIntervalMillis;
+  }
+
+  /**
+   * Only handles the entities of the users this node owns, and keeps the watermark per node.
+   */
+  public EmployeeTimeChangePoller withClusterRouter(final ClusterRouter clusterRouter) {
+    this.clusterRouter = clusterRouter;
+    return this;
+  }
+
+  public synchronized void start() {
+    stop();
+    worker = scheduler.createWorker();
+    worker.schedule(this::pollAndReschedule);
+  }
+
+  public synchronized void stop() {
+    if (worker != null) {
+      worker.unsubscribe();
+      worker = null;
+    }
+  }
+
+  /**
+   * @return the delay before the next scheduled poll, in milliseconds
+   */
+  synchronized long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  private void pollAndReschedule() {
+    int changes = -1;
+    try {
+      changes = poll().toBlocking().singleOrDefault(0);
+    } catch (final RuntimeException e) {
+      logger.error("Polling EmployeeTime changes failed", e);
+    }
+    synchronized (this) {
+      intervalMillis = nextInterval(changes);
+      if (worker != null) {
+        logger.debug("Next EmployeeTime poll in {} ms", intervalMillis);
+        worker.schedule(this::pollAndReschedule, intervalMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private long nextInterval(final int changes) {
+    return changes > 0 ? minIntervalMillis : Math.min(intervalMillis * 2, maxIntervalMillis);
+  }
+
+  /**
+   * @return the number of handled entities, or nothing if another poll is active
+   */
+  public Observable<Integer> poll() {
+    return Observable.defer(() -> {
+      if (!running.compareAndSet(false, true)) {
+        logger.debug("EmployeeTime poll is already running");
+        return Observable.<Integer>empty();
+      }
+      final OffsetDateTime since = loadWatermark();
+      final String requestId = "poll-" + clock.millis();
+      logger.debug("Polling EmployeeTime changes since {}", since);
+      return pages(() -> sfsfEmployeeTimeSvc.getChangedSince(since, pageSize)).concatMap(page -> handlePage(page,
+          requestId)).reduce(0, Integer::sum).doOnNext(changes -> {
+            if (changes > 0) {
+              logger.info("Handled {} EmployeeTime change(s), watermark {}", changes, watermark);
+            }
+          }).doOnTerminate(() -> running.set(false)).doOnUnsubscribe(() -> running.set(false));
+    });
+  }
+
+  private Observable<SFSFEmployeeTimeList> pages(final Callable<SFSFEmployeeTimeList> fetch) {
+    return Observable.fromCallable(fetch).concatMap(page -> {
+      final Observable<SFSFEmployeeTimeList> current = Observable.just(page);
+      return page.getNext() == null ? current
+          : current.concatWith(pages(() -> sfsfEmployeeTimeSvc.getNextPage(page.getNext())));
+    });
+  }
+
+  private Observable<Integer> handlePage(final SFSFEmployeeTimeList page, final String requestId) {
+    final List<SFSFEmployeeTime> employeeTimes = page.getResults();
+    final Observable<SFSFEmployeeTime> changed = Observable.from(employeeTimes).filter(this::isNotHandled)
+        .filter(employeeTime -> clusterRouter == null || clusterRouter.owns(employeeTime.getUserId()));
+    return notificationHandler.onEmployeeTimes(changed, requestId).count()
+        .doOnNext(count -> advanceWatermark(employeeTimes));
+  }
+
+  private synchronized boolean isNotHandled(final SFSFEmployeeTime employeeTime) {
+    final ZonedDateTime modified = employeeTime.getLastModifiedDateTime();
+    return modified == null || !modified.toOffsetDateTime().isEqual(watermark)
+        || !handledAtWatermark.contains(employeeTime.getExternalCode());
+  }
+
+  private synchronized void advanceWatermark(final List<SFSFEmployeeTime> employeeTimes) {
+    for (final SFSFEmployeeTime employeeTime : employeeTimes) {
+      final ZonedDateTime modified = employeeTime.getLastModifiedDateTime();
+      if (modified == null) {
+        continue;
+      }
+      final OffsetDateTime modifiedDateTime = modified.toOffsetDateTime();
+      if (modifiedDateTime.isAfter(watermark)) {
+        watermark = modifiedDateTime;
+        handledAtWatermark.clear();
+      }
+      if (modifiedDateTime.isEqual(watermark)) {
+        handledAtWatermark.add(employeeTime.getExternalCode());
+      }
+    }
+    saveCheckpoint();
+  }
+
+  private void saveCheckpoint() {
+    final List<StringBuilder> chunks = new ArrayList<>();
+    StringBuilder chunk = new StringBuilder();
+    chunks.add(chunk);
+    for (final String externalCode : handledAtWatermark) {
+      if (chunk.length() + SEPARATOR.length() + externalCode.length() > CHUNK_LENGTH) {
+        chunk = new StringBuilder();
+        chunks.add(chunk);
+      }
+      chunk.append(SEPARATOR).append(externalCode);
+    }
+    // continuations first, the first value must not count continuations that are not saved yet
+    for (int i = 1; i < chunks.size(); i++) {
+      checkpoints.save(checkpointName() + CONTINUATION_SUFFIX + i, chunks.get(i).substring(SEPARATOR.length()));
+    }
+    final StringBuilder checkpoint = new StringBuilder(watermark.toString());
+    if (chunks.size() > 1) {
+      checkpoint.append(CONTINUATIONS_SEPARATOR).append(chunks.size() - 1);
+    }
+    checkpoints.save(checkpointName(), checkpoint.append(chunks.get(0)).toString());
+  }
+
+  private synchronized OffsetDateTime loadWatermark() {
+    if (watermark == null) {
+      final String saved = checkpoints.load(checkpointName());
+      if (saved == null) {
+        watermark = OffsetDateTime.now(clock).withOffsetSameInstant(ZoneOffset.UTC).minus(initialLookback);
+      } else {
+        final String[] parts = saved.split(SEPARATOR);
+        final String[] header = parts[0].split(CONTINUATIONS_SEPARATOR);
+        watermark = OffsetDateTime.parse(header[0]);
+        handledAtWatermark.addAll(Arrays.asList(parts).subList(1, parts.length));
+        final int continuations = header.length > 1 ? Integer.parseInt(header[1]) : 0;
+        for (int i = 1; i <= continuations; i++) {
+          final String continuation = checkpoints.load(checkpointName() + CONTINUATION_SUFFIX + i);
+          if (continuation != null && !continuation.isEmpty()) {
+            handledAtWatermark.addAll(Arrays.asList(continuation.split(SEPARATOR)));
+          }
+        }
+      }
+    }
+    return watermark;
+  }
+
+  private String checkpointName() {
+    return clusterRouter == null ? WATERMARK_CHECKPOINT : WATERMARK_CHECKPOINT + "@" + clusterRouter.getSelf();
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sap.cloud.commons.metrics.MetricRegistry;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.subjects.ReplaySubject;
+
+/**
+ * Holds EmployeeTime events for a short window per externalCode and lets only the net effect through.
+ *
+ * The first event for an externalCode opens the window; events arriving before it closes supersede the pending one.
+ * When the window closes, the net event is handled once, with the handler of the last submitter, and every submitter
+ * of the window receives that result, so a superseded event is reported as failed if the survivor fails. A create
+ * followed by a cancel within the same window is dropped altogether and all its submitters complete empty; a create
+ * followed by updates is applied as a single create with the latest state.
+ *
+ * A window of zero disables coalescing. Note that a held event keeps its notification request waiting until the
+ * window closes.
+ */
+public class EmployeeTimeEventCoalescer {
+
+  static final String EVENTS_COUNTER = "coalescer_events";
+
+  private static final Logger logger = LoggerFactory.getLogger(EmployeeTimeEventCoalescer.class);
+
+  private final long windowMillis;
+  private final Scheduler scheduler;
+  private final Map<String, Pending> pending = new HashMap<>();
+
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong applied = new AtomicLong();
+  private final AtomicLong superseded = new AtomicLong();
+  private final AtomicLong cancelledOut = new AtomicLong();
+
+  public EmployeeTimeEventCoalescer(final long windowMillis, final Scheduler scheduler) {
+    this.windowMillis = windowMillis;
+    this.scheduler = scheduler;
+  }
+
+  public boolean isEnabled() {
+    return windowMillis > 0;
+  }
+
+  /**
+   * Counters of the events, one target per count.
+   */
+  public EmployeeTimeEventCoalescer registerMetrics(final MetricRegistry registry) {
+    registry.counter(EVENTS_COUNTER, "received", this::getReceivedCount);
+    registry.counter(EVENTS_COUNTER, "applied", this::getAppliedCount);
+    registry.counter(EVENTS_COUNTER, "superseded", this::getSupersededCount);
+    registry.counter(EVENTS_COUNTER, "cancelled_out", this::getCancelledOutCount);
+    return this;
+  }
+
+  /**
+   * @param externalCode the key the event was raised for
+   * @param event the event with its action already resolved
+   * @param handler applies the net event of the window; its event is a copy if the action changed
+   * @return the result of the net event, or an empty observable if the window cancelled out
+   */
+  public <R> Observable<R> coalesce(final String externalCode, final SFSFEmployeeTime event,
+      final Func1<SFSFEmployeeTime, Observable<R>> handler) {
+    received.incrementAndGet();
+    if (!isEnabled() || externalCode == null) {
+      applied.incrementAndGet();
+      return Observable.defer(() -> handler.call(event));
+    }
+    final ReplaySubject<Object> result = ReplaySubject.create();
+    final boolean opened;
+    synchronized (pending) {
+      Pending current = pending.get(externalCode);
+      opened = current == null;
+      if (opened) {
+        current = new Pending(event.getAction());
+        pending.put(externalCode, current);
+      }
+      current.add(event, handler, result);
+    }
+    if (opened) {
+      Observable.timer(windowMillis, TimeUnit.MILLISECONDS, scheduler).subscribe(tick -> flush(externalCode));
+    }
+    @SuppressWarnings("unchecked")
+    final Observable<R> typed = (Observable<R>) (Observable<?>) result;
+    return typed;
+  }
+
+  private void flush(final String externalCode) {
+    final Pending current;
+    synchronized (pending) {
+      current = pending.remove(externalCode);
+    }
+    if (current == null) {
+      return;
+    }
+    try {
+      apply(externalCode, current);
+    } catch (final RuntimeException e) {
+      // the held requests wait on their subjects, none of them may be left without a terminal event
+      logger.warn("EmployeeTime {}: coalesced events could not be applied", externalCode, e);
+      current.subscribers.forEach(subscriber -> subscriber.onError(e));
+    }
+  }
+
+  private void apply(final String externalCode, final Pending current) {
+    final SFSFEmployeeTime last = current.events.get(current.events.size() - 1);
+    final boolean cancelOut = current.firstAction == Action.CREATE && last.getAction() == Action.DELETE;
+    // the submitted event still belongs to its submitter, so the changed action goes on a copy
+    final SFSFEmployeeTime net = current.firstAction == Action.CREATE && last.getAction() == Action.UPDATE
+        ? last.withAction(Action.CREATE) : last;
+
+    superseded.addAndGet(current.events.size() - 1);
+    if (cancelOut) {
+      cancelledOut.incrementAndGet();
+    } else {
+      applied.incrementAndGet();
+    }
+    logger.debug("EmployeeTime {}: {} event(s) coalesced into {}", externalCode, current.events.size(),
+        cancelOut ? "nothing" : net.getAction());
+
+    if (cancelOut) {
+      current.subscribers.forEach(ReplaySubject::onCompleted);
+      return;
+    }
+    // handled once, every submitter of the window gets the result
+    final Observable<Object> outcome = Observable.defer(() -> current.handler.call(net).cast(Object.class)).cache();
+    for (final ReplaySubject<Object> subscriber : current.subscribers) {
+      outcome.subscribe(subscriber);
+    }
+  }
+
+  /**
+   * @return number of events submitted
+   */
+  public long getReceivedCount() {
+    return received.get();
+  }
+
+  /**
+   * @return number of events passed on to the calendar services
+   */
+  public long getAppliedCount() {
+    return applied.get();
+  }
+
+  /**
+   * @return number of events dropped because a later event for the same externalCode arrived in the window
+   */
+  public long getSupersededCount() {
+    return superseded.get();
+  }
+
+  /**
+   * @return number of windows dropped entirely because a create was cancelled before it was applied
+   */
+  public long getCancelledOutCount() {
+    return cancelledOut.get();
+  }
+
+  private static class Pending {
+
+    private final Action firstAction;
+    private final List<SFSFEmployeeTime> events = new ArrayList<>(2);
+    private final List<ReplaySubject<Object>> subscribers = new ArrayList<>(2);
+    private Func1<SFSFEmployeeTime, ? extends Observable<?>> handler;
+
+    Pending(final Action firstAction) {
+      this.firstAction = firstAction;
+    }
+
+    void add(final SFSFEmployeeTime event, final Func1<SFSFEmployeeTime, ? extends Observable<?>> handler,
+        final ReplaySubject<Object> subscriber) {
+      events.add(event);
+      this.handler = handler;
+      subscribers.add(subscriber);
+    }
+  }
+}
@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import com.sap.cloud.commons.okhttp.OkHttpUtils;
 import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,7 @@ import org.springframework.stereotype.Component;
 
 import retrofit2.adapter.rxjava.HttpException;
 import rx.Observable;
+import rx.functions.Func1;
 
 @Component
 public class EmployeeTimeEventHandler {
@@ -40,18 +42,30 @@ public class EmployeeTimeEventHandler {
 	static final String TIMEOFF_EVENT_PROCESS_ERROR = "Error {0} out-of-office event";
 
 	private final Observable<CalendarServiceProvider> calendarSvc;
+	private final DeadLetterStore deadLetters;
 
-	@Autowired
 	public EmployeeTimeEventHandler(final List<CalendarServiceProvider> calendarSvc) {
+		this(calendarSvc, null);
+	}
+
+	@Autowired
+	public EmployeeTimeEventHandler(final List<CalendarServiceProvider> calendarSvc, final DeadLetterStore deadLetters) {
 		this.calendarSvc = Observable.from(calendarSvc);
+		this.deadLetters = deadLetters;
 	}
 
 	public Observable<EenAlertResponsePayload> onCreateEvent(final Observable<SFSFEmployeeTime> employeeTimeObs, final String requestId) {
+		return onCreateEvent(employeeTimeObs, requestId, null);
+	}
 
-		return employeeTimeObs.flatMap(et ->
-		  calendarSvc.flatMap(service ->
-		    service.create(et, requestId)
-		 ))
+	/**
+	 * @param provider the name of the only calendar service provider to apply the event to, all if <code>null</code>
+	 */
+	public Observable<EenAlertResponsePayload> onCreateEvent(final Observable<SFSFEmployeeTime> employeeTimeObs,
+			final String requestId, final String provider) {
+
+		return employeeTimeObs.flatMap(et -> applyTo(provider, et, Action.CREATE,
+		    service -> service.create(et, requestId)))
 		.map(nothing -> {
 			final EenAlertResponsePayload response = new EenAlertResponsePayload();
 			response.setStatus(HttpServletResponse.SC_CREATED);
@@ -64,10 +78,16 @@ public class EmployeeTimeEventHandler {
 
 	public Observable<EenAlertResponsePayload> onUpdateEvent(final Observable<SFSFEmployeeTime> employeeTimeObs,
 			final String requestId) {
-        return employeeTimeObs.flatMap(et ->
-          calendarSvc.flatMap(service ->
-            service.update(et, requestId)
-         ))
+		return onUpdateEvent(employeeTimeObs, requestId, null);
+	}
+
+	/**
+	 * @param provider the name of the only calendar service provider to apply the event to, all if <code>null</code>
+	 */
+	public Observable<EenAlertResponsePayload> onUpdateEvent(final Observable<SFSFEmployeeTime> employeeTimeObs,
+			final String requestId, final String provider) {
+        return employeeTimeObs.flatMap(et -> applyTo(provider, et, Action.UPDATE,
+            service -> service.update(et, requestId)))
 		.map(nothing -> {
 			final EenAlertResponsePayload response = new EenAlertResponsePayload();
 			response.setStatus(HttpServletResponse.SC_OK);
@@ -79,10 +99,16 @@ public class EmployeeTimeEventHandler {
 	}
 
 	public Observable<EenAlertResponsePayload> onCancelEvent(final Observable<SFSFEmployeeTime> employeeTimeObs, final String requestId) {
-          return employeeTimeObs.flatMap(et ->
-          calendarSvc.flatMap(service ->
-            service.cancel(et, requestId)
-         ))
+		return onCancelEvent(employeeTimeObs, requestId, null);
+	}
+
+	/**
+	 * @param provider the name of the only calendar service provider to apply the event to, all if <code>null</code>
+	 */
+	public Observable<EenAlertResponsePayload> onCancelEvent(final Observable<SFSFEmployeeTime> employeeTimeObs,
+			final String requestId, final String provider) {
+          return employeeTimeObs.flatMap(et -> applyTo(provider, et, Action.DELETE,
+            service -> service.cancel(et, requestId)))
 		.map(nothing -> {
 			final EenAlertResponsePayload response = new EenAlertResponsePayload();
 			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
@@ -93,6 +119,18 @@ public class EmployeeTimeEventHandler {
 		.onErrorReturn(e -> onErrorGetResponse(requestId, e, MessageFormat.format(TIMEOFF_EVENT_PROCESS_ERROR, "deleting")));
 	}
 
+	/**
+	 * Applies the event to every provider, or only to the given one. A failing provider does not cancel the others
+	 * and is dead-lettered on its own; the error is passed on once all providers are done.
+	 */
+	private Observable<Void> applyTo(final String provider, final SFSFEmployeeTime et, final Action action,
+			final Func1<CalendarServiceProvider, Observable<Void>> call) {
+		final Observable<CalendarServiceProvider> services = provider == null ? calendarSvc
+				: calendarSvc.filter(service -> provider.equals(service.getName()));
+		return Observable.mergeDelayError(services.map(service -> call.call(service)
+				.doOnError(e -> deadLetter(et, action, service.getName(), e))));
+	}
+
 	private EenAlertResponsePayload onErrorGetResponse(final String requestId, final Throwable e, final String errorMessage) {
 		logger.error(errorMessage, e);
 		final EenAlertResponsePayload response = new EenAlertResponsePayload();
@@ -120,6 +158,18 @@ public class EmployeeTimeEventHandler {
 		return response;
 	}
 
+	private void deadLetter(final SFSFEmployeeTime employeeTime, final Action action, final String provider,
+			final Throwable e) {
+		if (deadLetters != null) {
+			try {
+				deadLetters.record(employeeTime, action, provider, e);
+			} catch (final RuntimeException recordError) {
+				logger.error("Could not dead-letter EmployeeTime {} for {}", employeeTime.getExternalCode(), provider,
+						recordError);
+			}
+		}
+	}
+
 	private String addRequestId(final String requestId, final String message) {
 		return "[" + requestId + "] " + message;
 	}
@@ -0,0 +1,429 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.ApprovalStatus;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+
+/**
+ * Brings the calendars in line with SFSF, in case notifications were lost.
+ *
+ * Pages through the approved and cancelled EmployeeTime entities changed since the saved watermark, oldest first, and
+ * compares each with its out-of-office event in every calendar: a missing event is created, one with other dates is
+ * updated and the event of a cancelled entity is deleted. Everything else is left alone.
+ *
+ * Pages are read one after the other; the entities of a page are reconciled with at most <code>concurrency</code>
+ * calls in flight, started at most <code>ratePerSecond</code> times a second. After every page the watermark is moved
+ * up to the last entity before the first failure, so an interrupted or failed run resumes where it stopped. Only one
+ * run is active at a time.
+ *
+ * An entity that keeps failing would hold the watermark forever. Once the entity holding it has failed
+ * <code>maxAttempts</code> runs in a row, see {@link #withDeadLetters(DeadLetterStore, int)}, its failures are
+ * dead-lettered per calendar and the watermark moves past it.
+ *
+ * In cluster mode, see {@link #withClusterRouter(ClusterRouter)}, every node runs the reconciliation for the users it
+ * owns, with checkpoints of its own.
+ */
+public class EmployeeTimeReconciler {
+
+  static final String WATERMARK_CHECKPOINT = "reconciliation.watermark";
+  static final String HELD_CHECKPOINT = "reconciliation.held";
+
+  private static final Logger logger = LoggerFactory.getLogger(EmployeeTimeReconciler.class);
+
+  public enum Change {
+    CREATED, UPDATED, CANCELLED, UNCHANGED, FAILED
+  }
+
+  private final SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+  private final List<CalendarServiceProvider> calendarSvc;
+  private final CheckpointStore checkpoints;
+  private final int pageSize;
+  private final int concurrency;
+  private final long intervalMicros;
+  private final Duration initialLookback;
+  private final Clock clock;
+  private final Scheduler scheduler;
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile Subscription schedule;
+  private DeadLetterStore deadLetters;
+  private int maxAttempts = Integer.MAX_VALUE;
+  private Duration catchUpDelay = Duration.ofMinutes(1);
+  private ClusterRouter clusterRouter;
+  // guarded by this
+  private Subscription catchUp;
+  private boolean catchUpPending;
+
+  public EmployeeTimeReconciler(final SFSFEmployeeTimeService sfsfEmployeeTimeSvc,
+      final List<CalendarServiceProvider> calendarSvc, final CheckpointStore checkpoints, final int pageSize,
+      final int concurrency, final int ratePerSecond, final Duration initialLookback, final Clock clock,
+      final Scheduler scheduler) {
+    if (pageSize < 1 || concurrency < 1) {
+      throw new IllegalArgumentException("pageSize and concurrency must be positive");
+    }
+    this.sfsfEmployeeTimeSvc = sfsfEmployeeTimeSvc;
+    this.calendarSvc = calendarSvc;
+    this.checkpoints = checkpoints;
+    this.pageSize = pageSize;
+    this.concurrency = concurrency;
+    intervalMicros = ratePerSecond > 0 ? TimeUnit.SECONDS.toMicros(1) / ratePerSecond : 0;
+    this.initialLookback = initialLookback;
+    this.clock = clock;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Dead-letters an entity that held the watermark for <code>maxAttempts</code> runs and moves past it.
+   */
+  public EmployeeTimeReconciler withDeadLetters(final DeadLetterStore deadLetters, final int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be positive");
+    }
+    this.deadLetters = deadLetters;
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * @param catchUpDelay the delay of the run requested with {@link #requestCatchUp()}
+   */
+  public EmployeeTimeReconciler withCatchUpDelay(final Duration catchUpDelay) {
+    this.catchUpDelay = catchUpDelay;
+    return this;
+  }
+
+  /**
+   * Only reconciles the entities of the users this node owns, and keeps the checkpoints per node.
+   */
+  public EmployeeTimeReconciler withClusterRouter(final ClusterRouter clusterRouter) {
+    this.clusterRouter = clusterRouter;
+    return this;
+  }
+
+  /**
+   * Runs the reconciliation once after the catch-up delay, for notifications that were rejected without being
+   * handled, e.g. while the SFSF circuit breaker is open. Requests while a run is pending are ignored, a run that
+   * aborts is requested again.
+   */
+  public synchronized void requestCatchUp() {
+    if (catchUpPending) {
+      return;
+    }
+    catchUpPending = true;
+    logger.info("Reconciliation catch-up requested in {}", catchUpDelay);
+    catchUp = Observable.timer(catchUpDelay.toMillis(), TimeUnit.MILLISECONDS, scheduler)
+        .doOnNext(tick -> catchUpStarted()).concatMap(tick -> reconcile()).subscribe(report -> {
+        }, e -> {
+          logger.error("Reconciliation catch-up aborted", e);
+          requestCatchUp();
+        });
+  }
+
+  private synchronized void catchUpStarted() {
+    // a rejection during the run may not be covered by it
+    catchUpPending = false;
+  }
+
+  /**
+   * Runs the reconciliation every <code>period</code>, skipping runs while the previous one is still active.
+   */
+  public synchronized void start(final long period, final TimeUnit unit) {
+    stop();
+    schedule = Observable.interval(period, unit, scheduler).onBackpressureDrop()
+        .concatMap(tick -> reconcile().onErrorResumeNext(e -> {
+          logger.error("Reconciliation aborted", e);
+          return Observable.empty();
+        })).subscribe();
+  }
+
+  public synchronized void stop() {
+    if (schedule != null) {
+      schedule.unsubscribe();
+      schedule = null;
+    }
+    if (catchUp != null) {
+      catchUp.unsubscribe();
+      catchUp = null;
+      catchUpPending = false;
+    }
+  }
+
+  /**
+   * @return the report of the run, or nothing if another run is active
+   */
+  public Observable<Report> reconcile() {
+    return Observable.defer(() -> {
+      if (!running.compareAndSet(false, true)) {
+        logger.info("Reconciliation is already running");
+        return Observable.<Report>empty();
+      }
+      final OffsetDateTime since = loadWatermark();
+      final Report report = new Report(since);
+      final String requestId = "reconciliation-" + clock.millis();
+      logger.info("Reconciling EmployeeTime changes since {}", since);
+      return pages(() -> sfsfEmployeeTimeSvc.getChangedSince(since, pageSize))
+          .concatMap(page -> reconcilePage(page, report, requestId)).ignoreElements().cast(Report.class)
+          .concatWith(Observable.just(report)).doOnNext(r -> logger.info("Reconciliation finished: {}", r))
+          .doOnTerminate(() -> running.set(false)).doOnUnsubscribe(() -> running.set(false));
+    });
+  }
+
+  private Observable<SFSFEmployeeTimeList> pages(final Callable<SFSFEmployeeTimeList> fetch) {
+    return Observable.fromCallable(fetch).subscribeOn(scheduler).concatMap(page -> {
+      final Observable<SFSFEmployeeTimeList> current = Observable.just(page);
+      return page.getNext() == null ? current
+          : current.concatWith(pages(() -> sfsfEmployeeTimeSvc.getNextPage(page.getNext())));
+    });
+  }
+
+  private Observable<Void> reconcilePage(final SFSFEmployeeTimeList page, final Report report,
+      final String requestId) {
+    final List<SFSFEmployeeTime> employeeTimes = page.getResults();
+    Observable<SFSFEmployeeTime> paced = Observable.from(employeeTimes)
+        .filter(employeeTime -> clusterRouter == null || clusterRouter.owns(employeeTime.getUserId()));
+    if (intervalMicros > 0) {
+      paced = paced.concatMap(
+          employeeTime -> Observable.just(employeeTime).delay(intervalMicros, TimeUnit.MICROSECONDS, scheduler));
+    }
+    final Map<SFSFEmployeeTime, List<Failure>> failed = Collections.synchronizedMap(new IdentityHashMap<>());
+    return paced.flatMap(employeeTime -> reconcile(employeeTime, report, requestId).subscribeOn(scheduler)
+        .filter(failures -> !failures.isEmpty()).doOnNext(failures -> failed.put(employeeTime, failures)),
+        concurrency).ignoreElements().doOnCompleted(() -> advanceWatermark(employeeTimes, failed, report))
+        .cast(Void.class);
+  }
+
+  /**
+   * @return the calendars reconciling failed for, empty if none
+   */
+  private Observable<List<Failure>> reconcile(final SFSFEmployeeTime employeeTime, final Report report,
+      final String requestId) {
+    return Observable.from(calendarSvc).concatMap(service -> {
+      final AtomicReference<Action> attempted = new AtomicReference<>(
+          ApprovalStatus.CANCELLED == employeeTime.getApprovalStatus() ? Action.DELETE : Action.UPDATE);
+      return reconcile(service, employeeTime, requestId, attempted).doOnNext(report::count)
+          .map(change -> (Failure) null).onErrorReturn(e -> {
+            logger.error("Could not reconcile EmployeeTime {}", employeeTime.getExternalCode(), e);
+            report.count(Change.FAILED);
+            return new Failure(service.getName(), attempted.get(), e);
+          });
+    }).filter(Objects::nonNull).toList().doOnNext(failures -> report.countEntity(!failures.isEmpty()));
+  }
+
+  private Observable<Change> reconcile(final CalendarServiceProvider service, final SFSFEmployeeTime employeeTime,
+      final String requestId, final AtomicReference<Action> attempted) {
+    return service.getOutOfOffice(employeeTime).toList().flatMap(events -> {
+      final CalendarEvent event = events.isEmpty() ? null : events.get(0);
+      if (ApprovalStatus.CANCELLED == employeeTime.getApprovalStatus()) {
+        return event == null ? Observable.just(Change.UNCHANGED)
+            : apply(service.cancel(employeeTime, requestId), Change.CANCELLED);
+      }
+      if (event == null) {
+        attempted.set(Action.CREATE);
+        return apply(service.create(employeeTime, requestId), Change.CREATED);
+      }
+      return isSameTime(event, employeeTime) ? Observable.just(Change.UNCHANGED)
+          : apply(service.update(employeeTime, requestId), Change.UPDATED);
+    });
+  }
+
+  private static Observable<Change> apply(final Observable<Void> call, final Change change) {
+    return call.lastOrDefault(null).map(nothing -> change);
+  }
+
+  private static boolean isSameTime(final CalendarEvent event, final SFSFEmployeeTime employeeTime) {
+    return isSameInstant(event.getStart(), employeeTime.getStartDate())
+        && isSameInstant(event.getEnd(), employeeTime.getEndDate());
+  }
+
+  private static boolean isSameInstant(final ZonedDateTime a, final ZonedDateTime b) {
+    return a == null || b == null ? Objects.equals(a, b) : a.toInstant().equals(b.toInstant());
+  }
+
+  private void advanceWatermark(final List<SFSFEmployeeTime> employeeTimes,
+      final Map<SFSFEmployeeTime, List<Failure>> failed, final Report report) {
+    for (final SFSFEmployeeTime employeeTime : employeeTimes) {
+      if (report.isWatermarkHeld()) {
+        break;
+      }
+      final List<Failure> failures = failed.get(employeeTime);
+      if (failures != null && !giveUp(employeeTime, failures, report)) {
+        report.holdWatermark();
+        break;
+      }
+      final ZonedDateTime modified = employeeTime.getLastModifiedDateTime();
+      if (modified != null && modified.toOffsetDateTime().isAfter(report.getWatermark())) {
+        report.setWatermark(modified.toOffsetDateTime());
+      }
+    }
+    checkpoints.save(checkpointName(WATERMARK_CHECKPOINT), report.getWatermark().toString());
+  }
+
+  /**
+   * Counts the runs the entity held the watermark in a row and dead-letters its failures once they reach
+   * <code>maxAttempts</code>.
+   *
+   * @return whether the watermark may move past the entity
+   */
+  private boolean giveUp(final SFSFEmployeeTime employeeTime, final List<Failure> failures, final Report report) {
+    final String entity = employeeTime.getExternalCode() + "@" + employeeTime.getLastModifiedDateTime();
+    final String held = checkpoints.load(checkpointName(HELD_CHECKPOINT));
+    final int separator = held == null ? -1 : held.indexOf(' ');
+    final int attempts = separator > 0 && entity.equals(held.substring(separator + 1))
+        ? Integer.parseInt(held.substring(0, separator)) + 1 : 1;
+    if (attempts < maxAttempts || deadLetters == null) {
+      checkpoints.save(checkpointName(HELD_CHECKPOINT), attempts + " " + entity);
+      return false;
+    }
+    logger.warn("EmployeeTime {} failed {} reconciliations, dead-lettering it", employeeTime.getExternalCode(),
+        attempts);
+    for (final Failure failure : failures) {
+      deadLetters.record(employeeTime, failure.action, failure.provider, failure.error);
+    }
+    checkpoints.save(checkpointName(HELD_CHECKPOINT), "");
+    report.countDeadLettered();
+    return true;
+  }
+
+  private OffsetDateTime loadWatermark() {
+    final String saved = checkpoints.load(checkpointName(WATERMARK_CHECKPOINT));
+    return saved != null ? OffsetDateTime.parse(saved)
+        : OffsetDateTime.now(clock).withOffsetSameInstant(ZoneOffset.UTC).minus(initialLookback);
+  }
+
+  private String checkpointName(final String name) {
+    return clusterRouter == null ? name : name + "@" + clusterRouter.getSelf();
+  }
+
+  private static class Failure {
+
+    private final String provider;
+    private final Action action;
+    private final Throwable error;
+
+    Failure(final String provider, final Action action, final Throwable error) {
+      this.provider = provider;
+      this.action = action;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Outcome of a single run. Entity counts are per EmployeeTime, change counts per calendar.
+   */
+  public static class Report {
+
+    private final OffsetDateTime since;
+    private final AtomicIntegerArray changes = new AtomicIntegerArray(Change.values().length);
+    private volatile OffsetDateTime watermark;
+    private volatile boolean watermarkHeld;
+    private volatile int entities;
+    private volatile int failedEntities;
+    private volatile int deadLetteredEntities;
+
+    Report(final OffsetDateTime since) {
+      this.since = since;
+      watermark = since;
+    }
+
+    public OffsetDateTime getSince() {
+      return since;
+    }
+
+    public OffsetDateTime getWatermark() {
+      return watermark;
+    }
+
+    public int getEntities() {
+      return entities;
+    }
+
+    public int getFailedEntities() {
+      return failedEntities;
+    }
+
+    /**
+     * @return number of entities dead-lettered because they failed too many runs
+     */
+    public int getDeadLetteredEntities() {
+      return deadLetteredEntities;
+    }
+
+    public int getCount(final Change change) {
+      return changes.get(change.ordinal());
+    }
+
+    boolean isWatermarkHeld() {
+      return watermarkHeld;
+    }
+
+    void holdWatermark() {
+      watermarkHeld = true;
+    }
+
+    void setWatermark(final OffsetDateTime watermark) {
+      this.watermark = watermark;
+    }
+
+    synchronized void countEntity(final boolean failed) {
+      entities++;
+      if (failed) {
+        failedEntities++;
+      }
+    }
+
+    synchronized void countDeadLettered() {
+      deadLetteredEntities++;
+    }
+
+    void count(final Change change) {
+      changes.incrementAndGet(change.ordinal());
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder().append(entities).append(" entities, ").append(failedEntities)
+          .append(" failed, ").append(deadLetteredEntities).append(" dead-lettered");
+      for (final Change change : Change.values()) {
+        sb.append(", ").append(change.name().toLowerCase()).append('=').append(getCount(change));
+      }
+      return sb.append(", watermark ").append(watermark).toString();
+    }
+  }
+}
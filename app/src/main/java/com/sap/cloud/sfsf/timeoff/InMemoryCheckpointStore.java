@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link CheckpointStore} for when no database is bound. Checkpoints are lost on restart.
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+  private final ConcurrentMap<String, String> checkpoints = new ConcurrentHashMap<>();
+
+  @Override
+  public String load(final String name) {
+    return checkpoints.get(name);
+  }
+
+  @Override
+  public void save(final String name, final String value) {
+    checkpoints.put(name, value);
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded in-memory {@link DeadLetterStore}, used when no data source is bound. Its entries are lost on restart and
+ * are only visible on the node that recorded them.
+ *
+ * A repeated failure of the same event replaces the entry and increments its attempt count. When the store is full
+ * the oldest entry is evicted.
+ */
+public class InMemoryDeadLetterStore implements DeadLetterStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(InMemoryDeadLetterStore.class);
+
+  private final Map<String, DeadLetter> entries;
+  private final Clock clock;
+  private final AtomicLong evicted = new AtomicLong();
+
+  public InMemoryDeadLetterStore(final int capacity, final Clock clock) {
+    this.clock = clock;
+    entries = new LinkedHashMap<String, DeadLetter>(16, 0.75f, false) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, DeadLetter> eldest) {
+        final boolean full = size() > capacity;
+        if (full) {
+          evicted.incrementAndGet();
+          logger.warn("Dead letter store is full, dropping {}", eldest.getKey());
+        }
+        return full;
+      }
+    };
+  }
+
+  @Override
+  public DeadLetter record(final SFSFEmployeeTime employeeTime, final Action action, final String provider,
+      final Throwable error) {
+    final String id = DeadLetterStore.id(employeeTime, action, provider);
+    final String message = DeadLetterStore.message(error);
+    final String tenantId = TenantContext.current();
+    final String key = TenantContext.qualify(tenantId, id);
+    synchronized (entries) {
+      final DeadLetter previous = entries.remove(key);
+      final int attempts = previous == null ? 1 : previous.getAttempts() + 1;
+      final DeadLetter deadLetter =
+          new DeadLetter(id, tenantId, employeeTime, action, provider, message, attempts, clock.instant());
+      entries.put(key, deadLetter);
+      return deadLetter;
+    }
+  }
+
+  @Override
+  public List<DeadLetter> list() {
+    final String tenantId = TenantContext.current();
+    final List<DeadLetter> result = new ArrayList<>();
+    synchronized (entries) {
+      for (final DeadLetter deadLetter : entries.values()) {
+        if (tenantId.equals(deadLetter.getTenantId())) {
+          result.add(deadLetter);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<DeadLetter> get(final Collection<String> ids) {
+    final String tenantId = TenantContext.current();
+    final List<DeadLetter> result = new ArrayList<>(ids.size());
+    synchronized (entries) {
+      for (final String id : ids) {
+        final DeadLetter deadLetter = entries.get(TenantContext.qualify(tenantId, id));
+        if (deadLetter != null) {
+          result.add(deadLetter);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean remove(final DeadLetter deadLetter) {
+    synchronized (entries) {
+      return entries.remove(TenantContext.qualify(deadLetter.getTenantId(), deadLetter.getId()), deadLetter);
+    }
+  }
+
+  @Override
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @return number of entries dropped because the store was full
+   */
+  public long getEvictedCount() {
+    return evicted.get();
+  }
+}
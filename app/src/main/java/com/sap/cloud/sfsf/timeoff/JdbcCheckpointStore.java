@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CheckpointStore} in the <code>TIMEOFF_CHECKPOINT</code> table of the given data source, e.g. the
+ * <code>jdbc/DefaultDB</code> bound to the application. The table is created on first use.
+ */
+public class JdbcCheckpointStore implements CheckpointStore {
+
+  static final String TABLE = "TIMEOFF_CHECKPOINT";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcCheckpointStore.class);
+
+  private static final String CREATE = "CREATE TABLE " + TABLE
+      + " (NAME VARCHAR(255) NOT NULL PRIMARY KEY, CHECKPOINT_VALUE VARCHAR(" + MAX_VALUE_LENGTH + "))";
+  private static final String SELECT = "SELECT CHECKPOINT_VALUE FROM " + TABLE + " WHERE NAME = ?";
+  private static final String UPDATE = "UPDATE " + TABLE + " SET CHECKPOINT_VALUE = ? WHERE NAME = ?";
+  private static final String INSERT = "INSERT INTO " + TABLE + " (CHECKPOINT_VALUE, NAME) VALUES (?, ?)";
+
+  private final DataSource dataSource;
+  private volatile boolean tableChecked;
+
+  public JdbcCheckpointStore(final DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  @Override
+  public String load(final String name) {
+    try (Connection connection = connection(); PreparedStatement select = connection.prepareStatement(SELECT)) {
+      select.setString(1, name);
+      try (ResultSet resultSet = select.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not load checkpoint " + name, e);
+    }
+  }
+
+  @Override
+  public void save(final String name, final String value) {
+    try (Connection connection = connection()) {
+      if (execute(connection, UPDATE, name, value) == 0) {
+        execute(connection, INSERT, name, value);
+      }
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not save checkpoint " + name, e);
+    }
+  }
+
+  private static int execute(final Connection connection, final String sql, final String name, final String value)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, value);
+      statement.setString(2, name);
+      return statement.executeUpdate();
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+    if (!tableChecked) {
+      try {
+        createTableIfMissing(connection);
+      } catch (final SQLException e) {
+        connection.close();
+        throw e;
+      }
+      tableChecked = true;
+    }
+    return connection;
+  }
+
+  private static synchronized void createTableIfMissing(final Connection connection) throws SQLException {
+    final DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(null, null, TABLE, null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(CREATE);
+      LOGGER.info("Created table {}", TABLE);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+
+/**
+ * {@link ClusterMembership} in the <code>TIMEOFF_CLUSTER_NODE</code> table of the given data source, e.g. the
+ * <code>jdbc/DefaultDB</code> shared by all nodes of the application. The table is created on first use.
+ *
+ * Every node writes a heartbeat to its row and reads the rows with a heartbeat younger than <code>ttl</code>, so a
+ * node that stopped heartbeating drops out of the cluster after at most <code>ttl</code>. The members are read with
+ * the heartbeat, not per event; until the first heartbeat and while the table cannot be read, the last known members
+ * are used.
+ */
+public class JdbcClusterMembership implements ClusterMembership {
+
+  static final String TABLE = "TIMEOFF_CLUSTER_NODE";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcClusterMembership.class);
+
+  private static final String CREATE =
+      "CREATE TABLE " + TABLE + " (NODE_URL VARCHAR(512) NOT NULL PRIMARY KEY, HEARTBEAT BIGINT NOT NULL)";
+  private static final String SELECT = "SELECT NODE_URL FROM " + TABLE + " WHERE HEARTBEAT >= ? ORDER BY NODE_URL";
+  private static final String UPDATE = "UPDATE " + TABLE + " SET HEARTBEAT = ? WHERE NODE_URL = ?";
+  private static final String INSERT = "INSERT INTO " + TABLE + " (HEARTBEAT, NODE_URL) VALUES (?, ?)";
+  private static final String DELETE = "DELETE FROM " + TABLE + " WHERE NODE_URL = ?";
+
+  private final DataSource dataSource;
+  private final String self;
+  private final long ttlMillis;
+  private final Clock clock;
+  private volatile boolean tableChecked;
+  private volatile List<String> members;
+  private Worker worker;
+
+  public JdbcClusterMembership(final DataSource dataSource, final String self, final Duration ttl,
+      final Clock clock) {
+    this.dataSource = dataSource;
+    this.self = self;
+    ttlMillis = ttl.toMillis();
+    this.clock = clock;
+    members = Collections.singletonList(self);
+  }
+
+  /**
+   * Heartbeats now and then every <code>interval</code>, which should be well below the <code>ttl</code>.
+   */
+  public synchronized void start(final Duration interval, final Scheduler scheduler) {
+    stop();
+    worker = scheduler.createWorker();
+    worker.schedulePeriodically(this::heartbeat, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops heartbeating and leaves the cluster, so the other nodes take over this node's users right away.
+   */
+  @Override
+  public synchronized void stop() {
+    if (worker != null) {
+      worker.unsubscribe();
+      worker = null;
+      try (Connection connection = connection(); PreparedStatement delete = connection.prepareStatement(DELETE)) {
+        delete.setString(1, self);
+        delete.executeUpdate();
+      } catch (final SQLException e) {
+        LOGGER.warn("Could not remove node {} from {}, it expires with its heartbeat", self, TABLE, e);
+      }
+    }
+  }
+
+  @Override
+  public String getSelf() {
+    return self;
+  }
+
+  @Override
+  public List<String> getMembers() {
+    return members;
+  }
+
+  /**
+   * Writes the heartbeat of this node and reads the live members.
+   */
+  void heartbeat() {
+    final long now = clock.millis();
+    try (Connection connection = connection()) {
+      if (execute(connection, UPDATE, now) == 0) {
+        execute(connection, INSERT, now);
+      }
+      members = readMembers(connection, now - ttlMillis);
+    } catch (final SQLException | RuntimeException e) {
+      LOGGER.error("Cluster heartbeat of node {} failed, keeping members {}", self, members, e);
+    }
+  }
+
+  private List<String> readMembers(final Connection connection, final long oldestHeartbeat) throws SQLException {
+    final List<String> live = new ArrayList<>();
+    try (PreparedStatement select = connection.prepareStatement(SELECT)) {
+      select.setLong(1, oldestHeartbeat);
+      try (ResultSet resultSet = select.executeQuery()) {
+        while (resultSet.next()) {
+          live.add(resultSet.getString(1));
+        }
+      }
+    }
+    if (!live.contains(self)) {
+      live.add(self);
+    }
+    if (!live.equals(members)) {
+      LOGGER.info("Cluster members changed to {}", live);
+    }
+    return Collections.unmodifiableList(live);
+  }
+
+  private int execute(final Connection connection, final String sql, final long heartbeat) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setLong(1, heartbeat);
+      statement.setString(2, self);
+      return statement.executeUpdate();
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+    if (!tableChecked) {
+      try {
+        createTableIfMissing(connection);
+      } catch (final SQLException e) {
+        connection.close();
+        throw e;
+      }
+      tableChecked = true;
+    }
+    return connection;
+  }
+
+  private static synchronized void createTableIfMissing(final Connection connection) throws SQLException {
+    final DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(null, null, TABLE, null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(CREATE);
+      LOGGER.info("Created table {}", TABLE);
+    }
+  }
+}
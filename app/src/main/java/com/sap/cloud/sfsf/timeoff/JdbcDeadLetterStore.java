@@ -0,0 +1,262 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DeadLetterStore} in the <code>TIMEOFF_DEAD_LETTER</code> table of the given data source, e.g. the
+ * <code>jdbc/DefaultDB</code> shared by all nodes of the application, so dead letters survive restarts and can be
+ * replayed from any node. The table is created on first use.
+ *
+ * The EmployeeTime is kept as a serialized snapshot, so a replay does not call SFSF again.
+ */
+public class JdbcDeadLetterStore implements DeadLetterStore {
+
+  static final String TABLE = "TIMEOFF_DEAD_LETTER";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcDeadLetterStore.class);
+
+  private static final int MAX_ERROR_LENGTH = 2048;
+
+  private static final String COLUMNS = "ID, EVENT_ACTION, PROVIDER, ERROR_MESSAGE, ATTEMPTS, FAILED_AT, SNAPSHOT";
+  private static final String CREATE = "CREATE TABLE " + TABLE + " (TENANT VARCHAR(255) NOT NULL, "
+      + "ID VARCHAR(512) NOT NULL, EVENT_ACTION VARCHAR(16) NOT NULL, PROVIDER VARCHAR(255), "
+      + "ERROR_MESSAGE VARCHAR(" + MAX_ERROR_LENGTH + "), ATTEMPTS INTEGER NOT NULL, FAILED_AT BIGINT NOT NULL, "
+      + "SNAPSHOT BLOB NOT NULL, PRIMARY KEY (TENANT, ID))";
+  private static final String UPDATE = "UPDATE " + TABLE
+      + " SET ERROR_MESSAGE = ?, FAILED_AT = ?, SNAPSHOT = ?, ATTEMPTS = ATTEMPTS + 1 WHERE TENANT = ? AND ID = ?";
+  private static final String INSERT = "INSERT INTO " + TABLE
+      + " (ERROR_MESSAGE, FAILED_AT, SNAPSHOT, TENANT, ID, EVENT_ACTION, PROVIDER, ATTEMPTS)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, 1)";
+  private static final String SELECT_ATTEMPTS = "SELECT ATTEMPTS FROM " + TABLE + " WHERE TENANT = ? AND ID = ?";
+  private static final String SELECT_ALL =
+      "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE TENANT = ? ORDER BY FAILED_AT";
+  private static final String SELECT_ONE = "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE TENANT = ? AND ID = ?";
+  private static final String DELETE = "DELETE FROM " + TABLE + " WHERE TENANT = ? AND ID = ? AND ATTEMPTS = ?";
+  private static final String COUNT = "SELECT COUNT(*) FROM " + TABLE;
+
+  // the SQL state class of integrity constraint violations, e.g. a duplicate key
+  private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+  private final DataSource dataSource;
+  private final Clock clock;
+  private volatile boolean tableChecked;
+
+  public JdbcDeadLetterStore(final DataSource dataSource, final Clock clock) {
+    this.dataSource = dataSource;
+    this.clock = clock;
+  }
+
+  @Override
+  public DeadLetter record(final SFSFEmployeeTime employeeTime, final Action action, final String provider,
+      final Throwable error) {
+    final String id = DeadLetterStore.id(employeeTime, action, provider);
+    final String tenantId = TenantContext.current();
+    final String message = truncate(DeadLetterStore.message(error));
+    final Instant failedAt = clock.instant();
+    final byte[] snapshot = serialize(employeeTime);
+    try (Connection connection = connection()) {
+      if (update(connection, message, failedAt, snapshot, tenantId, id) == 0
+          && !insert(connection, message, failedAt, snapshot, tenantId, id, action, provider)) {
+        // another node recorded the same failure first
+        update(connection, message, failedAt, snapshot, tenantId, id);
+      }
+      final int attempts;
+      try (PreparedStatement select = connection.prepareStatement(SELECT_ATTEMPTS)) {
+        select.setString(1, tenantId);
+        select.setString(2, id);
+        try (ResultSet resultSet = select.executeQuery()) {
+          attempts = resultSet.next() ? resultSet.getInt(1) : 1;
+        }
+      }
+      return new DeadLetter(id, tenantId, employeeTime, action, provider, message, attempts, failedAt);
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not record dead letter " + id, e);
+    }
+  }
+
+  private static int update(final Connection connection, final String message, final Instant failedAt,
+      final byte[] snapshot, final String tenantId, final String id) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+      statement.setString(1, message);
+      statement.setLong(2, failedAt.toEpochMilli());
+      statement.setBytes(3, snapshot);
+      statement.setString(4, tenantId);
+      statement.setString(5, id);
+      return statement.executeUpdate();
+    }
+  }
+
+  private static boolean insert(final Connection connection, final String message, final Instant failedAt,
+      final byte[] snapshot, final String tenantId, final String id, final Action action, final String provider)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+      statement.setString(1, message);
+      statement.setLong(2, failedAt.toEpochMilli());
+      statement.setBytes(3, snapshot);
+      statement.setString(4, tenantId);
+      statement.setString(5, id);
+      statement.setString(6, action.name());
+      statement.setString(7, provider);
+      return statement.executeUpdate() == 1;
+    } catch (final SQLException e) {
+      if (e.getSQLState() != null && e.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public List<DeadLetter> list() {
+    final String tenantId = TenantContext.current();
+    try (Connection connection = connection(); PreparedStatement select = connection.prepareStatement(SELECT_ALL)) {
+      select.setString(1, tenantId);
+      final List<DeadLetter> result = new ArrayList<>();
+      try (ResultSet resultSet = select.executeQuery()) {
+        while (resultSet.next()) {
+          result.add(read(tenantId, resultSet));
+        }
+      }
+      return result;
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not list dead letters", e);
+    }
+  }
+
+  @Override
+  public List<DeadLetter> get(final Collection<String> ids) {
+    final String tenantId = TenantContext.current();
+    try (Connection connection = connection(); PreparedStatement select = connection.prepareStatement(SELECT_ONE)) {
+      final List<DeadLetter> result = new ArrayList<>(ids.size());
+      for (final String id : ids) {
+        select.setString(1, tenantId);
+        select.setString(2, id);
+        try (ResultSet resultSet = select.executeQuery()) {
+          if (resultSet.next()) {
+            result.add(read(tenantId, resultSet));
+          }
+        }
+      }
+      return result;
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not look up dead letters", e);
+    }
+  }
+
+  @Override
+  public boolean remove(final DeadLetter deadLetter) {
+    // a newer failure incremented the attempts and is kept
+    try (Connection connection = connection(); PreparedStatement delete = connection.prepareStatement(DELETE)) {
+      delete.setString(1, deadLetter.getTenantId());
+      delete.setString(2, deadLetter.getId());
+      delete.setInt(3, deadLetter.getAttempts());
+      return delete.executeUpdate() == 1;
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not remove dead letter " + deadLetter.getId(), e);
+    }
+  }
+
+  @Override
+  public int size() {
+    try (Connection connection = connection();
+        Statement count = connection.createStatement();
+        ResultSet resultSet = count.executeQuery(COUNT)) {
+      return resultSet.next() ? resultSet.getInt(1) : 0;
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not count dead letters", e);
+    }
+  }
+
+  private static DeadLetter read(final String tenantId, final ResultSet resultSet) throws SQLException {
+    return new DeadLetter(resultSet.getString(1), tenantId, deserialize(resultSet.getBytes(7)),
+        Action.valueOf(resultSet.getString(2)), resultSet.getString(3), resultSet.getString(4), resultSet.getInt(5),
+        Instant.ofEpochMilli(resultSet.getLong(6)));
+  }
+
+  private static String truncate(final String message) {
+    return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+  }
+
+  static byte[] serialize(final SFSFEmployeeTime employeeTime) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(employeeTime);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Could not serialize EmployeeTime " + employeeTime.getExternalCode(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static SFSFEmployeeTime deserialize(final byte[] snapshot) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(snapshot))) {
+      return (SFSFEmployeeTime) in.readObject();
+    } catch (final IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Could not read EmployeeTime snapshot", e);
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+    if (!tableChecked) {
+      try {
+        createTableIfMissing(connection);
+      } catch (final SQLException e) {
+        connection.close();
+        throw e;
+      }
+      tableChecked = true;
+    }
+    return connection;
+  }
+
+  private static synchronized void createTableIfMissing(final Connection connection) throws SQLException {
+    final DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(null, null, TABLE, null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(CREATE);
+      LOGGER.info("Created table {}", TABLE);
+    }
+  }
+}
@@ -0,0 +1,411 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.schedulers.Schedulers;
+
+/**
+ * {@link LeaseManager} in the <code>TIMEOFF_LEASE</code> table of the given data source, e.g. the
+ * <code>jdbc/DefaultDB</code> shared by all nodes of the application. The table is created on first use.
+ *
+ * A lease is taken for <code>ttl</code> and is kept by this node after the work is done: the leases in use or used
+ * since the last renewal are renewed in one batch every <code>ttl / 3</code>, the others are released. Work on a
+ * lease this node already holds therefore costs a map lookup; only the first use, or a use after the lease was
+ * released, reads the table.
+ *
+ * Work on the same lease also runs one at a time on this node: a caller waits for the work before it, at most for
+ * <code>acquireTimeout</code> like for a lease held by another node, before it reads or takes the lease.
+ *
+ * Every take of a lease increments its fencing token. Renewals and releases only apply to the token this node took,
+ * so a node that lost its lease, e.g. after a long pause, cannot extend or release the lease of the new holder and
+ * stops using it. Lease expiry compares the clocks of the nodes, so <code>ttl</code> must be well above their skew.
+ */
+public class JdbcLeaseManager implements LeaseManager {
+
+  static final String TABLE = "TIMEOFF_LEASE";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcLeaseManager.class);
+
+  private static final String CREATE = "CREATE TABLE " + TABLE + " (NAME VARCHAR(255) NOT NULL PRIMARY KEY, "
+      + "OWNER VARCHAR(64) NOT NULL, TOKEN BIGINT NOT NULL, EXPIRES BIGINT NOT NULL)";
+  private static final String TAKE = "UPDATE " + TABLE
+      + " SET OWNER = ?, TOKEN = TOKEN + 1, EXPIRES = ? WHERE NAME = ? AND (EXPIRES < ? OR OWNER = ?)";
+  private static final String INSERT = "INSERT INTO " + TABLE + " (OWNER, TOKEN, EXPIRES, NAME) VALUES (?, 1, ?, ?)";
+  private static final String SELECT_TOKEN = "SELECT TOKEN FROM " + TABLE + " WHERE NAME = ? AND OWNER = ?";
+  private static final String RENEW = "UPDATE " + TABLE + " SET EXPIRES = ? WHERE NAME = ? AND OWNER = ? AND TOKEN = ?";
+
+  // the SQL state class of integrity constraint violations, e.g. a duplicate key
+  private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+  private final DataSource dataSource;
+  private final String owner = UUID.randomUUID().toString();
+  private final long ttlMillis;
+  private final long acquireTimeoutMillis;
+  private final long retryMillis;
+  private final Clock clock;
+  private final ConcurrentMap<String, Lease> held = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LocalLock> localLocks = new ConcurrentHashMap<>();
+  private volatile boolean tableChecked;
+  private Worker worker;
+
+  public JdbcLeaseManager(final DataSource dataSource, final Duration ttl, final Duration acquireTimeout,
+      final Clock clock) {
+    if (ttl.toMillis() < 3) {
+      throw new IllegalArgumentException("ttl must be at least 3 ms");
+    }
+    this.dataSource = dataSource;
+    ttlMillis = ttl.toMillis();
+    acquireTimeoutMillis = acquireTimeout.toMillis();
+    retryMillis = Math.max(1, Math.min(100, ttlMillis / 10));
+    this.clock = clock;
+  }
+
+  /**
+   * Starts renewing the held leases every <code>ttl / 3</code>.
+   */
+  public synchronized void start(final Scheduler scheduler) {
+    stop();
+    worker = scheduler.createWorker();
+    final long interval = ttlMillis / 3;
+    worker.schedulePeriodically(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops renewing and releases the held leases, so other nodes can take them right away.
+   */
+  public synchronized void stop() {
+    if (worker != null) {
+      worker.unsubscribe();
+      worker = null;
+      final List<Lease> released = new ArrayList<>(held.values());
+      held.clear();
+      fenced(released, 0, "release");
+    }
+  }
+
+  @Override
+  public <T> Observable<T> withLease(final String name, final Observable<T> work) {
+    // waiting for local work or the lease, and reading the table, block an io thread, never the subscribing one
+    return Observable.using(() -> acquire(name), lease -> work, this::release).subscribeOn(Schedulers.io());
+  }
+
+  /**
+   * @return the lease, in use by the caller alone on this node until {@link #release(Lease)}
+   */
+  Lease acquire(final String name) {
+    final long deadline = clock.millis() + acquireTimeoutMillis;
+    lockLocally(name, deadline);
+    try {
+      return acquire(name, deadline);
+    } catch (final RuntimeException e) {
+      unlockLocally(name);
+      throw e;
+    }
+  }
+
+  void release(final Lease lease) {
+    lease.release();
+    unlockLocally(lease.name);
+  }
+
+  private Lease acquire(final String name, final long deadline) {
+    while (true) {
+      final long now = clock.millis();
+      Lease lease = use(name, now);
+      if (lease == null) {
+        // the table is read outside the map lock; the local lock keeps the other callers of this node waiting
+        lease = take(name, now);
+        if (lease != null) {
+          lease.use();
+          held.put(name, lease);
+        }
+      }
+      if (lease != null) {
+        return lease;
+      }
+      if (now >= deadline) {
+        throw new LeaseUnavailableException(name);
+      }
+      try {
+        Thread.sleep(retryMillis);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LeaseUnavailableException(name);
+      }
+    }
+  }
+
+  /**
+   * @return the held lease, taken into use, or <code>null</code> if it is not held or no longer valid
+   */
+  private Lease use(final String name, final long now) {
+    // decided under the map lock, so a lease is not released by the renewal while it is taken into use
+    return held.computeIfPresent(name, (key, current) -> {
+      if (!current.isValid(now)) {
+        return null;
+      }
+      current.use();
+      return current;
+    });
+  }
+
+  private void lockLocally(final String name, final long deadline) {
+    final LocalLock lock = localLocks.compute(name, (key, current) -> {
+      final LocalLock referenced = current != null ? current : new LocalLock();
+      referenced.references++;
+      return referenced;
+    });
+    boolean locked = false;
+    try {
+      locked = lock.permit.tryAcquire(Math.max(0, deadline - clock.millis()), TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!locked) {
+      unreference(name);
+      throw new LeaseUnavailableException(name);
+    }
+  }
+
+  private void unlockLocally(final String name) {
+    localLocks.get(name).permit.release();
+    unreference(name);
+  }
+
+  private void unreference(final String name) {
+    localLocks.computeIfPresent(name, (key, lock) -> --lock.references == 0 ? null : lock);
+  }
+
+  /**
+   * @return the lease, or <code>null</code> if another node holds it
+   */
+  private Lease take(final String name, final long now) {
+    final long expires = now + ttlMillis;
+    try (Connection connection = connection()) {
+      if (execute(connection, TAKE, expires, name, now) == 0 && !insert(connection, name, expires)) {
+        return null;
+      }
+      try (PreparedStatement select = connection.prepareStatement(SELECT_TOKEN)) {
+        select.setString(1, name);
+        select.setString(2, owner);
+        try (ResultSet resultSet = select.executeQuery()) {
+          if (!resultSet.next()) {
+            return null;
+          }
+          final Lease lease = new Lease(name, resultSet.getLong(1), expires);
+          LOGGER.debug("Took lease {} with token {}", name, lease.token);
+          return lease;
+        }
+      }
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not take lease " + name, e);
+    }
+  }
+
+  private boolean insert(final Connection connection, final String name, final long expires) throws SQLException {
+    try {
+      return execute(connection, INSERT, expires, name, null) == 1;
+    } catch (final SQLException e) {
+      if (e.getSQLState() != null && e.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+        // another node inserted it first
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private int execute(final Connection connection, final String sql, final long expires, final String name,
+      final Long now) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, owner);
+      statement.setLong(2, expires);
+      statement.setString(3, name);
+      if (now != null) {
+        statement.setLong(4, now);
+        statement.setString(5, owner);
+      }
+      return statement.executeUpdate();
+    }
+  }
+
+  /**
+   * Renews the leases in use or used since the last renewal and releases the others, each in one batch.
+   */
+  void renew() {
+    final long now = clock.millis();
+    final List<Lease> renewed = new ArrayList<>();
+    final List<Lease> released = new ArrayList<>();
+    for (final Lease lease : held.values()) {
+      // decided under the map lock, so a lease is not released while it is taken into use
+      held.computeIfPresent(lease.name, (key, current) -> {
+        if (current != lease) {
+          return current;
+        }
+        if (lease.isIdle()) {
+          released.add(lease);
+          return null;
+        }
+        renewed.add(lease);
+        return lease;
+      });
+    }
+    for (final Lease lease : fenced(renewed, now + ttlMillis, "renew")) {
+      lease.lost = true;
+      held.remove(lease.name, lease);
+      LOGGER.warn("Lease {} with token {} was taken over by another node", lease.name, lease.token);
+    }
+    for (final Lease lease : renewed) {
+      if (!lease.lost) {
+        lease.expires = now + ttlMillis;
+      }
+    }
+    fenced(released, 0, "release");
+  }
+
+  /**
+   * Sets the expiry of the given leases, if their tokens are still current.
+   *
+   * @return the leases that were taken over by another node
+   */
+  private List<Lease> fenced(final List<Lease> leases, final long expires, final String action) {
+    final List<Lease> lost = new ArrayList<>();
+    if (leases.isEmpty()) {
+      return lost;
+    }
+    try (Connection connection = connection(); PreparedStatement statement = connection.prepareStatement(RENEW)) {
+      for (final Lease lease : leases) {
+        statement.setLong(1, expires);
+        statement.setString(2, lease.name);
+        statement.setString(3, owner);
+        statement.setLong(4, lease.token);
+        statement.addBatch();
+      }
+      final int[] counts = statement.executeBatch();
+      for (int i = 0; i < counts.length; i++) {
+        // drivers may answer SUCCESS_NO_INFO instead of a count
+        if (counts[i] == 0) {
+          lost.add(leases.get(i));
+        }
+      }
+    } catch (final SQLException e) {
+      // the held leases expire on their own and are taken again on their next use
+      LOGGER.error("Could not {} {} leases", action, leases.size(), e);
+    }
+    return lost;
+  }
+
+  private Connection connection() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+    if (!tableChecked) {
+      try {
+        createTableIfMissing(connection);
+      } catch (final SQLException e) {
+        connection.close();
+        throw e;
+      }
+      tableChecked = true;
+    }
+    return connection;
+  }
+
+  private static synchronized void createTableIfMissing(final Connection connection) throws SQLException {
+    final DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(null, null, TABLE, null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(CREATE);
+      LOGGER.info("Created table {}", TABLE);
+    }
+  }
+
+  /**
+   * Lets one caller at a time use a lease on this node; dropped once no caller references it.
+   */
+  private static final class LocalLock {
+
+    private final Semaphore permit = new Semaphore(1);
+    // guarded by the map lock of localLocks
+    private int references;
+  }
+
+  final class Lease {
+
+    private final String name;
+    private final long token;
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile long expires;
+    private volatile boolean usedSinceRenewal;
+    private volatile boolean lost;
+
+    Lease(final String name, final long token, final long expires) {
+      this.name = name;
+      this.token = token;
+      this.expires = expires;
+    }
+
+    long getToken() {
+      return token;
+    }
+
+    /**
+     * @return whether the lease can still be used, with a third of the ttl left for the work and clock skew
+     */
+    boolean isValid(final long now) {
+      return !lost && now < expires - ttlMillis / 3;
+    }
+
+    private void use() {
+      users.incrementAndGet();
+      usedSinceRenewal = true;
+    }
+
+    private boolean isIdle() {
+      final boolean idle = users.get() == 0 && !usedSinceRenewal;
+      usedSinceRenewal = false;
+      return idle;
+    }
+
+    private void release() {
+      users.decrementAndGet();
+    }
+  }
+}
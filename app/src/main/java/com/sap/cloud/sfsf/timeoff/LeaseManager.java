@@ -0,0 +1,32 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import rx.Observable;
+
+/**
+ * Named leases shared by the instances of the application, e.g. to keep two nodes from changing the calendar of the
+ * same user at the same time. Implementations are thread-safe.
+ */
+public interface LeaseManager {
+
+  /**
+   * Subscribes to <code>work</code> while this node holds the lease of the given name. Fails with a
+   * {@link LeaseUnavailableException} if another node holds it for too long.
+   *
+   * Waiting for the lease must not block the subscribing thread, e.g. a computation or request thread; the work may
+   * therefore be subscribed on another thread.
+   */
+  <T> Observable<T> withLease(String name, Observable<T> work);
+}
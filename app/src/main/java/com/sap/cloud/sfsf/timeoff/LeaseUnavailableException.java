@@ -0,0 +1,26 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+/**
+ * Thrown if a lease could not be acquired in time, because another node holds it.
+ */
+public class LeaseUnavailableException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public LeaseUnavailableException(final String name) {
+    super("Lease " + name + " is held by another node");
+  }
+}
@@ -16,21 +16,41 @@ package com.sap.cloud.sfsf.timeoff;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import javax.naming.ConfigurationException;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.cloud.commons.http.BulkheadConnector;
+import com.sap.cloud.commons.http.CircuitBreakingConnector;
+import com.sap.cloud.commons.http.HedgingConnector;
 import com.sap.cloud.commons.http.HttpConnector;
 import com.sap.cloud.commons.http.HttpUrlConnectionConnector;
+import com.sap.cloud.commons.http.ResponseDecoder;
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.commons.tenancy.TenantScoped;
+import com.sap.cloud.commons.tracing.Span;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNavList;
 import com.sap.cloud.sfsf.timeoff.jackson.DefaultMapper;
 
+import org.ehcache.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -42,64 +62,354 @@ public class SFSFEmployeeTimeService {
 
   private static final String SAP_HCMCLOUD_CORE_ODATA_DESTINATION_NAME = "sap_hcmcloud_core_odata";
 
-  private final UriComponentsBuilder SFSF_SVC_API_EMPLOYEETIME_ENTITY = UriComponentsBuilder.newInstance()
+  static final String FETCH_STAGE = "sfsf.fetch";
+
+  private static final ResponseDecoder<SFSFEmployeeTime> EMPLOYEE_TIME_DECODER = json -> {
+    LOGGER.debug("Got data for EmployeeTime: {}", json);
+    return DefaultMapper.unwrappingReaderFor(SFSFEmployeeTime.class).readValue(json);
+  };
+  private static final ResponseDecoder<SFSFEmployeeTimeList> EMPLOYEE_TIME_LIST_DECODER = json -> {
+    LOGGER.debug("Got data for EmployeeTime: {}", json);
+    return DefaultMapper.unwrappingReaderFor(SFSFEmployeeTimeList.class).readValue(json);
+  };
+  private static final ResponseDecoder<UserIdNavList> USER_LIST_DECODER = json -> {
+    LOGGER.debug("Got data for User: {}", json);
+    return DefaultMapper.unwrappingReaderFor(UserIdNavList.class).readValue(json);
+  };
+  // decoded by the caller, which may pass it on to another node first
+  private static final ResponseDecoder<String> RAW_DECODER = json -> json;
+
+  static final int USER_BATCH_SIZE = 50;
+
+  /**
+   * Named <code>$select</code> and <code>$expand</code> profiles, so each use case only pays for the properties it
+   * reads.
+   */
+  public enum Projection {
+
+    /**
+     * Dates, status, userId and timezones: enough to look up conflicting calendar events. Skips the manager.
+     */
+    MINIMAL("externalCode,approvalStatus,createdDateTime,lastModifiedDateTime,startDate,endDate,userId,"
+        + "userIdNav/timeZone,userIdNav/empInfo/jobInfoNav/timezone",
+        "userIdNav/empInfo/jobInfoNav"),
+
+    /**
+     * Everything the calendar writes and the auto-reply message need, including the manager's name and email.
+     */
+    FULL("externalCode,approvalStatus,comment,createdDateTime,lastModifiedDateTime,startDate,endDate,timeType,userId,"
+        + "userIdNav/firstName,userIdNav/lastName,userIdNav/email,userIdNav/timeZone,"
+        + "userIdNav/empInfo/jobInfoNav/managerUserNav/firstName,userIdNav/empInfo/jobInfoNav/managerUserNav/lastName,"
+        + "userIdNav/empInfo/jobInfoNav/managerUserNav/email,userIdNav/empInfo/jobInfoNav/timezone",
+        "userIdNav/empInfo/jobInfoNav/managerUserNav"),
+
+    /**
+     * EmployeeTime properties only, used when user profiles are joined from the profile cache.
+     */
+    EMPLOYEE_TIME("externalCode,approvalStatus,comment,createdDateTime,lastModifiedDateTime,startDate,endDate,"
+        + "timeType,userId", null);
+
+    private final String select;
+    private final String expand;
+
+    Projection(final String select, final String expand) {
+      this.select = select;
+      this.expand = expand;
+    }
+
+    String getSelect() {
+      return select;
+    }
+
+    String getExpand() {
+      return expand;
+    }
+  }
+
+  private final Map<Projection, UriComponentsBuilder> SFSF_SVC_API_EMPLOYEETIME_ENTITY =
+      byProjection(SFSFEmployeeTimeService::employeeTimeEntity);
+
+  private final Map<Projection, UriComponentsBuilder> SFSF_SVC_API_EMPLOYEETIME_ENTITY_COLLECTION =
+      byProjection(SFSFEmployeeTimeService::employeeTimeCollection);
+
+  private final Map<Projection, UriComponentsBuilder> SFSF_SVC_API_EMPLOYEETIME_CHANGES =
+      byProjection(SFSFEmployeeTimeService::employeeTimeChanges);
+
+  private final UriComponentsBuilder SFSF_SVC_API_USER_COLLECTION = UriComponentsBuilder.newInstance()
+          // user path
+          .path("/User")
+          .queryParam("$select",
+              "userId,firstName,lastName,email,timeZone,empInfo/jobInfoNav/timezone,"
+            + "empInfo/jobInfoNav/managerUserNav/firstName,empInfo/jobInfoNav/managerUserNav/lastName,"
+            + "empInfo/jobInfoNav/managerUserNav/email")
+          // filter
+          .queryParam("$filter", "userId in {userIds}")
+          // expand
+          .query("$expand=empInfo/jobInfoNav/managerUserNav");
+
+  private static Map<Projection, UriComponentsBuilder> byProjection(
+      final Function<Projection, UriComponentsBuilder> factory) {
+    final Map<Projection, UriComponentsBuilder> builders = new EnumMap<>(Projection.class);
+    for (final Projection projection : Projection.values()) {
+      builders.put(projection, factory.apply(projection));
+    }
+    return builders;
+  }
+
+  private static UriComponentsBuilder employeeTimeEntity(final Projection projection) {
+    final UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
 			 // employee path
 	        .path("/EmployeeTime('{entityId}')")
+	        .queryParam("$select", projection.getSelect());
+    if (projection.getExpand() != null) {
+      builder
 	        // expand
-	        .queryParam("$expand",
-			"userIdNav/empInfo/jobInfoNav/managerUserNav")
-	        .queryParam("$select",
-	            "externalCode,approvalStatus,comment,createdDateTime,lastModifiedDateTime,startDate,endDate,timeType,userId,"
-		      + "userIdNav/firstName,userIdNav/lastName,userIdNav/email,userIdNav/timeZone,"
-		      + "userIdNav/empInfo/jobInfoNav/managerUserNav/firstName,userIdNav/empInfo/jobInfoNav/managerUserNav/lastName,userIdNav/empInfo/jobInfoNav/managerUserNav/email,"
-		      + "userIdNav/empInfo/jobInfoNav/timezone")
+	        .queryParam("$expand", projection.getExpand())
 	        // order
 	        .query("$orderby=startDate,userIdNav/empInfo/jobInfoNav/startDate,seqNumber desc")
 	        // only 1
 	        .query("$top=1");
+    }
+    return builder;
+  }
 
-  private final UriComponentsBuilder SFSF_SVC_API_EMPLOYEETIME_ENTITY_COLLECTION = UriComponentsBuilder.newInstance()
+  private static UriComponentsBuilder employeeTimeCollection(final Projection projection) {
+    return expand(UriComponentsBuilder.newInstance()
 	        // employee path
 	        .path("/EmployeeTime")
-	        .queryParam("$select",
-		            "externalCode,approvalStatus,comment,createdDateTime,lastModifiedDateTime,startDate,endDate,timeType,userId,"
-			      + "userIdNav/firstName,userIdNav/lastName,userIdNav/email,userIdNav/timeZone,"
-			      + "userIdNav/empInfo/jobInfoNav/managerUserNav/firstName,userIdNav/empInfo/jobInfoNav/managerUserNav/lastName,userIdNav/empInfo/jobInfoNav/managerUserNav/email,"
-			      + "userIdNav/empInfo/jobInfoNav/timezone")
+	        .queryParam("$select", projection.getSelect())
 	        // filter
 	        .queryParam("$filter",
 	            "userId eq '{userId}' and approvalStatus eq 'APPROVED' and endDate gt datetime'{dateTime}'")
 	        // order
-	        .query("$orderby=startDate desc")
-	        // expand
-	        .query("$expand=userIdNav/empInfo/jobInfoNav/managerUserNav")
+	        .query("$orderby=startDate desc"), projection)
 	        // only first 5
 	        .query("$top=5");
+  }
+
+  private static UriComponentsBuilder employeeTimeChanges(final Projection projection) {
+    return expand(UriComponentsBuilder.newInstance()
+          // employee path
+          .path("/EmployeeTime")
+          .queryParam("$select", projection.getSelect())
+          // filter
+          .queryParam("$filter",
+              "lastModifiedDateTime ge datetime'{since}' and (approvalStatus eq 'APPROVED' or approvalStatus eq 'CANCELLED')")
+          // order
+          .query("$orderby=lastModifiedDateTime asc"), projection)
+          // server-driven paging, see __next
+          .queryParam("customPageSize", "{pageSize}");
+  }
+
+  private static UriComponentsBuilder expand(final UriComponentsBuilder builder, final Projection projection) {
+    return projection.getExpand() == null ? builder : builder.queryParam("$expand", projection.getExpand());
+  }
+
+  // each tenant calls its own destination through its own cache, breaker and budget
+  private final TenantScoped<HttpConnector> httpConnectors = new TenantScoped<>(SFSFEmployeeTimeService::newConnector);
 
-  private final HttpConnector httpConnector = HttpUrlConnectionConnector.forDestinationName(SAP_HCMCLOUD_CORE_ODATA_DESTINATION_NAME);
+  private Cache<String, UserIdNav> userProfiles;
 
-  private final ObjectMapper unwrappingMapper = DefaultMapper.newMapper()
-      .configure(DeserializationFeature.UNWRAP_ROOT_VALUE, true);
+  private static HttpConnector newConnector(final String tenantId) {
+    final String destinationName = TenantContext.destinationName(SAP_HCMCLOUD_CORE_ODATA_DESTINATION_NAME, tenantId);
+    // the breaker sees a hedged GET as one call
+    return BulkheadConnector.wrap(CircuitBreakingConnector.wrap(
+        HedgingConnector.wrap(HttpUrlConnectionConnector.forDestinationName(destinationName), destinationName),
+        destinationName), destinationName);
+  }
+
+  /**
+   * With a profile cache, EmployeeTime queries skip the <code>userIdNav</code> expand and the profiles are joined from
+   * the cache, which is filled in bulk from <code>/User</code>. Its keys are qualified with the tenant. Off unless
+   * <code>sfsf.timeoff.user-profile.cache-enabled</code> is <code>true</code>.
+   */
+  @Autowired(required = false)
+  public void setUserProfileCache(final Cache<String, UserIdNav> userProfiles) {
+    this.userProfiles = userProfiles;
+  }
 
   public SFSFEmployeeTime getTimeoffEvent(final String entityId) throws IOException {
+    return readTimeoffEvent(getTimeoffEventJson(entityId));
+  }
 
-	final UriComponents uriComponents = SFSF_SVC_API_EMPLOYEETIME_ENTITY.buildAndExpand(entityId).encode();
+  /**
+   * @return the EmployeeTime as sent by SFSF, e.g. to pass it on to the node handling it, which decodes it with
+   *         {@link #readTimeoffEvent(String)}
+   */
+  public String getTimeoffEventJson(final String entityId) throws IOException {
+    return getTimeoffEventJson(entityId, effective(Projection.FULL));
+  }
 
-    final String requestUriString = uriComponents.toUriString();
-    final String employeeTimeJson = httpConnector.get(requestUriString);
-    LOGGER.debug("Got data for EmployeeTime('{}'): {}", entityId, employeeTimeJson);
+  /**
+   * Decodes an EmployeeTime read with {@link #getTimeoffEventJson(String)} and joins its user profile, like
+   * {@link #getTimeoffEvent(String)}.
+   */
+  public SFSFEmployeeTime readTimeoffEvent(final String json) throws IOException {
+    final SFSFEmployeeTime employeeTime = parseTimeoffEvent(json);
+    return userProfiles == null ? employeeTime
+        : join(employeeTime, getUserProfiles(Collections.singleton(employeeTime.getUserId())));
+  }
+
+  /**
+   * Decodes an EmployeeTime read with {@link #getTimeoffEventJson(String)} without joining the user profile, enough
+   * to see whose it is.
+   */
+  public SFSFEmployeeTime parseTimeoffEvent(final String json) throws IOException {
+    return EMPLOYEE_TIME_DECODER.decode(json);
+  }
+
+  private String getTimeoffEventJson(final String entityId, final Projection projection) throws IOException {
 
-    return unwrappingMapper.readValue(employeeTimeJson, SFSFEmployeeTime.class);
+	final UriComponents uriComponents = SFSF_SVC_API_EMPLOYEETIME_ENTITY.get(projection).buildAndExpand(entityId).encode();
+
+    final String requestUriString = uriComponents.toUriString();
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try (Span span = Span.start(FETCH_STAGE + " EmployeeTime")) {
+      final String employeeTime = httpConnectors.get().get(requestUriString, RAW_DECODER);
+      outcome = Metrics.SUCCESS;
+      span.success();
+      return employeeTime;
+    } finally {
+      Metrics.record(FETCH_STAGE, "EmployeeTime", outcome, start);
+    }
 
   }
 
+  /**
+   * Upcoming approved time off of the user with the {@link Projection#MINIMAL} projection, as needed for conflict
+   * detection.
+   */
   public SFSFEmployeeTimeList getLatestTimeOffEventForUser(final String userId) throws JsonParseException, JsonMappingException, IOException, ConfigurationException{
-	final String zonedNowInstantString = OffsetDateTime.now(ZoneOffset.UTC).toString();
-    final UriComponents requestUriString = SFSF_SVC_API_EMPLOYEETIME_ENTITY_COLLECTION.buildAndExpand(userId, zonedNowInstantString).encode();
+    return getLatestTimeOffEventForUser(userId, Projection.MINIMAL);
+  }
+
+  public SFSFEmployeeTimeList getLatestTimeOffEventForUser(final String userId, final Projection projection) throws IOException {
+	// whole minutes keep the URL stable between polls, so the response can be revalidated
+	final String zonedNowInstantString = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MINUTES).toString();
+    final UriComponents requestUriString = SFSF_SVC_API_EMPLOYEETIME_ENTITY_COLLECTION.get(effective(projection)).buildAndExpand(userId, zonedNowInstantString).encode();
+
+    return getList(requestUriString.toUriString(), "EmployeeTimeList");
+  }
+
+  /**
+   * First page of the approved and cancelled EmployeeTime entities modified at or after <code>since</code>, oldest
+   * first. Further pages are read with {@link #getNextPage(String)}.
+   */
+  public SFSFEmployeeTimeList getChangedSince(final OffsetDateTime since, final int pageSize) throws IOException {
+    final String sinceString = since.withOffsetSameInstant(ZoneOffset.UTC).toString();
+    final UriComponents requestUri =
+        SFSF_SVC_API_EMPLOYEETIME_CHANGES.get(effective(Projection.FULL)).buildAndExpand(sinceString, pageSize).encode();
+    return getList(requestUri.toUriString(), "EmployeeTimeChanges");
+  }
+
+  /**
+   * @param nextUrl the <code>__next</code> link of the previous page
+   */
+  public SFSFEmployeeTimeList getNextPage(final String nextUrl) throws IOException {
+    return getList(nextUrl, "EmployeeTimeChanges");
+  }
+
+  private SFSFEmployeeTimeList getList(final String requestUri, final String action) throws IOException {
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try (Span span = Span.start(FETCH_STAGE + " " + action)) {
+      final SFSFEmployeeTimeList employeeTimes = httpConnectors.get().get(requestUri, EMPLOYEE_TIME_LIST_DECODER);
+      outcome = Metrics.SUCCESS;
+      span.success();
+      return userProfiles == null ? employeeTimes : join(employeeTimes);
+    } finally {
+      Metrics.record(FETCH_STAGE, action, outcome, start);
+    }
+  }
+
+  /**
+   * Drops the cached profile, e.g. after SFSF notified a change of the user or their job.
+   */
+  public void invalidateUserProfile(final String userId) {
+    if (userProfiles != null) {
+      userProfiles.remove(TenantContext.qualify(userId));
+    }
+  }
 
-    final String employTimeEntitiesJson = httpConnector.get(requestUriString.toUriString());
-    LOGGER.debug("Got data for EmployeeTime: {}", employTimeEntitiesJson);
+  private Projection effective(final Projection projection) {
+    return userProfiles == null ? projection : Projection.EMPLOYEE_TIME;
+  }
+
+  private SFSFEmployeeTimeList join(final SFSFEmployeeTimeList employeeTimes) throws IOException {
+    final Set<String> userIds = new HashSet<>();
+    for (final SFSFEmployeeTime employeeTime : employeeTimes.getResults()) {
+      userIds.add(employeeTime.getUserId());
+    }
+    final Map<String, UserIdNav> profiles = getUserProfiles(userIds);
+    final List<SFSFEmployeeTime> results = new ArrayList<>(employeeTimes.getResults().size());
+    for (final SFSFEmployeeTime employeeTime : employeeTimes.getResults()) {
+      results.add(join(employeeTime, profiles));
+    }
+    employeeTimes.setResults(results);
+    return employeeTimes;
+  }
+
+  private SFSFEmployeeTime join(final SFSFEmployeeTime employeeTime, final Map<String, UserIdNav> profiles)
+      throws IOException {
+    final UserIdNav profile = profiles.get(employeeTime.getUserId());
+    if (profile != null) {
+      return employeeTime.withUserIdNav(profile);
+    }
+    // e.g. a user /User does not return, the expand still knows the timezone
+    LOGGER.warn("No profile found for user {}, EmployeeTime {} is read with its userIdNav", employeeTime.getUserId(),
+        employeeTime.getExternalCode());
+    return parseTimeoffEvent(getTimeoffEventJson(employeeTime.getExternalCode(), Projection.FULL));
+  }
+
+  /**
+   * @return the profiles found, from the cache or, for the missing ones, from <code>/User</code> in batches
+   */
+  Map<String, UserIdNav> getUserProfiles(final Set<String> userIds) throws IOException {
+    final String tenantId = TenantContext.current();
+    final Map<String, UserIdNav> profiles = new HashMap<>();
+    final List<String> missing = new ArrayList<>();
+    final Map<String, String> userIdsByKey = new HashMap<>();
+    for (final String userId : userIds) {
+      if (userId != null) {
+        userIdsByKey.put(TenantContext.qualify(tenantId, userId), userId);
+      }
+    }
+    userProfiles.getAll(userIdsByKey.keySet()).forEach((key, profile) -> {
+      if (profile != null) {
+        profiles.put(userIdsByKey.get(key), profile);
+      } else {
+        missing.add(userIdsByKey.get(key));
+      }
+    });
+    for (int from = 0; from < missing.size(); from += USER_BATCH_SIZE) {
+      final List<String> batch = missing.subList(from, Math.min(from + USER_BATCH_SIZE, missing.size()));
+      for (final UserIdNav profile : fetchUserProfiles(batch)) {
+        userProfiles.put(TenantContext.qualify(tenantId, profile.getUserId()), profile);
+        profiles.put(profile.getUserId(), profile);
+      }
+    }
+    return profiles;
+  }
 
-    return unwrappingMapper.readValue(employTimeEntitiesJson, SFSFEmployeeTimeList.class);
+  private List<UserIdNav> fetchUserProfiles(final List<String> userIds) throws IOException {
+    final StringBuilder quoted = new StringBuilder();
+    for (final String userId : userIds) {
+      if (quoted.length() > 0) {
+        quoted.append(',');
+      }
+      quoted.append('\'').append(userId.replace("'", "''")).append('\'');
+    }
+    final String requestUri = SFSF_SVC_API_USER_COLLECTION.buildAndExpand(quoted.toString()).encode().toUriString();
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try (Span span = Span.start(FETCH_STAGE + " User")) {
+      final UserIdNavList users = httpConnectors.get().get(requestUri, USER_LIST_DECODER);
+      outcome = Metrics.SUCCESS;
+      span.success();
+      return users.getResults();
+    } finally {
+      Metrics.record(FETCH_STAGE, "User", outcome, start);
+    }
   }
 }
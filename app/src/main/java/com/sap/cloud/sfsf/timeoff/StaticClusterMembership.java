@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ClusterMembership} of a fixed list of nodes, e.g. from configuration.
+ */
+public class StaticClusterMembership implements ClusterMembership {
+
+  private final String self;
+  private final List<String> members;
+
+  public StaticClusterMembership(final String self, final List<String> members) {
+    this.self = self;
+    final List<String> all = new ArrayList<>(members);
+    if (!all.contains(self)) {
+      all.add(self);
+    }
+    this.members = Collections.unmodifiableList(all);
+  }
+
+  @Override
+  public String getSelf() {
+    return self;
+  }
+
+  @Override
+  public List<String> getMembers() {
+    return members;
+  }
+}
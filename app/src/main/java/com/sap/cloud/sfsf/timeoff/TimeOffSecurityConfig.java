@@ -23,11 +23,10 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetailsByNameServiceWrapper;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.authority.mapping.SimpleMappableAttributesRetriever;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationProvider;
-import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedGrantedAuthoritiesUserDetailsService;
+import org.springframework.security.web.authentication.preauth.j2ee.J2eeBasedPreAuthenticatedWebAuthenticationDetailsSource;
 import org.springframework.security.web.authentication.preauth.j2ee.J2eePreAuthenticatedProcessingFilter;
 
 @Configuration
@@ -35,9 +34,15 @@ import org.springframework.security.web.authentication.preauth.j2ee.J2eePreAuthe
 @Order(10)
 public class TimeOffSecurityConfig extends WebSecurityConfigurerAdapter {
 
+  /**
+   * Container role, see web.xml, required to list and replay dead letters.
+   */
+  static final String ADMIN_ROLE = "TimeoffAdmin";
+
   @Override
   public void configure(final WebSecurity web) throws Exception {
-    web.ignoring().antMatchers("/services/**", "/ide/**");
+    // the metrics servlet checks the token of the scraper itself
+    web.ignoring().antMatchers("/services/**", "/ide/**", "/metrics");
   }
 
   @Override
@@ -46,7 +51,9 @@ public class TimeOffSecurityConfig extends WebSecurityConfigurerAdapter {
     http
       .addFilterAfter(j2eePreAuthenticatedProcessingFilter(), J2eePreAuthenticatedProcessingFilter.class)
       .authenticationProvider(preauthAuthProvider())
-      .antMatcher("/**").authorizeRequests().anyRequest().authenticated();
+      .antMatcher("/**").authorizeRequests()
+        .antMatchers("/api/v1/deadletters/**").hasRole(ADMIN_ROLE)
+        .anyRequest().authenticated();
     //@formatter:on
   }
 
@@ -60,29 +67,28 @@ public class TimeOffSecurityConfig extends WebSecurityConfigurerAdapter {
   J2eePreAuthenticatedProcessingFilter j2eePreAuthenticatedProcessingFilter() throws Exception {
     final J2eePreAuthenticatedProcessingFilter filter = new J2eePreAuthenticatedProcessingFilter();
     filter.setAuthenticationManager(authenticationManager());
+    filter.setAuthenticationDetailsSource(j2eeRolesDetailsSource());
     return filter;
   }
 
+  /**
+   * Maps the container roles the application checks to granted authorities.
+   */
   @Bean
-  UserDetailsByNameServiceWrapper<PreAuthenticatedAuthenticationToken> userDetailsServiceWrapper() throws Exception {
-    final UserDetailsByNameServiceWrapper<PreAuthenticatedAuthenticationToken> wrapper =
-        new UserDetailsByNameServiceWrapper<>();
-    wrapper.setUserDetailsService(SAPUserDetailsService());
-    return wrapper;
+  J2eeBasedPreAuthenticatedWebAuthenticationDetailsSource j2eeRolesDetailsSource() {
+    final J2eeBasedPreAuthenticatedWebAuthenticationDetailsSource detailsSource =
+        new J2eeBasedPreAuthenticatedWebAuthenticationDetailsSource();
+    final SimpleMappableAttributesRetriever mappableRoles = new SimpleMappableAttributesRetriever();
+    mappableRoles.setMappableAttributes(Collections.singleton(ADMIN_ROLE));
+    detailsSource.setMappableRolesRetriever(mappableRoles);
+    return detailsSource;
   }
 
   @Bean
   PreAuthenticatedAuthenticationProvider preauthAuthProvider() throws Exception {
     final PreAuthenticatedAuthenticationProvider provider = new PreAuthenticatedAuthenticationProvider();
-    provider.setPreAuthenticatedUserDetailsService(userDetailsServiceWrapper());
+    provider.setPreAuthenticatedUserDetailsService(new PreAuthenticatedGrantedAuthoritiesUserDetailsService());
     return provider;
   }
 
-  @Bean
-  UserDetailsService SAPUserDetailsService() {
-    return username -> {
-      return new User(username, "nope", Collections.emptyList());
-    };
-  }
-
 }
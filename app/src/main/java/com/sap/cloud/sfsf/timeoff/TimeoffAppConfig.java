@@ -13,11 +13,24 @@
  */
 package com.sap.cloud.sfsf.timeoff;
 
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.sfsf.notification.ExternalEvent;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEventsList;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
 
 import org.ehcache.Cache;
 import org.ehcache.CacheManager;
@@ -29,11 +42,17 @@ import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.util.StringUtils;
+import org.springframework.ws.client.core.WebServiceTemplate;
 
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 @Configuration
 public class TimeoffAppConfig {
@@ -61,7 +80,155 @@ public class TimeoffAppConfig {
     return cache;
   }
 
+  @Bean
+  @ConditionalOnProperty(name = "sfsf.timeoff.user-profile.cache-enabled", havingValue = "true")
+  Cache<String, UserIdNav> userProfileCache(
+      @Value("${sfsf.timeoff.user-profile.max-entries:10000}") final long maxEntries,
+      @Value("${sfsf.timeoff.user-profile.ttl-minutes:720}") final long ttlMinutes) {
+    final CacheConfiguration<String, UserIdNav> cacheConfiguration = CacheConfigurationBuilder
+        .newCacheConfigurationBuilder(String.class, UserIdNav.class, ResourcePoolsBuilder.heap(maxEntries).build())
+        .withExpiry(Expirations.timeToLiveExpiration(new Duration(ttlMinutes, TimeUnit.MINUTES))).build();
+    final String cacheAlias = "userProfiles";
+    final CacheManager cacheManager =
+        CacheManagerBuilder.newCacheManagerBuilder().withCache(cacheAlias, cacheConfiguration).build();
+    cacheManager.init();
+    final Cache<String, UserIdNav> cache = cacheManager.getCache(cacheAlias, String.class, UserIdNav.class);
+    LOGGER.trace(cacheAlias + " cache created");
+    return cache;
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "sfsf.timeoff.user-profile.cache-enabled", havingValue = "true")
+  UserProfileNotificationHandler userProfileNotificationHandler(final SFSFEmployeeTimeService sfsfEmployeeTimeService) {
+    return new UserProfileNotificationHandler(sfsfEmployeeTimeService);
+  }
+
+  @Bean
+  EmployeeTimeEventCoalescer employeeTimeEventCoalescer(
+      @Value("${sfsf.timeoff.coalescing.window-millis:0}") final long windowMillis) {
+    // the flush handles the net event, with blocking SFSF and calendar calls
+    return new EmployeeTimeEventCoalescer(windowMillis, Schedulers.io()).registerMetrics(Metrics.registry());
+  }
 
+  @Bean
+  DeadLetterStore deadLetterStore(
+      @Value("${sfsf.timeoff.dead-letter.data-source:java:comp/env/jdbc/DefaultDB}") final String dataSourceName,
+      @Value("${sfsf.timeoff.dead-letter.capacity:10000}") final int capacity) {
+    try {
+      return new JdbcDeadLetterStore((DataSource) new InitialContext().lookup(dataSourceName), Clock.systemUTC());
+    } catch (final NamingException e) {
+      LOGGER.warn("No data source bound as {}, dead letters are kept in memory", dataSourceName);
+      return new InMemoryDeadLetterStore(capacity, Clock.systemUTC());
+    }
+  }
+
+  @Bean
+  DeadLetterReplayer deadLetterReplayer(final EmployeeTimeEventHandler employeeTimeEventHandler,
+      final DeadLetterStore deadLetterStore,
+      @Value("${sfsf.timeoff.dead-letter.replay.concurrency:4}") final int concurrency,
+      @Value("${sfsf.timeoff.dead-letter.replay.rate-per-second:10}") final int ratePerSecond) {
+    return new DeadLetterReplayer(employeeTimeEventHandler, deadLetterStore, concurrency, ratePerSecond,
+        Schedulers.io());
+  }
+
+
+  @Bean
+  CheckpointStore checkpointStore(
+      @Value("${sfsf.timeoff.checkpoint.data-source:java:comp/env/jdbc/DefaultDB}") final String dataSourceName) {
+    try {
+      return new JdbcCheckpointStore((DataSource) new InitialContext().lookup(dataSourceName));
+    } catch (final NamingException e) {
+      LOGGER.warn("No data source bound as {}, checkpoints are kept in memory", dataSourceName);
+      return new InMemoryCheckpointStore();
+    }
+  }
+
+  @Bean(destroyMethod = "stop")
+  @ConditionalOnProperty(name = "sfsf.timeoff.cluster.enabled", havingValue = "true")
+  ClusterMembership clusterMembership(@Value("${sfsf.timeoff.cluster.self-url}") final String selfUrl,
+      @Value("${sfsf.timeoff.cluster.nodes:}") final String nodes,
+      @Value("${sfsf.timeoff.cluster.data-source:java:comp/env/jdbc/DefaultDB}") final String dataSourceName,
+      @Value("${sfsf.timeoff.cluster.heartbeat-seconds:10}") final long heartbeatSeconds,
+      @Value("${sfsf.timeoff.cluster.ttl-seconds:30}") final long ttlSeconds) throws NamingException {
+    if (StringUtils.hasText(nodes)) {
+      return new StaticClusterMembership(selfUrl,
+          Arrays.asList(StringUtils.trimArrayElements(StringUtils.commaDelimitedListToStringArray(nodes))));
+    }
+    final JdbcClusterMembership membership =
+        new JdbcClusterMembership((DataSource) new InitialContext().lookup(dataSourceName), selfUrl,
+            java.time.Duration.ofSeconds(ttlSeconds), Clock.systemUTC());
+    membership.start(java.time.Duration.ofSeconds(heartbeatSeconds), Schedulers.io());
+    return membership;
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "sfsf.timeoff.cluster.enabled", havingValue = "true")
+  ClusterRouter clusterRouter(final ClusterMembership clusterMembership,
+      @Value("${sfsf.timeoff.cluster.virtual-nodes:100}") final int virtualNodes,
+      @Value("${sfsf.cluster.token:}") final String clusterToken) throws Exception {
+    final Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
+    marshaller.setClassesToBeBound(ExternalEvent.class, ExternalEventResponse.class);
+    marshaller.afterPropertiesSet();
+    return new ClusterRouter(clusterMembership, virtualNodes, new WebServiceTemplate(marshaller), clusterToken);
+  }
+
+  @Bean(destroyMethod = "stop")
+  @ConditionalOnProperty(name = "sfsf.timeoff.lease.enabled", havingValue = "true")
+  LeaseManager leaseManager(
+      @Value("${sfsf.timeoff.lease.data-source:java:comp/env/jdbc/DefaultDB}") final String dataSourceName,
+      @Value("${sfsf.timeoff.lease.ttl-seconds:10}") final long ttlSeconds,
+      @Value("${sfsf.timeoff.lease.acquire-timeout-seconds:20}") final long acquireTimeoutSeconds)
+      throws NamingException {
+    final JdbcLeaseManager leaseManager =
+        new JdbcLeaseManager((DataSource) new InitialContext().lookup(dataSourceName),
+            java.time.Duration.ofSeconds(ttlSeconds), java.time.Duration.ofSeconds(acquireTimeoutSeconds),
+            Clock.systemUTC());
+    leaseManager.start(Schedulers.io());
+    return leaseManager;
+  }
+
+  @Bean(destroyMethod = "stop")
+  EmployeeTimeReconciler employeeTimeReconciler(final SFSFEmployeeTimeService sfsfEmployeeTimeService,
+      final List<CalendarServiceProvider> calendarServiceProviders, final CheckpointStore checkpointStore,
+      final DeadLetterStore deadLetterStore, final Optional<ClusterRouter> clusterRouter,
+      @Value("${sfsf.timeoff.reconciliation.interval-minutes:0}") final long intervalMinutes,
+      @Value("${sfsf.timeoff.reconciliation.page-size:100}") final int pageSize,
+      @Value("${sfsf.timeoff.reconciliation.concurrency:4}") final int concurrency,
+      @Value("${sfsf.timeoff.reconciliation.rate-per-second:5}") final int ratePerSecond,
+      @Value("${sfsf.timeoff.reconciliation.initial-lookback-days:30}") final long initialLookbackDays,
+      @Value("${sfsf.timeoff.reconciliation.max-attempts:5}") final int maxAttempts,
+      @Value("${sfsf.timeoff.reconciliation.catch-up-delay-seconds:60}") final long catchUpDelaySeconds) {
+    final EmployeeTimeReconciler reconciler =
+        new EmployeeTimeReconciler(sfsfEmployeeTimeService, calendarServiceProviders, checkpointStore, pageSize,
+            concurrency, ratePerSecond, java.time.Duration.ofDays(initialLookbackDays), Clock.systemUTC(), Schedulers.io())
+                .withDeadLetters(deadLetterStore, maxAttempts)
+                .withCatchUpDelay(java.time.Duration.ofSeconds(catchUpDelaySeconds));
+    clusterRouter.ifPresent(reconciler::withClusterRouter);
+    if (intervalMinutes > 0) {
+      reconciler.start(intervalMinutes, TimeUnit.MINUTES);
+    }
+    return reconciler;
+  }
+
+  @Bean(destroyMethod = "stop")
+  EmployeeTimeChangePoller employeeTimeChangePoller(final SFSFEmployeeTimeService sfsfEmployeeTimeService,
+      final TimeoffNotificationHandler timeoffNotificationHandler, final CheckpointStore checkpointStore,
+      final Optional<ClusterRouter> clusterRouter,
+      @Value("${sfsf.timeoff.polling.enabled:false}") final boolean enabled,
+      @Value("${sfsf.timeoff.polling.page-size:100}") final int pageSize,
+      @Value("${sfsf.timeoff.polling.min-interval-seconds:30}") final long minIntervalSeconds,
+      @Value("${sfsf.timeoff.polling.max-interval-seconds:900}") final long maxIntervalSeconds,
+      @Value("${sfsf.timeoff.polling.initial-lookback-minutes:60}") final long initialLookbackMinutes) {
+    final EmployeeTimeChangePoller poller = new EmployeeTimeChangePoller(sfsfEmployeeTimeService,
+        timeoffNotificationHandler, checkpointStore, pageSize, java.time.Duration.ofSeconds(minIntervalSeconds),
+        java.time.Duration.ofSeconds(maxIntervalSeconds), java.time.Duration.ofMinutes(initialLookbackMinutes),
+        Clock.systemUTC(), Schedulers.io());
+    clusterRouter.ifPresent(poller::withClusterRouter);
+    if (enabled) {
+      poller.start();
+    }
+    return poller;
+  }
 
   class DummyCalendarServiceProvider implements CalendarServiceProvider {
 
@@ -84,5 +251,10 @@ public class TimeoffAppConfig {
     public Observable<Void> cancel(final SFSFEmployeeTime employeeTime, final String requestId) {
       return Observable.empty();
     }
+
+    @Override
+    public Observable<CalendarEvent> getOutOfOffice(final SFSFEmployeeTime employeeTime) {
+      return Observable.empty();
+    }
   };
 }
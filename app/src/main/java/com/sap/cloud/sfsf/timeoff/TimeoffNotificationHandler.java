@@ -15,7 +15,20 @@ package com.sap.cloud.sfsf.timeoff;
 
 import java.io.FileNotFoundException;
 import java.text.MessageFormat;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.servlet.http.HttpServletResponse;
+
+import com.sap.cloud.commons.http.BulkheadFullException;
+import com.sap.cloud.commons.http.CircuitOpenException;
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
 import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
 import com.sap.cloud.sfsf.notification.Events;
 import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
@@ -29,6 +42,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import rx.Observable;
 import rx.schedulers.Schedulers;
@@ -38,56 +52,230 @@ public class TimeoffNotificationHandler implements NotificationHandler {
 
   static final String ERROR_STATUS_CODE = "500";
   static final String ERROR_MESSAGE = "Error processing EmployeeTime event";
+  static final String COALESCED_MESSAGE = "EmployeeTime event cancelled out by a later event for the same entity";
+
+  static final String ENTITY_TYPE = "EmployeeTime";
+
+  static final String RESPONSE_STAGE = "event.response";
+  static final String RESOLVE_STAGE = "event.resolve";
+  static final String CACHE_UPDATE_STAGE = "cache.update";
+  private static final String UNKNOWN_ACTION = "UNKNOWN";
 
   private static final Logger logger = LoggerFactory.getLogger(TimeoffNotificationHandler.class);
 
   private final EmployeeTimeEventHandler employeeTimeEventHandler;
   private final SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
   private final Cache<String, SFSFEmployeeTimeList> employeeTimeRequestsPerUserCache;
+  private final EmployeeTimeEventCoalescer coalescer;
+  private ClusterRouter clusterRouter;
+  private EmployeeTimeReconciler reconciler;
 
-  @Autowired
   public TimeoffNotificationHandler(final EmployeeTimeEventHandler employeeTimeEventHandler,
       final SFSFEmployeeTimeService sfsfEmployeeTimeSvc,
       final Cache<String, SFSFEmployeeTimeList> employeeTimeRequestsPerUserCache) {
+    this(employeeTimeEventHandler, sfsfEmployeeTimeSvc, employeeTimeRequestsPerUserCache,
+        new EmployeeTimeEventCoalescer(0, Schedulers.immediate()));
+  }
+
+  @Autowired
+  public TimeoffNotificationHandler(final EmployeeTimeEventHandler employeeTimeEventHandler,
+      final SFSFEmployeeTimeService sfsfEmployeeTimeSvc,
+      final Cache<String, SFSFEmployeeTimeList> employeeTimeRequestsPerUserCache,
+      final EmployeeTimeEventCoalescer coalescer) {
     this.employeeTimeEventHandler = employeeTimeEventHandler;
     this.sfsfEmployeeTimeSvc = sfsfEmployeeTimeSvc;
     this.employeeTimeRequestsPerUserCache = employeeTimeRequestsPerUserCache;
+    this.coalescer = coalescer;
+  }
+
+  /**
+   * In cluster mode, events of users owned by another node are forwarded to it.
+   */
+  @Autowired(required = false)
+  public void setClusterRouter(final ClusterRouter clusterRouter) {
+    this.clusterRouter = clusterRouter;
+  }
+
+  /**
+   * Events rejected before they were handled, by an open circuit breaker or a full bulkhead, request a catch-up
+   * reconciliation run, since SFSF does not send them again.
+   */
+  @Autowired(required = false)
+  public void setReconciler(final EmployeeTimeReconciler reconciler) {
+    this.reconciler = reconciler;
   }
 
   @Override
   public Observable<EenAlertResponsePayload> onNotification(final Events events, final String requestId) {
     logger.trace("Notification handler invoked on new EmployeeTime event");
-    final Observable<EenAlertResponsePayload> obs = Observable.from(events.getEvent())
-        // to entity key obs
-        .flatMapIterable(event -> event.getEntityKeys().getEntityKey())
-        .filter(key -> "externalCode".equals(key.getName()))
+    if (!events.getEvent().isEmpty()
+        && events.getEvent().stream().noneMatch(TimeoffNotificationHandler::isEmployeeTimeEvent)) {
+      // other entity types are left to their handlers
+      return Observable.empty();
+    }
+    if (clusterRouter == null || events.getEvent().isEmpty()) {
+      return handleLocally(Observable.from(events.getEvent()), Collections.emptyMap(), requestId);
+    }
+    // the EmployeeTimes read to find their owner, handled or forwarded without reading them again
+    final Map<EenAlertRequestData, String> employeeTimes = Collections.synchronizedMap(new IdentityHashMap<>());
+    // resolved eagerly, but kept in order so the events of a user reach their owner in order
+    return Observable.from(events.getEvent())
+        .filter(TimeoffNotificationHandler::isEmployeeTimeEvent)
+        .concatMapEager(
+            event -> ownerOf(event, employeeTimes).map(owner -> new SimpleImmutableEntry<>(owner, event)))
+        .groupBy(Map.Entry::getKey, Map.Entry::getValue)
+        .flatMap(group -> clusterRouter.getSelf().equals(group.getKey())
+            ? handleLocally(group, employeeTimes, requestId)
+            : group.toList().flatMap(forwarded -> forward(group.getKey(), forwarded, employeeTimes, requestId)));
+  }
+
+  /**
+   * @param employeeTimes the EmployeeTimes already read, by event; the others are read from SFSF
+   */
+  private Observable<EenAlertResponsePayload> handleLocally(final Observable<EenAlertRequestData> events,
+      final Map<EenAlertRequestData, String> employeeTimes, final String requestId) {
+    return events
+        .filter(TimeoffNotificationHandler::isEmployeeTimeEvent)
+        // to entity key obs, with the EmployeeTime if already read
+        .flatMap(event -> Observable.from(event.getEntityKeys().getEntityKey())
+            .map(key -> new SimpleImmutableEntry<>(key, employeeTimes.get(event))))
+        .filter(entry -> "externalCode".equals(entry.getKey().getName()))
         .switchIfEmpty(Observable
             .error(new IllegalStateException("The externalCode property is missing from the event request payload")))
         // logging
-        .doOnNext(key -> logger.debug("Get EmployeeTime entity {}", key.getValue()))
+        .doOnNext(entry -> logger.debug("Get EmployeeTime entity {}", entry.getKey().getValue()))
         // stuff
-        .flatMap(key -> getTimeOffEventEntity(key.getValue())
-            .onErrorResumeNext(e -> onGetTimeOffError(e, key.getValue()))
-            .filter(timeOffEvent -> acceptEventStatus(timeOffEvent))
-            // not supported status
-            .switchIfEmpty(Observable.error(new IllegalArgumentException(
-                "Unsupported EmployeeTime approval status. Supported statuses - APPROVED, CANCELLED")))
-            .doOnNext(
-                timeOffEvent -> logger.debug("EmployeeTime entity for userId {} received", timeOffEvent.getUserId()))
-            .flatMap(timeOffEvent -> {
-              return setEventAction(timeOffEvent);
-            }).doOnNext(timeOffEvent -> updateCache(timeOffEvent)).flatMap(timeOffEvent -> {
-              return handleEvent(timeOffEvent, requestId);
-            }))
-        .onErrorReturn(e -> {
-          logger.error(ERROR_MESSAGE, e);
-          final EenAlertResponsePayload response = new EenAlertResponsePayload();
-          final String message = String.format(ERROR_MESSAGE + ": %s", e.getMessage());
-          response.setErrorMessage(addRequestId(requestId, message));
-          response.setErrorCode(ERROR_STATUS_CODE);
-          return response;
-        });
-    return obs;
+        .flatMap(entry -> handleEntity(entry.getKey().getValue(),
+            getTimeOffEventEntity(entry.getKey().getValue(), entry.getValue())
+                .onErrorResumeNext(e -> onGetTimeOffError(e, entry.getKey().getValue())),
+            requestId))
+        .onErrorReturn(e -> errorResponse(e, requestId));
+  }
+
+  /**
+   * Reads the EmployeeTime of an event that is not forwarded yet to find the owner of its user.
+   */
+  private Observable<String> ownerOf(final EenAlertRequestData event,
+      final Map<EenAlertRequestData, String> employeeTimes) {
+    final String self = clusterRouter.getSelf();
+    final String externalCode = ClusterRouter.externalCodeOf(event);
+    if (ClusterRouter.isForwarded(event)) {
+      final String employeeTime = clusterRouter.employeeTimeOf(event);
+      if (employeeTime != null) {
+        employeeTimes.put(event, employeeTime);
+      }
+      return Observable.just(self);
+    }
+    if (externalCode == null) {
+      return Observable.just(self);
+    }
+    return Observable.fromCallable(() -> {
+      final String employeeTime = sfsfEmployeeTimeSvc.getTimeoffEventJson(externalCode);
+      employeeTimes.put(event, employeeTime);
+      final String userId = sfsfEmployeeTimeSvc.parseTimeoffEvent(employeeTime).getUserId();
+      return userId == null ? self : clusterRouter.ownerOf(userId);
+    }).subscribeOn(Schedulers.io()).onErrorReturn(e -> {
+      logger.warn("Could not resolve the owner of EmployeeTime {}, handling it here: {}", externalCode,
+          e.getMessage());
+      return self;
+    });
+  }
+
+  private Observable<EenAlertResponsePayload> forward(final String owner, final List<EenAlertRequestData> events,
+      final Map<EenAlertRequestData, String> employeeTimes, final String requestId) {
+    logger.debug("Forwarding {} EmployeeTime events to {}", events.size(), owner);
+    return clusterRouter.forward(owner, events, employeeTimes, requestId).onErrorResumeNext(e -> {
+      logger.warn("Forwarding EmployeeTime events to {} failed, handling them here: {}", owner, e.getMessage());
+      return handleLocally(Observable.from(events), employeeTimes, requestId);
+    });
+  }
+
+  static boolean isEmployeeTimeEvent(final EenAlertRequestData event) {
+    return event.getEntityType() == null || ENTITY_TYPE.equals(event.getEntityType());
+  }
+
+  /**
+   * Runs already fetched EmployeeTime entities, e.g. from delta polling, through the same pipeline as notified ones.
+   *
+   * @return one response per entity, with the externalCode as entity id
+   */
+  public Observable<EenAlertResponsePayload> onEmployeeTimes(final Observable<SFSFEmployeeTime> employeeTimes,
+      final String requestId) {
+    return employeeTimes.concatMap(
+        employeeTime -> handleEntity(employeeTime.getExternalCode(), Observable.just(employeeTime), requestId));
+  }
+
+  private Observable<EenAlertResponsePayload> handleEntity(final String externalCode,
+      final Observable<SFSFEmployeeTime> entity, final String requestId) {
+    return Observable.defer(() -> {
+      final long start = Metrics.start();
+      final AtomicReference<Action> action = new AtomicReference<>();
+      return entity
+          .filter(timeOffEvent -> acceptEventStatus(timeOffEvent))
+          // not supported status
+          .switchIfEmpty(Observable.error(new IllegalArgumentException(
+              "Unsupported EmployeeTime approval status. Supported statuses - APPROVED, CANCELLED")))
+          .doOnNext(
+              timeOffEvent -> logger.debug("EmployeeTime entity for userId {} received", timeOffEvent.getUserId()))
+          .flatMap(timeOffEvent -> {
+            return setEventAction(timeOffEvent);
+          }).doOnNext(timeOffEvent -> action.set(timeOffEvent.getAction()))
+          .doOnNext(timeOffEvent -> timedUpdateCache(timeOffEvent)).flatMap(timeOffEvent -> {
+            return coalesceAndHandle(externalCode, timeOffEvent, requestId);
+          })
+          // a failing entity must not hide the results of the others
+          .map(response -> setEntityId(response, externalCode))
+          .onErrorReturn(e -> setEntityId(errorResponse(e, requestId), externalCode))
+          .doOnNext(response -> Metrics.record(RESPONSE_STAGE, actionName(action.get()), outcome(response), start));
+    });
+  }
+
+  private static String actionName(final Action action) {
+    return action == null ? UNKNOWN_ACTION : action.name();
+  }
+
+  private static String outcome(final EenAlertResponsePayload response) {
+    return StringUtils.isEmpty(response.getErrorCode()) ? Metrics.SUCCESS : Metrics.ERROR;
+  }
+
+  private Observable<EenAlertResponsePayload> coalesceAndHandle(final String externalCode,
+      final SFSFEmployeeTime timeOffEvent, final String requestId) {
+    // a superseded event gets the result of the surviving one, a cancelled out window has nothing to apply
+    return coalescer.coalesce(TenantContext.qualify(externalCode), timeOffEvent, net -> handleEvent(net, requestId))
+        .switchIfEmpty(Observable.just(coalescedResponse(requestId)));
+  }
+
+  private EenAlertResponsePayload coalescedResponse(final String requestId) {
+    final EenAlertResponsePayload response = new EenAlertResponsePayload();
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setStatusDetails(addRequestId(requestId, COALESCED_MESSAGE));
+    return response;
+  }
+
+  private EenAlertResponsePayload errorResponse(final Throwable e, final String requestId) {
+    if (e instanceof CircuitOpenException || e instanceof BulkheadFullException) {
+      // expected while SFSF is down or the tenant is over budget, reconciliation catches up with the entity later
+      logger.warn("{}: {}", ERROR_MESSAGE, e.getMessage());
+      if (reconciler != null) {
+        reconciler.requestCatchUp();
+      } else {
+        logger.warn("No reconciler configured, the rejected event is lost");
+      }
+    } else {
+      logger.error(ERROR_MESSAGE, e);
+    }
+    final EenAlertResponsePayload response = new EenAlertResponsePayload();
+    final String message = String.format(ERROR_MESSAGE + ": %s", e.getMessage());
+    response.setErrorMessage(addRequestId(requestId, message));
+    response.setErrorCode(ERROR_STATUS_CODE);
+    return response;
+  }
+
+  private static EenAlertResponsePayload setEntityId(final EenAlertResponsePayload response, final String entityId) {
+    if (response.getEntityId() == null) {
+      response.setEntityId(entityId);
+    }
+    return response;
   }
 
   private Observable<EenAlertResponsePayload> handleEvent(final SFSFEmployeeTime timeOffEvent, final String requestId) {
@@ -105,6 +293,7 @@ public class TimeoffNotificationHandler implements NotificationHandler {
   }
 
   private Observable<SFSFEmployeeTime> setEventAction(final SFSFEmployeeTime timeOffEvent) {
+    final long start = Metrics.start();
     // event was raised due to DELETE(CANCEL)
     if (ApprovalStatus.CANCELLED == timeOffEvent.getApprovalStatus()) {
       timeOffEvent.setAction(Action.DELETE);
@@ -115,12 +304,25 @@ public class TimeoffNotificationHandler implements NotificationHandler {
         timeOffEvent.setAction(Action.CREATE);
       }
     }
+    Metrics.record(RESOLVE_STAGE, timeOffEvent.getAction().name(), Metrics.SUCCESS, start);
     logger.debug("EmployeeTime event action resolved to " + timeOffEvent.getAction().toString());
     return Observable.just(timeOffEvent);
   }
 
-  private Observable<SFSFEmployeeTime> getTimeOffEventEntity(final String id) {
-    return Observable.fromCallable(() -> sfsfEmployeeTimeSvc.getTimeoffEvent(id)).subscribeOn(Schedulers.io());
+  private Observable<SFSFEmployeeTime> getTimeOffEventEntity(final String id, final String employeeTime) {
+    return Observable.fromCallable(() -> employeeTime != null ? sfsfEmployeeTimeSvc.readTimeoffEvent(employeeTime)
+        : sfsfEmployeeTimeSvc.getTimeoffEvent(id)).subscribeOn(Schedulers.io());
+  }
+
+  private void timedUpdateCache(final SFSFEmployeeTime event) {
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try {
+      updateCache(event);
+      outcome = Metrics.SUCCESS;
+    } finally {
+      Metrics.record(CACHE_UPDATE_STAGE, actionName(event.getAction()), outcome, start);
+    }
   }
 
   void updateCache(final SFSFEmployeeTime event) {
@@ -135,19 +337,21 @@ public class TimeoffNotificationHandler implements NotificationHandler {
   }
 
   private void saveCachedEvent(final SFSFEmployeeTime event) {
-    SFSFEmployeeTimeList cachedEventsForUser = employeeTimeRequestsPerUserCache.get(event.getUserId());
+    final String key = TenantContext.qualify(event.getUserId());
+    SFSFEmployeeTimeList cachedEventsForUser = employeeTimeRequestsPerUserCache.get(key);
     if (cachedEventsForUser == null) {
       cachedEventsForUser = new SFSFEmployeeTimeList();
     }
     cachedEventsForUser.addEmployeeTime(event);
-    employeeTimeRequestsPerUserCache.put(event.getUserId(), cachedEventsForUser);
+    employeeTimeRequestsPerUserCache.put(key, cachedEventsForUser);
   }
 
   private void deleteCachedEvent(final SFSFEmployeeTime event) {
-    final SFSFEmployeeTimeList cachedEventsForUser = employeeTimeRequestsPerUserCache.get(event.getUserId());
+    final String key = TenantContext.qualify(event.getUserId());
+    final SFSFEmployeeTimeList cachedEventsForUser = employeeTimeRequestsPerUserCache.get(key);
     if (cachedEventsForUser != null) {
       cachedEventsForUser.removeEmployeeTime(event);
-      employeeTimeRequestsPerUserCache.replace(event.getUserId(), cachedEventsForUser);
+      employeeTimeRequestsPerUserCache.replace(key, cachedEventsForUser);
     }
   }
 
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.Events;
+import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+
+/**
+ * Drops cached user profiles when SFSF notifies a change of a User, or of the EmpJob carrying the timezone and the
+ * manager. Events of other entity types are ignored.
+ */
+public class UserProfileNotificationHandler implements NotificationHandler {
+
+  static final Set<String> ENTITY_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("User", "EmpJob")));
+  static final String USER_ID_KEY = "userId";
+  static final String INVALIDATED_MESSAGE = "User profile cache entry invalidated";
+
+  private static final Logger logger = LoggerFactory.getLogger(UserProfileNotificationHandler.class);
+
+  private final SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+
+  public UserProfileNotificationHandler(final SFSFEmployeeTimeService sfsfEmployeeTimeSvc) {
+    this.sfsfEmployeeTimeSvc = sfsfEmployeeTimeSvc;
+  }
+
+  @Override
+  public Observable<EenAlertResponsePayload> onNotification(final Events events, final String requestId) {
+    return Observable.from(events.getEvent()).filter(UserProfileNotificationHandler::isUserEvent)
+        .flatMapIterable(event -> event.getEntityKeys().getEntityKey())
+        .filter(key -> USER_ID_KEY.equals(key.getName())).map(key -> {
+          logger.debug("Invalidating the cached profile of user {}", key.getValue());
+          sfsfEmployeeTimeSvc.invalidateUserProfile(key.getValue());
+          final EenAlertResponsePayload response = new EenAlertResponsePayload();
+          response.setStatus(HttpServletResponse.SC_OK);
+          response.setEntityId(key.getValue());
+          response.setStatusDetails("[" + requestId + "] " + INVALIDATED_MESSAGE);
+          return response;
+        });
+  }
+
+  private static boolean isUserEvent(final EenAlertRequestData event) {
+    return ENTITY_TYPES.contains(event.getEntityType()) && event.getEntityKeys() != null;
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.entity;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+
+/**
+ * An EmployeeTime event whose update of one calendar service failed, kept for replay against that service.
+ */
+public class DeadLetter {
+
+  private final String id;
+  private final String tenantId;
+  private final SFSFEmployeeTime employeeTime;
+  private final Action action;
+  private final String provider;
+  private final String error;
+  private final int attempts;
+  private final Instant failedAt;
+
+  public DeadLetter(final String id, final String tenantId, final SFSFEmployeeTime employeeTime, final Action action,
+      final String provider, final String error, final int attempts, final Instant failedAt) {
+    this.id = id;
+    this.tenantId = tenantId;
+    this.employeeTime = employeeTime;
+    this.action = action;
+    this.provider = provider;
+    this.error = error;
+    this.attempts = attempts;
+    this.failedAt = failedAt;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @JsonIgnore
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  @JsonIgnore
+  public SFSFEmployeeTime getEmployeeTime() {
+    return employeeTime;
+  }
+
+  public String getUserId() {
+    return employeeTime.getUserId();
+  }
+
+  public String getExternalCode() {
+    return employeeTime.getExternalCode();
+  }
+
+  public Action getAction() {
+    return action;
+  }
+
+  /**
+   * @return the name of the calendar service provider the event failed for
+   */
+  public String getProvider() {
+    return provider;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public String getFailedAt() {
+    return failedAt.toString();
+  }
+}
@@ -13,11 +13,15 @@
  */
 package com.sap.cloud.sfsf.timeoff.entity;
 
+import java.io.Serializable;
+
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.sap.cloud.sfsf.timeoff.jackson.EmpJobDeserializer;
 
 @JsonDeserialize(using = EmpJobDeserializer.class)
-public class EmpJob {
+public class EmpJob implements Serializable {
+
+	private static final long serialVersionUID = 5436105936780214763L;
 
 	private UserIdNav manager;
 	private String timezone;
@@ -58,6 +58,12 @@ public class SFSFEmployeeTime implements Serializable {
 	private final ZonedDateTime createdDateTime;
 	private final ZonedDateTime lastModifiedDateTime;
 
+	// as sent by SFSF, to zone the dates again once the user profile is joined
+	private final OffsetDateTime sfsfStartDate;
+	private final OffsetDateTime sfsfEndDate;
+	private final OffsetDateTime sfsfCreatedDateTime;
+	private final OffsetDateTime sfsfLastModifiedDateTime;
+
 	private Action action;
 
 	public enum Action {
@@ -71,21 +77,31 @@ public class SFSFEmployeeTime implements Serializable {
 			@JsonDeserialize(using = SFSFDayTimeDeserializer.class) final OffsetDateTime createdDateTime,
 			@JsonDeserialize(using = SFSFDayTimeDeserializer.class) final OffsetDateTime lastModifiedDateTime) {
 		this.userIdNav = userIdNav;
-
-		String timeZoneString = getUserIdNav().getJob().getTimezone();
-		if (timeZoneString == null) {
-			timeZoneString = getUserIdNav().getTimeZone();
+		sfsfStartDate = startDate;
+		sfsfEndDate = endDate;
+		sfsfCreatedDateTime = createdDateTime;
+		sfsfLastModifiedDateTime = lastModifiedDateTime;
+
+		// without userIdNav the profile is joined later, see withUserIdNav
+		String timeZoneString = null;
+		if (userIdNav != null) {
+			timeZoneString = userIdNav.getJob() != null ? userIdNav.getJob().getTimezone() : null;
+			if (timeZoneString == null) {
+				timeZoneString = userIdNav.getTimeZone();
+			}
+			if (StringUtils.isEmpty(timeZoneString)) {
+				LOGGER.warn("The property timeZone for User entity with id {} is not set. Falling back to default: {}",
+						getUserId(), DEFAULT_TIME_ZONE);
+			}
 		}
 		if (StringUtils.isEmpty(timeZoneString)) {
-			LOGGER.warn("The property timeZone for User entity with id {} is not set. Falling back to default: {}",
-					getUserId(), DEFAULT_TIME_ZONE);
 			timeZoneString = DEFAULT_TIME_ZONE;
 		}
-		final TimeZone timeZone = TimeZone.getTimeZone(timeZoneString);
-		LOGGER.debug("User {} timezone resolved to {}", getUserId(), timeZone.getDisplayName());
-
-		final TimeZone userTimeZone = TimeZone.getTimeZone(timeZoneString);
-		final ZoneId zoneId = userTimeZone.toZoneId();
+		final ZoneId zoneId = SFSFTimeZones.resolve(timeZoneString);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("User {} timezone resolved to {}", getUserId(),
+					TimeZone.getTimeZone(zoneId).getDisplayName());
+		}
 		this.startDate = startDate.atZoneSimilarLocal(zoneId);
 		this.endDate = endDate
 				// TODO: remove this once SFSF fixes their API
@@ -94,6 +110,34 @@ public class SFSFEmployeeTime implements Serializable {
 		this.lastModifiedDateTime = lastModifiedDateTime.atZoneSimilarLocal(zoneId);
 	}
 
+	/**
+	 * Copy of this entity with the given user profile, its dates zoned in the profile's timezone.
+	 */
+	public SFSFEmployeeTime withUserIdNav(final UserIdNav userIdNav) {
+		final SFSFEmployeeTime joined = new SFSFEmployeeTime(sfsfStartDate, sfsfEndDate, userIdNav, sfsfCreatedDateTime,
+				sfsfLastModifiedDateTime);
+		joined.id = id;
+		joined.externalCode = externalCode;
+		joined.userId = userId;
+		joined.quantityInDays = quantityInDays;
+		joined.timeType = timeType;
+		joined.quantityInHours = quantityInHours;
+		joined.timeTypeNav = timeTypeNav;
+		joined.comment = comment;
+		joined.approvalStatus = approvalStatus;
+		joined.action = action;
+		return joined;
+	}
+
+	/**
+	 * Copy of this entity with the given action.
+	 */
+	public SFSFEmployeeTime withAction(final Action action) {
+		final SFSFEmployeeTime copy = withUserIdNav(userIdNav);
+		copy.action = action;
+		return copy;
+	}
+
 	public String getUserId() {
 		return userId;
 	}
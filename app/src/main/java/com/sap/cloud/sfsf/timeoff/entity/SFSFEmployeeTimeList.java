@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonRootName;
 
 @JsonRootName("d")
@@ -30,6 +31,9 @@ public class SFSFEmployeeTimeList implements Serializable {
 
   private List<SFSFEmployeeTime> results = new ArrayList<>();
 
+  @JsonProperty("__next")
+  private String next;
+
 
   public boolean addEmployeeTime(final SFSFEmployeeTime employeeTime) {
     getResults().removeIf(e -> e.getId() == employeeTime.getId());
@@ -47,4 +51,15 @@ public class SFSFEmployeeTimeList implements Serializable {
   public void setResults(final List<SFSFEmployeeTime> results) {
     this.results = results;
   }
+
+  /**
+   * @return the link to the next page of a server-paged collection, or <code>null</code> on the last page
+   */
+  public String getNext() {
+    return next;
+  }
+
+  public void setNext(final String next) {
+    this.next = next;
+  }
 }
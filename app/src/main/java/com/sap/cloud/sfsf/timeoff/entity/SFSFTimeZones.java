@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.entity;
+
+import java.time.ZoneId;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves SFSF timezone strings to {@link ZoneId}s the way {@link TimeZone#getTimeZone(String)} does, including its
+ * GMT fallback for unknown ids.
+ *
+ * Resolved zones are cached; once the cache is full further ids are resolved without being cached. Thread-safe.
+ */
+public final class SFSFTimeZones {
+
+  static final int MAX_CACHED_ZONES = 512;
+
+  private static final ConcurrentMap<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+
+  private SFSFTimeZones() {}
+
+  public static ZoneId resolve(final String timeZone) {
+    final ZoneId cached = ZONES.get(timeZone);
+    if (cached != null) {
+      return cached;
+    }
+    final ZoneId zoneId = TimeZone.getTimeZone(timeZone).toZoneId();
+    if (ZONES.size() < MAX_CACHED_ZONES) {
+      ZONES.putIfAbsent(timeZone, zoneId);
+    }
+    return zoneId;
+  }
+}
@@ -13,11 +13,15 @@
  */
 package com.sap.cloud.sfsf.timeoff.entity;
 
+import java.io.Serializable;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class TimeTypeNav {
+public class TimeTypeNav implements Serializable {
+
+  private static final long serialVersionUID = 3287659083450175341L;
 
   @JsonProperty("externalName_en_US")
   private String title = "Out of office";
@@ -13,14 +13,19 @@
  */
 package com.sap.cloud.sfsf.timeoff.entity;
 
+import java.io.Serializable;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.sap.cloud.sfsf.timeoff.jackson.EmpJobDeserializer;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class UserIdNav {
+public class UserIdNav implements Serializable {
+
+  private static final long serialVersionUID = -6802336619526140470L;
 
+  private String userId;
   private String email;
   private String firstName;
   private String lastName;
@@ -32,6 +37,18 @@ public class UserIdNav {
 
   public UserIdNav() {}
 
+  /**
+   * @return the user id, set when the profile was read from <code>/User</code> rather than expanded
+   */
+  public String getUserId() {
+    return userId;
+  }
+
+  public UserIdNav setUserId(final String userId) {
+    this.userId = userId;
+    return this;
+  }
+
   public String getEmail() {
     return email;
   }
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/**
+ * Result of a <code>/User</code> collection query.
+ */
+@JsonRootName("d")
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserIdNavList {
+
+  private List<UserIdNav> results = new ArrayList<>();
+
+  public List<UserIdNav> getResults() {
+    return results;
+  }
+
+  public void setResults(final List<UserIdNav> results) {
+    this.results = results;
+  }
+}
@@ -13,13 +13,40 @@
  */
 package com.sap.cloud.sfsf.timeoff.jackson;
 
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.fasterxml.jackson.annotation.JsonCreator.Mode;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class DefaultMapper {
 
+  /**
+   * System property that registers the Afterburner module on the shared mapper, if it is on the classpath.
+   */
+  public static final String AFTERBURNER_PROPERTY = "sfsf.jackson.afterburner";
+
+  private static final String AFTERBURNER_MODULE = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultMapper.class);
+
+  private static final ObjectMapper SHARED = newSharedMapper();
+  private static final ObjectWriter WRITER = SHARED.writer();
+
+  private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Class<?>, ObjectReader> UNWRAPPING_READERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<JavaType, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
 
   /**
    * Creates new instance of JavaTimeModule and ParameterNames Module enabled mapper.
@@ -30,4 +57,67 @@ public class DefaultMapper {
   public static ObjectMapper newMapper() {
     return new ObjectMapper().registerModules(new ParameterNamesModule(Mode.PROPERTIES), new JavaTimeModule());
   }
+
+  /**
+   * The mapper behind the shared readers and writers. Must not be reconfigured.
+   */
+  public static ObjectMapper sharedMapper() {
+    return SHARED;
+  }
+
+  /**
+   * Shared reader for the given type. Thread-safe.
+   */
+  public static ObjectReader readerFor(final Class<?> type) {
+    return READERS.computeIfAbsent(type, SHARED::readerFor);
+  }
+
+  /**
+   * Shared reader for the given type with {@link DeserializationFeature#UNWRAP_ROOT_VALUE} enabled, e.g. for OData
+   * <code>{"d": {...}}</code> responses. Thread-safe.
+   */
+  public static ObjectReader unwrappingReaderFor(final Class<?> type) {
+    return UNWRAPPING_READERS.computeIfAbsent(type,
+        key -> SHARED.readerFor(key).with(DeserializationFeature.UNWRAP_ROOT_VALUE));
+  }
+
+  /**
+   * Shared writer for values of any type. Thread-safe.
+   */
+  public static ObjectWriter writer() {
+    return WRITER;
+  }
+
+  /**
+   * Shared writer for the given type. Thread-safe.
+   */
+  public static ObjectWriter writerFor(final Class<?> type) {
+    return writerFor(SHARED.constructType(type));
+  }
+
+  /**
+   * Shared writer for the given type, e.g. <code>collectionType(List.class, CalendarEvent.class)</code>. Thread-safe.
+   */
+  public static ObjectWriter writerFor(final JavaType type) {
+    return WRITERS.computeIfAbsent(type, SHARED::writerFor);
+  }
+
+  @SuppressWarnings("rawtypes")
+  public static JavaType collectionType(final Class<? extends Collection> collectionClass,
+      final Class<?> elementClass) {
+    return SHARED.getTypeFactory().constructCollectionType(collectionClass, elementClass);
+  }
+
+  private static ObjectMapper newSharedMapper() {
+    final ObjectMapper mapper = newMapper();
+    if (Boolean.getBoolean(AFTERBURNER_PROPERTY)) {
+      try {
+        mapper.registerModule((Module) Class.forName(AFTERBURNER_MODULE).newInstance());
+        LOGGER.info("Jackson Afterburner module registered");
+      } catch (final ReflectiveOperationException | LinkageError e) {
+        LOGGER.warn("{} is set, but the Afterburner module could not be loaded", AFTERBURNER_PROPERTY, e);
+      }
+    }
+    return mapper;
+  }
 }
@@ -17,52 +17,88 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
 import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
 
+/**
+ * Reads <code>empInfo.jobInfoNav.results[0]</code> into an {@link EmpJob}.
+ *
+ * Walks the tokens directly and skips everything but the manager and the timezone of the first result, without
+ * building a tree. The manager is read with the calling mapper's configuration.
+ */
 public class EmpJobDeserializer extends JsonDeserializer<EmpJob> {
 
-  private final ObjectMapper mapper = DefaultMapper.newMapper();
+  private static final String JOB_INFO_NAV = "jobInfoNav";
+  private static final String RESULTS = "results";
+  private static final String MANAGER_USER_NAV = "managerUserNav";
+  private static final String TIMEZONE = "timezone";
 
   public EmpJobDeserializer() {}
 
   @Override
   public EmpJob deserialize(final JsonParser p, final DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
-    final TreeNode root = mapper.readTree(p);
-
-    final TreeNode jobInfo = root.get("jobInfoNav");
-    if (jobInfo == null) {
+    JsonToken token = p.getCurrentToken();
+    if (token == JsonToken.START_OBJECT) {
+      token = p.nextToken();
+    } else if (token != JsonToken.FIELD_NAME) {
+      p.skipChildren();
       return null;
     }
-    final TreeNode results = jobInfo.get("results");
-    if (results == null || !results.isArray()) {
-      return null;
+
+    EmpJob job = null;
+    for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+      final String field = p.getCurrentName();
+      if (p.nextToken() == JsonToken.START_OBJECT && JOB_INFO_NAV.equals(field)) {
+        job = readJobInfo(p, ctxt);
+      } else {
+        p.skipChildren();
+      }
     }
-    final TreeNode singleResult = results.path(0);
-    if (singleResult == null) {
-      return null;
+    return job;
+  }
+
+  private EmpJob readJobInfo(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+    EmpJob job = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = p.getCurrentName();
+      if (p.nextToken() == JsonToken.START_ARRAY && RESULTS.equals(field)) {
+        job = readResults(p, ctxt);
+      } else {
+        p.skipChildren();
+      }
     }
+    return job;
+  }
 
+  private EmpJob readResults(final JsonParser p, final DeserializationContext ctxt) throws IOException {
     final EmpJob job = new EmpJob();
-
-    final TreeNode managerNav = singleResult.get("managerUserNav");
-    if (managerNav != null) {
-      final UserIdNav manager = mapper.readValue(managerNav.traverse(), UserIdNav.class);
-      job.setManager(manager);
+    JsonToken token = p.nextToken();
+    if (token == JsonToken.START_OBJECT) {
+      readJob(p, ctxt, job);
+      token = p.nextToken();
     }
-
-    final TreeNode timezoneNode = singleResult.get("timezone");
-    if (timezoneNode != null) {
-      final String timezone = mapper.readValue(timezoneNode.traverse(), String.class);
-      job.setTimezone(timezone);
+    // only the first result is of interest
+    for (; token != JsonToken.END_ARRAY; token = p.nextToken()) {
+      p.skipChildren();
     }
-
     return job;
   }
 
+  private void readJob(final JsonParser p, final DeserializationContext ctxt, final EmpJob job) throws IOException {
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = p.getCurrentName();
+      final JsonToken value = p.nextToken();
+      if (MANAGER_USER_NAV.equals(field)) {
+        job.setManager(value == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, UserIdNav.class));
+      } else if (TIMEZONE.equals(field)) {
+        job.setTimezone(value == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, String.class));
+      } else {
+        p.skipChildren();
+      }
+    }
+  }
 }
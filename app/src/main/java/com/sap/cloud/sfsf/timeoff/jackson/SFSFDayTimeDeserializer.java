@@ -16,35 +16,134 @@ package com.sap.cloud.sfsf.timeoff.jackson;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.time.ZoneId;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.ZoneOffset;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
+/**
+ * Deserializes the OData v2 <code>/Date(millis[+-offset])/</code> format.
+ *
+ * Scans the parser's character buffer directly and finds the first match anywhere in the value, like the
+ * <code>\/Date\((\d+)([-+]\d+)?\)\/</code> pattern it replaces. Offsets in <code>hhmm</code> form are served from a
+ * cache; a missing offset means UTC.
+ */
 public class SFSFDayTimeDeserializer extends JsonDeserializer<OffsetDateTime>{
 
-  private static final Pattern pattern = Pattern.compile("\\/Date\\((\\d+)([-+]\\d+)?\\)\\/");
+  private static final char[] PREFIX = "/Date(".toCharArray();
+  private static final char[] SUFFIX = ")/".toCharArray();
+
+  private static final int MAX_QUARTER_HOURS = 18 * 4;
+  private static final ZoneOffset[] QUARTER_HOUR_OFFSETS = new ZoneOffset[2 * MAX_QUARTER_HOURS + 1];
+
+  static {
+    for (int i = 0; i < QUARTER_HOUR_OFFSETS.length; i++) {
+      QUARTER_HOUR_OFFSETS[i] = ZoneOffset.ofTotalSeconds((i - MAX_QUARTER_HOURS) * 15 * 60);
+    }
+  }
 
   @Override
   public OffsetDateTime deserialize(final JsonParser p, final DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
+    if (p.getCurrentToken() == JsonToken.VALUE_STRING) {
+      return parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+    }
     final String jsonDate = ctxt.readValue(p, String.class);
-    final Matcher matcher = pattern.matcher(jsonDate);
-    if (!matcher.find()) {
-      throw new IOException("Invalid DateTime format " + jsonDate);
+    return parse(jsonDate.toCharArray(), 0, jsonDate.length());
+  }
+
+  static OffsetDateTime parse(final char[] text, final int offset, final int length) throws IOException {
+    final int end = offset + length;
+    for (int start = indexOf(text, offset, end, PREFIX); start >= 0; start = indexOf(text, start + 1, end, PREFIX)) {
+      final OffsetDateTime result = parseAt(text, start + PREFIX.length, end);
+      if (result != null) {
+        return result;
+      }
     }
-    final long millis = Long.parseLong(matcher.group(1));
-    String offset = matcher.group(2);
-    // default in case no time zone
-    if (offset == null) {
-      offset = "+0000";
+    throw new IOException("Invalid DateTime format " + new String(text, offset, length));
+  }
+
+  /**
+   * @return the parsed value, or <code>null</code> if the text right after the prefix does not match
+   */
+  private static OffsetDateTime parseAt(final char[] text, final int from, final int end) {
+    final int millisEnd = skipDigits(text, from, end);
+    if (millisEnd == from) {
+      return null;
+    }
+    int pos = millisEnd;
+    int offsetStart = -1;
+    if (pos < end && (text[pos] == '+' || text[pos] == '-')) {
+      final int offsetEnd = skipDigits(text, pos + 1, end);
+      if (offsetEnd == pos + 1) {
+        return null;
+      }
+      offsetStart = pos;
+      pos = offsetEnd;
+    }
+    if (!regionMatches(text, pos, end, SUFFIX)) {
+      return null;
     }
 
-    return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.of(offset));
+    final long millis = parseLong(text, from, millisEnd);
+    final ZoneOffset zoneOffset = offsetStart < 0 ? ZoneOffset.UTC : toZoneOffset(text, offsetStart, pos);
+    return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), zoneOffset);
   }
 
+  private static ZoneOffset toZoneOffset(final char[] text, final int from, final int to) {
+    final int sign = text[from] == '-' ? -1 : 1;
+    if (to - from == 5) {
+      final int hours = (text[from + 1] - '0') * 10 + text[from + 2] - '0';
+      final int minutes = (text[from + 3] - '0') * 10 + text[from + 4] - '0';
+      if (minutes % 15 == 0 && hours <= 18 && (hours < 18 || minutes == 0)) {
+        return QUARTER_HOUR_OFFSETS[MAX_QUARTER_HOURS + sign * (hours * 4 + minutes / 15)];
+      }
+    }
+    // uncommon forms (+h, +hh, +hhmmss) and invalid offsets
+    return ZoneOffset.of(new String(text, from, to - from));
+  }
+
+  private static long parseLong(final char[] text, final int from, final int to) {
+    long result = 0;
+    for (int i = from; i < to; i++) {
+      final int digit = text[i] - '0';
+      if (result > (Long.MAX_VALUE - digit) / 10) {
+        throw new NumberFormatException("For input string: \"" + new String(text, from, to - from) + "\"");
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  private static int skipDigits(final char[] text, final int from, final int end) {
+    int pos = from;
+    while (pos < end && text[pos] >= '0' && text[pos] <= '9') {
+      pos++;
+    }
+    return pos;
+  }
+
+  private static int indexOf(final char[] text, final int from, final int end, final char[] token) {
+    for (int i = from; i <= end - token.length; i++) {
+      if (regionMatches(text, i, end, token)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean regionMatches(final char[] text, final int from, final int end, final char[] token) {
+    if (end - from < token.length) {
+      return false;
+    }
+    for (int i = 0; i < token.length; i++) {
+      if (text[from + i] != token[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
@@ -18,8 +18,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import com.sap.cloud.commons.tenancy.TenantContext;
 import com.sap.cloud.sfsf.timeoff.CalendarServiceProvider;
 import com.sap.cloud.sfsf.timeoff.SFSFEmployeeTimeService;
+import com.sap.cloud.sfsf.timeoff.SFSFEmployeeTimeService.Projection;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent.EventStatus;
@@ -67,7 +69,7 @@ public class CalendarEventsSvc {
     }).filter(e -> {
       return !e.getResults().isEmpty();
     }).doOnNext(event -> {
-      cache.put(userId, event);
+      cache.put(cacheKey(userId), event);
     }).flatMap(event -> {
       return calendarSvc.flatMap(service -> {
         return service.getConflicting(event);
@@ -90,13 +92,21 @@ public class CalendarEventsSvc {
   }
 
   private Observable<SFSFEmployeeTimeList> getEmpoyeeTimeCache(final String userId) {
-    final SFSFEmployeeTimeList event = cache.get(userId);
+    final SFSFEmployeeTimeList event = cache.get(cacheKey(userId));
     if (event == null) {
       return Observable.empty();
     }
     return Observable.just(event);
   }
 
+  /**
+   * The lists of this endpoint are read with {@link Projection#MINIMAL}, so they are kept apart from the full lists
+   * the notification handlers cache per user of the tenant.
+   */
+  static String cacheKey(final String userId) {
+    return TenantContext.qualify(userId) + '#' + Projection.MINIMAL;
+  }
+
   private Observable<SFSFEmployeeTimeList> getEmpoyeeTimeIO(final String userId) {
     return Observable.fromCallable(() -> sfsfEmployeeTimeSvc.getLatestTimeOffEventForUser(userId))
         /* .subscribeOn(Schedulers.io()) */.doOnError(e -> LOGGER.error("Getting latest event failed ", e));
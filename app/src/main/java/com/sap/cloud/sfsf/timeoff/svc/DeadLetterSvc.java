@@ -0,0 +1,73 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.svc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.cloud.sfsf.timeoff.DeadLetterReplayer;
+import com.sap.cloud.sfsf.timeoff.DeadLetterStore;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api/v1/deadletters")
+public class DeadLetterSvc {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterSvc.class);
+
+  private final DeadLetterStore store;
+  private final DeadLetterReplayer replayer;
+
+  @Autowired
+  public DeadLetterSvc(final DeadLetterStore store, final DeadLetterReplayer replayer) {
+    this.store = store;
+    this.replayer = replayer;
+  }
+
+  @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+  @ResponseBody
+  public List<DeadLetter> getDeadLetters() {
+    return store.list();
+  }
+
+  /**
+   * Starts replaying the given dead letters, or all of them if no ids are given, and returns right away.
+   */
+  @RequestMapping(path = "/replay", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+  @ResponseBody
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  public Map<String, Integer> replay(@RequestBody(required = false) final List<String> ids) {
+    final List<DeadLetter> deadLetters = ids == null || ids.isEmpty() ? store.list() : store.get(ids);
+    final String requestId = MDC.get("request_id");
+    replayer.replay(deadLetters, requestId).filter(response -> response.getErrorCode() != null).count()
+        .subscribe(failed -> LOGGER.info("Replay of {} dead letter(s) finished, {} failed", deadLetters.size(), failed),
+            e -> LOGGER.error("Replay of dead letters aborted", e));
+    return Collections.singletonMap("scheduled", deadLetters.size());
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sap.cloud.commons.tenancy.TenantFilter;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData.EntityKeys;
+import com.sap.cloud.sfsf.notification.ExternalEvent;
+import com.sap.cloud.sfsf.notification.Param;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.ws.client.core.WebServiceMessageCallback;
+import org.springframework.ws.client.core.WebServiceOperations;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClusterRouterTest {
+
+  private static final String SELF_NODE = "https://timeoff-1";
+  private static final String OTHER_NODE = "https://timeoff-2";
+  private static final String EMPLOYEE_TIME_JSON = "{\"d\":{\"externalCode\":\"123456789\"}}";
+
+  @Mock
+  private WebServiceOperations webService;
+
+  private final AtomicReference<ExternalEvent> sent = new AtomicReference<>();
+
+  @Before
+  public void before() {
+    given(webService.marshalSendAndReceive(anyString(), any(), any(WebServiceMessageCallback.class)))
+        .willAnswer(invocation -> {
+          sent.set((ExternalEvent) invocation.getArguments()[1]);
+          return null;
+        });
+  }
+
+  @Test
+  public void forwardedEmployeeTimeIsOnlyAcceptedWithItsSignature() {
+    // given
+    final EenAlertRequestData event = event("123456789");
+
+    // when
+    router("secret").forward(OTHER_NODE, Collections.singletonList(event),
+        Collections.singletonMap(event, EMPLOYEE_TIME_JSON), "request-1").toList().toBlocking().single();
+
+    // then
+    final EenAlertRequestData forwarded = sent.get().getEvents().getEvent().get(0);
+    assertThat(ClusterRouter.isForwarded(forwarded)).isTrue();
+    assertThat(router("secret").employeeTimeOf(forwarded)).isEqualTo(EMPLOYEE_TIME_JSON);
+    assertThat(router("other secret").employeeTimeOf(forwarded)).isNull();
+
+    forwarded.getEntityKeys().getEntityKey().get(0).setValue("987654321");
+    assertThat(router("secret").employeeTimeOf(forwarded)).isNull();
+  }
+
+  @Test
+  public void clusterModeWithoutTokenFailsAtStartup() {
+    // a non-default tenant could not be forwarded, its owner only trusts X-Tenant-ID with the token
+    // when
+    final Throwable thrown = catchThrowable(() -> router(""));
+
+    // then
+    assertThat(thrown).isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(TenantFilter.CLUSTER_TOKEN_PROPERTY);
+    assertThat(catchThrowable(() -> router(null))).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private ClusterRouter router(final String clusterToken) {
+    return new ClusterRouter(new StaticClusterMembership(SELF_NODE, Arrays.asList(SELF_NODE, OTHER_NODE)),
+        10, webService, clusterToken);
+  }
+
+  private static EenAlertRequestData event(final String externalCode) {
+    final Param key = new Param();
+    key.setName("externalCode");
+    key.setValue(externalCode);
+    final EenAlertRequestData event = new EenAlertRequestData();
+    event.setEntityKeys(new EntityKeys());
+    event.getEntityKeys().getEntityKey().add(key);
+    return event;
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeadLetterReplayerTest {
+
+  private static final String REQUEST_ID = "requestId";
+  private static final String PROVIDER = "calendar";
+
+  @Mock
+  private CalendarServiceProvider calendarSvc;
+
+  @Mock
+  private CalendarServiceProvider otherCalendarSvc;
+
+  private InMemoryDeadLetterStore store;
+  private EmployeeTimeEventHandler eventHandler;
+  private DeadLetterReplayer replayer;
+
+  @Before
+  public void before() {
+    given(calendarSvc.getName()).willReturn(PROVIDER);
+    given(otherCalendarSvc.getName()).willReturn("other");
+    store = new InMemoryDeadLetterStore(2, Clock.systemUTC());
+    eventHandler = new EmployeeTimeEventHandler(Arrays.asList(calendarSvc, otherCalendarSvc), store);
+    replayer = new DeadLetterReplayer(eventHandler, store, 2, 1000, Schedulers.immediate());
+  }
+
+  @Test
+  public void repeatedFailureIncrementsAttempts() {
+    // given
+    final SFSFEmployeeTime event = employeeTime("1");
+
+    // when
+    store.record(event, Action.CREATE, PROVIDER, new Exception("first"));
+    store.record(event, Action.CREATE, PROVIDER, new Exception("second"));
+
+    // then
+    final List<DeadLetter> deadLetters = store.list();
+    assertThat(deadLetters).hasSize(1);
+    assertThat(deadLetters.get(0).getId()).isEqualTo("1:CREATE:" + PROVIDER);
+    assertThat(deadLetters.get(0).getAttempts()).isEqualTo(2);
+    assertThat(deadLetters.get(0).getError()).isEqualTo("second");
+  }
+
+  @Test
+  public void oldestEntryIsEvictedWhenFull() {
+    // when
+    store.record(employeeTime("1"), Action.CREATE, PROVIDER, new Exception());
+    store.record(employeeTime("2"), Action.CREATE, PROVIDER, new Exception());
+    store.record(employeeTime("3"), Action.CREATE, PROVIDER, new Exception());
+
+    // then
+    assertThat(store.list()).extracting(DeadLetter::getExternalCode).containsExactly("2", "3");
+    assertThat(store.getEvictedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void entriesAreListedForTheirTenant() {
+    // given
+    store.record(employeeTime("1"), Action.CREATE, PROVIDER, new Exception());
+    final String previous = TenantContext.attach("acme");
+    try {
+      store.record(employeeTime("1"), Action.CREATE, PROVIDER, new Exception());
+
+      // when
+      final List<DeadLetter> deadLetters = store.list();
+
+      // then
+      assertThat(deadLetters).extracting(DeadLetter::getTenantId).containsExactly("acme");
+      assertThat(store.get(Arrays.asList("1:CREATE:" + PROVIDER))).hasSize(1);
+      assertThat(store.remove(deadLetters.get(0))).isTrue();
+    } finally {
+      TenantContext.restore(previous);
+    }
+    assertThat(store.list()).extracting(DeadLetter::getTenantId).containsExactly(TenantContext.DEFAULT_TENANT);
+  }
+
+  @Test
+  public void successfulReplayRemovesEntry() {
+    // given
+    final SFSFEmployeeTime event = employeeTime("1");
+    store.record(event, Action.UPDATE, PROVIDER, new Exception("outage"));
+    given(calendarSvc.update(any(), anyString())).willReturn(Observable.just(null));
+
+    // when
+    final List<EenAlertResponsePayload> responses =
+        replayer.replay(store.list(), REQUEST_ID).toList().toBlocking().single();
+
+    // then
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0).getErrorCode()).isNull();
+    assertThat(responses.get(0).getEntityId()).isEqualTo("1:UPDATE:" + PROVIDER);
+    assertThat(store.size()).isZero();
+    verify(calendarSvc).update(event, REQUEST_ID);
+    verify(otherCalendarSvc, never()).update(any(), anyString());
+  }
+
+  @Test
+  public void failureIsRecordedForTheFailingProviderOnly() {
+    // given
+    final SFSFEmployeeTime event = employeeTime("1");
+    given(calendarSvc.create(any(), anyString())).willReturn(Observable.error(new Exception("outage")));
+    given(otherCalendarSvc.create(any(), anyString())).willReturn(Observable.just(null));
+
+    // when
+    eventHandler.onCreateEvent(Observable.just(event), REQUEST_ID).toBlocking().last();
+
+    // then
+    assertThat(store.list()).extracting(DeadLetter::getProvider).containsExactly(PROVIDER);
+    verify(otherCalendarSvc).create(event, REQUEST_ID);
+  }
+
+  @Test
+  public void failedReplayIsRecordedAgain() {
+    // given
+    store.record(employeeTime("1"), Action.DELETE, PROVIDER, new Exception("outage"));
+    given(calendarSvc.cancel(any(), anyString())).willReturn(Observable.error(new Exception("still down")));
+
+    // when
+    final List<EenAlertResponsePayload> responses =
+        replayer.replay(store.list(), REQUEST_ID).toList().toBlocking().single();
+
+    // then
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0).getErrorCode()).isEqualTo(EmployeeTimeEventHandler.ERROR_STATUS_CODE);
+    final DeadLetter deadLetter = store.list().get(0);
+    assertThat(deadLetter.getAttempts()).isEqualTo(2);
+    assertThat(deadLetter.getError()).isEqualTo("still down");
+  }
+
+  private static SFSFEmployeeTime employeeTime(final String externalCode) {
+    final UserIdNav userIdNav = new UserIdNav().setJob(new EmpJob().setTimezone("US/Eastern"));
+    final OffsetDateTime dummyDate = OffsetDateTime.now();
+    final SFSFEmployeeTime employeeTime = new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
+    employeeTime.setExternalCode(externalCode);
+    return employeeTime;
+  }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.ApprovalStatus;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmployeeTimeChangePollerTest {
+
+  private static final OffsetDateTime NOW = OffsetDateTime.of(2016, 10, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+  private static final String NEXT = "https://sfsf/odata/v2/EmployeeTime?$skiptoken=1";
+
+  @Mock
+  private SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+
+  @Mock
+  private TimeoffNotificationHandler notificationHandler;
+
+  private final List<String> handled = new ArrayList<>();
+  private CheckpointStore checkpoints;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void before() {
+    checkpoints = new InMemoryCheckpointStore();
+    given(notificationHandler.onEmployeeTimes(any(), anyString())).willAnswer(invocation -> {
+      return ((Observable<SFSFEmployeeTime>) invocation.getArguments()[0])
+          .doOnNext(employeeTime -> handled.add(employeeTime.getExternalCode()))
+          .map(employeeTime -> new EenAlertResponsePayload());
+    });
+  }
+
+  @Test
+  public void pagesAreHandledAndWatermarkSaved() throws IOException {
+    // given
+    final EmployeeTimeChangePoller poller = poller(Schedulers.immediate());
+    final SFSFEmployeeTime first = employeeTime("1", 1);
+    final SFSFEmployeeTime second = employeeTime("2", 2);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusHours(1), 10)).willReturn(page(NEXT, first));
+    given(sfsfEmployeeTimeSvc.getNextPage(NEXT)).willReturn(page(null, second));
+
+    // when
+    final int changes = poller.poll().toBlocking().single();
+
+    // then
+    assertThat(changes).isEqualTo(2);
+    assertThat(handled).containsExactly("1", "2");
+    assertThat(checkpoints.load(EmployeeTimeChangePoller.WATERMARK_CHECKPOINT))
+        .isEqualTo(NOW.plusMinutes(2) + " 2");
+  }
+
+  @Test
+  public void entitiesAtSavedWatermarkAreNotHandledAfterRestart() throws IOException {
+    // given
+    final SFSFEmployeeTime first = employeeTime("1", 1);
+    final SFSFEmployeeTime second = employeeTime("2", 1);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusHours(1), 10)).willReturn(page(null, first));
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.plusMinutes(1), 10)).willReturn(page(null, first, second));
+    poller(Schedulers.immediate()).poll().toBlocking().single();
+
+    // when
+    final int changes = poller(Schedulers.immediate()).poll().toBlocking().single();
+
+    // then
+    assertThat(changes).isEqualTo(1);
+    assertThat(handled).containsExactly("1", "2");
+    assertThat(checkpoints.load(EmployeeTimeChangePoller.WATERMARK_CHECKPOINT))
+        .isEqualTo(NOW.plusMinutes(1) + " 1 2");
+  }
+
+  @Test
+  public void entitiesAtWatermarkBeyondOneCheckpointValueAreNotHandledAfterRestart() throws IOException {
+    // given
+    checkpoints = new InMemoryCheckpointStore() {
+      @Override
+      public void save(final String name, final String value) {
+        if (value.length() > CheckpointStore.MAX_VALUE_LENGTH) {
+          throw new IllegalStateException("Could not save checkpoint " + name);
+        }
+        super.save(name, value);
+      }
+    };
+    final SFSFEmployeeTime[] massApproval = new SFSFEmployeeTime[150];
+    for (int i = 0; i < massApproval.length; i++) {
+      massApproval[i] = employeeTime(String.format("%032d", i), 1);
+    }
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusHours(1), 10)).willReturn(page(null, massApproval));
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.plusMinutes(1), 10)).willReturn(page(null, massApproval));
+    final int handledBeforeRestart = poller(Schedulers.immediate()).poll().toBlocking().single();
+
+    // when
+    final int changes = poller(Schedulers.immediate()).poll().toBlocking().single();
+
+    // then
+    assertThat(handledBeforeRestart).isEqualTo(150);
+    assertThat(changes).isZero();
+    assertThat(handled).hasSize(150);
+  }
+
+  @Test
+  public void onlyEntitiesOfOwnedUsersAreHandledInClusterMode() throws IOException {
+    // given
+    final ClusterRouter clusterRouter = mock(ClusterRouter.class);
+    given(clusterRouter.getSelf()).willReturn("https://timeoff-1");
+    given(clusterRouter.owns("user-1")).willReturn(true);
+    final EmployeeTimeChangePoller poller = poller(Schedulers.immediate()).withClusterRouter(clusterRouter);
+    final SFSFEmployeeTime owned = employeeTime("1", 1);
+    owned.setUserId("user-1");
+    final SFSFEmployeeTime other = employeeTime("2", 2);
+    other.setUserId("user-2");
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusHours(1), 10)).willReturn(page(null, owned, other));
+
+    // when
+    final int changes = poller.poll().toBlocking().single();
+
+    // then
+    assertThat(changes).isEqualTo(1);
+    assertThat(handled).containsExactly("1");
+    assertThat(checkpoints.load(EmployeeTimeChangePoller.WATERMARK_CHECKPOINT + "@https://timeoff-1"))
+        .isEqualTo(NOW.plusMinutes(2) + " 2");
+    assertThat(checkpoints.load(EmployeeTimeChangePoller.WATERMARK_CHECKPOINT)).isNull();
+  }
+
+  @Test
+  public void entitiesAtWatermarkAreNotHandledAgain() throws IOException {
+    // given
+    checkpoints.save(EmployeeTimeChangePoller.WATERMARK_CHECKPOINT, NOW.toString());
+    final EmployeeTimeChangePoller poller = poller(Schedulers.immediate());
+    final SFSFEmployeeTime first = employeeTime("1", 1);
+    final SFSFEmployeeTime second = employeeTime("2", 1);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW, 10)).willReturn(page(null, first));
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.plusMinutes(1), 10)).willReturn(page(null, first, second));
+
+    // when
+    poller.poll().toBlocking().single();
+    final int changes = poller.poll().toBlocking().single();
+
+    // then
+    assertThat(changes).isEqualTo(1);
+    assertThat(handled).containsExactly("1", "2");
+  }
+
+  @Test
+  public void intervalShortensOnChangesAndBacksOffWhenIdle() throws IOException {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    final EmployeeTimeChangePoller poller = poller(scheduler);
+    given(sfsfEmployeeTimeSvc.getChangedSince(any(), any(Integer.class))).willReturn(page(null));
+
+    // when
+    poller.start();
+    scheduler.triggerActions();
+
+    // then
+    assertThat(poller.getIntervalMillis()).isEqualTo(TimeUnit.SECONDS.toMillis(20));
+    scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+    assertThat(poller.getIntervalMillis()).isEqualTo(TimeUnit.SECONDS.toMillis(40));
+    scheduler.advanceTimeBy(40, TimeUnit.SECONDS);
+    assertThat(poller.getIntervalMillis()).isEqualTo(TimeUnit.SECONDS.toMillis(60));
+
+    given(sfsfEmployeeTimeSvc.getChangedSince(any(), any(Integer.class))).willReturn(page(null, employeeTime("1", 1)));
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+    assertThat(poller.getIntervalMillis()).isEqualTo(TimeUnit.SECONDS.toMillis(10));
+
+    poller.stop();
+  }
+
+  private EmployeeTimeChangePoller poller(final rx.Scheduler scheduler) {
+    return new EmployeeTimeChangePoller(sfsfEmployeeTimeSvc, notificationHandler, checkpoints, 10,
+        Duration.ofSeconds(10), Duration.ofSeconds(60), Duration.ofHours(1),
+        Clock.fixed(Instant.from(NOW), ZoneOffset.UTC), scheduler);
+  }
+
+  private static SFSFEmployeeTimeList page(final String next, final SFSFEmployeeTime... employeeTimes) {
+    final SFSFEmployeeTimeList page = new SFSFEmployeeTimeList();
+    page.setResults(Arrays.asList(employeeTimes));
+    page.setNext(next);
+    return page;
+  }
+
+  private static SFSFEmployeeTime employeeTime(final String externalCode, final int modifiedMinutes) {
+    final UserIdNav userIdNav = new UserIdNav().setJob(new EmpJob().setTimezone("UTC"));
+    final OffsetDateTime start = NOW.plusDays(7);
+    final SFSFEmployeeTime employeeTime =
+        new SFSFEmployeeTime(start, start.plusDays(2), userIdNav, NOW, NOW.plusMinutes(modifiedMinutes));
+    employeeTime.setExternalCode(externalCode);
+    employeeTime.setApprovalStatus(ApprovalStatus.APPROVED);
+    return employeeTime;
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+public class EmployeeTimeEventCoalescerTest {
+
+  private static final String EXTERNAL_CODE = "123456789";
+
+  private final TestScheduler scheduler = Schedulers.test();
+  private EmployeeTimeEventCoalescer coalescer;
+
+  @Before
+  public void before() {
+    coalescer = new EmployeeTimeEventCoalescer(100, scheduler);
+  }
+
+  @Test
+  public void disabledCoalescerPassesEventsThrough() {
+    // given
+    final EmployeeTimeEventCoalescer disabled = new EmployeeTimeEventCoalescer(0, scheduler);
+    final SFSFEmployeeTime event = employeeTime(Action.UPDATE);
+
+    // when
+    final TestSubscriber<SFSFEmployeeTime> subscriber = subscribe(disabled, event);
+
+    // then
+    subscriber.assertValue(event);
+    assertThat(disabled.getAppliedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void updatesAreCoalescedIntoLastOne() {
+    // given
+    final SFSFEmployeeTime first = employeeTime(Action.UPDATE);
+    final SFSFEmployeeTime second = employeeTime(Action.UPDATE);
+
+    // when
+    final TestSubscriber<SFSFEmployeeTime> firstSubscriber = subscribe(coalescer, first);
+    final TestSubscriber<SFSFEmployeeTime> secondSubscriber = subscribe(coalescer, second);
+    firstSubscriber.assertNoTerminalEvent();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    firstSubscriber.assertValue(second);
+    secondSubscriber.assertValue(second);
+    assertThat(second.getAction()).isEqualTo(Action.UPDATE);
+    assertThat(coalescer.getSupersededCount()).isEqualTo(1);
+    assertThat(coalescer.getAppliedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void createFollowedByUpdateIsAppliedAsCreate() {
+    // given
+    final SFSFEmployeeTime update = employeeTime(Action.UPDATE);
+
+    // when
+    subscribe(coalescer, employeeTime(Action.CREATE));
+    final TestSubscriber<SFSFEmployeeTime> subscriber = subscribe(coalescer, update);
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    subscriber.assertValueCount(1);
+    assertThat(subscriber.getOnNextEvents().get(0).getAction()).isEqualTo(Action.CREATE);
+    assertThat(update.getAction()).isEqualTo(Action.UPDATE);
+  }
+
+  @Test
+  public void supersededEventGetsTheResultOfTheSurvivor() {
+    // given
+    final AtomicInteger handled = new AtomicInteger();
+    final Func1<SFSFEmployeeTime, Observable<String>> failing = event -> Observable.defer(() -> {
+      handled.incrementAndGet();
+      return Observable.error(new IllegalStateException("calendar down"));
+    });
+
+    // when
+    final TestSubscriber<String> first = new TestSubscriber<>();
+    coalescer.coalesce(EXTERNAL_CODE, employeeTime(Action.UPDATE), failing).subscribe(first);
+    final TestSubscriber<String> second = new TestSubscriber<>();
+    coalescer.coalesce(EXTERNAL_CODE, employeeTime(Action.UPDATE), failing).subscribe(second);
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    first.assertError(IllegalStateException.class);
+    second.assertError(IllegalStateException.class);
+    assertThat(handled.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void heldRequestsCompleteWhenHandlerThrows() {
+    // given
+    final Func1<SFSFEmployeeTime, Observable<String>> throwing = event -> {
+      throw new IllegalStateException("calendar down");
+    };
+
+    // when
+    final TestSubscriber<String> first = new TestSubscriber<>();
+    coalescer.coalesce(EXTERNAL_CODE, employeeTime(Action.UPDATE), throwing).subscribe(first);
+    final TestSubscriber<String> second = new TestSubscriber<>();
+    coalescer.coalesce(EXTERNAL_CODE, employeeTime(Action.UPDATE), throwing).subscribe(second);
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    first.assertError(IllegalStateException.class);
+    second.assertError(IllegalStateException.class);
+  }
+
+  @Test
+  public void createFollowedByCancelDoesNothing() {
+    // when
+    final TestSubscriber<SFSFEmployeeTime> create = subscribe(coalescer, employeeTime(Action.CREATE));
+    final TestSubscriber<SFSFEmployeeTime> cancel = subscribe(coalescer, employeeTime(Action.DELETE));
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    create.assertNoValues();
+    create.assertCompleted();
+    cancel.assertNoValues();
+    cancel.assertCompleted();
+    assertThat(coalescer.getCancelledOutCount()).isEqualTo(1);
+    assertThat(coalescer.getAppliedCount()).isZero();
+    assertThat(coalescer.getReceivedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void eventAfterWindowOpensNewWindow() {
+    // given
+    final SFSFEmployeeTime create = employeeTime(Action.CREATE);
+    final SFSFEmployeeTime cancel = employeeTime(Action.DELETE);
+
+    // when
+    final TestSubscriber<SFSFEmployeeTime> createSubscriber = subscribe(coalescer, create);
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    final TestSubscriber<SFSFEmployeeTime> cancelSubscriber = subscribe(coalescer, cancel);
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // then
+    createSubscriber.assertValue(create);
+    cancelSubscriber.assertValue(cancel);
+    assertThat(coalescer.getAppliedCount()).isEqualTo(2);
+  }
+
+  private static TestSubscriber<SFSFEmployeeTime> subscribe(final EmployeeTimeEventCoalescer coalescer,
+      final SFSFEmployeeTime event) {
+    final TestSubscriber<SFSFEmployeeTime> subscriber = new TestSubscriber<>();
+    coalescer.coalesce(EXTERNAL_CODE, event, Observable::just).subscribe(subscriber);
+    return subscriber;
+  }
+
+  private static SFSFEmployeeTime employeeTime(final Action action) {
+    final UserIdNav userIdNav = new UserIdNav().setJob(new EmpJob().setTimezone("US/Eastern"));
+    final OffsetDateTime dummyDate = OffsetDateTime.now();
+    final SFSFEmployeeTime employeeTime = new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
+    employeeTime.setAction(action);
+    return employeeTime;
+  }
+}
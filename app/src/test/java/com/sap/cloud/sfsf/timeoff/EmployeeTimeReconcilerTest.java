@@ -0,0 +1,205 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.sap.cloud.sfsf.timeoff.EmployeeTimeReconciler.Change;
+import com.sap.cloud.sfsf.timeoff.EmployeeTimeReconciler.Report;
+import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.ApprovalStatus;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmployeeTimeReconcilerTest {
+
+  private static final OffsetDateTime NOW = OffsetDateTime.of(2016, 10, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+  private static final String NEXT = "https://sfsf/odata/v2/EmployeeTime?$skiptoken=1";
+
+  @Mock
+  private SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+
+  @Mock
+  private CalendarServiceProvider calendarSvc;
+
+  private CheckpointStore checkpoints;
+  private EmployeeTimeReconciler reconciler;
+
+  @Before
+  public void before() {
+    checkpoints = new InMemoryCheckpointStore();
+    reconciler = new EmployeeTimeReconciler(sfsfEmployeeTimeSvc, Arrays.asList(calendarSvc), checkpoints, 10, 2, 0,
+        Duration.ofDays(1), Clock.fixed(Instant.from(NOW), ZoneOffset.UTC), Schedulers.immediate());
+  }
+
+  @Test
+  public void minimalChangesAreApplied() throws IOException {
+    // given
+    final SFSFEmployeeTime missing = employeeTime("1", ApprovalStatus.APPROVED, 1);
+    final SFSFEmployeeTime moved = employeeTime("2", ApprovalStatus.APPROVED, 2);
+    final SFSFEmployeeTime same = employeeTime("3", ApprovalStatus.APPROVED, 3);
+    final SFSFEmployeeTime cancelled = employeeTime("4", ApprovalStatus.CANCELLED, 4);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusDays(1), 10)).willReturn(page(NEXT, missing, moved));
+    given(sfsfEmployeeTimeSvc.getNextPage(NEXT)).willReturn(page(null, same, cancelled));
+    given(calendarSvc.getOutOfOffice(missing)).willReturn(Observable.empty());
+    given(calendarSvc.getOutOfOffice(moved)).willReturn(Observable.just(event(moved).setStart(NOW.toZonedDateTime())));
+    given(calendarSvc.getOutOfOffice(same)).willReturn(Observable.just(event(same)));
+    given(calendarSvc.getOutOfOffice(cancelled)).willReturn(Observable.just(event(cancelled)));
+    given(calendarSvc.create(any(), anyString())).willReturn(Observable.just(null));
+    given(calendarSvc.update(any(), anyString())).willReturn(Observable.just(null));
+    given(calendarSvc.cancel(any(), anyString())).willReturn(Observable.empty());
+
+    // when
+    final Report report = reconciler.reconcile().toBlocking().single();
+
+    // then
+    assertThat(report.getEntities()).isEqualTo(4);
+    assertThat(report.getCount(Change.CREATED)).isEqualTo(1);
+    assertThat(report.getCount(Change.UPDATED)).isEqualTo(1);
+    assertThat(report.getCount(Change.UNCHANGED)).isEqualTo(1);
+    assertThat(report.getCount(Change.CANCELLED)).isEqualTo(1);
+    verify(calendarSvc).create(eq(missing), anyString());
+    verify(calendarSvc).update(eq(moved), anyString());
+    verify(calendarSvc).cancel(eq(cancelled), anyString());
+    verify(calendarSvc, never()).update(eq(same), anyString());
+    assertThat(OffsetDateTime.parse(checkpoints.load(EmployeeTimeReconciler.WATERMARK_CHECKPOINT)))
+        .isEqualTo(NOW.plusMinutes(4));
+  }
+
+  @Test
+  public void failureHoldsWatermark() throws IOException {
+    // given
+    checkpoints.save(EmployeeTimeReconciler.WATERMARK_CHECKPOINT, NOW.toString());
+    final SFSFEmployeeTime first = employeeTime("1", ApprovalStatus.APPROVED, 1);
+    final SFSFEmployeeTime failing = employeeTime("2", ApprovalStatus.APPROVED, 2);
+    final SFSFEmployeeTime last = employeeTime("3", ApprovalStatus.APPROVED, 3);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW, 10)).willReturn(page(null, first, failing, last));
+    given(calendarSvc.getOutOfOffice(first)).willReturn(Observable.just(event(first)));
+    given(calendarSvc.getOutOfOffice(failing)).willReturn(Observable.error(new IOException("calendar down")));
+    given(calendarSvc.getOutOfOffice(last)).willReturn(Observable.just(event(last)));
+
+    // when
+    final Report report = reconciler.reconcile().toBlocking().single();
+
+    // then
+    assertThat(report.getFailedEntities()).isEqualTo(1);
+    assertThat(report.getCount(Change.UNCHANGED)).isEqualTo(2);
+    assertThat(OffsetDateTime.parse(checkpoints.load(EmployeeTimeReconciler.WATERMARK_CHECKPOINT)))
+        .isEqualTo(NOW.plusMinutes(1));
+  }
+
+  @Test
+  public void catchUpRunsOnceAfterTheDelayUntilItCompletes() throws IOException {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    reconciler = new EmployeeTimeReconciler(sfsfEmployeeTimeSvc, Arrays.asList(calendarSvc), checkpoints, 10, 2, 0,
+        Duration.ofDays(1), Clock.fixed(Instant.from(NOW), ZoneOffset.UTC), scheduler)
+            .withCatchUpDelay(Duration.ofMinutes(1));
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW.minusDays(1), 10)).willThrow(new IOException("SFSF down"))
+        .willReturn(page(null));
+
+    // when
+    reconciler.requestCatchUp();
+    reconciler.requestCatchUp();
+
+    // then
+    scheduler.advanceTimeBy(59, TimeUnit.SECONDS);
+    verify(sfsfEmployeeTimeSvc, never()).getChangedSince(any(), any(Integer.class));
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    verify(sfsfEmployeeTimeSvc).getChangedSince(NOW.minusDays(1), 10);
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    verify(sfsfEmployeeTimeSvc, times(2)).getChangedSince(NOW.minusDays(1), 10);
+    scheduler.advanceTimeBy(10, TimeUnit.MINUTES);
+    verify(sfsfEmployeeTimeSvc, times(2)).getChangedSince(NOW.minusDays(1), 10);
+  }
+
+  @Test
+  public void entityFailingEveryRunIsDeadLettered() throws IOException {
+    // given
+    final DeadLetterStore deadLetters = new InMemoryDeadLetterStore(10, Clock.systemUTC());
+    reconciler.withDeadLetters(deadLetters, 2);
+    given(calendarSvc.getName()).willReturn("calendar");
+    checkpoints.save(EmployeeTimeReconciler.WATERMARK_CHECKPOINT, NOW.toString());
+    final SFSFEmployeeTime failing = employeeTime("1", ApprovalStatus.APPROVED, 1);
+    final SFSFEmployeeTime last = employeeTime("2", ApprovalStatus.APPROVED, 2);
+    given(sfsfEmployeeTimeSvc.getChangedSince(NOW, 10)).willReturn(page(null, failing, last));
+    given(calendarSvc.getOutOfOffice(failing)).willReturn(Observable.empty());
+    given(calendarSvc.create(any(), anyString())).willReturn(Observable.error(new IOException("calendar down")));
+    given(calendarSvc.getOutOfOffice(last)).willReturn(Observable.just(event(last)));
+
+    // when
+    final Report first = reconciler.reconcile().toBlocking().single();
+    final Report second = reconciler.reconcile().toBlocking().single();
+
+    // then
+    assertThat(first.getWatermark()).isEqualTo(NOW);
+    assertThat(first.getDeadLetteredEntities()).isZero();
+    assertThat(second.getDeadLetteredEntities()).isEqualTo(1);
+    assertThat(second.getWatermark()).isEqualTo(NOW.plusMinutes(2));
+    assertThat(deadLetters.list()).extracting(DeadLetter::getId).containsExactly("1:CREATE:calendar");
+  }
+
+  private static SFSFEmployeeTimeList page(final String next, final SFSFEmployeeTime... employeeTimes) {
+    final SFSFEmployeeTimeList page = new SFSFEmployeeTimeList();
+    page.setResults(Arrays.asList(employeeTimes));
+    page.setNext(next);
+    return page;
+  }
+
+  private static CalendarEvent event(final SFSFEmployeeTime employeeTime) {
+    return new CalendarEvent().setId(employeeTime.getExternalCode()).setStart(employeeTime.getStartDate())
+        .setEnd(employeeTime.getEndDate());
+  }
+
+  private static SFSFEmployeeTime employeeTime(final String externalCode, final ApprovalStatus status,
+      final int modifiedMinutes) {
+    final UserIdNav userIdNav = new UserIdNav().setJob(new EmpJob().setTimezone("UTC"));
+    final OffsetDateTime start = NOW.plusDays(7);
+    final SFSFEmployeeTime employeeTime =
+        new SFSFEmployeeTime(start, start.plusDays(2), userIdNav, NOW, NOW.plusMinutes(modifiedMinutes));
+    employeeTime.setExternalCode(externalCode);
+    employeeTime.setApprovalStatus(status);
+    return employeeTime;
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import javax.sql.DataSource;
+
+import com.sap.cloud.sfsf.timeoff.entity.DeadLetter;
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
+import com.sap.cloud.sfsf.timeoff.entity.TimeTypeNav;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JdbcDeadLetterStoreTest {
+
+  private static final String PROVIDER = "calendar";
+
+  @Mock
+  private DataSource dataSource;
+
+  @Mock
+  private Connection connection;
+
+  @Mock
+  private DatabaseMetaData metaData;
+
+  @Mock
+  private PreparedStatement statement;
+
+  @Mock
+  private ResultSet resultSet;
+
+  private JdbcDeadLetterStore store;
+
+  @Before
+  public void before() throws SQLException {
+    given(dataSource.getConnection()).willReturn(connection);
+    given(connection.getMetaData()).willReturn(metaData);
+    given(metaData.getTables(any(), any(), anyString(), any())).willReturn(resultSet);
+    given(connection.prepareStatement(anyString())).willReturn(statement);
+    given(statement.executeQuery()).willReturn(resultSet);
+    given(resultSet.next()).willReturn(true);
+    store = new JdbcDeadLetterStore(dataSource, Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+  }
+
+  @Test
+  public void snapshotKeepsTheEmployeeTime() {
+    // given
+    final SFSFEmployeeTime event = employeeTime("1");
+
+    // when
+    final SFSFEmployeeTime snapshot = JdbcDeadLetterStore.deserialize(JdbcDeadLetterStore.serialize(event));
+
+    // then
+    assertThat(snapshot.getExternalCode()).isEqualTo("1");
+    assertThat(snapshot.getStartDate()).isEqualTo(event.getStartDate());
+    assertThat(snapshot.getUserIdNav().getJob().getTimezone()).isEqualTo("US/Eastern");
+    assertThat(snapshot.getTimeTypeNav().getTitle()).isEqualTo(event.getTimeTypeNav().getTitle());
+  }
+
+  @Test
+  public void failureRecordedConcurrentlyByAnotherNodeIsCounted() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(0).willThrow(new SQLException("duplicate key", "23505"))
+        .willReturn(1);
+    given(resultSet.getInt(1)).willReturn(2);
+
+    // when
+    final DeadLetter deadLetter = store.record(employeeTime("1"), Action.CREATE, PROVIDER, new Exception("outage"));
+
+    // then
+    assertThat(deadLetter.getId()).isEqualTo("1:CREATE:" + PROVIDER);
+    assertThat(deadLetter.getProvider()).isEqualTo(PROVIDER);
+    assertThat(deadLetter.getAttempts()).isEqualTo(2);
+    verify(statement, times(3)).executeUpdate();
+  }
+
+  @Test
+  public void removeOnlyDeletesTheReplayedAttempt() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(0);
+    final DeadLetter deadLetter =
+        new DeadLetter("1:CREATE:" + PROVIDER, "tenant", employeeTime("1"), Action.CREATE, PROVIDER, "outage", 3,
+            Instant.EPOCH);
+
+    // when
+    final boolean removed = store.remove(deadLetter);
+
+    // then
+    assertThat(removed).isFalse();
+    verify(statement).setInt(3, 3);
+  }
+
+  private static SFSFEmployeeTime employeeTime(final String externalCode) {
+    final UserIdNav userIdNav = new UserIdNav().setJob(new EmpJob().setTimezone("US/Eastern"));
+    final OffsetDateTime dummyDate = OffsetDateTime.now();
+    final SFSFEmployeeTime employeeTime = new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
+    employeeTime.setExternalCode(externalCode);
+    employeeTime.setTimeTypeNav(new TimeTypeNav());
+    return employeeTime;
+  }
+}
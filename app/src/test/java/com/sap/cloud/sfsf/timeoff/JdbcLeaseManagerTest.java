@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JdbcLeaseManagerTest {
+
+  private static final String LEASE = "calendar/user-1";
+
+  @Mock
+  private DataSource dataSource;
+
+  @Mock
+  private Connection connection;
+
+  @Mock
+  private DatabaseMetaData metaData;
+
+  @Mock
+  private PreparedStatement statement;
+
+  @Mock
+  private ResultSet resultSet;
+
+  private JdbcLeaseManager leaseManager;
+
+  @Before
+  public void before() throws SQLException {
+    given(dataSource.getConnection()).willReturn(connection);
+    given(connection.getMetaData()).willReturn(metaData);
+    given(metaData.getTables(any(), any(), anyString(), any())).willReturn(resultSet);
+    given(connection.prepareStatement(anyString())).willReturn(statement);
+    given(statement.executeQuery()).willReturn(resultSet);
+    given(resultSet.next()).willReturn(true);
+    given(resultSet.getLong(1)).willReturn(7L);
+    leaseManager = new JdbcLeaseManager(dataSource, Duration.ofSeconds(10), Duration.ZERO,
+        Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+  }
+
+  @Test
+  public void heldLeaseIsReusedWithoutTheTable() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(1);
+
+    // when
+    final String first = leaseManager.withLease(LEASE, Observable.just("first")).toBlocking().single();
+    final String second = leaseManager.withLease(LEASE, Observable.just("second")).toBlocking().single();
+
+    // then
+    assertThat(first).isEqualTo("first");
+    assertThat(second).isEqualTo("second");
+    verify(dataSource, times(1)).getConnection();
+  }
+
+  @Test(expected = LeaseUnavailableException.class)
+  public void leaseHeldByAnotherNodeIsUnavailable() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(0).willThrow(new SQLException("duplicate key", "23505"));
+
+    // when
+    leaseManager.withLease(LEASE, Observable.just("work")).toBlocking().single();
+  }
+
+  @Test
+  public void leaseTakenOverByAnotherNodeIsTakenAgain() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(1);
+    final JdbcLeaseManager.Lease taken = leaseManager.acquire(LEASE);
+    given(statement.executeBatch()).willReturn(new int[] {0});
+
+    // when
+    leaseManager.renew();
+    leaseManager.release(taken);
+    final JdbcLeaseManager.Lease retaken = leaseManager.acquire(LEASE);
+
+    // then
+    assertThat(taken.isValid(0)).isFalse();
+    assertThat(retaken).isNotSameAs(taken);
+    assertThat(retaken.getToken()).isEqualTo(7L);
+  }
+
+  @Test
+  public void workOnTheSameLeaseRunsOneAtATimeOnThisNode() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(1);
+    final JdbcLeaseManager.Lease first = leaseManager.acquire(LEASE);
+
+    // when
+    final Throwable whileInUse =
+        catchThrowable(() -> leaseManager.withLease(LEASE, Observable.just("second")).toBlocking().single());
+    leaseManager.release(first);
+    final String afterRelease = leaseManager.withLease(LEASE, Observable.just("second")).toBlocking().single();
+
+    // then
+    assertThat(whileInUse).isInstanceOf(LeaseUnavailableException.class);
+    assertThat(afterRelease).isEqualTo("second");
+    verify(dataSource, times(1)).getConnection();
+  }
+
+  @Test
+  public void waitingForTheLeaseDoesNotBlockTheSubscribingThread() throws SQLException {
+    // given
+    given(statement.executeUpdate()).willReturn(1);
+    final JdbcLeaseManager waiting = new JdbcLeaseManager(dataSource, Duration.ofSeconds(10), Duration.ofSeconds(5),
+        Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+    final JdbcLeaseManager.Lease first = waiting.acquire(LEASE);
+
+    // when
+    final TestSubscriber<String> second = new TestSubscriber<>();
+    waiting.withLease(LEASE, Observable.just("second")).subscribe(second);
+
+    // then
+    second.assertNoTerminalEvent();
+    waiting.release(first);
+    second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+    second.assertValue("second");
+  }
+}
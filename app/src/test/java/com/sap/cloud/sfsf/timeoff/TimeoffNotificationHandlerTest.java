@@ -17,6 +17,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -24,9 +27,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 
+import com.sap.cloud.commons.http.CircuitOpenException;
 import com.sap.cloud.sfsf.notification.EenAlertRequestData;
 import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
 import com.sap.cloud.sfsf.notification.Events;
@@ -39,6 +45,7 @@ import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTimeList;
 import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.Action;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime.ApprovalStatus;
 
 import org.ehcache.Cache;
@@ -58,6 +65,10 @@ public class TimeoffNotificationHandlerTest {
 
   private static final String EXTERNAL_CODE = "123456789";
 
+  private static final String SELF_NODE = "https://timeoff-1";
+  private static final String OTHER_NODE = "https://timeoff-2";
+  private static final String EMPLOYEE_TIME_JSON = "{\"d\":{\"externalCode\":\"123456789\"}}";
+
   private static final String ERROR_MSG_PREFIX =
       "[" + TEST_REQUEST_ID + "] " + TimeoffNotificationHandler.ERROR_MESSAGE + ": ";
 
@@ -221,6 +232,7 @@ public class TimeoffNotificationHandlerTest {
 
     expectedResponse.setErrorCode("500");
     expectedResponse.setErrorMessage(ERROR_MSG_PREFIX + "IO issues");
+    expectedResponse.setEntityId(EXTERNAL_CODE);
 
     given(timeOffClientMock.getTimeoffEvent(EXTERNAL_CODE)).willThrow(new IOException("IO issues"));
 
@@ -237,12 +249,33 @@ public class TimeoffNotificationHandlerTest {
 
   }
 
+  @Test
+  public void testEventsRejectedByOpenCircuitRequestCatchUp() throws Exception {
+    // given
+    final EmployeeTimeReconciler reconciler = mock(EmployeeTimeReconciler.class);
+    handler.setReconciler(reconciler);
+    given(timeOffClientMock.getTimeoffEvent(EXTERNAL_CODE)).willThrow(new CircuitOpenException("sfsf"));
+    final Param param = new Param();
+    param.setName("externalCode");
+    param.setValue(EXTERNAL_CODE);
+
+    // when
+    final EenAlertResponsePayload response =
+        handler.onNotification(getEvent(param), TEST_REQUEST_ID).toBlocking().single();
+
+    // then
+    assertThat(response.getErrorCode()).isEqualTo("500");
+    verify(reconciler).requestCatchUp();
+    verify(timeOffClientMock).getTimeoffEvent(EXTERNAL_CODE);
+  }
+
   @Test
   public void testFailOnSFSFEventTypeNotSupported() throws Exception {
 
     expectedResponse.setErrorCode("500");
     expectedResponse.setErrorMessage(
         ERROR_MSG_PREFIX + "Unsupported EmployeeTime approval status. Supported statuses - APPROVED, CANCELLED");
+    expectedResponse.setEntityId(EXTERNAL_CODE);
 
     final SFSFEmployeeTime sfsfEmployeeTime =
         new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
@@ -267,6 +300,7 @@ public class TimeoffNotificationHandlerTest {
 
     expectedResponse.setErrorCode("500");
     expectedResponse.setErrorMessage(ERROR_MSG_PREFIX + "EmployeeTime entity with id 123456789 is not found");
+    expectedResponse.setEntityId(EXTERNAL_CODE);
 
     given(timeOffClientMock.getTimeoffEvent(EXTERNAL_CODE)).willThrow(new FileNotFoundException("ops"));
 
@@ -348,6 +382,157 @@ public class TimeoffNotificationHandlerTest {
 
   }
 
+  @Test
+  public void testEmployeeTimesAreHandledWithoutFetchingThemAgain() throws Exception {
+    // given
+    expectedResponse.setStatus(HttpServletResponse.SC_CREATED);
+    given(employeeTimeEventHandlerMock.onCreateEvent(any(), anyString())).willReturn(Observable.just(expectedResponse));
+    final SFSFEmployeeTime approved = new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
+    approved.setApprovalStatus(ApprovalStatus.APPROVED);
+    approved.setUserId("user-1");
+    approved.setExternalCode("1");
+    final SFSFEmployeeTime pending = new SFSFEmployeeTime(dummyDate, dummyDate, userIdNav, dummyDate, dummyDate);
+    pending.setApprovalStatus(ApprovalStatus.PENDING);
+    pending.setExternalCode("2");
+    final SFSFEmployeeTimeList sfsfEmployeeTimeList = new SFSFEmployeeTimeList();
+    given(cacheMock.get("user-1")).willReturn(sfsfEmployeeTimeList);
+
+    // when
+    final List<EenAlertResponsePayload> responses =
+        handler.onEmployeeTimes(Observable.just(approved, pending), TEST_REQUEST_ID).toList().toBlocking().single();
+
+    // then
+    assertThat(responses).hasSize(2);
+    assertThat(responses.get(0)).isSameAs(expectedResponse);
+    assertThat(responses.get(0).getEntityId()).isEqualTo("1");
+    assertThat(responses.get(1).getEntityId()).isEqualTo("2");
+    assertThat(responses.get(1).getErrorMessage()).isEqualTo(
+        ERROR_MSG_PREFIX + "Unsupported EmployeeTime approval status. Supported statuses - APPROVED, CANCELLED");
+    assertThat(approved.getAction()).isEqualTo(Action.CREATE);
+    assertThat(sfsfEmployeeTimeList.getResults()).containsOnly(approved);
+    verify(employeeTimeEventHandlerMock).onCreateEvent(any(), eq(TEST_REQUEST_ID));
+    verify(cacheMock).get("user-1");
+    verify(cacheMock).put("user-1", sfsfEmployeeTimeList);
+  }
+
+  @Test
+  public void testOtherEntityTypesAreLeftAlone() {
+    final Param param = new Param();
+    param.setName("userId");
+    param.setValue("user-1");
+    final Events events = getEvent(param);
+    events.getEvent().get(0).setEntityType("User");
+
+    final Boolean empty = handler.onNotification(events, TEST_REQUEST_ID).isEmpty().toBlocking().single();
+
+    assertThat(empty).isTrue();
+  }
+
+  @Test
+  public void testEventsOfUsersOwnedElsewhereAreForwardedWithTheirEmployeeTime() throws Exception {
+    // given
+    final ClusterRouter router = clusterRouter();
+    given(router.forward(eq(OTHER_NODE), any(), any(), eq(TEST_REQUEST_ID)))
+        .willAnswer(invocation -> Observable.just(expectedResponse)
+            .filter(response -> ((Map<?, ?>) invocation.getArguments()[2]).containsValue(EMPLOYEE_TIME_JSON)));
+    final Param param = new Param();
+    param.setName("externalCode");
+    param.setValue(EXTERNAL_CODE);
+
+    // when
+    final EenAlertResponsePayload response =
+        handler.onNotification(getEvent(param), TEST_REQUEST_ID).toBlocking().single();
+
+    // then
+    assertThat(response).isSameAs(expectedResponse);
+    verify(timeOffClientMock).getTimeoffEventJson(EXTERNAL_CODE);
+    verify(timeOffClientMock).parseTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock, never()).getTimeoffEvent(anyString());
+  }
+
+  @Test
+  public void testEventsAreHandledHereIfForwardingFails() throws Exception {
+    // given
+    final ClusterRouter router = clusterRouter();
+    given(router.forward(eq(OTHER_NODE), any(), any(), eq(TEST_REQUEST_ID)))
+        .willReturn(Observable.error(new IllegalStateException("node down")));
+    given(timeOffClientMock.readTimeoffEvent(EMPLOYEE_TIME_JSON)).willThrow(new IOException("IO issues"));
+    final Param param = new Param();
+    param.setName("externalCode");
+    param.setValue(EXTERNAL_CODE);
+
+    // when
+    final EenAlertResponsePayload response =
+        handler.onNotification(getEvent(param), TEST_REQUEST_ID).toBlocking().single();
+
+    // then
+    assertThat(response.getErrorMessage()).isEqualTo(ERROR_MSG_PREFIX + "IO issues");
+    verify(timeOffClientMock).getTimeoffEventJson(EXTERNAL_CODE);
+    verify(timeOffClientMock).parseTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock).readTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock, never()).getTimeoffEvent(anyString());
+  }
+
+  @Test
+  public void testEventsOwnedHereAreReadOnce() throws Exception {
+    // given
+    final ClusterRouter router = clusterRouter();
+    given(router.ownerOf("user-1")).willReturn(SELF_NODE);
+    given(timeOffClientMock.readTimeoffEvent(EMPLOYEE_TIME_JSON)).willThrow(new IOException("IO issues"));
+    final Param param = new Param();
+    param.setName("externalCode");
+    param.setValue(EXTERNAL_CODE);
+
+    // when
+    final EenAlertResponsePayload response =
+        handler.onNotification(getEvent(param), TEST_REQUEST_ID).toBlocking().single();
+
+    // then
+    assertThat(response.getErrorMessage()).isEqualTo(ERROR_MSG_PREFIX + "IO issues");
+    verify(timeOffClientMock).getTimeoffEventJson(EXTERNAL_CODE);
+    verify(timeOffClientMock).parseTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock).readTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock, never()).getTimeoffEvent(anyString());
+  }
+
+  @Test
+  public void testForwardedEventsUseTheSignedEmployeeTime() throws Exception {
+    // given
+    final ClusterRouter router = clusterRouter();
+    given(router.employeeTimeOf(any())).willReturn(EMPLOYEE_TIME_JSON);
+    given(timeOffClientMock.readTimeoffEvent(EMPLOYEE_TIME_JSON)).willThrow(new IOException("IO issues"));
+    final Param param = new Param();
+    param.setName("externalCode");
+    param.setValue(EXTERNAL_CODE);
+    final Events events = getEvent(param);
+    final Param forwardedBy = new Param();
+    forwardedBy.setName(ClusterRouter.FORWARDED_BY_PARAM);
+    forwardedBy.setValue(OTHER_NODE);
+    events.getEvent().get(0).setParams(new EenAlertRequestData.Params());
+    events.getEvent().get(0).getParams().getParam().add(forwardedBy);
+
+    // when
+    final EenAlertResponsePayload response = handler.onNotification(events, TEST_REQUEST_ID).toBlocking().single();
+
+    // then
+    assertThat(response.getErrorMessage()).isEqualTo(ERROR_MSG_PREFIX + "IO issues");
+    verify(timeOffClientMock).readTimeoffEvent(EMPLOYEE_TIME_JSON);
+    verify(timeOffClientMock, never()).getTimeoffEventJson(anyString());
+    verify(timeOffClientMock, never()).getTimeoffEvent(anyString());
+  }
+
+  private ClusterRouter clusterRouter() throws IOException {
+    final ClusterRouter router = mock(ClusterRouter.class);
+    final SFSFEmployeeTime employeeTime = mock(SFSFEmployeeTime.class);
+    given(employeeTime.getUserId()).willReturn("user-1");
+    given(router.getSelf()).willReturn(SELF_NODE);
+    given(router.ownerOf("user-1")).willReturn(OTHER_NODE);
+    given(timeOffClientMock.getTimeoffEventJson(EXTERNAL_CODE)).willReturn(EMPLOYEE_TIME_JSON);
+    given(timeOffClientMock.parseTimeoffEvent(EMPLOYEE_TIME_JSON)).willReturn(employeeTime);
+    handler.setClusterRouter(router);
+    return router;
+  }
+
   private Events getEvent(final Param param) {
     final Events events = new Events();
     final EenAlertRequestData eenAlertRequestData = new EenAlertRequestData();
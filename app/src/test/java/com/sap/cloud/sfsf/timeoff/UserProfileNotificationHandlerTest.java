@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.List;
+
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData.EntityKeys;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.Events;
+import com.sap.cloud.sfsf.notification.Param;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserProfileNotificationHandlerTest {
+
+  @Mock
+  private SFSFEmployeeTimeService sfsfEmployeeTimeSvc;
+
+  private UserProfileNotificationHandler handler;
+
+  @Before
+  public void before() {
+    handler = new UserProfileNotificationHandler(sfsfEmployeeTimeSvc);
+  }
+
+  @Test
+  public void userAndJobChangesInvalidateProfiles() {
+    // given
+    final Events events = new Events();
+    events.getEvent().add(event("User", "userId", "user-1"));
+    events.getEvent().add(event("EmpJob", "userId", "user-2"));
+    events.getEvent().add(event("EmployeeTime", "externalCode", "1"));
+
+    // when
+    final List<EenAlertResponsePayload> responses =
+        handler.onNotification(events, "request-id").toList().toBlocking().single();
+
+    // then
+    assertThat(responses).extracting(EenAlertResponsePayload::getEntityId).containsExactly("user-1", "user-2");
+    verify(sfsfEmployeeTimeSvc).invalidateUserProfile("user-1");
+    verify(sfsfEmployeeTimeSvc).invalidateUserProfile("user-2");
+    verifyNoMoreInteractions(sfsfEmployeeTimeSvc);
+  }
+
+  private static EenAlertRequestData event(final String entityType, final String keyName, final String keyValue) {
+    final Param param = new Param();
+    param.setName(keyName);
+    param.setValue(keyValue);
+    final EntityKeys entityKeys = new EenAlertRequestData.EntityKeys();
+    entityKeys.getEntityKey().add(param);
+    final EenAlertRequestData event = new EenAlertRequestData();
+    event.setEntityType(entityType);
+    event.setEntityKeys(entityKeys);
+    return event;
+  }
+}
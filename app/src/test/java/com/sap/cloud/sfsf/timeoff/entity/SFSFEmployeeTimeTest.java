@@ -31,6 +31,7 @@ import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+import com.sap.cloud.sfsf.timeoff.jackson.DefaultMapper;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -109,4 +110,43 @@ public class SFSFEmployeeTimeTest {
     assertThat(result.getCreatedDateTime()).isEqualTo(ZonedDateTime.parse("2016-05-11T09:40:14Z[US/Eastern]"));
     assertThat(result.getLastModifiedDateTime()).isEqualTo(ZonedDateTime.parse("2016-05-11T09:40:14Z[US/Eastern]"));
   }
+
+  @Test
+  public void minimalProjectionIsReadable() throws IOException {
+    // given
+    final String json = "{\"d\":{\"externalCode\":\"1\",\"approvalStatus\":\"APPROVED\",\"userId\":\"u1\","
+        + "\"startDate\":\"/Date(1464566400000)/\",\"endDate\":\"/Date(1464566400000)/\","
+        + "\"createdDateTime\":\"/Date(1462959614000+0000)/\",\"lastModifiedDateTime\":\"/Date(1462959614000+0000)/\","
+        + "\"userIdNav\":{\"timeZone\":\"UTC\",\"empInfo\":{\"jobInfoNav\":{\"results\":[{\"timezone\":\"US/Eastern\"}]}}}}}";
+
+    // when
+    final SFSFEmployeeTime result =
+        DefaultMapper.unwrappingReaderFor(SFSFEmployeeTime.class).readValue(json);
+
+    // then
+    assertThat(result.getUserId()).isEqualTo("u1");
+    assertThat(result.getStartDate()).isEqualTo(ZonedDateTime.parse("2016-05-30T00:00:00-04:00[US/Eastern]"));
+    assertThat(result.getUserIdNav().getJob().getManager()).isNull();
+  }
+
+  @Test
+  public void joinedProfileZonesTheDates() {
+    // given
+    final OffsetDateTime startDate = OffsetDateTime.parse("2016-05-30T00:00:00Z");
+    final SFSFEmployeeTime lean = new SFSFEmployeeTime(startDate, startDate, null, startDate, startDate);
+    lean.setExternalCode("1");
+    lean.setUserId("u1");
+    empJob.setTimezone("PST");
+
+    // when
+    empTime = lean.withUserIdNav(userIdNav);
+
+    // then
+    assertThat(lean.getStartDate()).isEqualTo(ZonedDateTime.parse("2016-05-30T00:00:00Z[UTC]"));
+    assertThat(empTime.getStartDate()).isEqualTo(ZonedDateTime.parse("2016-05-30T00:00-07:00[America/Los_Angeles]"));
+    assertThat(empTime.getEndDate()).isEqualTo(ZonedDateTime.parse("2016-05-31T00:00-07:00[America/Los_Angeles]"));
+    assertThat(empTime.getExternalCode()).isEqualTo("1");
+    assertThat(empTime.getUserId()).isEqualTo("u1");
+    assertThat(empTime.getUserIdNav()).isSameAs(userIdNav);
+  }
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZoneId;
+
+import org.junit.Test;
+
+public class SFSFTimeZonesTest {
+
+  @Test
+  public void resolvesLikeTimeZone() {
+    assertThat(SFSFTimeZones.resolve("US/Eastern")).isEqualTo(ZoneId.of("US/Eastern"));
+    assertThat(SFSFTimeZones.resolve("PST")).isEqualTo(ZoneId.of("America/Los_Angeles"));
+  }
+
+  @Test
+  public void unknownZoneFallsBackToGmt() {
+    assertThat(SFSFTimeZones.resolve("Not/AZone")).isEqualTo(ZoneId.of("GMT"));
+  }
+
+  @Test
+  public void resolvedZoneIsCached() {
+    assertThat(SFSFTimeZones.resolve("Europe/Sofia")).isSameAs(SFSFTimeZones.resolve("Europe/Sofia"));
+  }
+}
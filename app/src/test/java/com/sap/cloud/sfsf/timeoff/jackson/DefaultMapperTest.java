@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sap.cloud.sfsf.timeoff.entity.DateTimeTimeZone;
+import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
+
+import org.junit.Test;
+
+public class DefaultMapperTest {
+
+  @Test
+  public void testReadersAndWritersAreShared() {
+    assertThat(DefaultMapper.unwrappingReaderFor(SFSFEmployeeTime.class))
+        .isSameAs(DefaultMapper.unwrappingReaderFor(SFSFEmployeeTime.class));
+    assertThat(DefaultMapper.writerFor(DefaultMapper.collectionType(List.class, DateTimeTimeZone.class)))
+        .isSameAs(DefaultMapper.writerFor(DefaultMapper.collectionType(List.class, DateTimeTimeZone.class)));
+  }
+
+  @Test
+  public void testUnwrappingReader() throws IOException {
+    // given
+    final URL jsonFile = Thread.currentThread().getContextClassLoader().getResource("employee_time_data.json");
+
+    // when
+    final SFSFEmployeeTime result = DefaultMapper.unwrappingReaderFor(SFSFEmployeeTime.class).readValue(jsonFile);
+
+    // then
+    assertThat(result.getExternalCode()).isEqualTo("12345");
+    assertThat(result.getUserIdNav().getJob().getManager().getFirstName()).isEqualTo("test-manager-firstname");
+  }
+
+  @Test
+  public void testCollectionWriter() throws IOException {
+    // given
+    final List<String> values = Arrays.asList("a", "b");
+
+    // when
+    final String result =
+        DefaultMapper.writerFor(DefaultMapper.collectionType(List.class, String.class)).writeValueAsString(values);
+
+    // then
+    assertThat(result).isEqualTo("[\"a\",\"b\"]");
+  }
+}
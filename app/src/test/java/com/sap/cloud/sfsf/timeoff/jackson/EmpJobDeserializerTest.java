@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
+import com.sap.cloud.sfsf.timeoff.entity.UserIdNav;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmpJobDeserializerTest {
+
+  private ObjectMapper mapper;
+
+  @Before
+  public void before() {
+    mapper = DefaultMapper.newMapper();
+  }
+
+  @Test
+  public void testFirstResultIsRead() throws IOException {
+    // given
+    final String json = "{\"firstName\":\"employee\",\"empInfo\":{\"__metadata\":{\"type\":\"SFOData.EmpEmployment\"},"
+        + "\"jobInfoNav\":{\"results\":[{\"__metadata\":{\"uri\":\"job-1\"},\"timezone\":\"US/Eastern\","
+        + "\"managerUserNav\":{\"firstName\":\"manager\",\"empInfo\":null}},"
+        + "{\"timezone\":\"Europe/Berlin\",\"managerUserNav\":{\"firstName\":\"other\"}}]},\"personIdExternal\":\"1\"},"
+        + "\"lastName\":\"last\"}";
+
+    // when
+    final UserIdNav result = mapper.readValue(json, UserIdNav.class);
+
+    // then
+    final EmpJob job = result.getJob();
+    assertThat(job.getTimezone()).isEqualTo("US/Eastern");
+    assertThat(job.getManager().getFirstName()).isEqualTo("manager");
+    assertThat(job.getManager().getJob()).isNull();
+    assertThat(result.getLastName()).isEqualTo("last");
+  }
+
+  @Test
+  public void testEmptyResults() throws IOException {
+    // given
+    final String json = "{\"empInfo\":{\"jobInfoNav\":{\"results\":[]}},\"lastName\":\"last\"}";
+
+    // when
+    final UserIdNav result = mapper.readValue(json, UserIdNav.class);
+
+    // then
+    assertThat(result.getJob()).isNotNull();
+    assertThat(result.getJob().getManager()).isNull();
+    assertThat(result.getJob().getTimezone()).isNull();
+    assertThat(result.getLastName()).isEqualTo("last");
+  }
+
+  @Test
+  public void testMissingJobInfo() throws IOException {
+    // given
+    final String json = "{\"empInfo\":{\"__deferred\":{\"uri\":\"empInfo\"}},\"lastName\":\"last\"}";
+
+    // when
+    final UserIdNav result = mapper.readValue(json, UserIdNav.class);
+
+    // then
+    assertThat(result.getJob()).isNull();
+    assertThat(result.getLastName()).isEqualTo("last");
+  }
+}
@@ -66,6 +66,30 @@ public class SFSFDayTimeDeserializerTest {
     assertThat(result.getZdt()).isEqualTo(OffsetDateTime.parse(UTC_DATE));
   }
 
+  @Test
+  public void testDeserializeWithOffset() throws JsonParseException, JsonMappingException, IOException {
+    // given
+    final String jsonDate = "{\"zdt\":\"/Date(1461940368000-0530)/\"}";
+
+    // when
+    final DateTimeSerializerTest result = mapper.readValue(jsonDate, DateTimeSerializerTest.class);
+
+    // then
+    assertThat(result.getZdt()).isEqualTo(OffsetDateTime.parse("2016-04-29T09:02:48-05:30"));
+  }
+
+  @Test
+  public void testDeserializeFirstMatch() throws JsonParseException, JsonMappingException, IOException {
+    // given
+    final String jsonDate = "{\"zdt\":\"/Date(x)/ /Date(1461940368000+01)/\"}";
+
+    // when
+    final DateTimeSerializerTest result = mapper.readValue(jsonDate, DateTimeSerializerTest.class);
+
+    // then
+    assertThat(result.getZdt()).isEqualTo(OffsetDateTime.parse("2016-04-29T15:32:48+01:00"));
+  }
+
   @Test
   public void testMalformedDateParseException() throws JsonParseException, JsonMappingException, IOException {
     // given
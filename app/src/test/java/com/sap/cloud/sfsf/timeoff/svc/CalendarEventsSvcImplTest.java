@@ -137,7 +137,7 @@ public class CalendarEventsSvcImplTest {
 
     // then
     verify(sfsfEmployeeTimeServiceMock).getLatestTimeOffEventForUser("test-user");
-    assertThat(cache.get("test-user")).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
+    assertThat(cache.get(CalendarEventsSvc.cacheKey("test-user"))).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
     assertThat(cache.iterator()).hasSize(1);
     verify(calendarSvcMock).getConflicting(employeeTimeList);
     assertThat(conflictingEvents).containsExactly(calendarEventOOF);
@@ -213,7 +213,7 @@ public class CalendarEventsSvcImplTest {
 
     // then
     verify(sfsfEmployeeTimeServiceMock).getLatestTimeOffEventForUser("test-user");
-    assertThat(cache.get("test-user")).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
+    assertThat(cache.get(CalendarEventsSvc.cacheKey("test-user"))).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
     assertThat(cache.iterator()).hasSize(1);
     assertThat(conflictingEvents).isEmpty();
     verify(calendarSvcMock).getConflicting(employeeTimeList);
@@ -235,7 +235,7 @@ public class CalendarEventsSvcImplTest {
     // then
     assertThat(conflictingEvents).containsOnly(calendarEventOOF);
     verify(sfsfEmployeeTimeServiceMock).getLatestTimeOffEventForUser("test-user");
-    assertThat(cache.get("test-user")).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
+    assertThat(cache.get(CalendarEventsSvc.cacheKey("test-user"))).isEqualToComparingFieldByFieldRecursively(employeeTimeList);
     assertThat(cache.iterator()).hasSize(1);
     verify(calendarSvcMock).getConflicting(employeeTimeList);
   }
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hashing of keys, e.g. user ids, onto a set of nodes. Every node is placed on the ring at
+ * <code>virtualNodes</code> points, so keys spread evenly and only the keys of a joining or leaving node move.
+ *
+ * The points are derived from MD5, so every node of the cluster computes the same owners. Immutable.
+ */
+public final class ConsistentHashRing {
+
+	public static final int DEFAULT_VIRTUAL_NODES = 100;
+
+	private final List<String> nodes;
+	private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+	public ConsistentHashRing(final Collection<String> nodes) {
+		this(nodes, DEFAULT_VIRTUAL_NODES);
+	}
+
+	public ConsistentHashRing(final Collection<String> nodes, final int virtualNodes) {
+		if (nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("At least one node and one virtual node per node are required");
+		}
+		// sorted, so that colliding points go to the same node everywhere
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+		for (final String node : this.nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.putIfAbsent(hash(node + "#" + i), node);
+			}
+		}
+	}
+
+	/**
+	 * @return the node owning the given key
+	 */
+	public String ownerOf(final String key) {
+		final Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * @return the nodes on the ring, sorted
+	 */
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	static long hash(final String value) {
+		final byte[] digest = md5().digest(value.getBytes(StandardCharsets.UTF_8));
+		long hash = 0;
+		for (int i = 0; i < 8; i++) {
+			hash = hash << 8 | digest[i] & 0xff;
+		}
+		return hash;
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is required on every Java platform", e);
+		}
+	}
+}
@@ -16,7 +16,18 @@ package com.sap.cloud.commons.connectivity;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 import javax.naming.ConfigurationException;
 import javax.naming.Context;
@@ -47,6 +58,11 @@ import org.slf4j.LoggerFactory;
  * <p>4. Get all properties configured for destination with name "myDestination" from a particular connectivity configuration (looked up elsewhere):<br>
  * <code>Map&lt;String,String&gt; destinationProperties = DestinationUtils.getDestinationProperties(connCfg, "myDestination");</code></p>
  *
+ * <p>The destination configuration is read once and kept as a {@link Snapshot} for the refresh interval, by default
+ * the <code>sfsf.destination.refresh-millis</code> system property (60000). A refresh that finds the properties
+ * unchanged keeps the snapshot, together with the typed property values and anything {@link Snapshot#derive derived}
+ * from it; a change is announced to the {@link #addChangeListener(Consumer) change listeners}.</p>
+ *
  */
 public class DestinationUtils {
 
@@ -67,15 +83,27 @@ public class DestinationUtils {
     }
   }
 
+  /**
+   * System property with the default refresh interval of destination snapshots in milliseconds.
+   */
+  public static final String REFRESH_PROPERTY = "sfsf.destination.refresh-millis";
+
   private String destinationName;
   private String connectivityCfgLookupName;
   private ConnectivityConfiguration connectivityConfiguration;
+  private long refreshNanos;
+  private LongSupplier nanoClock = System::nanoTime;
+  private final List<Consumer<Snapshot>> changeListeners = new CopyOnWriteArrayList<>();
+
+  private volatile Snapshot snapshot;
+  private volatile long loadedAt;
 
   private DestinationUtils() {}
 
   private DestinationUtils(final Builder destinationBuilder) {
     destinationName = destinationBuilder.destinationName;
     connectivityCfgLookupName = destinationBuilder.connectivityCfgLookupName;
+    refreshNanos = TimeUnit.MILLISECONDS.toNanos(destinationBuilder.refreshMillis);
   }
 
   public static Builder builder(){
@@ -90,7 +118,66 @@ public class DestinationUtils {
 	return connectivityCfgLookupName;
   }
 
+  /**
+   * @return the destination configuration of the current {@link #snapshot()}
+   */
   public DestinationConfiguration getDestinationConfiguration() throws IOException {
+    return snapshot().getConfiguration();
+  }
+
+  /**
+   * @return the last read configuration, read again if it is older than the refresh interval
+   */
+  public Snapshot snapshot() throws IOException {
+    final Snapshot current = snapshot;
+    if (current != null && nanoClock.getAsLong() - loadedAt < refreshNanos) {
+      return current;
+    }
+    return refresh();
+  }
+
+  /**
+   * @param listener called with the new snapshot whenever a refresh finds changed properties
+   */
+  public void addChangeListener(final Consumer<Snapshot> listener) {
+    changeListeners.add(listener);
+  }
+
+  private synchronized Snapshot refresh() throws IOException {
+    final long now = nanoClock.getAsLong();
+    final Snapshot current = snapshot;
+    if (current != null && now - loadedAt < refreshNanos) {
+      return current;
+    }
+    final DestinationConfiguration destinationConfiguration;
+    try {
+      destinationConfiguration = lookupDestinationConfiguration();
+    } catch (final IOException e) {
+      if (current == null) {
+        throw e;
+      }
+      LOGGER.warn("Keeping the last read configuration of destination {}", destinationName, e);
+      loadedAt = now;
+      return current;
+    }
+    final Map<String, String> properties = destinationConfiguration.getAllProperties();
+    if (current != null && current.properties.equals(properties == null ? Collections.emptyMap() : properties)) {
+      loadedAt = now;
+      return current;
+    }
+    final Snapshot changed = new Snapshot(destinationConfiguration, properties);
+    snapshot = changed;
+    loadedAt = now;
+    if (current != null) {
+      LOGGER.info("Configuration of destination {} changed", destinationName);
+      for (final Consumer<Snapshot> listener : changeListeners) {
+        listener.accept(changed);
+      }
+    }
+    return changed;
+  }
+
+  private DestinationConfiguration lookupDestinationConfiguration() throws IOException {
 	final DestinationConfiguration destinationConfiguration = getConnectivityConfiguration().getConfiguration(destinationName);
     if (destinationConfiguration == null) {
       final String errorMessage =
@@ -129,25 +216,84 @@ public class DestinationUtils {
     return destConfiguration.getAllProperties();
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * @return the property of the current {@link #snapshot()}, converted once per snapshot
+   */
   public <T> T getProperty(final Class<T> clazz, final String key) throws IOException, ConfigurationException {
-    final Map<String, String> destinationProperties = getDestinationConfiguration().getAllProperties();
-    final String value = destinationProperties.get(key);
-    T instance = null;
-    try {
-      final Constructor<T> constructor = clazz.getDeclaredConstructor(String.class);
-      constructor.setAccessible(true);
-      instance = constructor.newInstance(value);
-    } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-      LOGGER.error(e.getMessage(), e);
-      throw new RuntimeException(String.format(
-          "Could not instantiate object from type [ %s ] with argument [ %s ]. Maybe the given class does not specify a constructor taking such an argument.",
-          clazz.getName(), value));
+    return snapshot().getProperty(clazz, key);
+  }
+
+  void setNanoClock(final LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Properties of a destination as read at one point in time, with typed values and derived objects, e.g. an
+   * authentication header, computed once per snapshot. Thread-safe.
+   */
+  public static final class Snapshot {
+
+    private final DestinationConfiguration configuration;
+    private final Map<String, String> properties;
+    private final ConcurrentMap<Object, Object> derived = new ConcurrentHashMap<>();
+
+    public Snapshot(final DestinationConfiguration configuration) {
+      this(configuration, configuration.getAllProperties());
+    }
+
+    private Snapshot(final DestinationConfiguration configuration, final Map<String, String> properties) {
+      this.configuration = configuration;
+      this.properties =
+          properties == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    public DestinationConfiguration getConfiguration() {
+      return configuration;
     }
-    if (instance instanceof String) {
-      instance = (T) ((String) instance).replaceAll("\\r|\\n", "");
+
+    public Map<String, String> getProperties() {
+      return properties;
+    }
+
+    /**
+     * Converts the value with the constructor of <code>clazz</code> taking a String; line breaks are removed from
+     * String values.
+     *
+     * @throws RuntimeException if the value cannot be converted
+     */
+    public <T> T getProperty(final Class<T> clazz, final String key) {
+      final List<Object> derivedKey = Arrays.asList(clazz, key);
+      return derive(derivedKey, snapshot -> newInstance(clazz, properties.get(key)));
+    }
+
+    /**
+     * @param key identifies the derived object within the snapshot
+     * @param function computes the object on first use; must not call <code>derive</code> itself
+     * @return the object derived from this snapshot, computed once
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derive(final Object key, final Function<Snapshot, T> function) {
+      return (T) derived.computeIfAbsent(key, k -> function.apply(this));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(final Class<T> clazz, final String value) {
+      T instance = null;
+      try {
+        final Constructor<T> constructor = clazz.getDeclaredConstructor(String.class);
+        constructor.setAccessible(true);
+        instance = constructor.newInstance(value);
+      } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        LOGGER.error(e.getMessage(), e);
+        throw new RuntimeException(String.format(
+            "Could not instantiate object from type [ %s ] with argument [ %s ]. Maybe the given class does not specify a constructor taking such an argument.",
+            clazz.getName(), value));
+      }
+      if (instance instanceof String) {
+        instance = (T) ((String) instance).replaceAll("\\r|\\n", "");
+      }
+      return instance;
     }
-    return instance;
   }
 
   /**
@@ -158,6 +304,7 @@ public class DestinationUtils {
 
     private String destinationName;
     private String connectivityCfgLookupName = "java:comp/env/connectivityConfiguration";
+    private long refreshMillis = Long.getLong(REFRESH_PROPERTY, 60000);
 
     private Builder(){}
 
@@ -202,6 +349,18 @@ public class DestinationUtils {
       this.connectivityCfgLookupName = connectivityCfgLookupName;
       return this;
     }
+
+    /**
+     * <em>Optionally</em>, set how long a read destination configuration is used before it is read again. The
+     * default is the <code>sfsf.destination.refresh-millis</code> system property, or one minute.
+     *
+     * @param refreshMillis
+     * @return a Builder instance for chaining, setup with this <code>refreshMillis</code>
+     */
+    public Builder setRefreshMillis(final long refreshMillis) {
+      this.refreshMillis = refreshMillis;
+      return this;
+    }
   }
 
 }
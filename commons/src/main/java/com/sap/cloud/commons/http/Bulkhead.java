@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.sap.cloud.commons.metrics.MetricRegistry;
+
+/**
+ * Concurrency and rate budget of a destination, so that a busy tenant cannot take the threads and the request quota
+ * other tenants need.
+ *
+ * A call needs one of <code>maxConcurrent</code> permits and, if <code>ratePerSecond</code> is positive, a token of a
+ * bucket refilled at that rate and holding up to one second's worth of tokens. A call waits up to
+ * <code>maxWaitMillis</code> in total for both and is rejected afterwards. Thread-safe.
+ */
+public class Bulkhead {
+
+	/**
+	 * Prefix of the system properties read by {@link #fromSystemProperties(String)}.
+	 */
+	public static final String PROPERTY_PREFIX = "sfsf.http.bulkhead.";
+
+	private final String name;
+	private final int maxConcurrent;
+	private final Semaphore permits;
+	private final double ratePerSecond;
+	private final double burst;
+	private final long maxWaitNanos;
+	private final LongSupplier nanoClock;
+	private final LongAdder rejected = new LongAdder();
+
+	// guarded by this, negative while calls wait for reserved tokens
+	private double tokens;
+	private long refilledAt;
+
+	public Bulkhead(final String name, final int maxConcurrent, final double ratePerSecond, final long maxWaitMillis) {
+		this(name, maxConcurrent, ratePerSecond, maxWaitMillis, System::nanoTime);
+	}
+
+	Bulkhead(final String name, final int maxConcurrent, final double ratePerSecond, final long maxWaitMillis,
+			final LongSupplier nanoClock) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("maxConcurrent must be positive");
+		}
+		this.name = name;
+		this.maxConcurrent = maxConcurrent;
+		permits = new Semaphore(maxConcurrent, true);
+		this.ratePerSecond = ratePerSecond;
+		burst = Math.max(1, ratePerSecond);
+		maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.nanoClock = nanoClock;
+		tokens = burst;
+		refilledAt = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Reads <code>max-concurrent</code> (10), <code>rate-per-second</code> (20, 0 for no limit) and
+	 * <code>max-wait-millis</code> (1000), each first as <code>sfsf.http.bulkhead.&lt;name&gt;.*</code> and then as
+	 * <code>sfsf.http.bulkhead.*</code>, so a single destination can get its own budget.
+	 *
+	 * @return the configured bulkhead, or <code>null</code> if <code>sfsf.http.bulkhead.enabled</code> is
+	 *         <code>false</code>
+	 */
+	public static Bulkhead fromSystemProperties(final String name) {
+		if (!Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "enabled", "true"))) {
+			return null;
+		}
+		return new Bulkhead(name, Integer.parseInt(property(name, "max-concurrent", "10")),
+				Double.parseDouble(property(name, "rate-per-second", "20")),
+				Long.parseLong(property(name, "max-wait-millis", "1000")));
+	}
+
+	private static String property(final String name, final String key, final String defaultValue) {
+		return System.getProperty(PROPERTY_PREFIX + name + '.' + key,
+				System.getProperty(PROPERTY_PREFIX + key, defaultValue));
+	}
+
+	/**
+	 * Exposes <code>bulkhead_in_flight_calls</code> and the counter <code>bulkhead_rejected_calls_total</code> with the
+	 * bulkhead name as target.
+	 */
+	public Bulkhead registerMetrics(final MetricRegistry registry) {
+		registry.gauge("bulkhead_in_flight_calls", name, this::getInFlightCount);
+		registry.counter("bulkhead_rejected_calls", name, this::getRejectedCount);
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Waits for a permit and a token.
+	 *
+	 * @return whether the call may proceed; if so, it must be followed by {@link #release()}
+	 */
+	public boolean tryAcquire() throws InterruptedException {
+		final long start = nanoClock.getAsLong();
+		if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+			rejected.increment();
+			return false;
+		}
+		if (ratePerSecond > 0) {
+			final long waitNanos = reserveToken(maxWaitNanos - (nanoClock.getAsLong() - start));
+			if (waitNanos < 0) {
+				permits.release();
+				rejected.increment();
+				return false;
+			}
+			if (waitNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(waitNanos);
+				} catch (final InterruptedException e) {
+					permits.release();
+					throw e;
+				}
+			}
+		}
+		return true;
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	public int getInFlightCount() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return how long to wait for the reserved token, or <code>-1</code> if it would take longer than
+	 *         <code>maxWaitNanos</code>
+	 */
+	private synchronized long reserveToken(final long maxWaitNanos) {
+		final long now = nanoClock.getAsLong();
+		tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerSecond / 1e9);
+		refilledAt = now;
+		if (tokens >= 1) {
+			tokens--;
+			return 0;
+		}
+		final long waitNanos = (long) Math.ceil((1 - tokens) / ratePerSecond * 1e9);
+		if (waitNanos > maxWaitNanos) {
+			return -1;
+		}
+		tokens--;
+		return waitNanos;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import com.sap.cloud.commons.metrics.Metrics;
+
+/**
+ * {@link HttpConnector} keeping its calls within the budget of a {@link Bulkhead}, failing with a
+ * {@link BulkheadFullException} otherwise.
+ */
+public class BulkheadConnector implements HttpConnector {
+
+	private final HttpConnector delegate;
+	private final Bulkhead bulkhead;
+
+	public BulkheadConnector(final HttpConnector delegate, final Bulkhead bulkhead) {
+		this.delegate = delegate;
+		this.bulkhead = bulkhead;
+	}
+
+	/**
+	 * @return the connector limited by a bulkhead configured with {@link Bulkhead#fromSystemProperties(String)} and
+	 *         reported in {@link Metrics#registry()}, or the connector itself if bulkheads are disabled
+	 */
+	public static HttpConnector wrap(final HttpConnector delegate, final String name) {
+		final Bulkhead bulkhead = Bulkhead.fromSystemProperties(name);
+		return bulkhead == null ? delegate : new BulkheadConnector(delegate, bulkhead.registerMetrics(Metrics.registry()));
+	}
+
+	@Override
+	public String get(final String url) throws IOException {
+		acquire();
+		try {
+			return delegate.get(url);
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	@Override
+	public <T> T get(final String url, final ResponseDecoder<T> decoder) throws IOException {
+		acquire();
+		try {
+			return delegate.get(url, decoder);
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	@Override
+	public void post(final String url, final String payload) throws IOException {
+		acquire();
+		try {
+			delegate.post(url, payload);
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	public Bulkhead getBulkhead() {
+		return bulkhead;
+	}
+
+	private void acquire() throws IOException {
+		final boolean acquired;
+		try {
+			acquired = bulkhead.tryAcquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bulkhead " + bulkhead.getName());
+		}
+		if (!acquired) {
+			throw new BulkheadFullException(bulkhead.getName());
+		}
+	}
+
+}
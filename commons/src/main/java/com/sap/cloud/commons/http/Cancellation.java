@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cancellation of one attempt of a request, e.g. the losing attempt of a hedged GET.
+ *
+ * While the attempt runs, connectors register their connection with {@link #register(HttpURLConnection)}, so that
+ * {@link #cancel()} disconnects it and a read blocked on the socket ends at once; the thread running the attempt is
+ * interrupted as well. The interrupt is cleared when the attempt ends, so a cancelled attempt may run on the caller's
+ * thread. Thread-safe.
+ */
+final class Cancellation {
+
+	private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+	// guarded by this
+	private boolean cancelled;
+	private Thread thread;
+	private HttpURLConnection connection;
+
+	/**
+	 * Registers the connection with the attempt running on the current thread, if any.
+	 */
+	static void register(final HttpURLConnection connection) {
+		final Cancellation current = CURRENT.get();
+		if (current != null) {
+			current.attach(connection);
+		}
+	}
+
+	/**
+	 * Runs the attempt on the current thread, unless it is already cancelled.
+	 */
+	<T> T run(final Callable<T> attempt) throws Exception {
+		synchronized (this) {
+			if (cancelled) {
+				throw new CancellationException("The attempt was cancelled before it started");
+			}
+			thread = Thread.currentThread();
+		}
+		final Cancellation previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			return attempt.call();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+			synchronized (this) {
+				thread = null;
+				connection = null;
+				if (cancelled) {
+					// no interrupt arrives once the thread is cleared
+					Thread.interrupted();
+				}
+			}
+		}
+	}
+
+	synchronized void cancel() {
+		if (cancelled) {
+			return;
+		}
+		cancelled = true;
+		if (connection != null) {
+			connection.disconnect();
+		}
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	private synchronized void attach(final HttpURLConnection connection) {
+		if (cancelled) {
+			connection.disconnect();
+		} else {
+			this.connection = connection;
+		}
+	}
+
+}
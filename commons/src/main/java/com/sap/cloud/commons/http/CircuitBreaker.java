@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.sap.cloud.commons.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-based circuit breaker.
+ *
+ * While closed, the outcomes of the last <code>windowSize</code> calls are kept; once at least
+ * <code>minimumCalls</code> were seen and the share of failures reaches <code>failureRateThreshold</code> the circuit
+ * opens and calls are rejected for <code>openMillis</code>. After that a single probe call is let through
+ * (half-open): its success closes the circuit with an empty window, its failure opens it again. Thread-safe.
+ */
+public class CircuitBreaker {
+
+	/**
+	 * Prefix of the system properties read by {@link #fromSystemProperties(String)}.
+	 */
+	public static final String PROPERTY_PREFIX = "sfsf.http.circuit-breaker.";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String name;
+	private final boolean[] window;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openNanos;
+	private final LongSupplier nanoClock;
+	private final LongAdder rejected = new LongAdder();
+
+	// guarded by this
+	private State state = State.CLOSED;
+	private int next;
+	private int calls;
+	private int failures;
+	private long openedAt;
+	private boolean probing;
+
+	public CircuitBreaker(final String name, final int windowSize, final int minimumCalls,
+			final double failureRateThreshold, final long openMillis) {
+		this(name, windowSize, minimumCalls, failureRateThreshold, openMillis, System::nanoTime);
+	}
+
+	CircuitBreaker(final String name, final int windowSize, final int minimumCalls, final double failureRateThreshold,
+			final long openMillis, final LongSupplier nanoClock) {
+		if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+			throw new IllegalArgumentException("windowSize and minimumCalls must be positive, minimumCalls at most windowSize");
+		}
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+			throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+		}
+		this.name = name;
+		window = new boolean[windowSize];
+		this.minimumCalls = minimumCalls;
+		this.failureRateThreshold = failureRateThreshold;
+		openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Reads <code>sfsf.http.circuit-breaker.window-size</code> (20), <code>.minimum-calls</code> (10),
+	 * <code>.failure-rate-threshold</code> in percent (50) and <code>.open-millis</code> (30000).
+	 *
+	 * @return the configured breaker, or <code>null</code> if <code>sfsf.http.circuit-breaker.enabled</code> is
+	 *         <code>false</code>
+	 */
+	public static CircuitBreaker fromSystemProperties(final String name) {
+		if (!Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "enabled", "true"))) {
+			return null;
+		}
+		return new CircuitBreaker(name, Integer.getInteger(PROPERTY_PREFIX + "window-size", 20),
+				Integer.getInteger(PROPERTY_PREFIX + "minimum-calls", 10),
+				Integer.getInteger(PROPERTY_PREFIX + "failure-rate-threshold", 50) / 100.0,
+				Long.getLong(PROPERTY_PREFIX + "open-millis", 30000));
+	}
+
+	/**
+	 * Exposes <code>circuit_breaker_state</code> (0 closed, 1 open, 2 half-open),
+	 * <code>circuit_breaker_failure_rate</code> and the counter <code>circuit_breaker_rejected_calls_total</code> with
+	 * the breaker name as target.
+	 */
+	public CircuitBreaker registerMetrics(final MetricRegistry registry) {
+		registry.gauge("circuit_breaker_state", name, () -> getState().ordinal());
+		registry.gauge("circuit_breaker_failure_rate", name, this::getFailureRate);
+		registry.counter("circuit_breaker_rejected_calls", name, this::getRejectedCount);
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return whether the call may proceed; if so, it must be followed by {@link #onSuccess()} or
+	 *         {@link #onFailure()}
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (nanoClock.getAsLong() - openedAt >= openNanos) {
+					transition(State.HALF_OPEN);
+					probing = true;
+					return true;
+				}
+				break;
+			case HALF_OPEN:
+				if (!probing) {
+					probing = true;
+					return true;
+				}
+				break;
+		}
+		rejected.increment();
+		return false;
+	}
+
+	public synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			probing = false;
+			reset();
+			transition(State.CLOSED);
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			probing = false;
+			open();
+		} else if (state == State.CLOSED) {
+			record(true);
+			if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+				open();
+			}
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized double getFailureRate() {
+		return calls == 0 ? 0 : (double) failures / calls;
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private void record(final boolean failure) {
+		if (calls == window.length) {
+			if (window[next]) {
+				failures--;
+			}
+		} else {
+			calls++;
+		}
+		window[next] = failure;
+		if (failure) {
+			failures++;
+		}
+		next = (next + 1) % window.length;
+	}
+
+	private void open() {
+		reset();
+		openedAt = nanoClock.getAsLong();
+		transition(State.OPEN);
+	}
+
+	private void reset() {
+		next = 0;
+		calls = 0;
+		failures = 0;
+	}
+
+	private void transition(final State newState) {
+		if (state != newState) {
+			LOGGER.warn("Circuit breaker {} changed from {} to {}", name, state, newState);
+			state = newState;
+		}
+	}
+}
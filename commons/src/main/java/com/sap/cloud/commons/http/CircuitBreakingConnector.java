@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import com.sap.cloud.commons.metrics.Metrics;
+
+/**
+ * {@link HttpConnector} failing fast with a {@link CircuitOpenException} while its {@link CircuitBreaker} is open.
+ *
+ * Only failures of the destination count: transport errors, <code>5xx</code> responses and runtime exceptions. Any
+ * other answer means the destination is up and counts as success, i.e. a <code>404</code> or <code>410</code>, which
+ * {@link java.net.HttpURLConnection} reports as {@link FileNotFoundException}, another {@link HttpStatusException}
+ * below <code>500</code>, and a body the decoder could not read.
+ */
+public class CircuitBreakingConnector implements HttpConnector {
+
+	private final HttpConnector delegate;
+	private final CircuitBreaker breaker;
+
+	public CircuitBreakingConnector(final HttpConnector delegate, final CircuitBreaker breaker) {
+		this.delegate = delegate;
+		this.breaker = breaker;
+	}
+
+	/**
+	 * @return the connector guarded by a breaker configured with {@link CircuitBreaker#fromSystemProperties(String)}
+	 *         and reported in {@link Metrics#registry()}, or the connector itself if the breaker is disabled
+	 */
+	public static HttpConnector wrap(final HttpConnector delegate, final String name) {
+		final CircuitBreaker breaker = CircuitBreaker.fromSystemProperties(name);
+		return breaker == null ? delegate
+				: new CircuitBreakingConnector(delegate, breaker.registerMetrics(Metrics.registry()));
+	}
+
+	@Override
+	public String get(final String url) throws IOException {
+		return call(() -> delegate.get(url));
+	}
+
+	@Override
+	public <T> T get(final String url, final ResponseDecoder<T> decoder) throws IOException {
+		try {
+			return call(() -> delegate.get(url, body -> {
+				try {
+					return decoder.decode(body);
+				} catch (final IOException | RuntimeException e) {
+					throw new DecodingException(e);
+				}
+			}));
+		} catch (final DecodingException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	@Override
+	public void post(final String url, final String payload) throws IOException {
+		call(() -> {
+			delegate.post(url, payload);
+			return null;
+		});
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return breaker;
+	}
+
+	private <T> T call(final Call<T> call) throws IOException {
+		if (!breaker.tryAcquire()) {
+			throw new CircuitOpenException(breaker.getName());
+		}
+		boolean success = false;
+		try {
+			final T result = call.execute();
+			success = true;
+			return result;
+		} catch (final FileNotFoundException | DecodingException e) {
+			success = true;
+			throw e;
+		} catch (final HttpStatusException e) {
+			success = !e.isServerError();
+			throw e;
+		} finally {
+			if (success) {
+				breaker.onSuccess();
+			} else {
+				breaker.onFailure();
+			}
+		}
+	}
+
+	/**
+	 * Carries a failure of the decoder through the delegate, the response itself was fine.
+	 */
+	private static final class DecodingException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		DecodingException(final Exception cause) {
+			super(cause);
+		}
+
+	}
+
+	@FunctionalInterface
+	private interface Call<T> {
+
+		T execute() throws IOException;
+
+	}
+
+}
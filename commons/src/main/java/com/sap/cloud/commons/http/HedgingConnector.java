@@ -0,0 +1,330 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sap.cloud.commons.metrics.LatencyHistogram;
+import com.sap.cloud.commons.metrics.MetricRegistry;
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.commons.tracing.TraceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * {@link HttpConnector} sending a second, identical GET if the first has not answered within the
+ * <code>percentile</code> of the latencies observed so far, and returning whichever answers first.
+ *
+ * The first attempt runs on the caller's thread; the hedge runs on the <code>executor</code>, in the trace, tenant
+ * and MDC of the caller, and is not sent if the executor rejects it, e.g. because all its threads are busy. The
+ * losing attempt is cancelled, see {@link Cancellation}: its connection is disconnected and its thread interrupted.
+ *
+ * The hedge delay is recomputed every {@link #DELAY_REFRESH_INTERVAL} requests and never drops below
+ * <code>minDelayMillis</code>. At most <code>maxExtraRatio</code> of the requests are hedged, so the extra load on the
+ * destination stays bounded. A first attempt failing before the delay is not retried. POSTs are passed through.
+ */
+public class HedgingConnector implements HttpConnector {
+
+	/**
+	 * Prefix of the system properties read by {@link #wrap(HttpConnector, String)}.
+	 */
+	public static final String PROPERTY_PREFIX = "sfsf.http.hedging.";
+
+	static final int DELAY_REFRESH_INTERVAL = 128;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HedgingConnector.class);
+
+	private final HttpConnector delegate;
+	private final ScheduledExecutorService timer;
+	private final ExecutorService executor;
+	private final double percentile;
+	private final long minDelayNanos;
+	private final double maxExtraRatio;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hedged = new AtomicLong();
+	private final LongAdder hedgeWins = new LongAdder();
+	private final LongAdder rejectedHedges = new LongAdder();
+	private volatile long delayNanos;
+
+	/**
+	 * @param timer starts the hedges after the delay, without blocking
+	 * @param executor runs the hedges, should reject them rather than queue them
+	 */
+	public HedgingConnector(final HttpConnector delegate, final ScheduledExecutorService timer,
+			final ExecutorService executor, final double percentile, final long minDelayMillis,
+			final double maxExtraRatio) {
+		if (percentile <= 0 || percentile >= 1 || maxExtraRatio < 0 || maxExtraRatio > 1) {
+			throw new IllegalArgumentException("percentile must be in (0, 1), maxExtraRatio in [0, 1]");
+		}
+		this.delegate = delegate;
+		this.timer = timer;
+		this.executor = executor;
+		this.percentile = percentile;
+		minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+		this.maxExtraRatio = maxExtraRatio;
+		delayNanos = minDelayNanos;
+	}
+
+	/**
+	 * Reads <code>sfsf.http.hedging.percentile</code> (95), <code>.min-delay-millis</code> (50),
+	 * <code>.max-extra-percent</code> (5) and <code>.max-concurrent</code> (16), the number of hedges in flight.
+	 *
+	 * @return the connector hedged on a bounded daemon thread pool and reported in {@link Metrics#registry()}, or the
+	 *         connector itself unless <code>sfsf.http.hedging.enabled</code> is <code>true</code>
+	 */
+	public static HttpConnector wrap(final HttpConnector delegate, final String name) {
+		if (!Boolean.getBoolean(PROPERTY_PREFIX + "enabled")) {
+			return delegate;
+		}
+		// no queue, a hedge that cannot start at once is rejected
+		final ExecutorService executor = new ThreadPoolExecutor(0, Integer.getInteger(PROPERTY_PREFIX + "max-concurrent", 16),
+				60, TimeUnit.SECONDS, new SynchronousQueue<>(), daemonThreads(name));
+		final HedgingConnector connector = new HedgingConnector(delegate,
+				Executors.newSingleThreadScheduledExecutor(daemonThreads(name + "-timer")), executor,
+				Integer.getInteger(PROPERTY_PREFIX + "percentile", 95) / 100.0,
+				Long.getLong(PROPERTY_PREFIX + "min-delay-millis", 50),
+				Integer.getInteger(PROPERTY_PREFIX + "max-extra-percent", 5) / 100.0);
+		return connector.registerMetrics(Metrics.registry(), name);
+	}
+
+	/**
+	 * Exposes the counters <code>http_hedged_requests_total</code>, <code>http_hedge_wins_total</code> and
+	 * <code>http_hedges_rejected_total</code> and the gauge <code>http_hedge_delay_seconds</code> with the given name as
+	 * target.
+	 */
+	public HedgingConnector registerMetrics(final MetricRegistry registry, final String name) {
+		registry.counter("http_hedged_requests", name, this::getHedgedCount);
+		registry.counter("http_hedge_wins", name, this::getHedgeWinCount);
+		registry.counter("http_hedges_rejected", name, this::getRejectedHedgeCount);
+		registry.gauge("http_hedge_delay_seconds", name, () -> delayNanos / 1e9);
+		return this;
+	}
+
+	@Override
+	public String get(final String url) throws IOException {
+		return hedge(() -> delegate.get(url));
+	}
+
+	@Override
+	public <T> T get(final String url, final ResponseDecoder<T> decoder) throws IOException {
+		return hedge(() -> delegate.get(url, decoder));
+	}
+
+	@Override
+	public void post(final String url, final String payload) throws IOException {
+		delegate.post(url, payload);
+	}
+
+	public long getHedgedCount() {
+		return hedged.get();
+	}
+
+	public long getHedgeWinCount() {
+		return hedgeWins.sum();
+	}
+
+	/**
+	 * @return the number of hedges not sent because the executor was full
+	 */
+	public long getRejectedHedgeCount() {
+		return rejectedHedges.sum();
+	}
+
+	long getDelayNanos() {
+		return delayNanos;
+	}
+
+	private <T> T hedge(final Attempt<T> attempt) throws IOException {
+		final long start = System.nanoTime();
+		final long request = requests.incrementAndGet();
+		if (request % DELAY_REFRESH_INTERVAL == 0) {
+			delayNanos = Math.max(minDelayNanos, latencies.snapshot().getValueAtQuantile(percentile));
+		}
+		final Cancellation first = new Cancellation();
+		final Hedge<T> hedge = new Hedge<>(inContext(attempt), first);
+		final ScheduledFuture<?> scheduled = timer.schedule(() -> startHedge(hedge, request), delayNanos,
+				TimeUnit.NANOSECONDS);
+		try {
+			final T result = first.run(attempt);
+			latencies.record(System.nanoTime() - start);
+			return result;
+		} catch (final Exception e) {
+			if (!hedge.started) {
+				throw toIOException(e);
+			}
+			// the hedge answered and cancelled this attempt, or may still answer
+			final T result = await(hedge, e);
+			hedgeWins.increment();
+			latencies.record(System.nanoTime() - start);
+			return result;
+		} finally {
+			scheduled.cancel(false);
+			hedge.cancellation.cancel();
+		}
+	}
+
+	private void startHedge(final Hedge<?> hedge, final long request) {
+		if (!mayHedge(request)) {
+			return;
+		}
+		// started before it runs, a hedge answering at once cancels the first attempt
+		hedge.started = true;
+		try {
+			executor.execute(hedge);
+			LOGGER.debug("No answer after {} ms, hedging the request", TimeUnit.NANOSECONDS.toMillis(delayNanos));
+		} catch (final RejectedExecutionException e) {
+			hedge.started = false;
+			hedge.outcome.completeExceptionally(e);
+			hedged.decrementAndGet();
+			rejectedHedges.increment();
+			LOGGER.debug("No thread free for hedging the request");
+		}
+	}
+
+	/**
+	 * @return the answer of the hedge, or the failure of the first attempt if the hedge failed as well
+	 */
+	private static <T> T await(final Hedge<T> hedge, final Exception failure) throws IOException {
+		try {
+			return hedge.outcome.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the response", e);
+		} catch (final ExecutionException e) {
+			failure.addSuppressed(e.getCause());
+			throw toIOException(failure);
+		}
+	}
+
+	private boolean mayHedge(final long request) {
+		while (true) {
+			final long current = hedged.get();
+			if (current + 1 > maxExtraRatio * request) {
+				return false;
+			}
+			if (hedged.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the attempt running in the trace, tenant and MDC of the current thread
+	 */
+	private static <T> Attempt<T> inContext(final Attempt<T> attempt) {
+		final TraceContext context = TraceContext.current();
+		final String tenantId = TenantContext.attached();
+		final Map<String, String> mdc = MDC.getCopyOfContextMap();
+		return () -> {
+			final Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+			setMdc(mdc);
+			final TraceContext previous = context != null ? context.attach() : TraceContext.current();
+			final String previousTenantId = TenantContext.attach(tenantId);
+			try {
+				return attempt.call();
+			} finally {
+				TenantContext.restore(previousTenantId);
+				TraceContext.restore(previous);
+				setMdc(previousMdc);
+			}
+		};
+	}
+
+	private static void setMdc(final Map<String, String> mdc) {
+		if (mdc == null) {
+			MDC.clear();
+		} else {
+			MDC.setContextMap(mdc);
+		}
+	}
+
+	private static IOException toIOException(final Throwable cause) {
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, "hedging-" + name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * The second attempt of a request, cancelling the first if it answers.
+	 */
+	private static final class Hedge<T> implements Runnable {
+
+		private final Attempt<T> attempt;
+		private final Cancellation first;
+		private final Cancellation cancellation = new Cancellation();
+		private final CompletableFuture<T> outcome = new CompletableFuture<>();
+		private volatile boolean started;
+
+		Hedge(final Attempt<T> attempt, final Cancellation first) {
+			this.attempt = attempt;
+			this.first = first;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (outcome.complete(cancellation.run(attempt))) {
+					first.cancel();
+				}
+			} catch (final Exception e) {
+				outcome.completeExceptionally(e);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private interface Attempt<T> extends Callable<T> {
+
+		@Override
+		T call() throws IOException;
+
+	}
+
+}
@@ -23,6 +23,14 @@ public interface HttpConnector {
 
 	public String get(String url) throws IOException;
 
+	/**
+	 * GETs the URL and decodes the body. Implementations may reuse the body of an unchanged resource, but always return
+	 * a newly decoded object.
+	 */
+	public default <T> T get(final String url, final ResponseDecoder<T> decoder) throws IOException {
+		return decoder.decode(get(url));
+	}
+
 	public void post(String url, String payload) throws IOException;
 
 }
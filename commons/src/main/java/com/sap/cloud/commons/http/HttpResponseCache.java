@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of GET response bodies keyed by URL, revalidated with <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code>, bounded by the total length of the cached bodies.
+ *
+ * Only responses carrying an <code>ETag</code> or <code>Last-Modified</code> validator and at most
+ * {@link #MAX_BODY_LENGTH} characters long are kept. A <code>304 Not Modified</code> skips the download, not the
+ * decoding: every caller decodes its own object from the cached body, since the decoded entities are mutable and must
+ * not be shared between requests. Thread-safe.
+ */
+public class HttpResponseCache {
+
+	/**
+	 * System property with the maximum total length in characters of the cached bodies per connector, <code>0</code>
+	 * disables caching.
+	 */
+	public static final String MAX_CHARS_PROPERTY = "sfsf.http.response-cache.max-chars";
+
+	static final long DEFAULT_MAX_CHARS = 4L << 20;
+	static final int MAX_BODY_LENGTH = 1 << 20;
+
+	private final long maxChars;
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private long chars;
+
+	public HttpResponseCache(final long maxChars) {
+		if (maxChars < 1) {
+			throw new IllegalArgumentException("maxChars must be positive");
+		}
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * @return a cache sized by {@link #MAX_CHARS_PROPERTY}, or <code>null</code> if caching is disabled
+	 */
+	public static HttpResponseCache fromSystemProperties() {
+		final long maxChars = Long.getLong(MAX_CHARS_PROPERTY, DEFAULT_MAX_CHARS);
+		return maxChars > 0 ? new HttpResponseCache(maxChars) : null;
+	}
+
+	public synchronized Entry get(final String url) {
+		return entries.get(url);
+	}
+
+	/**
+	 * Caches the response if it can be revalidated, otherwise drops any stale entry for the URL. The least recently
+	 * used entries are evicted until the bodies fit into the limit again.
+	 */
+	public synchronized void put(final String url, final Entry entry) {
+		final Entry previous = entries.remove(url);
+		if (previous != null) {
+			chars -= previous.length();
+		}
+		if (entry.isCacheable() && entry.length() <= maxChars) {
+			entries.put(url, entry);
+			chars += entry.length();
+		}
+		final Iterator<Entry> eldest = entries.values().iterator();
+		while (chars > maxChars) {
+			chars -= eldest.next().length();
+			eldest.remove();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total length in characters of the cached bodies
+	 */
+	public synchronized long getChars() {
+		return chars;
+	}
+
+	void hit() {
+		hits.increment();
+	}
+
+	void miss() {
+		misses.increment();
+	}
+
+	/**
+	 * @return the number of responses served from the cache after a <code>304</code>
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of revalidations answered with a new body
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public static final class Entry {
+
+		private final String body;
+		private final String etag;
+		private final String lastModified;
+
+		public Entry(final String body, final String etag, final String lastModified) {
+			this.body = body;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		boolean isCacheable() {
+			return (etag != null || lastModified != null) && body != null && body.length() <= MAX_BODY_LENGTH;
+		}
+
+		long length() {
+			return body == null ? 0 : body.length();
+		}
+
+		/**
+		 * @return a new object decoded from the body
+		 */
+		public <T> T decode(final ResponseDecoder<T> decoder) throws IOException {
+			return decoder.decode(body);
+		}
+	}
+}
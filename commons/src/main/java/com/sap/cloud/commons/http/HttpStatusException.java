@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the destination answered with an error status other than <code>404</code> or <code>410</code>, which
+ * {@link java.net.HttpURLConnection} reports as {@link java.io.FileNotFoundException}.
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int status;
+
+	public HttpStatusException(final int status, final IOException cause) {
+		super(cause.getMessage(), cause);
+		this.status = status;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return whether the destination failed, as opposed to rejecting the request
+	 */
+	public boolean isServerError() {
+		return status >= 500;
+	}
+
+}
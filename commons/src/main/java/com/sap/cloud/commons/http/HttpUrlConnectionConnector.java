@@ -13,17 +13,20 @@
  */
 package com.sap.cloud.commons.http;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import javax.naming.ConfigurationException;
 
 import com.sap.cloud.commons.connectivity.DestinationUtils;
+import com.sap.cloud.commons.tracing.TraceContext;
 import com.sap.core.connectivity.api.authentication.AuthenticationHeader;
 import com.sap.core.connectivity.api.configuration.DestinationConfiguration;
 
@@ -38,6 +41,18 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 
 	static final String ACCEPT_HEADER = "Accept";
 	static final String DESTINATION_URL = "URL";
+	static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+	static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+	static final String ETAG_HEADER = "ETag";
+	static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+	private static final String AUTHENTICATION_HEADERS = HttpUrlConnectionConnector.class.getName() + ".authenticationHeaders";
+
+	/**
+	 * System properties with the connect and read timeouts in milliseconds, <code>0</code> waits forever.
+	 */
+	public static final String CONNECT_TIMEOUT_PROPERTY = "sfsf.http.connect-timeout-millis";
+	public static final String READ_TIMEOUT_PROPERTY = "sfsf.http.read-timeout-millis";
 
 	enum HttpMethod {
 		GET, POST;
@@ -45,6 +60,9 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 
 	private DestinationUtils destinations;
 	private BasicAuthenticationHeaderProvider headerProvider;
+	private HttpResponseCache responseCache = HttpResponseCache.fromSystemProperties();
+	private int connectTimeoutMillis = Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, 5000);
+	private int readTimeoutMillis = Integer.getInteger(READ_TIMEOUT_PROPERTY, 30000);
 
 	public HttpUrlConnectionConnector() {}
 
@@ -64,7 +82,16 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 
 	@Override
 	public String get(final String url) throws IOException {
-		final DestinationConfiguration destinationConfiguration = destinations.getDestinationConfiguration();
+		return fetch(url).getBody();
+	}
+
+	@Override
+	public <T> T get(final String url, final ResponseDecoder<T> decoder) throws IOException {
+		return fetch(url).decode(decoder);
+	}
+
+	private HttpResponseCache.Entry fetch(final String url) throws IOException {
+		final DestinationUtils.Snapshot destination = destinations.snapshot();
 		URL requestURL;
 		try {
 			requestURL = getRequestURL(url);
@@ -72,8 +99,21 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 			throw new IOException(e);
 		}
 		final HttpURLConnection urlConnection = (HttpURLConnection) requestURL.openConnection();
-		injectAuthenticationHeaders(urlConnection, destinationConfiguration);
-		return execute(urlConnection, HttpMethod.GET);
+		Cancellation.register(urlConnection);
+		urlConnection.setConnectTimeout(connectTimeoutMillis);
+		urlConnection.setReadTimeout(readTimeoutMillis);
+		injectAuthenticationHeaders(urlConnection, destination);
+		injectTraceHeaders(urlConnection);
+		final String cacheKey = requestURL.toString();
+		final HttpResponseCache.Entry cached = responseCache == null ? null : responseCache.get(cacheKey);
+		if (cached != null) {
+			injectConditionalHeaders(urlConnection, cached);
+		}
+		final HttpResponseCache.Entry response = execute(urlConnection, HttpMethod.GET, cached);
+		if (responseCache != null && response != cached) {
+			responseCache.put(cacheKey, response);
+		}
+		return response;
 	}
 
 	@Override
@@ -81,7 +121,11 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 		throw new RuntimeException("Not implemented");
 	}
 
-	private String execute(final HttpURLConnection connection, final HttpMethod method) throws IOException {
+	/**
+	 * @return the cached entry if the server answered <code>304 Not Modified</code>, otherwise a new entry
+	 */
+	private HttpResponseCache.Entry execute(final HttpURLConnection connection, final HttpMethod method,
+			final HttpResponseCache.Entry cached) throws IOException {
 		connection.setRequestMethod(method.toString());
 
 		final String requestLine = connection.getRequestMethod() + " " + connection.getURL().toString() + "\r\n";
@@ -90,34 +134,78 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 
 		String content = null;
 		try{
+			if (cached != null) {
+				if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+					responseCache.hit();
+					return cached;
+				}
+				responseCache.miss();
+			}
 
-			final InputStream stream = connection.getInputStream();
-			content = IOUtils.toString(stream);
+			try (InputStream stream = connection.getInputStream()) {
+				content = IOUtils.toString(stream);
+			}
 
 		} catch(final Throwable t){
-			final InputStream errorDetails = connection.getErrorStream();
-			LOGGER.error("Server error response is: {}", IOUtils.toString(errorDetails));
+			logErrorResponse(connection);
+			final int status = responseCode(connection);
+			if (status >= 400 && t instanceof IOException && !(t instanceof FileNotFoundException)) {
+				throw new HttpStatusException(status, (IOException) t);
+			}
 			throw t;
 		} finally {
 			final String responseHeaders = listHeaders(connection.getHeaderFields());
 			final String responseStatusLine = getStatusLine(connection) + "\r\n";
 			LOGGER.debug("<-- " + responseStatusLine + responseHeaders);
 		}
-		return content;
+		return new HttpResponseCache.Entry(content, connection.getHeaderField(ETAG_HEADER),
+				connection.getHeaderField(LAST_MODIFIED_HEADER));
 	}
 
-	private void injectAuthenticationHeaders(final HttpURLConnection urlConnection, final DestinationConfiguration destinationConfiguration) {
+	/**
+	 * Never throws, the failure of the request is what the caller has to see.
+	 */
+	private static void logErrorResponse(final HttpURLConnection connection) {
+		// no error stream if there was no response, e.g. on a timeout or a disconnected hedge
+		try (InputStream errorDetails = connection.getErrorStream()) {
+			if (errorDetails != null) {
+				LOGGER.error("Server error response is: {}", IOUtils.toString(errorDetails));
+			}
+		} catch (final IOException | RuntimeException e) {
+			LOGGER.debug("Could not read the server error response", e);
+		}
+	}
+
+	private void injectAuthenticationHeaders(final HttpURLConnection urlConnection, final DestinationUtils.Snapshot destination) {
 		urlConnection.addRequestProperty(ACCEPT_HEADER, "application/json");
-		final List<AuthenticationHeader> authenticationHeaders = getAuthenticationHeaders(destinationConfiguration);
+		// built once per destination change
+		final List<AuthenticationHeader> authenticationHeaders = destination.derive(AUTHENTICATION_HEADERS,
+				snapshot -> getAuthenticationHeaders(snapshot.getConfiguration()));
 		for (final AuthenticationHeader authenticationHeader : authenticationHeaders) {
 			urlConnection.addRequestProperty(authenticationHeader.getName(), authenticationHeader.getValue());
 		}
 	}
 
+	private void injectTraceHeaders(final HttpURLConnection urlConnection) {
+		final TraceContext traceContext = TraceContext.current();
+		if (traceContext != null) {
+			urlConnection.addRequestProperty(TraceContext.TRACEPARENT_HEADER, traceContext.toTraceparent());
+		}
+	}
+
+	private void injectConditionalHeaders(final HttpURLConnection urlConnection, final HttpResponseCache.Entry cached) {
+		if (cached.getEtag() != null) {
+			urlConnection.addRequestProperty(IF_NONE_MATCH_HEADER, cached.getEtag());
+		}
+		if (cached.getLastModified() != null) {
+			urlConnection.addRequestProperty(IF_MODIFIED_SINCE_HEADER, cached.getLastModified());
+		}
+	}
+
 	private List<AuthenticationHeader> getAuthenticationHeaders(final DestinationConfiguration destinationConfiguration) {
 		final List<AuthenticationHeader> authenticationHeaders = new ArrayList<>();
 		authenticationHeaders.add(headerProvider.getAuthenticationHeader(destinationConfiguration));
-		return authenticationHeaders;
+		return Collections.unmodifiableList(authenticationHeaders);
 	}
 
 	URL getRequestURL(final String url) throws IOException, ConfigurationException {
@@ -125,7 +213,7 @@ public class HttpUrlConnectionConnector implements HttpConnector{
       return new URL(url);
     }
 
-		final String requestBaseURL = destinations.getProperty(String.class, DESTINATION_URL);
+		final String requestBaseURL = destinations.snapshot().getProperty(String.class, DESTINATION_URL);
 		if (StringUtils.isEmpty(requestBaseURL)) {
 			final String errorMessage = String.format(
 					"Request URL in Destination %s is not configured. Make sure to have the destination configured.",
@@ -141,6 +229,25 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 		this.destinations = destinations;
 	}
 
+	/**
+	 * @param responseCache the cache for conditional GETs, or <code>null</code> to always fetch the full response
+	 */
+	public void setResponseCache(final HttpResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public HttpResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	public void setConnectTimeoutMillis(final int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public void setReadTimeoutMillis(final int readTimeoutMillis) {
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
 	public void setAuthenticationHeaderProvider(final BasicAuthenticationHeaderProvider provider){
 		headerProvider = provider;
 	}
@@ -156,6 +263,17 @@ public class HttpUrlConnectionConnector implements HttpConnector{
 		return headersList.toString();
 	}
 
+	/**
+	 * @return the status of the response, or <code>-1</code> if there is none, e.g. after a timeout
+	 */
+	private static int responseCode(final HttpURLConnection connection) {
+		try {
+			return connection.getResponseCode();
+		} catch (final IOException e) {
+			return -1;
+		}
+	}
+
 	private String getStatusLine(final HttpURLConnection connection){
 		String responseStatusLine = null;
 		if(connection.getHeaderFields()!=null){
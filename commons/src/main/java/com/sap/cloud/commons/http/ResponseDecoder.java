@@ -0,0 +1,28 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import java.io.IOException;
+
+/**
+ * Turns a response body into an object, e.g. with a Jackson <code>ObjectReader</code>.
+ *
+ * Called once per request, also when the body comes from a response cache, so every caller owns the decoded object.
+ */
+@FunctionalInterface
+public interface ResponseDecoder<T> {
+
+	T decode(String body) throws IOException;
+
+}
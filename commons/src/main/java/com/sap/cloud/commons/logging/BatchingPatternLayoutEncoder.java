@@ -0,0 +1,42 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Pattern encoder that flushes only at the end of a burst, i.e. once the given condition reports that no more events
+ * are waiting, so consecutive events reach the file in one write.
+ */
+public class BatchingPatternLayoutEncoder extends PatternLayoutEncoder {
+
+  private final BooleanSupplier flushCondition;
+
+  public BatchingPatternLayoutEncoder(final BooleanSupplier flushCondition) {
+    this.flushCondition = flushCondition;
+    setImmediateFlush(false);
+  }
+
+  @Override
+  public void doEncode(final ILoggingEvent event) throws IOException {
+    super.doEncode(event);
+    if (flushCondition.getAsBoolean()) {
+      outputStream.flush();
+    }
+  }
+}
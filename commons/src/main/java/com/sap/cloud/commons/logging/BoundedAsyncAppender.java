@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Asynchronous appender that never blocks the logging thread and counts the events it loses.
+ *
+ * Once the queue is filled above the discarding threshold, events at or below <code>discardLevel</code> (DEBUG by
+ * default) are discarded. With <code>neverBlock</code> set, any event arriving at a full queue is dropped instead of
+ * waiting for the writer. An event is counted once, as discarded or as dropped.
+ *
+ * Conversions that read thread-locals, e.g. the user or tenant of the request, would see the writer thread. The
+ * conversion words set with {@link #setCapturedConversions(String...)} are therefore rendered on the logging thread
+ * and handed to the writer in the MDC of the event, see {@link #capture(String)}.
+ */
+public class BoundedAsyncAppender extends AsyncAppender {
+
+  private final LongAdder discarded = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private Level discardLevel = Level.DEBUG;
+  private String[] capturedConversions = new String[0];
+  private final Map<String, PatternLayout> capturedLayouts = new LinkedHashMap<>();
+
+  @Override
+  public void start() {
+    capturedLayouts.clear();
+    for (final String word : capturedConversions) {
+      final PatternLayout layout = new PatternLayout();
+      layout.setContext(getContext());
+      layout.setPattern("%" + word);
+      // the value only, without the stack trace of the event
+      layout.setPostCompileProcessor(null);
+      layout.start();
+      capturedLayouts.put(capturedKey(word), layout);
+    }
+    super.start();
+  }
+
+  @Override
+  protected void preprocess(final ILoggingEvent event) {
+    // still on the logging thread, before the event is queued
+    if (!capturedLayouts.isEmpty() && event instanceof LoggingEvent) {
+      final Map<String, String> mdc = MDC.getCopyOfContextMap();
+      final Map<String, String> captured = mdc == null ? new HashMap<>() : new HashMap<>(mdc);
+      capturedLayouts.forEach((key, layout) -> captured.put(key, layout.doLayout(event)));
+      try {
+        ((LoggingEvent) event).setMDCPropertyMap(captured);
+      } catch (final IllegalStateException e) {
+        // the MDC of the event was already read, e.g. by a filter
+        addWarn("Could not capture conversions: " + e.getMessage());
+      }
+    }
+    super.preprocess(event);
+  }
+
+  @Override
+  protected boolean isDiscardable(final ILoggingEvent event) {
+    // only asked once the queue is above the discarding threshold; a true answer drops the event
+    final boolean discardable = event.getLevel().toInt() <= discardLevel.toInt();
+    if (discardable) {
+      discarded.increment();
+    }
+    return discardable;
+  }
+
+  @Override
+  protected void append(final ILoggingEvent event) {
+    // a full queue is below any discarding threshold, so a discardable event is counted as discarded only
+    if (isNeverBlock() && getRemainingCapacity() == 0
+        && !(getDiscardingThreshold() > 0 && event.getLevel().toInt() <= discardLevel.toInt())) {
+      // racy, but the queue only rejects an event when it is full
+      dropped.increment();
+    }
+    super.append(event);
+  }
+
+  /**
+   * @param words conversion words to render on the logging thread, without the leading <code>%</code>
+   */
+  public void setCapturedConversions(final String... words) {
+    capturedConversions = words.clone();
+  }
+
+  /**
+   * @return the pattern with the captured conversions replaced by the MDC entries holding their values
+   */
+  public String capture(final String pattern) {
+    String captured = pattern;
+    for (final String word : capturedConversions) {
+      captured = captured.replaceAll("%" + word + "(?![a-zA-Z])", "%X{" + capturedKey(word) + "}");
+    }
+    return captured;
+  }
+
+  static String capturedKey(final String word) {
+    return "captured_" + word;
+  }
+
+  /**
+   * @return whether the writer has caught up with the queue
+   */
+  public boolean isIdle() {
+    return getNumberOfElementsInQueue() == 0;
+  }
+
+  public void setDiscardLevel(final Level discardLevel) {
+    this.discardLevel = discardLevel;
+  }
+
+  public Level getDiscardLevel() {
+    return discardLevel;
+  }
+
+  /**
+   * @return number of events discarded by level because the queue was nearly full
+   */
+  public long getDiscardedCount() {
+    return discarded.sum();
+  }
+
+  /**
+   * @return approximate number of events dropped because the queue was full
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log arguments that are rendered only if the log statement is actually written.
+ *
+ * SLF4J calls <code>toString()</code> on an argument only after the level check passed, so
+ * <code>logger.debug("Creating event: {}", LogArgs.json(writer, event))</code> costs a small wrapper when debug is
+ * off instead of a full serialization.
+ */
+public final class LogArgs {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogArgs.class);
+
+  private LogArgs() {}
+
+  /**
+   * @return an argument rendering the supplier's value on demand
+   */
+  public static Object lazy(final Supplier<?> supplier) {
+    return new Lazy(supplier);
+  }
+
+  /**
+   * @return an argument rendering the value as JSON on demand, or <code>null</code> if it cannot be serialized
+   */
+  public static Object json(final ObjectWriter writer, final Object value) {
+    return new Lazy(() -> {
+      try {
+        return writer.writeValueAsString(value);
+      } catch (final JsonProcessingException e) {
+        LOGGER.error("Failed to serialize object.", e);
+        return null;
+      }
+    });
+  }
+
+  private static final class Lazy {
+
+    private final Supplier<?> supplier;
+
+    Lazy(final Supplier<?> supplier) {
+      this.supplier = supplier;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(supplier.get());
+    }
+  }
+}
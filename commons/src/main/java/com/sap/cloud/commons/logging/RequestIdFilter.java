@@ -14,7 +14,6 @@
 package com.sap.cloud.commons.logging;
 
 import java.io.IOException;
-import java.util.UUID;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -26,21 +25,48 @@ import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.sap.cloud.commons.tracing.TraceContext;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import ch.qos.logback.classic.ClassicConstants;
 
+/**
+ * Assigns a request id to every SOAP request and starts its {@link TraceContext}.
+ *
+ * A well-formed incoming <code>X-Request-ID</code> is kept, otherwise an id is taken from the
+ * {@link RequestIdGenerator} named by the <code>sfsf.request-id.generator</code> system property, by default a
+ * {@link SequentialRequestIdGenerator}. The request details (URI, method, user agent, ...) are put into the MDC for
+ * the log lines of the request; they are only logged by this filter while debug logging is enabled for it.
+ */
 @WebFilter(filterName = "AddRequestId", urlPatterns = {"/services/*"}, asyncSupported = true)
 public class RequestIdFilter implements Filter {
 
+  public static final String GENERATOR_PROPERTY = "sfsf.request-id.generator";
+
+  static final int MAX_REQUEST_ID_LENGTH = 64;
+
   private static final String X_REQUEST_ID = "X-Request-ID";
   private static final String X_FORWARDED_FOR = "X-Forwarded-For";
   private static final String USER_AGENT = "User-Agent";
-  private static final String REQUEST_ID = "request_id";
+  private static final String[] REQUEST_MDC_KEYS = {ClassicConstants.REQUEST_REMOTE_HOST_MDC_KEY,
+      ClassicConstants.REQUEST_REQUEST_URI, ClassicConstants.REQUEST_QUERY_STRING,
+      ClassicConstants.REQUEST_REQUEST_URL, ClassicConstants.REQUEST_METHOD,
+      ClassicConstants.REQUEST_USER_AGENT_MDC_KEY, ClassicConstants.REQUEST_X_FORWARDED_FOR};
   private final Logger log = LoggerFactory.getLogger(RequestIdFilter.class);
 
+  private final RequestIdGenerator generator;
+
+  public RequestIdFilter() {
+    this(newGenerator(System.getProperty(GENERATOR_PROPERTY)));
+  }
+
+  public RequestIdFilter(final RequestIdGenerator generator) {
+    this.generator = generator;
+  }
+
   @Override
   public void init(final FilterConfig filterConfig) throws ServletException {
 
@@ -50,36 +76,19 @@ public class RequestIdFilter implements Filter {
   public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
       throws IOException, ServletException {
 
+    final HttpServletRequest httpServletRequest =
+        request instanceof HttpServletRequest ? (HttpServletRequest) request : null;
+    final String id = requestId(httpServletRequest);
+    final String traceparent =
+        httpServletRequest != null ? httpServletRequest.getHeader(TraceContext.TRACEPARENT_HEADER) : null;
 
-    final String id = UUID.randomUUID().toString();
-
+    // puts the request id into the MDC
+    final TraceContext previous = TraceContext.root(id, traceparent).attach();
     MDC.put(ClassicConstants.REQUEST_REMOTE_HOST_MDC_KEY, request.getRemoteHost());
-    MDC.put(REQUEST_ID, id);
-    if (request instanceof HttpServletRequest) {
-      final HttpServletRequest httpServletRequest = (HttpServletRequest) request;
-
-      final String requestURI = httpServletRequest.getRequestURI();
-      final String method = httpServletRequest.getMethod();
-      final String userAgent = httpServletRequest.getHeader(USER_AGENT);
-      final String xForwardedFor = httpServletRequest.getHeader(X_FORWARDED_FOR);
-
-      MDC.put(ClassicConstants.REQUEST_REQUEST_URI, requestURI);
-      final StringBuffer requestURL = httpServletRequest.getRequestURL();
-      if (requestURL != null) {
-        MDC.put(ClassicConstants.REQUEST_REQUEST_URL, requestURL.toString());
-      }
-
-      MDC.put(ClassicConstants.REQUEST_METHOD, method);
-      MDC.put(ClassicConstants.REQUEST_QUERY_STRING, httpServletRequest.getQueryString());
-      MDC.put(ClassicConstants.REQUEST_USER_AGENT_MDC_KEY, userAgent);
-      MDC.put(ClassicConstants.REQUEST_X_FORWARDED_FOR, xForwardedFor);
-
-      final String message = new StringBuilder().append(method).append(" ").append(requestURI).append(" ")
-          .append(userAgent).append(" ").append(xForwardedFor).toString();
-      log.debug(message);
+    if (httpServletRequest != null) {
+      putRequestDetails(httpServletRequest);
     }
 
-
     if (response instanceof HttpServletResponse) {
       final HttpServletResponse resp = (HttpServletResponse) response;
       resp.addHeader(X_REQUEST_ID, id);
@@ -89,16 +98,10 @@ public class RequestIdFilter implements Filter {
     try {
       chain.doFilter(request, response);
     } finally {
-
-      MDC.remove(REQUEST_ID);
-
-      MDC.remove(ClassicConstants.REQUEST_REMOTE_HOST_MDC_KEY);
-      MDC.remove(ClassicConstants.REQUEST_REQUEST_URI);
-      MDC.remove(ClassicConstants.REQUEST_QUERY_STRING);
-      MDC.remove(ClassicConstants.REQUEST_REQUEST_URL);
-      MDC.remove(ClassicConstants.REQUEST_METHOD);
-      MDC.remove(ClassicConstants.REQUEST_USER_AGENT_MDC_KEY);
-      MDC.remove(ClassicConstants.REQUEST_X_FORWARDED_FOR);
+      TraceContext.restore(previous);
+      for (final String key : REQUEST_MDC_KEYS) {
+        MDC.remove(key);
+      }
     }
   }
 
@@ -107,4 +110,59 @@ public class RequestIdFilter implements Filter {
 
   }
 
+  String requestId(final HttpServletRequest request) {
+    final String incoming = request != null ? request.getHeader(X_REQUEST_ID) : null;
+    return isValidRequestId(incoming) ? incoming : generator.nextId();
+  }
+
+  /**
+   * Accepts ids of up to 64 letters, digits and <code>-._:</code>, so a caller cannot inject into log lines.
+   */
+  static boolean isValidRequestId(final String id) {
+    if (id == null || id.isEmpty() || id.length() > MAX_REQUEST_ID_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < id.length(); i++) {
+      final char c = id.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_'
+          || c == ':')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void putRequestDetails(final HttpServletRequest httpServletRequest) {
+    final String requestURI = httpServletRequest.getRequestURI();
+    final String method = httpServletRequest.getMethod();
+    final String userAgent = httpServletRequest.getHeader(USER_AGENT);
+    final String xForwardedFor = httpServletRequest.getHeader(X_FORWARDED_FOR);
+
+    MDC.put(ClassicConstants.REQUEST_REQUEST_URI, requestURI);
+    final StringBuffer requestURL = httpServletRequest.getRequestURL();
+    if (requestURL != null) {
+      MDC.put(ClassicConstants.REQUEST_REQUEST_URL, requestURL.toString());
+    }
+
+    MDC.put(ClassicConstants.REQUEST_METHOD, method);
+    MDC.put(ClassicConstants.REQUEST_QUERY_STRING, httpServletRequest.getQueryString());
+    MDC.put(ClassicConstants.REQUEST_USER_AGENT_MDC_KEY, userAgent);
+    MDC.put(ClassicConstants.REQUEST_X_FORWARDED_FOR, xForwardedFor);
+
+    log.debug("{} {} {} {}", method, requestURI, userAgent, xForwardedFor);
+  }
+
+  static RequestIdGenerator newGenerator(final String className) {
+    if (className == null || className.isEmpty()) {
+      return new SequentialRequestIdGenerator();
+    }
+    try {
+      return (RequestIdGenerator) Class.forName(className).newInstance();
+    } catch (final ReflectiveOperationException | ClassCastException | LinkageError e) {
+      LoggerFactory.getLogger(RequestIdFilter.class)
+          .warn("{} is not a usable RequestIdGenerator, using the default", className, e);
+      return new SequentialRequestIdGenerator();
+    }
+  }
+
 }
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import java.util.UUID;
+
+/**
+ * Source of the ids {@link RequestIdFilter} assigns to requests that do not bring their own. Implementations must be
+ * thread-safe and have a public no-arg constructor.
+ */
+@FunctionalInterface
+public interface RequestIdGenerator {
+
+  String nextId();
+
+  /**
+   * @return a generator of random UUIDs, which are globally unique but draw from SecureRandom
+   */
+  static RequestIdGenerator randomUuid() {
+    return () -> UUID.randomUUID().toString();
+  }
+}
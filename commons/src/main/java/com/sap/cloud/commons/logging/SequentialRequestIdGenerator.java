@@ -0,0 +1,43 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link RequestIdGenerator}: a per-instance prefix followed by a counter, e.g.
+ * <code>3f9a61c2-ixk2m1a8-2a</code>.
+ *
+ * The prefix combines a random node id with the start time, so ids are unique per node and across restarts; the
+ * counter makes them monotonic. Not suitable where ids must be unguessable.
+ */
+public class SequentialRequestIdGenerator implements RequestIdGenerator {
+
+  private final String prefix;
+  private final AtomicLong sequence = new AtomicLong();
+
+  public SequentialRequestIdGenerator() {
+    this(ThreadLocalRandom.current().nextInt(), System.currentTimeMillis());
+  }
+
+  SequentialRequestIdGenerator(final int nodeId, final long startMillis) {
+    prefix = String.format("%08x-%s-", nodeId, Long.toString(startMillis, Character.MAX_RADIX));
+  }
+
+  @Override
+  public String nextId() {
+    return prefix + Long.toHexString(sequence.incrementAndGet());
+  }
+}
@@ -16,6 +16,7 @@ package com.sap.cloud.commons.logging;
 
 import org.slf4j.LoggerFactory;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
@@ -24,14 +25,45 @@ import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.rolling.RollingFileAppender;
 
+/**
+ * Configures the console and log file appenders provided by the platform.
+ *
+ * Unless <code>-Dsfsf.logging.async=false</code> is set, both are moved behind a {@link BoundedAsyncAppender}, so the
+ * request threads never wait for the disk, and the log file is flushed once per burst instead of per event. The
+ * queue is tuned with the <code>sfsf.logging.async.*</code> system properties.
+ */
 public class Slf4jUtils {
 
   public static final String LOGGER_CTX_REQUEST_ID = "request_id";
 
+  public static final String ASYNC_PROPERTY = "sfsf.logging.async";
+  public static final String QUEUE_SIZE_PROPERTY = ASYNC_PROPERTY + ".queue-size";
+  public static final String DISCARDING_THRESHOLD_PROPERTY = ASYNC_PROPERTY + ".discarding-threshold";
+  public static final String DISCARD_LEVEL_PROPERTY = ASYNC_PROPERTY + ".discard-level";
+  public static final String NEVER_BLOCK_PROPERTY = ASYNC_PROPERTY + ".never-block";
+
+  static final String ASYNC_APPENDER_NAME = "ASYNC";
+
+  private static final int DEFAULT_QUEUE_SIZE = 8192;
+
+  private static final String LOG_FILE_PATTERN =
+      "%1d{yyyy MM dd HH:mm:ss}#%o#%p#%c#%a#%u#%t#%b#%z#%X{tenant_alias}#[%X{request_id}] %m%ex|%n";
+
+  // conversions of the platform that read the request of the logging thread
+  private static final String[] PLATFORM_CONVERSIONS = {"o", "a", "u", "b", "z"};
+
+  private static volatile BoundedAsyncAppender asyncAppender;
+
   public static void setup() {
     final Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
 
     final LoggerContext loggerContext = root.getLoggerContext();
+    if (root.getAppender(ASYNC_APPENDER_NAME) != null) {
+      // already set up, the appenders have been moved
+      return;
+    }
+
+    final BoundedAsyncAppender async = isAsyncEnabled() ? newAsyncAppender(loggerContext) : null;
 
     final Appender<ILoggingEvent> stdoutApp = root.getAppender("STDOUT");
     if (stdoutApp != null) {
@@ -47,15 +79,55 @@ public class Slf4jUtils {
     final Appender<ILoggingEvent> logApp = root.getAppender("LOGFILE");
     if (logApp != null) {
       final RollingFileAppender<ILoggingEvent> logFileAppender = (RollingFileAppender<ILoggingEvent>) logApp;
-      final PatternLayoutEncoder filePatternLayout = new PatternLayoutEncoder();
-      filePatternLayout
-          .setPattern("%1d{yyyy MM dd HH:mm:ss}#%o#%p#%c#%a#%u#%t#%b#%z#%X{tenant_alias}#[%X{request_id}] %m%ex|%n");
+      final PatternLayoutEncoder filePatternLayout =
+          async != null ? new BatchingPatternLayoutEncoder(async::isIdle) : new PatternLayoutEncoder();
+      filePatternLayout.setPattern(async != null ? async.capture(LOG_FILE_PATTERN) : LOG_FILE_PATTERN);
       filePatternLayout.setContext(loggerContext);
       filePatternLayout.start();
       logFileAppender.setEncoder(filePatternLayout);
       logFileAppender.start();
 
     }
+
+    if (async != null) {
+      moveToAsync(root, async, stdoutApp);
+      moveToAsync(root, async, logApp);
+      async.start();
+      root.addAppender(async);
+      asyncAppender = async;
+    }
+  }
+
+  /**
+   * @return the asynchronous appender installed by {@link #setup()}, or <code>null</code>
+   */
+  public static BoundedAsyncAppender getAsyncAppender() {
+    return asyncAppender;
+  }
+
+  private static boolean isAsyncEnabled() {
+    return Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY, "true"));
+  }
+
+  private static BoundedAsyncAppender newAsyncAppender(final LoggerContext loggerContext) {
+    final BoundedAsyncAppender async = new BoundedAsyncAppender();
+    async.setName(ASYNC_APPENDER_NAME);
+    async.setContext(loggerContext);
+    final int queueSize = Integer.getInteger(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE);
+    async.setQueueSize(queueSize);
+    async.setDiscardingThreshold(Integer.getInteger(DISCARDING_THRESHOLD_PROPERTY, queueSize / 5));
+    async.setDiscardLevel(Level.toLevel(System.getProperty(DISCARD_LEVEL_PROPERTY), Level.DEBUG));
+    async.setNeverBlock(Boolean.parseBoolean(System.getProperty(NEVER_BLOCK_PROPERTY, "true")));
+    async.setCapturedConversions(PLATFORM_CONVERSIONS);
+    return async;
+  }
+
+  private static void moveToAsync(final Logger root, final BoundedAsyncAppender async,
+      final Appender<ILoggingEvent> appender) {
+    if (appender != null) {
+      root.detachAppender(appender);
+      async.addAppender(appender);
+    }
   }
 
 }
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ *
+ * Every power of two is split into 16 linear sub-buckets, so a recorded value is reported with at most 1/16 relative
+ * error. Values range from 0 to about 18 minutes in nanoseconds; larger values are clamped. Recording does not
+ * allocate.
+ *
+ * Count and sum are kept since creation. Quantiles and the maximum only cover the values recorded in the last
+ * <code>window</code>, kept in slices that are reused in turn, so an old outlier ages out instead of dominating them
+ * forever. A value recorded while its slice is being reused may be lost.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+  private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private static final long DEFAULT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final int DEFAULT_SLICES = 6;
+
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final Slice[] slices;
+  private final long sliceNanos;
+  private final LongSupplier nanoTime;
+
+  public LatencyHistogram() {
+    this(DEFAULT_WINDOW_NANOS, DEFAULT_SLICES, System::nanoTime);
+  }
+
+  LatencyHistogram(final long windowNanos, final int slices, final LongSupplier nanoTime) {
+    this.slices = new Slice[slices];
+    for (int i = 0; i < slices; i++) {
+      this.slices[i] = new Slice();
+    }
+    sliceNanos = windowNanos / slices;
+    this.nanoTime = nanoTime;
+  }
+
+  public void record(final long nanos) {
+    final long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    count.increment();
+    sum.add(value);
+    current(Math.floorDiv(nanoTime.getAsLong(), sliceNanos)).record(value);
+  }
+
+  private Slice current(final long epoch) {
+    final Slice slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+    if (slice.epoch != epoch) {
+      synchronized (slice) {
+        if (slice.epoch != epoch) {
+          slice.reset();
+          slice.epoch = epoch;
+        }
+      }
+    }
+    return slice;
+  }
+
+  public Snapshot snapshot() {
+    final long epoch = Math.floorDiv(nanoTime.getAsLong(), sliceNanos);
+    final long[] copy = new long[BUCKETS];
+    long total = 0;
+    long max = 0;
+    for (final Slice slice : slices) {
+      // slices not reused within the window hold older values
+      if (epoch - slice.epoch >= slices.length) {
+        continue;
+      }
+      for (int i = 0; i < BUCKETS; i++) {
+        final long bucket = slice.counts.get(i);
+        copy[i] += bucket;
+        total += bucket;
+      }
+      max = Math.max(max, slice.max.get());
+    }
+    return new Snapshot(copy, total, count.sum(), sum.sum(), max);
+  }
+
+  static int index(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBound(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  private static final class Slice {
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+    private volatile long epoch = Long.MIN_VALUE;
+
+    void record(final long value) {
+      counts.incrementAndGet(index(value));
+      long currentMax = max.get();
+      while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+        currentMax = max.get();
+      }
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts.set(i, 0);
+      }
+      max.set(0);
+    }
+  }
+
+  /**
+   * Point-in-time copy of a histogram. Counts recorded while the copy is taken may be partially included.
+   */
+  public static class Snapshot {
+
+    private final long[] counts;
+    private final long windowCount;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(final long[] counts, final long windowCount, final long count, final long sum, final long max) {
+      this.counts = counts;
+      this.windowCount = windowCount;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * @return number of all recorded values
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return sum of all recorded values in nanoseconds
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * @return largest value recorded in the window, in nanoseconds
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the upper bound of the bucket holding the quantile of the values recorded in the window, in nanoseconds
+     */
+    public long getValueAtQuantile(final double quantile) {
+      if (windowCount == 0) {
+        return 0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(quantile * windowCount));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(upperBound(i), max);
+        }
+      }
+      return max;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency histograms keyed by stage name, action and outcome, and gauges and counters keyed by name and target.
+ *
+ * Lookups go through nested maps instead of a composite key, so recording into an existing histogram does not
+ * allocate. Thread-safe.
+ */
+public class MetricRegistry {
+
+  private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>>> histograms =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, DoubleSupplier>> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, LongSupplier>> counters = new ConcurrentHashMap<>();
+
+  public void record(final String name, final String action, final String outcome, final long nanos) {
+    histogram(name, action, outcome).record(nanos);
+  }
+
+  public LatencyHistogram histogram(final String name, final String action, final String outcome) {
+    return get(get(get(histograms, name, key -> new ConcurrentHashMap<>()), String.valueOf(action),
+        key -> new ConcurrentHashMap<>()), String.valueOf(outcome), key -> new LatencyHistogram());
+  }
+
+  /**
+   * @return live view of all histograms: name to action to outcome
+   */
+  public Map<String, ? extends Map<String, ? extends Map<String, LatencyHistogram>>> getHistograms() {
+    return histograms;
+  }
+
+  /**
+   * Registers a gauge whose value is read on every scrape, replacing a gauge with the same name and target.
+   */
+  public void gauge(final String name, final String target, final DoubleSupplier value) {
+    get(gauges, name, key -> new ConcurrentHashMap<>()).put(target, value);
+  }
+
+  /**
+   * @return live view of all gauges: name to target to value
+   */
+  public Map<String, ? extends Map<String, DoubleSupplier>> getGauges() {
+    return gauges;
+  }
+
+  /**
+   * Registers a counter, a count that only goes up, read on every scrape, replacing a counter with the same name and
+   * target. The name is without the <code>_total</code> suffix.
+   */
+  public void counter(final String name, final String target, final LongSupplier value) {
+    get(counters, name, key -> new ConcurrentHashMap<>()).put(target, value);
+  }
+
+  /**
+   * @return live view of all counters: name to target to value
+   */
+  public Map<String, ? extends Map<String, LongSupplier>> getCounters() {
+    return counters;
+  }
+
+  private static <V> V get(final ConcurrentMap<String, V> map, final String key,
+      final Function<String, V> factory) {
+    final V value = map.get(key);
+    return value != null ? value : map.computeIfAbsent(key, factory);
+  }
+}
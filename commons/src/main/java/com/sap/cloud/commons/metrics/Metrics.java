@@ -0,0 +1,67 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.metrics;
+
+import rx.Observable;
+
+/**
+ * Process-wide {@link MetricRegistry} and helpers to time the stages of event processing.
+ *
+ * Synchronous stages are timed with {@link #start()} and {@link #record(String, String, String, long)}, reactive ones
+ * with {@link #timed(Observable, String, String)}.
+ */
+public final class Metrics {
+
+  public static final String SUCCESS = "success";
+  public static final String ERROR = "error";
+
+  private static final MetricRegistry REGISTRY = new MetricRegistry();
+
+  private Metrics() {}
+
+  public static MetricRegistry registry() {
+    return REGISTRY;
+  }
+
+  /**
+   * @return start timestamp to pass to {@link #record(String, String, String, long)}
+   */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  public static void record(final String name, final String action, final String outcome, final long start) {
+    REGISTRY.record(name, action, outcome, System.nanoTime() - start);
+  }
+
+  /**
+   * Times each subscription to the source from subscribe until it completes or fails. Subscriptions that are
+   * unsubscribed before terminating are not recorded.
+   */
+  public static <T> Observable<T> timed(final Observable<T> source, final String name, final String action) {
+    return timed(REGISTRY, source, name, action);
+  }
+
+  /**
+   * Like {@link #timed(Observable, String, String)}, recording into the given registry.
+   */
+  public static <T> Observable<T> timed(final MetricRegistry registry, final Observable<T> source, final String name,
+      final String action) {
+    return Observable.defer(() -> {
+      final long start = start();
+      return source.doOnCompleted(() -> registry.record(name, action, SUCCESS, System.nanoTime() - start))
+          .doOnError(e -> registry.record(name, action, ERROR, System.nanoTime() - start));
+    });
+  }
+}
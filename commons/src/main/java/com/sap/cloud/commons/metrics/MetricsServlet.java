@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sap.cloud.commons.logging.BoundedAsyncAppender;
+import com.sap.cloud.commons.logging.Slf4jUtils;
+
+/**
+ * Renders the latency histograms of {@link Metrics#registry()} in the Prometheus text format, as summaries in
+ * seconds with a <code>_max</code> gauge each, followed by its gauges, its counters and the counters of lost log events. Quantiles
+ * and maximum cover the last minute, sum and count all values since start.
+ *
+ * The endpoint is left to this servlet by the container and by Spring Security, a scraper cannot go through the form
+ * login. It answers only requests with <code>Authorization: Bearer &lt;token&gt;</code>, the token being the system
+ * property <code>sfsf.metrics.token</code>; without that property the endpoint is disabled.
+ */
+@WebServlet(name = "Metrics", urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  static final String TOKEN_PROPERTY = "sfsf.metrics.token";
+
+  private static final String BEARER = "Bearer ";
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final byte[] token;
+
+  public MetricsServlet() {
+    this(System.getProperty(TOKEN_PROPERTY));
+  }
+
+  /**
+   * @param token the secret of the scraper, <code>null</code> or empty to disable the endpoint
+   */
+  MetricsServlet(final String token) {
+    this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  protected void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    if (token == null) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    if (!isAuthorized(req.getHeader("Authorization"))) {
+      resp.setHeader("WWW-Authenticate", "Bearer");
+      resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+    resp.setContentType(CONTENT_TYPE);
+    final PrintWriter writer = resp.getWriter();
+    write(Metrics.registry(), writer);
+    writeLogCounters(Slf4jUtils.getAsyncAppender(), writer);
+  }
+
+  private boolean isAuthorized(final String authorization) {
+    return authorization != null && authorization.startsWith(BEARER) && MessageDigest.isEqual(token,
+        authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8));
+  }
+
+  static void writeLogCounters(final BoundedAsyncAppender appender, final PrintWriter writer) {
+    if (appender == null) {
+      return;
+    }
+    writer.append("# TYPE log_events_discarded_total counter\n");
+    writer.append("log_events_discarded_total ").append(Long.toString(appender.getDiscardedCount())).append('\n');
+    writer.append("# TYPE log_events_dropped_total counter\n");
+    writer.append("log_events_dropped_total ").append(Long.toString(appender.getDroppedCount())).append('\n');
+    writer.flush();
+  }
+
+  static void write(final MetricRegistry registry, final PrintWriter writer) {
+    registry.getHistograms().forEach((name, actions) -> {
+      final String metric = name.replaceAll("[^a-zA-Z0-9_]", "_") + "_seconds";
+      final Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+      actions.forEach((action, outcomes) -> outcomes.forEach((outcome, histogram) -> snapshots
+          .put("action=\"" + escape(action) + "\",outcome=\"" + escape(outcome) + "\"", histogram.snapshot())));
+      writer.append("# TYPE ").append(metric).append(" summary\n");
+      snapshots.forEach((labels, snapshot) -> {
+        for (final double quantile : QUANTILES) {
+          sample(writer, metric, labels + ",quantile=\"" + quantile + "\"",
+              snapshot.getValueAtQuantile(quantile) / NANOS_PER_SECOND);
+        }
+        sample(writer, metric + "_sum", labels, snapshot.getSum() / NANOS_PER_SECOND);
+        sample(writer, metric + "_count", labels, snapshot.getCount());
+      });
+      // a summary only has quantiles, sum and count, the maximum is a family of its own
+      writer.append("# TYPE ").append(metric).append("_max gauge\n");
+      snapshots.forEach((labels, snapshot) -> sample(writer, metric + "_max", labels,
+          snapshot.getMax() / NANOS_PER_SECOND));
+    });
+    registry.getGauges().forEach((name, targets) -> {
+      final String metric = name.replaceAll("[^a-zA-Z0-9_]", "_");
+      writer.append("# TYPE ").append(metric).append(" gauge\n");
+      targets.forEach((target, value) -> sample(writer, metric, "target=\"" + escape(target) + "\"",
+          value.getAsDouble()));
+    });
+    registry.getCounters().forEach((name, targets) -> {
+      final String metric = name.replaceAll("[^a-zA-Z0-9_]", "_") + "_total";
+      writer.append("# TYPE ").append(metric).append(" counter\n");
+      targets.forEach((target, value) -> writer.append(metric).append("{target=\"").append(escape(target))
+          .append("\"} ").append(Long.toString(value.getAsLong())).append('\n'));
+    });
+    writer.flush();
+  }
+
+  private static void sample(final PrintWriter writer, final String metric, final String labels,
+      final double value) {
+    writer.append(metric).append('{').append(labels).append("} ")
+        .append(String.format(Locale.ROOT, "%.9g", value)).append('\n');
+  }
+
+  private static String escape(final String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
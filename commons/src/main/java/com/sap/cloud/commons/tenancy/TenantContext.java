@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tenancy;
+
+import org.slf4j.MDC;
+
+/**
+ * Tenant, i.e. SFSF company, of the work running on the current thread.
+ *
+ * Set by {@link TenantFilter} for incoming requests, mirrored into the MDC as <code>tenant_id</code> and carried
+ * across Rx scheduler hops by {@link com.sap.cloud.commons.tracing.TracingSchedulersHook}. Work without a tenant runs
+ * for the {@link #DEFAULT_TENANT}, whose destinations and cache keys are the ones of a single-tenant deployment.
+ */
+public final class TenantContext {
+
+  public static final String DEFAULT_TENANT = "default";
+
+  static final String MDC_TENANT_ID = "tenant_id";
+
+  static final int MAX_TENANT_ID_LENGTH = 32;
+
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private TenantContext() {}
+
+  /**
+   * @return the tenant attached to the current thread, or the {@link #DEFAULT_TENANT}
+   */
+  public static String current() {
+    final String tenantId = CURRENT.get();
+    return tenantId == null ? DEFAULT_TENANT : tenantId;
+  }
+
+  /**
+   * @return the tenant attached to the current thread, or <code>null</code>
+   */
+  public static String attached() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Makes the tenant the one of the current thread; <code>null</code> detaches it.
+   *
+   * @return the previous tenant, to be passed to {@link #restore(String)}
+   */
+  public static String attach(final String tenantId) {
+    final String previous = CURRENT.get();
+    set(tenantId);
+    return previous;
+  }
+
+  /**
+   * Reattaches the tenant returned by {@link #attach(String)}.
+   */
+  public static void restore(final String previous) {
+    set(previous);
+  }
+
+  /**
+   * @return the key prefixed with the current tenant, so that tenants sharing a cache or store do not see each
+   *         other's entries; keys of the {@link #DEFAULT_TENANT} are left as they are
+   */
+  public static String qualify(final String key) {
+    return qualify(current(), key);
+  }
+
+  public static String qualify(final String tenantId, final String key) {
+    return DEFAULT_TENANT.equals(tenantId) ? key : tenantId + '/' + key;
+  }
+
+  /**
+   * @return the name of the tenant's copy of a destination, e.g. <code>sap_hcmcloud_core_odata_acme</code>; the
+   *         {@link #DEFAULT_TENANT} uses the destination itself
+   */
+  public static String destinationName(final String destinationName, final String tenantId) {
+    return DEFAULT_TENANT.equals(tenantId) ? destinationName : destinationName + '_' + tenantId;
+  }
+
+  /**
+   * Accepts ids of up to 32 letters, digits, <code>-</code> and <code>_</code>, which are also valid in destination
+   * names.
+   */
+  public static boolean isValidTenantId(final String tenantId) {
+    if (tenantId == null || tenantId.isEmpty() || tenantId.length() > MAX_TENANT_ID_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < tenantId.length(); i++) {
+      final char c = tenantId.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void set(final String tenantId) {
+    if (tenantId == null) {
+      CURRENT.remove();
+      MDC.remove(MDC_TENANT_ID);
+    } else {
+      CURRENT.set(tenantId);
+      MDC.put(MDC_TENANT_ID, tenantId);
+    }
+  }
+}
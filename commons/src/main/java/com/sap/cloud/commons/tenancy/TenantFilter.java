@@ -0,0 +1,208 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tenancy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Attaches the {@link TenantContext} of every request.
+ *
+ * The tenant is taken from the <code>tenant</code> query parameter, which the SFSF outbound notification of each
+ * company carries in its endpoint URL. Requests without a tenant run for the {@link TenantContext#DEFAULT_TENANT}.
+ *
+ * An authenticated user only acts for the tenants of their roles: the IdP attribute naming the user's company is
+ * mapped to the role <code>Tenant_&lt;tenant&gt;</code>, and users without such a role belong to the default tenant.
+ * A request naming another tenant is rejected with <code>403 Forbidden</code>. The chosen tenant is kept in the
+ * session, so that later requests, e.g. the Google login callback, need not repeat it.
+ *
+ * The <code>X-Tenant-ID</code> header is only accepted on calls between the nodes of the cluster, which carry the
+ * shared secret of the <code>sfsf.cluster.token</code> system property in the <code>X-Cluster-Token</code> header;
+ * other requests sending it are rejected with <code>403 Forbidden</code>.
+ *
+ * Only the tenants listed in the <code>sfsf.tenants</code> system property (comma separated) are accepted, others are
+ * rejected with <code>400 Bad Request</code>; this bounds the per-tenant resources an unauthenticated caller can
+ * create.
+ */
+@WebFilter(filterName = "ResolveTenant", urlPatterns = {"/*"}, asyncSupported = true)
+public class TenantFilter implements Filter {
+
+  public static final String TENANTS_PROPERTY = "sfsf.tenants";
+
+  static final String TENANT_PARAMETER = "tenant";
+  public static final String X_TENANT_ID = "X-Tenant-ID";
+  public static final String CLUSTER_TOKEN_PROPERTY = "sfsf.cluster.token";
+  public static final String X_CLUSTER_TOKEN = "X-Cluster-Token";
+  static final String TENANT_ROLE_PREFIX = "Tenant_";
+  static final String SESSION_ATTRIBUTE = TenantFilter.class.getName() + ".tenant";
+
+  private final Logger log = LoggerFactory.getLogger(TenantFilter.class);
+
+  private final Set<String> tenants;
+  private final byte[] clusterToken;
+
+  public TenantFilter() {
+    this(parseTenants(System.getProperty(TENANTS_PROPERTY)), System.getProperty(CLUSTER_TOKEN_PROPERTY));
+  }
+
+  public TenantFilter(final Set<String> tenants) {
+    this(tenants, null);
+  }
+
+  /**
+   * @param clusterToken the secret of node-to-node calls, <code>null</code> or empty to trust none
+   */
+  public TenantFilter(final Set<String> tenants, final String clusterToken) {
+    this.tenants = tenants;
+    this.clusterToken = clusterToken == null || clusterToken.isEmpty() ? null
+        : clusterToken.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) throws ServletException {
+
+  }
+
+  @Override
+  public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest)) {
+      chain.doFilter(request, response);
+      return;
+    }
+    final HttpServletRequest httpServletRequest = (HttpServletRequest) request;
+    final HttpServletResponse httpServletResponse = (HttpServletResponse) response;
+    if (httpServletRequest.getHeader(X_TENANT_ID) != null && !isClusterCall(httpServletRequest)) {
+      log.warn("Rejecting {} header of a request not sent by a cluster node", X_TENANT_ID);
+      httpServletResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "Untrusted tenant header");
+      return;
+    }
+    final String requested = requested(httpServletRequest);
+    if (requested != null && !isKnown(requested)) {
+      // an invalid id is not logged, it could forge log lines
+      log.warn("Rejecting request for unknown tenant {}",
+          TenantContext.isValidTenantId(requested) ? requested : "(invalid id)");
+      httpServletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tenant");
+      return;
+    }
+    final String tenantId;
+    if (httpServletRequest.getRemoteUser() != null) {
+      tenantId = resolveForUser(httpServletRequest, requested);
+      if (tenantId == null) {
+        log.warn("Rejecting request of user {} for tenant {}", httpServletRequest.getRemoteUser(), requested);
+        httpServletResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "Tenant not granted to user");
+        return;
+      }
+    } else {
+      tenantId = requested;
+    }
+
+    final String previous = TenantContext.attach(tenantId);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      TenantContext.restore(previous);
+    }
+  }
+
+  @Override
+  public void destroy() {
+
+  }
+
+  /**
+   * @return the tenant named by the request, or <code>null</code> if it names none
+   */
+  private static String requested(final HttpServletRequest request) {
+    final String tenantId = request.getParameter(TENANT_PARAMETER);
+    return tenantId != null ? tenantId : request.getHeader(X_TENANT_ID);
+  }
+
+  /**
+   * @return the tenant the authenticated user acts for, or <code>null</code> if the requested one is not theirs or
+   *         they belong to several tenants and none was chosen
+   */
+  String resolveForUser(final HttpServletRequest request, final String requested) {
+    final Set<String> granted = new TreeSet<>();
+    for (final String tenantId : tenants) {
+      if (request.isUserInRole(TENANT_ROLE_PREFIX + tenantId)) {
+        granted.add(tenantId);
+      }
+    }
+    if (granted.isEmpty()) {
+      granted.add(TenantContext.DEFAULT_TENANT);
+    }
+    if (requested != null) {
+      if (!granted.contains(requested)) {
+        return null;
+      }
+      if (granted.size() > 1) {
+        request.getSession().setAttribute(SESSION_ATTRIBUTE, requested);
+      }
+      return requested;
+    }
+    if (granted.size() == 1) {
+      return granted.iterator().next();
+    }
+    final HttpSession session = request.getSession(false);
+    final Object chosen = session != null ? session.getAttribute(SESSION_ATTRIBUTE) : null;
+    return granted.contains(chosen) ? (String) chosen : null;
+  }
+
+  boolean isClusterCall(final HttpServletRequest request) {
+    final String token = request.getHeader(X_CLUSTER_TOKEN);
+    return clusterToken != null && token != null
+        && MessageDigest.isEqual(clusterToken, token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  boolean isKnown(final String tenantId) {
+    return TenantContext.DEFAULT_TENANT.equals(tenantId) || tenants.contains(tenantId);
+  }
+
+  static Set<String> parseTenants(final String tenants) {
+    if (tenants == null || tenants.trim().isEmpty()) {
+      return Collections.emptySet();
+    }
+    final Set<String> parsed = new HashSet<>();
+    for (final String tenant : tenants.split(",")) {
+      final String tenantId = tenant.trim();
+      if (TenantContext.isValidTenantId(tenantId)) {
+        parsed.add(tenantId);
+      } else if (!tenantId.isEmpty()) {
+        LoggerFactory.getLogger(TenantFilter.class).warn("Ignoring invalid tenant id {} in {}", tenantId,
+            TENANTS_PROPERTY);
+      }
+    }
+    return Collections.unmodifiableSet(parsed);
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tenancy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * One instance of a resource per tenant, e.g. the connector of the tenant's destination, created on first use.
+ * Thread-safe.
+ */
+public final class TenantScoped<T> {
+
+  private final ConcurrentMap<String, T> instances = new ConcurrentHashMap<>();
+  private final Function<String, T> factory;
+
+  /**
+   * @param factory creates the instance of the given tenant
+   */
+  public TenantScoped(final Function<String, T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * @return the instance of the {@link TenantContext#current() current} tenant
+   */
+  public T get() {
+    return get(TenantContext.current());
+  }
+
+  public T get(final String tenantId) {
+    return instances.computeIfAbsent(tenantId, factory);
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tracing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timed child span of the current {@link TraceContext}, e.g. around an outbound call.
+ *
+ * {@link #start(String)} attaches the span to the current thread and {@link #close()} detaches and finishes it, so a
+ * span is used with try-with-resources. Finished spans are logged at debug level with their trace and parent ids.
+ */
+public final class Span implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Span.class);
+
+  private final String name;
+  private final TraceContext context;
+  private final TraceContext previous;
+  private final long start = System.nanoTime();
+  private final AtomicBoolean finished = new AtomicBoolean();
+  private volatile boolean succeeded;
+  private volatile Throwable error;
+
+  private Span(final String name, final TraceContext context) {
+    this.name = name;
+    this.context = context;
+    previous = context.attach();
+  }
+
+  /**
+   * Starts a child of the current context, or a new trace if there is none, and attaches it to the current thread.
+   */
+  public static Span start(final String name) {
+    final TraceContext parent = TraceContext.current();
+    return new Span(name, parent == null ? TraceContext.root(null, null) : parent.child());
+  }
+
+  public TraceContext getContext() {
+    return context;
+  }
+
+  /**
+   * Marks the span as successful. A span finished without being marked is logged as failed.
+   */
+  public Span success() {
+    succeeded = true;
+    return this;
+  }
+
+  public Span error(final Throwable e) {
+    error = e;
+    return this;
+  }
+
+  /**
+   * Restores the context that was current when the span was started. Must be called on the starting thread.
+   */
+  public void detach() {
+    TraceContext.restore(previous);
+  }
+
+  /**
+   * Logs the span once; further calls are ignored. May be called on any thread.
+   */
+  public void finish() {
+    if (finished.compareAndSet(false, true) && LOGGER.isDebugEnabled()) {
+      final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+      LOGGER.debug("span={} name={} duration={}us trace={} parent={} outcome={}", context.getSpanId(), name, micros,
+          context.getTraceId(), context.getParentSpanId(), outcome());
+    }
+  }
+
+  private String outcome() {
+    if (error != null) {
+      return error.toString();
+    }
+    return succeeded ? "success" : "failed";
+  }
+
+  @Override
+  public void close() {
+    detach();
+    finish();
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.MDC;
+
+/**
+ * Request id and W3C trace context of the work running on the current thread.
+ *
+ * The context is thread-local like the SLF4J MDC and mirrored into it on {@link #attach()}, so log statements carry
+ * <code>request_id</code>, <code>trace_id</code> and <code>span_id</code>. {@link TracingSchedulersHook} carries it
+ * across Rx scheduler hops. Immutable.
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  static final String MDC_REQUEST_ID = "request_id";
+  static final String MDC_TRACE_ID = "trace_id";
+  static final String MDC_SPAN_ID = "span_id";
+
+  private static final String VERSION = "00";
+  private static final String SAMPLED = "01";
+  private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+  private static final String INVALID_SPAN_ID = "0000000000000000";
+
+  private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final String requestId;
+
+  private TraceContext(final String traceId, final String spanId, final String parentSpanId,
+      final String requestId) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.requestId = requestId;
+  }
+
+  /**
+   * @return the context attached to the current thread, or <code>null</code>
+   */
+  public static TraceContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Starts the context of an incoming request. Continues the caller's trace if <code>traceparent</code> is a valid
+   * W3C trace context header, otherwise starts a new trace.
+   */
+  public static TraceContext root(final String requestId, final String traceparent) {
+    if (isValidTraceparent(traceparent)) {
+      return new TraceContext(traceparent.substring(3, 35), newSpanId(), traceparent.substring(36, 52), requestId);
+    }
+    return new TraceContext(newTraceId(), newSpanId(), null, requestId);
+  }
+
+  /**
+   * @return a new span of the same trace and request, with this span as parent
+   */
+  public TraceContext child() {
+    return new TraceContext(traceId, newSpanId(), spanId, requestId);
+  }
+
+  /**
+   * Makes this the context of the current thread.
+   *
+   * @return the previous context, to be passed to {@link #restore(TraceContext)}
+   */
+  public TraceContext attach() {
+    final TraceContext previous = CURRENT.get();
+    if (previous != this) {
+      CURRENT.set(this);
+      putMdc(this);
+    }
+    return previous;
+  }
+
+  /**
+   * Reattaches the context returned by {@link #attach()}, or clears the current thread if it is <code>null</code>.
+   */
+  public static void restore(final TraceContext previous) {
+    if (CURRENT.get() == previous) {
+      return;
+    }
+    if (previous == null) {
+      CURRENT.remove();
+      MDC.remove(MDC_REQUEST_ID);
+      MDC.remove(MDC_TRACE_ID);
+      MDC.remove(MDC_SPAN_ID);
+    } else {
+      CURRENT.set(previous);
+      putMdc(previous);
+    }
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * @return the span id of the parent, or <code>null</code> for the first span of a new trace
+   */
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public String getRequestId() {
+    return requestId;
+  }
+
+  /**
+   * @return the value of a <code>traceparent</code> header making this span the parent of the callee
+   */
+  public String toTraceparent() {
+    return VERSION + '-' + traceId + '-' + spanId + '-' + SAMPLED;
+  }
+
+  @Override
+  public String toString() {
+    return toTraceparent();
+  }
+
+  private static void putMdc(final TraceContext context) {
+    if (context.requestId == null) {
+      MDC.remove(MDC_REQUEST_ID);
+    } else {
+      MDC.put(MDC_REQUEST_ID, context.requestId);
+    }
+    MDC.put(MDC_TRACE_ID, context.traceId);
+    MDC.put(MDC_SPAN_ID, context.spanId);
+  }
+
+  static boolean isValidTraceparent(final String traceparent) {
+    if (traceparent == null || traceparent.length() != 55 || !traceparent.startsWith(VERSION + '-')
+        || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+      return false;
+    }
+    return isLowerHex(traceparent, 3, 35) && isLowerHex(traceparent, 36, 52) && isLowerHex(traceparent, 53, 55)
+        && !INVALID_TRACE_ID.regionMatches(0, traceparent, 3, 32)
+        && !INVALID_SPAN_ID.regionMatches(0, traceparent, 36, 16);
+  }
+
+  private static boolean isLowerHex(final String value, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      final char c = value.charAt(i);
+      if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String newTraceId() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    return hex(random.nextLong() | 1L) + hex(random.nextLong());
+  }
+
+  private static String newSpanId() {
+    return hex(ThreadLocalRandom.current().nextLong() | 1L);
+  }
+
+  private static String hex(final long value) {
+    final String hex = Long.toHexString(value);
+    return hex.length() == 16 ? hex : INVALID_SPAN_ID.substring(hex.length()) + hex;
+  }
+}
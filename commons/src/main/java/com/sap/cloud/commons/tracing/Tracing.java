@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.plugins.RxJavaPlugins;
+
+/**
+ * Entry points for trace propagation.
+ */
+public final class Tracing {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Tracing.class);
+
+  private Tracing() {}
+
+  /**
+   * Registers the {@link TracingSchedulersHook}. Rx reads the hook once, when the schedulers are first used, so this
+   * has to run before, e.g. first thing in <code>main</code> or the servlet initializer.
+   *
+   * @return whether the hook is in place
+   */
+  public static synchronized boolean install() {
+    try {
+      RxJavaPlugins.getInstance().registerSchedulersHook(new TracingSchedulersHook());
+    } catch (final IllegalStateException e) {
+      // already registered, by an earlier call or by another library
+    }
+    final boolean installed = RxJavaPlugins.getInstance().getSchedulersHook() instanceof TracingSchedulersHook;
+    if (!installed) {
+      LOGGER.warn("Rx schedulers hook was registered before tracing, trace context is not propagated");
+    }
+    return installed;
+  }
+
+  /**
+   * Runs each subscription to the source in a child span of the subscriber's context. The span ends when the source
+   * terminates.
+   */
+  public static <T> Observable<T> traced(final Observable<T> source, final String name) {
+    return Observable.create(subscriber -> {
+      final Span span = Span.start(name);
+      try {
+        source.doOnCompleted(span::success).doOnError(span::error).doOnTerminate(span::finish).unsafeSubscribe(subscriber);
+      } finally {
+        span.detach();
+      }
+    });
+  }
+}
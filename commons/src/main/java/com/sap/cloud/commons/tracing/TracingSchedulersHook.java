@@ -0,0 +1,45 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tracing;
+
+import com.sap.cloud.commons.tenancy.TenantContext;
+
+import rx.functions.Action0;
+import rx.plugins.RxJavaSchedulersHook;
+
+/**
+ * Runs every scheduled Rx action in the {@link TraceContext} and {@link TenantContext} that were current when it was
+ * scheduled.
+ */
+public class TracingSchedulersHook extends RxJavaSchedulersHook {
+
+  @Override
+  public Action0 onSchedule(final Action0 action) {
+    final TraceContext context = TraceContext.current();
+    final String tenantId = TenantContext.attached();
+    if (context == null && tenantId == null) {
+      return action;
+    }
+    return () -> {
+      final TraceContext previous = context != null ? context.attach() : TraceContext.current();
+      final String previousTenantId = TenantContext.attach(tenantId);
+      try {
+        action.call();
+      } finally {
+        TenantContext.restore(previousTenantId);
+        TraceContext.restore(previous);
+      }
+    };
+  }
+}
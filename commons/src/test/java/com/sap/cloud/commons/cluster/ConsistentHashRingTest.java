@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.cluster;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 10000;
+
+	@Test
+	public void testOwnerDoesNotDependOnNodeOrder() {
+		final ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"));
+		final ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("c", "a", "b"));
+
+		for (int i = 0; i < KEYS; i++) {
+			assertThat(reordered.ownerOf("user" + i), equalTo(ring.ownerOf("user" + i)));
+		}
+	}
+
+	@Test
+	public void testKeysAreSpreadOverTheNodes() {
+		final ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"));
+
+		final Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.ownerOf("user" + i), 1, Integer::sum);
+		}
+
+		assertThat(counts.size(), equalTo(4));
+		for (final int count : counts.values()) {
+			assertThat(count, greaterThan(KEYS / 4 / 2));
+			assertThat(count, lessThan(KEYS / 4 * 2));
+		}
+	}
+
+	@Test
+	public void testOnlyTheKeysOfAJoiningNodeMove() {
+		final ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"));
+		final ConsistentHashRing grown = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"));
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			final String owner = grown.ownerOf("user" + i);
+			if (!owner.equals(ring.ownerOf("user" + i))) {
+				assertThat(owner, equalTo("d"));
+				moved++;
+			}
+		}
+
+		assertThat(moved, greaterThan(0));
+		assertThat(moved, lessThan(KEYS / 2));
+	}
+}
@@ -20,9 +20,13 @@ import static org.mockito.BDDMockito.*;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.naming.ConfigurationException;
 import javax.naming.Context;
@@ -221,7 +225,37 @@ public class DestinationUtilsTest {
 
 		assertEquals("test-user" ,user);
 		assertEquals("http://test.org" ,url.toString());
-		verify(this.destCfgMock, times(2)).getAllProperties();
+		verify(this.destCfgMock, times(1)).getAllProperties();
+	}
+
+	@Test
+	public void testSnapshotIsKeptUntilPropertiesChange() throws Exception {
+		given(this.connCfgMock.getConfiguration("test-destination")).willReturn(this.destCfgMock);
+		Map<String, String> props = new HashMap<>();
+		props.put(DestinationProperties.User.toString(), "test-user");
+		given(this.destCfgMock.getAllProperties()).willReturn(props);
+		AtomicLong now = new AtomicLong();
+		List<DestinationUtils.Snapshot> changes = new ArrayList<>();
+		DestinationUtils du = DestinationUtils.builder().setDestinationName("test-destination").setRefreshMillis(1000).build();
+		du.setNanoClock(now::get);
+		du.addChangeListener(changes::add);
+
+		DestinationUtils.Snapshot first = du.snapshot();
+		assertSame(first, du.snapshot());
+		verify(this.connCfgMock, times(1)).getConfiguration("test-destination");
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertSame(first, du.snapshot());
+		assertTrue(changes.isEmpty());
+
+		Map<String, String> changed = new HashMap<>(props);
+		changed.put(DestinationProperties.User.toString(), "other-user");
+		given(this.destCfgMock.getAllProperties()).willReturn(changed);
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+		assertEquals("other-user", du.getProperty(String.class, DestinationProperties.User.toString()));
+		assertEquals(1, changes.size());
+		assertSame(changes.get(0), du.snapshot());
 	}
 
 }
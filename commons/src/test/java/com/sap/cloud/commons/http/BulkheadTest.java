@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class BulkheadTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testRejectsBeyondMaxConcurrent() throws InterruptedException {
+		final Bulkhead bulkhead = new Bulkhead("test", 2, 0, 0, now::get);
+
+		assertThat(bulkhead.tryAcquire(), equalTo(true));
+		assertThat(bulkhead.tryAcquire(), equalTo(true));
+		assertThat(bulkhead.tryAcquire(), equalTo(false));
+		assertThat(bulkhead.getInFlightCount(), equalTo(2));
+
+		bulkhead.release();
+		assertThat(bulkhead.tryAcquire(), equalTo(true));
+		assertThat(bulkhead.getRejectedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testRejectsBeyondRate() throws InterruptedException {
+		final Bulkhead bulkhead = new Bulkhead("test", 10, 2, 0, now::get);
+
+		assertThat(acquireAndRelease(bulkhead), equalTo(true));
+		assertThat(acquireAndRelease(bulkhead), equalTo(true));
+		assertThat(acquireAndRelease(bulkhead), equalTo(false));
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		assertThat(acquireAndRelease(bulkhead), equalTo(true));
+		assertThat(acquireAndRelease(bulkhead), equalTo(false));
+		assertThat(bulkhead.getInFlightCount(), equalTo(0));
+	}
+
+	@Test
+	public void testConnectorFailsFastWhenFull() throws IOException, InterruptedException {
+		final HttpConnector delegate = mock(HttpConnector.class);
+		final Bulkhead bulkhead = new Bulkhead("test", 1, 0, 0, now::get);
+		final BulkheadConnector connector = new BulkheadConnector(delegate, bulkhead);
+		bulkhead.tryAcquire();
+
+		try {
+			connector.get("/EmployeeTime");
+			fail("Expected BulkheadFullException");
+		} catch (final BulkheadFullException e) {
+			verify(delegate, never()).get("/EmployeeTime");
+		}
+
+		bulkhead.release();
+		connector.get("/EmployeeTime");
+		verify(delegate).get("/EmployeeTime");
+		assertThat(bulkhead.getInFlightCount(), equalTo(0));
+	}
+
+	private static boolean acquireAndRelease(final Bulkhead bulkhead) throws InterruptedException {
+		final boolean acquired = bulkhead.tryAcquire();
+		if (acquired) {
+			bulkhead.release();
+		}
+		return acquired;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sap.cloud.commons.http.CircuitBreaker.State;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+	private final AtomicLong now = new AtomicLong();
+	private CircuitBreaker breaker;
+
+	@Before
+	public void setUp() {
+		breaker = new CircuitBreaker("test", 4, 2, 0.5, 1000, now::get);
+	}
+
+	@Test
+	public void testOpensAtFailureRate() {
+		call(true);
+		call(true);
+		call(false);
+		assertThat(breaker.getState(), equalTo(State.CLOSED));
+		call(false);
+
+		assertThat(breaker.getState(), equalTo(State.OPEN));
+		assertThat(breaker.tryAcquire(), equalTo(false));
+		assertThat(breaker.getRejectedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testSlidingWindowForgetsOldFailures() {
+		call(false);
+		for (int i = 0; i < 4; i++) {
+			call(true);
+		}
+		call(false);
+
+		assertThat(breaker.getState(), equalTo(State.CLOSED));
+		assertThat(breaker.getFailureRate(), equalTo(0.25));
+	}
+
+	@Test
+	public void testHalfOpenProbe() {
+		call(false);
+		call(false);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+		assertThat(breaker.tryAcquire(), equalTo(true));
+		assertThat(breaker.getState(), equalTo(State.HALF_OPEN));
+		assertThat(breaker.tryAcquire(), equalTo(false));
+		breaker.onFailure();
+		assertThat(breaker.getState(), equalTo(State.OPEN));
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		assertThat(breaker.tryAcquire(), equalTo(true));
+		breaker.onSuccess();
+		assertThat(breaker.getState(), equalTo(State.CLOSED));
+		assertThat(breaker.getFailureRate(), equalTo(0.0));
+	}
+
+	@Test
+	public void testConnectorFailsFastAndTreatsNotFoundAsSuccess() throws IOException {
+		final HttpConnector delegate = mock(HttpConnector.class);
+		when(delegate.get("/missing")).thenThrow(new FileNotFoundException("/missing"));
+		when(delegate.get("/down")).thenThrow(new IOException("connect timed out"));
+		final CircuitBreakingConnector connector = new CircuitBreakingConnector(delegate, breaker);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				connector.get("/missing");
+				fail();
+			} catch (final FileNotFoundException e) {
+				// expected
+			}
+		}
+		assertThat(breaker.getState(), equalTo(State.CLOSED));
+		for (int i = 0; i < 2; i++) {
+			try {
+				connector.get("/down");
+				fail();
+			} catch (final IOException e) {
+				// expected
+			}
+		}
+		try {
+			connector.get("/down");
+			fail();
+		} catch (final CircuitOpenException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testOnlyServerErrorsAndTransportErrorsCountAsFailures() throws IOException {
+		final HttpConnector delegate = mock(HttpConnector.class);
+		when(delegate.get("/forbidden")).thenThrow(new HttpStatusException(403, new IOException("403")));
+		when(delegate.get("/unavailable")).thenThrow(new HttpStatusException(503, new IOException("503")));
+		when(delegate.get(eq("/malformed"), any())).thenAnswer(
+				invocation -> ((ResponseDecoder<?>) invocation.getArguments()[1]).decode("{"));
+		final ResponseDecoder<Object> decoder = body -> {
+			throw new IOException("Unexpected end of input");
+		};
+		final CircuitBreakingConnector connector = new CircuitBreakingConnector(delegate, breaker);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				connector.get("/forbidden");
+				fail();
+			} catch (final HttpStatusException e) {
+				assertThat(e.getStatus(), equalTo(403));
+			}
+			try {
+				connector.get("/malformed", decoder);
+				fail();
+			} catch (final IOException e) {
+				assertThat(e.getMessage(), equalTo("Unexpected end of input"));
+			}
+		}
+		assertThat(breaker.getState(), equalTo(State.CLOSED));
+		assertThat(breaker.getFailureRate(), equalTo(0.0));
+		for (int i = 0; i < 2; i++) {
+			try {
+				connector.get("/unavailable");
+				fail();
+			} catch (final HttpStatusException e) {
+				// expected
+			}
+		}
+		assertThat(breaker.getState(), equalTo(State.OPEN));
+	}
+
+	private void call(final boolean success) {
+		assertThat(breaker.tryAcquire(), equalTo(true));
+		if (success) {
+			breaker.onSuccess();
+		} else {
+			breaker.onFailure();
+		}
+	}
+
+}
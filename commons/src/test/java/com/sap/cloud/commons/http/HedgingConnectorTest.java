@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.http;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sap.cloud.commons.tenancy.TenantContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+public class HedgingConnectorTest {
+
+	private final CountDownLatch interrupted = new CountDownLatch(1);
+	private final AtomicInteger attempts = new AtomicInteger();
+	private final Map<Integer, String> threads = new ConcurrentHashMap<>();
+	private final Map<Integer, String> contexts = new ConcurrentHashMap<>();
+	private ScheduledExecutorService timer;
+	private ExecutorService executor;
+	private HttpConnector delegate;
+
+	@Before
+	public void setUp() throws Exception {
+		timer = Executors.newSingleThreadScheduledExecutor();
+		executor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new SynchronousQueue<>());
+		delegate = mock(HttpConnector.class);
+		// the first attempt hangs until cancelled, later ones answer at once
+		when(delegate.get("/entity")).thenAnswer(invocation -> {
+			final int attempt = attempts.incrementAndGet();
+			threads.put(attempt, Thread.currentThread().getName());
+			contexts.put(attempt, TenantContext.current() + " " + MDC.get("request_id"));
+			if (attempt > 1) {
+				return "hedge";
+			}
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+				return "first";
+			} catch (final InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+		});
+		MDC.put("request_id", "test-request");
+		TenantContext.attach("acme");
+	}
+
+	@After
+	public void tearDown() {
+		TenantContext.restore(null);
+		MDC.clear();
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSlowAttemptIsHedgedAndCancelled() throws Exception {
+		final HedgingConnector http = new HedgingConnector(delegate, timer, executor, 0.95, 10, 1.0);
+
+		final String response = http.get("/entity");
+
+		assertThat(response, equalTo("hedge"));
+		assertThat(http.getHedgedCount(), equalTo(1L));
+		assertThat(http.getHedgeWinCount(), equalTo(1L));
+		assertThat(interrupted.await(1, TimeUnit.SECONDS), equalTo(true));
+		assertThat(Thread.currentThread().isInterrupted(), equalTo(false));
+		assertThat(threads.get(1), equalTo(Thread.currentThread().getName()));
+		assertThat(contexts.get(2), equalTo("acme test-request"));
+	}
+
+	@Test
+	public void testHedgingStaysWithinBudget() throws Exception {
+		final HedgingConnector http = new HedgingConnector(delegate, timer, executor, 0.95, 10, 0.0);
+
+		final String response = http.get("/entity");
+
+		assertThat(response, equalTo("first"));
+		assertThat(http.getHedgedCount(), equalTo(0L));
+		verify(delegate, times(1)).get("/entity");
+	}
+
+	@Test
+	public void testHedgeIsRejectedWhenExecutorIsFull() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		final HedgingConnector http = new HedgingConnector(delegate, timer, executor, 0.95, 10, 1.0);
+
+		final String response = http.get("/entity");
+		release.countDown();
+
+		assertThat(response, equalTo("first"));
+		assertThat(http.getHedgedCount(), equalTo(0L));
+		assertThat(http.getRejectedHedgeCount(), equalTo(1L));
+		verify(delegate, times(1)).get("/entity");
+	}
+
+}
@@ -14,12 +14,16 @@
 package com.sap.cloud.commons.http;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,10 +31,12 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sap.cloud.commons.connectivity.DestinationUtils;
 import com.sap.cloud.commons.http.BasicAuthenticationHeaderProvider;
@@ -61,7 +67,7 @@ public class HttpConnectorTest {
 	@Before
 	public void setUp() throws Exception {
 		//when
-		doReturn(destConfig).when(destinationUtils).getDestinationConfiguration();
+		doReturn(new DestinationUtils.Snapshot(destConfig)).when(destinationUtils).snapshot();
 		http.setAuthenticationHeaderProvider(headerProvider);
 		http.setDestinationUtils(destinationUtils);
 	}
@@ -96,7 +102,7 @@ public class HttpConnectorTest {
 		assertNotNull(actualResponse);
 		assertTrue(actualResponse.equals(responseContent));
 
-		verify(destinationUtils).getDestinationConfiguration();
+		verify(destinationUtils).snapshot();
 
 		final ArgumentCaptor<DestinationConfiguration> argumentCaptor = ArgumentCaptor.forClass(DestinationConfiguration.class);
 		verify(headerProvider).getAuthenticationHeader(argumentCaptor.capture());
@@ -109,4 +115,93 @@ public class HttpConnectorTest {
 
 	}
 
+	@Test
+	public void testNotModifiedReusesCachedBodyWithNewDecodedObject() throws Exception {
+
+		final String etag = "W/\"1\"";
+		final HttpURLConnection first = Mockito.mock(HttpURLConnection.class);
+		when(first.getInputStream()).thenReturn(new ByteArrayInputStream("test".getBytes(StandardCharsets.UTF_8)));
+		when(first.getHeaderField(HttpUrlConnectionConnector.ETAG_HEADER)).thenReturn(etag);
+		final HttpURLConnection second = Mockito.mock(HttpURLConnection.class);
+		when(second.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+		final HttpURLConnection[] connections = { first, second };
+		final AtomicInteger opened = new AtomicInteger();
+		final URLStreamHandler stubURLStreamHandler = new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(final URL u) throws IOException {
+				return connections[opened.getAndIncrement()];
+			}
+		};
+		final URL url = new URL(null, "http://test.com", stubURLStreamHandler);
+		when(first.getURL()).thenReturn(url);
+		when(second.getURL()).thenReturn(url);
+		doReturn(url).when(http).getRequestURL(anyString());
+		final AuthenticationHeader header = headerProvider.new BasicAuthenticationHeader(BasicAuthenticationHeader.AUTHORIZATION_HEADER, BasicAuthenticationHeader.BASIC_AUTHENTICATION_PREFIX + "encodedCredentials");
+		doReturn(header).when(headerProvider).getAuthenticationHeader(destConfig);
+		http.setResponseCache(new HttpResponseCache(10));
+		final AtomicInteger decoded = new AtomicInteger();
+		final ResponseDecoder<StringBuilder> decoder = body -> {
+			decoded.incrementAndGet();
+			return new StringBuilder(body);
+		};
+
+		// then
+		final StringBuilder firstResponse = http.get("/entityName", decoder);
+		final StringBuilder secondResponse = http.get("/entityName", decoder);
+
+		// verify
+		assertThat(secondResponse, not(sameInstance(firstResponse)));
+		assertThat(secondResponse.toString(), equalTo(firstResponse.toString()));
+		assertThat(decoded.get(), equalTo(2));
+		assertThat(http.getResponseCache().getHitCount(), equalTo(1L));
+		verify(first, never()).addRequestProperty(eq(HttpUrlConnectionConnector.IF_NONE_MATCH_HEADER), anyString());
+		verify(second).addRequestProperty(eq(HttpUrlConnectionConnector.IF_NONE_MATCH_HEADER), eq(etag));
+		verify(second, never()).getInputStream();
+
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testReadTimeoutIsRethrownWithoutErrorStream() throws Exception {
+
+		// when
+		final HttpURLConnection huc = Mockito.mock(HttpURLConnection.class);
+		when(huc.getInputStream()).thenThrow(new SocketTimeoutException("Read timed out"));
+		final URLStreamHandler stubURLStreamHandler = new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(final URL u) throws IOException {
+				return huc;
+			}
+		};
+		final URL url = new URL(null, "http://test.com", stubURLStreamHandler);
+		when(huc.getURL()).thenReturn(url);
+		doReturn(url).when(http).getRequestURL(anyString());
+		final AuthenticationHeader header = headerProvider.new BasicAuthenticationHeader(BasicAuthenticationHeader.AUTHORIZATION_HEADER, BasicAuthenticationHeader.BASIC_AUTHENTICATION_PREFIX + "encodedCredentials");
+		doReturn(header).when(headerProvider).getAuthenticationHeader(destConfig);
+
+		// then
+		http.get("/entityName");
+
+	}
+
+	@Test
+	public void testResponseCacheIsBoundedByTotalLength() {
+
+		final HttpResponseCache cache = new HttpResponseCache(10);
+
+		// then
+		cache.put("/a", new HttpResponseCache.Entry("1234", "\"a\"", null));
+		cache.put("/b", new HttpResponseCache.Entry("1234", "\"b\"", null));
+		cache.get("/a");
+		cache.put("/c", new HttpResponseCache.Entry("1234", "\"c\"", null));
+		cache.put("/d", new HttpResponseCache.Entry("12345678901", "\"d\"", null));
+
+		// verify
+		assertThat(cache.get("/b"), nullValue());
+		assertThat(cache.get("/d"), nullValue());
+		assertNotNull(cache.get("/a"));
+		assertNotNull(cache.get("/c"));
+		assertThat(cache.getChars(), equalTo(8L));
+
+	}
+
 }
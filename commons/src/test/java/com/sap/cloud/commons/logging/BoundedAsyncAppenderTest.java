@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.CoreConstants;
+
+public class BoundedAsyncAppenderTest {
+
+  private static final ThreadLocal<String> USER = new ThreadLocal<>();
+
+  private final LoggerContext context = new LoggerContext();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private BoundedAsyncAppender appender;
+
+  @Before
+  public void before() {
+    final AppenderBase<ILoggingEvent> slow = new AppenderBase<ILoggingEvent>() {
+      @Override
+      protected void append(final ILoggingEvent event) {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    slow.setContext(context);
+    slow.start();
+
+    appender = new BoundedAsyncAppender();
+    appender.setContext(context);
+    appender.setQueueSize(4);
+    appender.setDiscardingThreshold(2);
+    appender.setNeverBlock(true);
+    appender.addAppender(slow);
+    appender.start();
+  }
+
+  @After
+  public void after() {
+    release.countDown();
+    appender.stop();
+  }
+
+  @Test
+  public void discardsDebugAndDropsWhenFull() throws InterruptedException {
+    // the first event is taken by the blocked writer
+    appender.doAppend(event(Level.INFO));
+    while (!appender.isIdle()) {
+      Thread.sleep(1);
+    }
+    // fill the queue beyond the discarding threshold
+    appender.doAppend(event(Level.INFO));
+    appender.doAppend(event(Level.INFO));
+    appender.doAppend(event(Level.INFO));
+
+    appender.doAppend(event(Level.DEBUG));
+    appender.doAppend(event(Level.WARN));
+    appender.doAppend(event(Level.ERROR));
+    // counted as discarded only
+    appender.doAppend(event(Level.DEBUG));
+
+    assertThat(appender.getDiscardedCount(), equalTo(2L));
+    assertThat(appender.getDroppedCount(), equalTo(1L));
+    assertThat(appender.getNumberOfElementsInQueue(), equalTo(4));
+  }
+
+  @Test
+  public void capturesConversionsOnTheLoggingThread() throws InterruptedException {
+    final Map<String, String> rules = new HashMap<>();
+    rules.put("u", UserConverter.class.getName());
+    context.putObject(CoreConstants.PATTERN_RULE_REGISTRY, rules);
+    final List<ILoggingEvent> written = new CopyOnWriteArrayList<>();
+    final AppenderBase<ILoggingEvent> collecting = new AppenderBase<ILoggingEvent>() {
+      @Override
+      protected void append(final ILoggingEvent event) {
+        written.add(event);
+      }
+    };
+    collecting.setContext(context);
+    collecting.start();
+    final BoundedAsyncAppender capturing = new BoundedAsyncAppender();
+    capturing.setContext(context);
+    capturing.setCapturedConversions("u");
+    capturing.addAppender(collecting);
+    capturing.start();
+
+    USER.set("jdoe");
+    try {
+      capturing.doAppend(event(Level.INFO));
+    } finally {
+      USER.remove();
+    }
+    capturing.stop();
+
+    assertThat(capturing.capture("%p#%u#%m"), equalTo("%p#%X{captured_u}#%m"));
+    assertThat(written.get(0).getMDCPropertyMap().get("captured_u"), equalTo("jdoe"));
+  }
+
+  public static class UserConverter extends ClassicConverter {
+
+    @Override
+    public String convert(final ILoggingEvent event) {
+      return String.valueOf(USER.get());
+    }
+  }
+
+  private LoggingEvent event(final Level level) {
+    final Logger logger = context.getLogger(BoundedAsyncAppenderTest.class);
+    return new LoggingEvent(Logger.class.getName(), logger, level, "message", null, null);
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+public class LogArgsTest {
+
+  @Test
+  public void lazyArgumentIsRenderedOnlyOnDemand() {
+    final AtomicInteger calls = new AtomicInteger();
+    final Object arg = LogArgs.lazy(() -> "value-" + calls.incrementAndGet());
+
+    assertThat(calls.get(), equalTo(0));
+    assertThat(arg.toString(), equalTo("value-1"));
+  }
+
+  @Test
+  public void jsonArgumentIsRenderedWithWriter() {
+    final Object arg = LogArgs.json(new ObjectMapper().writer(), Collections.singletonMap("a", 1));
+
+    assertThat(arg.toString(), equalTo("{\"a\":1}"));
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.logging;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.ClassicConstants;
+
+public class RequestIdFilterTest {
+
+  @Test
+  public void incomingRequestIdIsKept() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getHeader("X-Request-ID")).thenReturn("caller-1");
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final FilterChain chain = (req, resp) -> seen.set(MDC.get(Slf4jUtils.LOGGER_CTX_REQUEST_ID));
+
+    new RequestIdFilter(() -> "generated").doFilter(request, response, chain);
+
+    assertThat(seen.get(), equalTo("caller-1"));
+    assertThat(MDC.get(Slf4jUtils.LOGGER_CTX_REQUEST_ID), nullValue());
+    verify(response).addHeader("X-Request-ID", "caller-1");
+  }
+
+  @Test
+  public void requestDetailsAreInTheMdcWhileFiltering() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getRequestURI()).thenReturn("/services/NotifyImplPort");
+    when(request.getMethod()).thenReturn("POST");
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final FilterChain chain = (req, resp) -> seen.set(MDC.get(ClassicConstants.REQUEST_REQUEST_URI));
+
+    new RequestIdFilter(() -> "generated").doFilter(request, response, chain);
+
+    assertThat(seen.get(), equalTo("/services/NotifyImplPort"));
+    assertThat(MDC.get(ClassicConstants.REQUEST_REQUEST_URI), nullValue());
+  }
+
+  @Test
+  public void malformedRequestIdIsReplaced() {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("X-Request-ID")).thenReturn("forged\n[other] line");
+
+    assertThat(new RequestIdFilter(() -> "generated").requestId(request), equalTo("generated"));
+  }
+
+  @Test
+  public void sequentialIdsShareThePrefix() {
+    final SequentialRequestIdGenerator generator = new SequentialRequestIdGenerator(0x3f9a61c2, 36L * 36 * 36);
+
+    assertThat(generator.nextId(), equalTo("3f9a61c2-1000-1"));
+    assertThat(generator.nextId(), equalTo("3f9a61c2-1000-2"));
+  }
+
+  @Test
+  public void unknownGeneratorFallsBackToDefault() {
+    assertThat(RequestIdFilter.newGenerator("no.such.Generator"), instanceOf(SequentialRequestIdGenerator.class));
+  }
+}
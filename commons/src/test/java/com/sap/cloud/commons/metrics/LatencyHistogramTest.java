@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.metrics;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import rx.Observable;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverValuesWithBoundedError() {
+    for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+      final long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+      assertThat(upper, greaterThanOrEqualTo(value));
+      assertThat(upper - value, lessThanOrEqualTo(value / 16));
+    }
+  }
+
+  @Test
+  public void quantilesAreReadFromBuckets() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getCount(), equalTo(1000L));
+    assertThat(snapshot.getMax(), equalTo(1000000L));
+    assertThat(snapshot.getSum(), equalTo(500500000L));
+    assertThat(snapshot.getValueAtQuantile(0.5), greaterThanOrEqualTo(500000L));
+    assertThat(snapshot.getValueAtQuantile(0.5), lessThanOrEqualTo(500000L + 500000L / 16));
+    assertThat(snapshot.getValueAtQuantile(1.0), equalTo(1000000L));
+  }
+
+  @Test
+  public void oldValuesAgeOutOfQuantilesButNotCount() {
+    final AtomicLong now = new AtomicLong();
+    final LatencyHistogram histogram = new LatencyHistogram(60, 6, now::get);
+    histogram.record(1000000);
+    now.addAndGet(30);
+    histogram.record(1000);
+
+    assertThat(histogram.snapshot().getMax(), equalTo(1000000L));
+
+    now.addAndGet(40);
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getMax(), equalTo(1000L));
+    assertThat(snapshot.getValueAtQuantile(0.99), equalTo(1000L));
+    assertThat(snapshot.getCount(), equalTo(2L));
+    assertThat(snapshot.getSum(), equalTo(1001000L));
+  }
+
+  @Test
+  public void timedObservableRecordsOutcome() {
+    final MetricRegistry registry = new MetricRegistry();
+
+    Metrics.timed(registry, Observable.just(1), "stage", "get").subscribe();
+    Metrics.timed(registry, Observable.error(new IllegalStateException()), "stage", "get").subscribe(v -> {}, e -> {});
+
+    assertThat(registry.histogram("stage", "get", Metrics.SUCCESS).snapshot().getCount(), equalTo(1L));
+    assertThat(registry.histogram("stage", "get", Metrics.ERROR).snapshot().getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void servletRendersSummaries() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.record("sfsf.fetch", "EmployeeTime", Metrics.SUCCESS, 2000000);
+    final StringWriter out = new StringWriter();
+
+    MetricsServlet.write(registry, new PrintWriter(out));
+
+    assertThat(out.toString(), containsString("# TYPE sfsf_fetch_seconds summary\n"));
+    assertThat(out.toString(),
+        containsString("sfsf_fetch_seconds_count{action=\"EmployeeTime\",outcome=\"success\"} 1.00000000\n"));
+    assertThat(out.toString(), containsString("# TYPE sfsf_fetch_seconds_max gauge\n"
+        + "sfsf_fetch_seconds_max{action=\"EmployeeTime\",outcome=\"success\"} 0.00200000000\n"));
+  }
+
+  @Test
+  public void servletRendersCountersWithTotalSuffix() {
+    final MetricRegistry registry = new MetricRegistry();
+    registry.counter("circuit_breaker_rejected_calls", "sfsf", () -> 3);
+    final StringWriter out = new StringWriter();
+
+    MetricsServlet.write(registry, new PrintWriter(out));
+
+    assertThat(out.toString(), equalTo("# TYPE circuit_breaker_rejected_calls_total counter\n"
+        + "circuit_breaker_rejected_calls_total{target=\"sfsf\"} 3\n"));
+  }
+
+  @Test
+  public void servletRejectsScrapeWithoutToken() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Authorization")).thenReturn("Bearer wrong");
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    new MetricsServlet("secret").doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+    verify(response, never()).getWriter();
+  }
+
+  @Test
+  public void servletAnswersScrapeWithToken() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Authorization")).thenReturn("Bearer secret");
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final StringWriter out = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(out));
+
+    new MetricsServlet("secret").doGet(request, response);
+
+    verify(response).setContentType(MetricsServlet.CONTENT_TYPE);
+    verify(response, never()).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+  }
+
+  @Test
+  public void servletIsDisabledWithoutConfiguredToken() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    new MetricsServlet(null).doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tenancy;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sap.cloud.commons.tracing.TracingSchedulersHook;
+
+import org.junit.Test;
+import org.slf4j.MDC;
+
+public class TenantFilterTest {
+
+  private final TenantFilter filter = new TenantFilter(new HashSet<>(Arrays.asList("acme", "globex")), "secret");
+
+  @Test
+  public void requestRunsForItsTenant() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getParameter("tenant")).thenReturn("acme");
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final FilterChain chain = (req, resp) -> seen.set(TenantContext.current() + " " + MDC.get("tenant_id"));
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(seen.get(), equalTo("acme acme"));
+    assertThat(TenantContext.current(), equalTo(TenantContext.DEFAULT_TENANT));
+    assertThat(MDC.get("tenant_id"), nullValue());
+  }
+
+  @Test
+  public void unknownTenantIsRejected() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final FilterChain chain = mock(FilterChain.class);
+    when(request.getParameter("tenant")).thenReturn("other");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tenant");
+    verify(chain, never()).doFilter(request, response);
+  }
+
+  @Test
+  public void tenantHeaderIsOnlyAcceptedFromClusterNodes() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final FilterChain chain = (req, resp) -> seen.set(TenantContext.current());
+    when(request.getHeader("X-Tenant-ID")).thenReturn("acme");
+    when(request.getHeader("X-Cluster-Token")).thenReturn("guessed");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_FORBIDDEN, "Untrusted tenant header");
+    assertThat(seen.get(), nullValue());
+
+    when(request.getHeader("X-Cluster-Token")).thenReturn("secret");
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(seen.get(), equalTo("acme"));
+  }
+
+  @Test
+  public void userActsForTheTenantOfTheirRole() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final FilterChain chain = (req, resp) -> seen.set(TenantContext.current());
+    when(request.getRemoteUser()).thenReturn("user-1");
+    when(request.isUserInRole("Tenant_acme")).thenReturn(true);
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(seen.get(), equalTo("acme"));
+
+    seen.set(null);
+    when(request.getParameter("tenant")).thenReturn("globex");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_FORBIDDEN, "Tenant not granted to user");
+    assertThat(seen.get(), nullValue());
+  }
+
+  @Test
+  public void userWithoutTenantRoleCannotChooseATenant() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final FilterChain chain = mock(FilterChain.class);
+    when(request.getRemoteUser()).thenReturn("user-1");
+    when(request.getParameter("tenant")).thenReturn("acme");
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_FORBIDDEN, "Tenant not granted to user");
+    verify(chain, never()).doFilter(request, response);
+  }
+
+  @Test
+  public void requestWithoutTenantRunsForDefault() throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final AtomicReference<String> seen = new AtomicReference<>();
+
+    filter.doFilter(request, response, (req, resp) -> seen.set(TenantContext.current()));
+
+    assertThat(seen.get(), equalTo(TenantContext.DEFAULT_TENANT));
+    verify(response, never()).sendError(anyInt(), anyString());
+  }
+
+  @Test
+  public void scheduledActionRunsForSchedulingTenant() {
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final String previous = TenantContext.attach("acme");
+    final Runnable action;
+    try {
+      action = new TracingSchedulersHook().onSchedule(() -> seen.set(TenantContext.current()))::call;
+    } finally {
+      TenantContext.restore(previous);
+    }
+
+    action.run();
+
+    assertThat(seen.get(), equalTo("acme"));
+    assertThat(TenantContext.attached(), nullValue());
+  }
+
+  @Test
+  public void defaultTenantKeepsKeysAndDestinations() {
+    assertThat(TenantContext.qualify("default", "user-1"), equalTo("user-1"));
+    assertThat(TenantContext.qualify("acme", "user-1"), equalTo("acme/user-1"));
+    assertThat(TenantContext.destinationName("google_oauth", "default"), equalTo("google_oauth"));
+    assertThat(TenantContext.destinationName("google_oauth", "acme"), equalTo("google_oauth_acme"));
+    assertThat(TenantContext.isValidTenantId("acme\n[x]"), equalTo(false));
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.commons.tracing;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import rx.Observable;
+import rx.functions.Action0;
+
+public class TraceContextTest {
+
+  private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+  @After
+  public void after() {
+    TraceContext.restore(null);
+  }
+
+  @Test
+  public void rootContinuesValidTraceparent() {
+    final TraceContext context = TraceContext.root("request", TRACEPARENT);
+
+    assertThat(context.getTraceId(), equalTo("0af7651916cd43dd8448eb211c80319c"));
+    assertThat(context.getParentSpanId(), equalTo("b7ad6b7169203331"));
+    assertThat(context.getSpanId(), not(equalTo("b7ad6b7169203331")));
+    assertThat(TraceContext.isValidTraceparent(context.toTraceparent()), equalTo(true));
+  }
+
+  @Test
+  public void rootStartsNewTraceForInvalidTraceparent() {
+    final TraceContext context = TraceContext.root("request", "00-00000000000000000000000000000000-b7ad6b7169203331-01");
+
+    assertThat(context.getParentSpanId(), nullValue());
+    assertThat(TraceContext.isValidTraceparent(context.toTraceparent()), equalTo(true));
+  }
+
+  @Test
+  public void attachAndRestoreMirrorIntoMdc() {
+    final TraceContext context = TraceContext.root("request", null);
+
+    final TraceContext previous = context.attach();
+    assertThat(MDC.get(TraceContext.MDC_REQUEST_ID), equalTo("request"));
+    assertThat(MDC.get(TraceContext.MDC_SPAN_ID), equalTo(context.getSpanId()));
+
+    TraceContext.restore(previous);
+    assertThat(TraceContext.current(), nullValue());
+    assertThat(MDC.get(TraceContext.MDC_REQUEST_ID), nullValue());
+  }
+
+  @Test
+  public void scheduledActionRunsInSchedulingContext() throws InterruptedException {
+    final TraceContext context = TraceContext.root("request", null);
+    final AtomicReference<String> requestId = new AtomicReference<>();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    context.attach();
+    final Action0 action =
+        new TracingSchedulersHook().onSchedule(() -> requestId.set(MDC.get(TraceContext.MDC_REQUEST_ID)));
+    TraceContext.restore(null);
+    executor.execute(action::call);
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+
+    assertThat(requestId.get(), equalTo("request"));
+  }
+
+  @Test
+  public void tracedObservableRunsInChildSpan() {
+    final TraceContext context = TraceContext.root("request", null);
+    final AtomicReference<TraceContext> inner = new AtomicReference<>();
+
+    context.attach();
+    Tracing.traced(Observable.fromCallable(() -> {
+      inner.set(TraceContext.current());
+      return 1;
+    }), "call").subscribe();
+
+    assertThat(TraceContext.current(), equalTo(context));
+    assertThat(inner.get().getParentSpanId(), equalTo(context.getSpanId()));
+    assertThat(inner.get().getTraceId(), equalTo(context.getTraceId()));
+    assertThat(inner.get().getRequestId(), equalTo("request"));
+  }
+}
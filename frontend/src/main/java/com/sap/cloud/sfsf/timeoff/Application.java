@@ -13,6 +13,8 @@
  */
 package com.sap.cloud.sfsf.timeoff;
 
+import com.sap.cloud.commons.tracing.Tracing;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -27,10 +29,12 @@ public class Application extends SpringBootServletInitializer {
 
   @Override
   protected SpringApplicationBuilder configure(final SpringApplicationBuilder application) {
+    Tracing.install();
     return application.sources(Application.class);
   }
 
   public static void main(final String[] args) {
+    Tracing.install();
     SpringApplication.run(Application.class, args);
   }
 
@@ -15,9 +15,8 @@ package com.sap.cloud.sfsf.timeoff.google;
 
 import java.time.ZonedDateTime;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.services.gmail.model.VacationSettings;
+import com.sap.cloud.commons.logging.LogArgs;
 import com.sap.cloud.sfsf.timeoff.entity.Messages;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
 import com.sap.cloud.sfsf.timeoff.jackson.DefaultMapper;
@@ -34,7 +33,6 @@ public class AutoReplies {
 	private final CalendarService calendarService;
 	private final Messages message;
 
-	private final ObjectMapper mapper = DefaultMapper.newMapper();
 
 	private final Logger logger = LoggerFactory.getLogger(AutoReplies.class);
 
@@ -61,22 +59,13 @@ public class AutoReplies {
 				.setEnableAutoReply(true)
 				// comment
 				.setResponseBodyHtml(replyMessage);
-		logger.debug(String.format("Enabling Google Autoreply: %s", asJson(autoReplySettings)));
+		logger.debug("Enabling Google Autoreply: {}", LogArgs.json(DefaultMapper.writer(), autoReplySettings));
 		return calendarService.setAutoReply(autoReplySettings, employeeTime.getUserId());
 	}
 
 	public Observable<VacationSettings> disableAutomaticReply(final String userId) {
 		final VacationSettings disabledAutoreplySetting = new VacationSettings().setEnableAutoReply(false);
-		logger.debug(String.format("Disabling Google Autoreply: %s", asJson(disabledAutoreplySetting)));
+		logger.debug("Disabling Google Autoreply: {}", LogArgs.json(DefaultMapper.writer(), disabledAutoreplySetting));
 		return calendarService.setAutoReply(disabledAutoreplySetting, userId);
 	}
-
-	private <T> String asJson(final T obj) {
-		try {
-			return mapper.writeValueAsString(obj);
-		} catch (final JsonProcessingException e) {
-			logger.error("Failed to serialize object.", e);
-		}
-		return null;
-	}
 }
@@ -28,6 +28,8 @@ interface CalendarService {
 
 	Observable<Void> deleteEvent(String eventId, String userId);
 
+	Observable<Event> getEvent(String eventId, String userId);
+
 	Observable<Events> getEvents(DateTime start, DateTime end, String userId);
 
 	Observable<VacationSettings> setAutoReply(VacationSettings vs, String userId);
@@ -13,12 +13,13 @@
  */
 package com.sap.cloud.sfsf.timeoff.google;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.Events;
 import com.google.api.services.gmail.model.VacationSettings;
+import com.sap.cloud.commons.logging.LogArgs;
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.commons.tracing.Tracing;
 import com.sap.cloud.sfsf.timeoff.jackson.DefaultMapper;
 
 import org.slf4j.Logger;
@@ -32,8 +33,9 @@ import rx.Observable;
 public class CalendarServiceImpl implements CalendarService {
 
 	private static final String PRIMARY = "primary";
+	private static final String CALENDAR_STAGE = "google.calendar";
+	private static final String VACATION_STAGE = "google.vacation";
 	private final GoogleService googleServices;
-	private final ObjectMapper mapper = DefaultMapper.newMapper();
 
 	private static final Logger logger = LoggerFactory.getLogger(CalendarServiceImpl.class);
 
@@ -45,64 +47,68 @@ public class CalendarServiceImpl implements CalendarService {
 	@Override
 	public Observable<Event> createEvent(final Event event, final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Creating calendar event: %s", asJson(event)));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Creating calendar event: {}", LogArgs.json(DefaultMapper.writer(), event));
 			return googleServices.calendar(userId).events().insert(PRIMARY, event).execute();
-		});
+		}), CALENDAR_STAGE, "insert");
 	}
 
 	@Override
 	public Observable<Event> updateEvent(final String eventId, final Event event, final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Updating existing calendar event: %s", asJson(event)));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Updating existing calendar event: {}", LogArgs.json(DefaultMapper.writer(), event));
 			return googleServices.calendar(userId).events().update(PRIMARY, eventId, event).execute();
-		});
+		}), CALENDAR_STAGE, "update");
 	}
 
 	@Override
 	public Observable<Void> deleteEvent(final String eventId, final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Deleting calendar event with id: %s", eventId));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Deleting calendar event with id: {}", eventId);
 			return googleServices.calendar(userId).events().delete(PRIMARY, eventId).execute();
-		});
+		}), CALENDAR_STAGE, "delete");
+	}
+
+	@Override
+	public Observable<Event> getEvent(final String eventId, final String userId) {
+
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Returning calendar event with id: {}", eventId);
+			return googleServices.calendar(userId).events().get(PRIMARY, eventId).execute();
+		}), CALENDAR_STAGE, "get");
 	}
 
 	@Override
 	public Observable<Events> getEvents(final DateTime start, final DateTime end, final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Returning calendar events for user %s: ", userId));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Returning calendar events for user {}: ", userId);
 			return googleServices.calendar(userId).events().list(PRIMARY).setTimeMin(start).setTimeMax(end)
 					.execute();
-		});
+		}), CALENDAR_STAGE, "list");
 	}
 
 	@Override
 	public Observable<VacationSettings> setAutoReply(final VacationSettings vs, final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Updating auto-reply settings %s: ", asJson(vs)));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Updating auto-reply settings {}: ", LogArgs.json(DefaultMapper.writer(), vs));
 			return googleServices.gmail(userId).users().settings().updateVacation("me", vs).execute();
-		});
+		}), VACATION_STAGE, "set");
 	}
 
 	@Override
 	public Observable<VacationSettings> getAutoReply(final String userId) {
 
-		return Observable.fromCallable(() -> {
-			logger.debug(String.format("Returning auto-reply settings for user %s: ", userId));
+		return timed(Observable.fromCallable(() -> {
+			logger.debug("Returning auto-reply settings for user {}: ", userId);
 			return googleServices.gmail(userId).users().settings().getVacation("me").execute();
-		});
+		}), VACATION_STAGE, "get");
 	}
 
-	private <T> String asJson(final T obj) {
-		try {
-			return mapper.writeValueAsString(obj);
-		} catch (final JsonProcessingException e) {
-			logger.error("Failed to serialize object.", e);
-		}
-		return null;
+	private static <T> Observable<T> timed(final Observable<T> call, final String stage, final String action) {
+		return Metrics.timed(Tracing.traced(call, stage + " " + action), stage, action);
 	}
 }
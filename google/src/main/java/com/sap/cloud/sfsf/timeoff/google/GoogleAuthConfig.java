@@ -23,6 +23,8 @@ import javax.servlet.Filter;
 import javax.servlet.http.HttpServletRequest;
 
 import com.sap.cloud.commons.connectivity.DestinationUtils;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.commons.tenancy.TenantScoped;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +67,7 @@ public class GoogleAuthConfig extends WebSecurityConfigurerAdapter {
 
   private static final String PROPERTY_NOT_FOUND = "Property {0} is not found. Check your destination configuration!";
   private static final String GOOGLE_LOGIN_PATH = "/login/google";
+  private static final String GOOGLE_OAUTH_DESTINATION_NAME = "google_oauth";
   private static final String CLIENT_SECRET = "client_secret";
   private static final String CLIENT_ID = "client_id";
   private final OAuth2ClientContext oauth2ClientContext;
@@ -150,14 +153,14 @@ public class GoogleAuthConfig extends WebSecurityConfigurerAdapter {
 
   @Bean("google-oauth")
   public DestinationUtils googleOAuthConfig() {
-    return DestinationUtils.builder().setDestinationName("google_oauth").build();
+    return DestinationUtils.builder().setDestinationName(GOOGLE_OAUTH_DESTINATION_NAME).build();
   }
 
 
   @Bean
   public AuthorizationCodeResourceDetails google() {
     final DestinationUtils googleOAuthConfig = googleOAuthConfig();
-    final ClientOnlyResourceDetails props = new ClientOnlyResourceDetails();
+    final ClientOnlyResourceDetails props = new TenantResourceDetails();
     final String clientId = getProperty(googleOAuthConfig, CLIENT_ID);
     final String clientSecret = getProperty(googleOAuthConfig, CLIENT_SECRET);
 
@@ -180,6 +183,31 @@ public class GoogleAuthConfig extends WebSecurityConfigurerAdapter {
     }
   }
 
+  /**
+   * Uses the OAuth client of the current tenant, as configured in its copy of the <code>google_oauth</code>
+   * destination, which is only read again when its snapshot expires. The default tenant uses the client set on the
+   * bean.
+   */
+  private class TenantResourceDetails extends ClientOnlyResourceDetails {
+
+    private final TenantScoped<DestinationUtils> destinations = new TenantScoped<>(tenantId -> DestinationUtils
+        .builder().setDestinationName(TenantContext.destinationName(GOOGLE_OAUTH_DESTINATION_NAME, tenantId)).build());
+
+    @Override
+    public String getClientId() {
+      final String tenantId = TenantContext.current();
+      return TenantContext.DEFAULT_TENANT.equals(tenantId) ? super.getClientId()
+          : getProperty(destinations.get(tenantId), CLIENT_ID);
+    }
+
+    @Override
+    public String getClientSecret() {
+      final String tenantId = TenantContext.current();
+      return TenantContext.DEFAULT_TENANT.equals(tenantId) ? super.getClientSecret()
+          : getProperty(destinations.get(tenantId), CLIENT_SECRET);
+    }
+  }
+
   private class DummyTokenServices implements ResourceServerTokenServices {
 
     @Override
@@ -22,12 +22,15 @@ import java.util.List;
 import java.util.TimeZone;
 import java.util.stream.Collectors;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.Events;
 import com.google.api.services.gmail.model.VacationSettings;
+import com.sap.cloud.commons.tenancy.TenantContext;
 import com.sap.cloud.sfsf.timeoff.CalendarServiceProvider;
+import com.sap.cloud.sfsf.timeoff.LeaseManager;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEventsList;
 import com.sap.cloud.sfsf.timeoff.entity.SFSFEmployeeTime;
@@ -42,9 +45,12 @@ import rx.Observable;
 public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
 
   private static final String OUT_OF_OFFICE = "Out of office";
+  private static final String CANCELLED = "cancelled";
+  private static final String LEASE_PREFIX = "calendar/";
 
   private final CalendarService calendarService;
   private final AutoReplies autoReplies;
+  private LeaseManager leaseManager;
 
   @Autowired
   public GoogleCalendarServiceProvider(final CalendarService calendarService, final AutoReplies autoReplies) {
@@ -52,9 +58,17 @@ public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
     this.autoReplies = autoReplies;
   }
 
+  /**
+   * With a lease manager, the calendar and auto-reply changes of a user are made by one node at a time.
+   */
+  @Autowired(required = false)
+  public void setLeaseManager(final LeaseManager leaseManager) {
+    this.leaseManager = leaseManager;
+  }
+
   @Override
   public Observable<Void> create(final SFSFEmployeeTime employeeTime, final String requestId) {
-    return Observable.just(employeeTime).flatMap(et -> {
+    return leased(employeeTime, Observable.just(employeeTime).flatMap(et -> {
       final Observable<Event> outOfOfficeEvent =
           calendarService.createEvent(createEvent(employeeTime), employeeTime.getUserId());
       final Observable<VacationSettings> automaticReplay = autoReplies.getAutomaticReply(et)
@@ -65,12 +79,12 @@ public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
       return Observable.zip(outOfOfficeEvent, automaticReplay, (calEvent, autoReplay) -> {
         return null;
       });
-    });
+    }));
   }
 
   @Override
   public Observable<Void> update(final SFSFEmployeeTime employeeTime, final String requestId) {
-    return Observable.just(employeeTime).flatMap(et -> {
+    return leased(employeeTime, Observable.just(employeeTime).flatMap(et -> {
       final Observable<Event> outOfOfficeEvent = calendarService.updateEvent(employeeTime.getExternalCode(),
           createEvent(employeeTime), employeeTime.getUserId());
       final Observable<VacationSettings> automaticReplay = autoReplies.getAutomaticReply(et)
@@ -81,12 +95,12 @@ public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
       return Observable.zip(outOfOfficeEvent, automaticReplay, (calEvent, autoReplay) -> {
         return null;
       });
-    });
+    }));
   }
 
   @Override
   public Observable<Void> cancel(final SFSFEmployeeTime employeeTime, final String requestId) {
-    return Observable.just(employeeTime).flatMap(et -> {
+    return leased(employeeTime, Observable.just(employeeTime).flatMap(et -> {
       final Observable<Void> o = calendarService.deleteEvent(employeeTime.getExternalCode(), employeeTime.getUserId());
       final Observable<VacationSettings> automaticReplay = autoReplies.getAutomaticReply(et)
           // filter
@@ -96,7 +110,13 @@ public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
       return Observable.zip(o, automaticReplay, (a, autoReplay) -> {
         return null;
       });
-    });
+    }));
+  }
+
+  private <T> Observable<T> leased(final SFSFEmployeeTime employeeTime, final Observable<T> mutation) {
+    // the out of office event and the auto-reply both belong to the user
+    return leaseManager == null ? mutation
+        : leaseManager.withLease(LEASE_PREFIX + TenantContext.qualify(employeeTime.getUserId()), mutation);
   }
 
   @Override
@@ -111,6 +131,20 @@ public class GoogleCalendarServiceProvider implements CalendarServiceProvider {
         }).map(new CalendarEventsList()::setValue);
   }
 
+  @Override
+  public Observable<CalendarEvent> getOutOfOffice(final SFSFEmployeeTime employeeTime) {
+    final String defaultTimeZone = employeeTime.getStartDate().getZone().getId();
+    return calendarService.getEvent(employeeTime.getExternalCode(), employeeTime.getUserId())
+        // deleted events are still returned, as cancelled
+        .filter(event -> !CANCELLED.equals(event.getStatus())).map(event -> parse(event, defaultTimeZone))
+        .onErrorResumeNext(e -> isNotFound(e) ? Observable.empty() : Observable.error(e));
+  }
+
+  private static boolean isNotFound(final Throwable e) {
+    return e instanceof GoogleJsonResponseException && (((GoogleJsonResponseException) e).getStatusCode() == 404
+        || ((GoogleJsonResponseException) e).getStatusCode() == 410);
+  }
+
   private List<CalendarEvent> toCalendaEvent(final Events events) {
     return events.getItems().stream().filter(event -> !OUT_OF_OFFICE.equals(event.getSummary()))
         .map(event -> parse(event, events.getTimeZone())).collect(Collectors.toList());
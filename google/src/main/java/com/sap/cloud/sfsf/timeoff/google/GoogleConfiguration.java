@@ -13,10 +13,16 @@
  */
 package com.sap.cloud.sfsf.timeoff.google;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -33,5 +39,13 @@ public class GoogleConfiguration {
     return JacksonFactory.getDefaultInstance();
   }
 
+  @Bean
+  @ConditionalOnProperty(name = "sfsf.timeoff.cluster.enabled", havingValue = "true")
+  JdbcCredentialStore googleCredentialStore(
+      @Value("${sfsf.timeoff.cluster.data-source:java:comp/env/jdbc/DefaultDB}") final String dataSourceName)
+      throws NamingException {
+    return new JdbcCredentialStore((DataSource) new InitialContext().lookup(dataSourceName));
+  }
+
 
 }
@@ -14,13 +14,17 @@
 package com.sap.cloud.sfsf.timeoff.google;
 
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.ehcache.impl.internal.concurrent.ConcurrentHashMap;
+import com.sap.cloud.commons.tenancy.TenantContext;
+import com.sap.cloud.commons.tenancy.TenantScoped;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.stereotype.Service;
 
 /**
- * In-memory storage for tokens.
+ * In-memory storage for Google access tokens by user, kept apart per tenant.
  *
  * Replace with persistent storage for production.
  *
@@ -28,20 +32,43 @@ import org.springframework.stereotype.Service;
 @Service
 public class GoogleCredentialService {
 
-  private final ConcurrentHashMap<String, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+  private final TenantScoped<ConcurrentHashMap<String, OAuth2AccessToken>> tokens =
+      new TenantScoped<>(tenantId -> new ConcurrentHashMap<>());
+
+  private JdbcCredentialStore store;
+
+  /**
+   * In cluster mode, a user signs in on any node, but their events are handled by the node owning them, so the tokens
+   * are kept in the data source instead.
+   */
+  @Autowired(required = false)
+  public void setStore(final JdbcCredentialStore store) {
+    this.store = store;
+  }
 
   public void saveAccessToken(final String user, final OAuth2AccessToken accessToken) {
-    tokens.put(user, accessToken);
+    if (store != null) {
+      store.save(TenantContext.qualify(user), accessToken);
+      return;
+    }
+    tokens.get().put(user, accessToken);
 
   }
 
   public void removeAccessToken(final String user) {
-    tokens.remove(user);
+    if (store != null) {
+      store.remove(TenantContext.qualify(user));
+      return;
+    }
+    tokens.get().remove(user);
 
   }
 
   public Optional<OAuth2AccessToken> getAccessToken(final String user) {
-    return Optional.ofNullable(tokens.get(user));
+    if (store != null) {
+      return store.load(TenantContext.qualify(user));
+    }
+    return Optional.ofNullable(tokens.get().get(user));
 
   }
 }
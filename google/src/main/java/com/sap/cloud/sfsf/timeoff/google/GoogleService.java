@@ -56,13 +56,13 @@ public class GoogleService {
 
   public Calendar calendar(final String userId) throws IOException {
     final Credential credential = getCredential(userId);
-    logger.debug(MessageFormat.format("Returning new Google Calendar Service for user {0}: ", userId));
+    logger.debug("Returning new Google Calendar Service for user {}: ", userId);
     return new Calendar.Builder(httpTransport, jsonFactory, credential).setApplicationName(APPLICATION_NAME).build();
   }
 
   public Gmail gmail(final String userId) throws IOException {
     final Credential credential = getCredential(userId);
-    logger.debug(MessageFormat.format("Returning new Google Gmail Service for user {0}: ", userId));
+    logger.debug("Returning new Google Gmail Service for user {}: ", userId);
     return new Gmail.Builder(httpTransport, jsonFactory, credential).setApplicationName(APPLICATION_NAME).build();
   }
 
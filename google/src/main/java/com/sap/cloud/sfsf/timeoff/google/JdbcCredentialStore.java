@@ -0,0 +1,155 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.timeoff.google;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.StringUtils;
+
+/**
+ * Google access tokens in the <code>TIMEOFF_GOOGLE_TOKEN</code> table of the given data source, e.g. the
+ * <code>jdbc/DefaultDB</code> bound to the application, shared by all nodes of a cluster. Keys are the users qualified
+ * with their tenant. The table is created on first use.
+ */
+public class JdbcCredentialStore {
+
+  static final String TABLE = "TIMEOFF_GOOGLE_TOKEN";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcCredentialStore.class);
+
+  private static final String CREATE = "CREATE TABLE " + TABLE
+      + " (USER_KEY VARCHAR(255) NOT NULL PRIMARY KEY, ACCESS_TOKEN VARCHAR(4096), TOKEN_TYPE VARCHAR(64),"
+      + " REFRESH_TOKEN VARCHAR(1024), EXPIRATION TIMESTAMP, SCOPE VARCHAR(1024))";
+  private static final String SELECT =
+      "SELECT ACCESS_TOKEN, TOKEN_TYPE, REFRESH_TOKEN, EXPIRATION, SCOPE FROM " + TABLE + " WHERE USER_KEY = ?";
+  private static final String UPDATE = "UPDATE " + TABLE
+      + " SET ACCESS_TOKEN = ?, TOKEN_TYPE = ?, REFRESH_TOKEN = ?, EXPIRATION = ?, SCOPE = ? WHERE USER_KEY = ?";
+  private static final String INSERT = "INSERT INTO " + TABLE
+      + " (ACCESS_TOKEN, TOKEN_TYPE, REFRESH_TOKEN, EXPIRATION, SCOPE, USER_KEY) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String DELETE = "DELETE FROM " + TABLE + " WHERE USER_KEY = ?";
+
+  private final DataSource dataSource;
+  private volatile boolean tableChecked;
+
+  public JdbcCredentialStore(final DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  public Optional<OAuth2AccessToken> load(final String userKey) {
+    try (Connection connection = connection(); PreparedStatement select = connection.prepareStatement(SELECT)) {
+      select.setString(1, userKey);
+      try (ResultSet resultSet = select.executeQuery()) {
+        if (!resultSet.next()) {
+          return Optional.empty();
+        }
+        final DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(resultSet.getString(1));
+        token.setTokenType(resultSet.getString(2));
+        final String refreshToken = resultSet.getString(3);
+        if (refreshToken != null) {
+          token.setRefreshToken(new DefaultOAuth2RefreshToken(refreshToken));
+        }
+        final Timestamp expiration = resultSet.getTimestamp(4);
+        if (expiration != null) {
+          token.setExpiration(expiration);
+        }
+        token.setScope(new LinkedHashSet<>(
+            Arrays.asList(StringUtils.tokenizeToStringArray(resultSet.getString(5), OAuth2AccessToken.SCOPE))));
+        return Optional.of(token);
+      }
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not load the Google token of " + userKey, e);
+    }
+  }
+
+  public void save(final String userKey, final OAuth2AccessToken token) {
+    try (Connection connection = connection()) {
+      if (execute(connection, UPDATE, userKey, token) == 0) {
+        execute(connection, INSERT, userKey, token);
+      }
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not save the Google token of " + userKey, e);
+    }
+  }
+
+  public void remove(final String userKey) {
+    try (Connection connection = connection(); PreparedStatement delete = connection.prepareStatement(DELETE)) {
+      delete.setString(1, userKey);
+      delete.executeUpdate();
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Could not remove the Google token of " + userKey, e);
+    }
+  }
+
+  private static int execute(final Connection connection, final String sql, final String userKey,
+      final OAuth2AccessToken token) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, token.getValue());
+      statement.setString(2, token.getTokenType());
+      statement.setString(3, token.getRefreshToken() == null ? null : token.getRefreshToken().getValue());
+      if (token.getExpiration() == null) {
+        statement.setNull(4, Types.TIMESTAMP);
+      } else {
+        statement.setTimestamp(4, new Timestamp(token.getExpiration().getTime()));
+      }
+      statement.setString(5, token.getScope() == null ? null
+          : StringUtils.collectionToDelimitedString(token.getScope(), OAuth2AccessToken.SCOPE));
+      statement.setString(6, userKey);
+      return statement.executeUpdate();
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+    if (!tableChecked) {
+      try {
+        createTableIfMissing(connection);
+      } catch (final SQLException e) {
+        connection.close();
+        throw e;
+      }
+      tableChecked = true;
+    }
+    return connection;
+  }
+
+  private static synchronized void createTableIfMissing(final Connection connection) throws SQLException {
+    final DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(null, null, TABLE, null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(CREATE);
+      LOGGER.info("Created table {}", TABLE);
+    }
+  }
+}
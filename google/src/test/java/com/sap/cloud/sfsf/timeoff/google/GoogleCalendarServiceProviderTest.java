@@ -17,6 +17,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -29,6 +31,7 @@ import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.Events;
 import com.google.api.services.gmail.model.VacationSettings;
+import com.sap.cloud.sfsf.timeoff.LeaseManager;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEvent;
 import com.sap.cloud.sfsf.timeoff.entity.CalendarEventsList;
 import com.sap.cloud.sfsf.timeoff.entity.EmpJob;
@@ -254,6 +257,26 @@ public class GoogleCalendarServiceProviderTest {
 
 	}
 
+	@Test
+	public void testCancelWaitsForTheLeaseOfTheUser() {
+		// given
+		empTime = employeeTime();
+		empTime.setUserId("user-1");
+		final LeaseManager leaseManager = mock(LeaseManager.class);
+		given(leaseManager.withLease(eq("calendar/user-1"), any())).willReturn(Observable.empty());
+		googleProvider.setLeaseManager(leaseManager);
+
+		final TestSubscriber<Void> testSubscriber = new TestSubscriber<>();
+
+		// when
+		googleProvider.cancel(empTime, "test-request-id").subscribe(testSubscriber);
+
+		// then
+		testSubscriber.assertNoErrors();
+		testSubscriber.assertCompleted();
+		verify(leaseManager).withLease(eq("calendar/user-1"), any());
+	}
+
 	private SFSFEmployeeTime employeeTime() {
 		final OffsetDateTime dateUpdated = OffsetDateTime.parse(SFSF_EMP_TIME_CREATED_STR);
 		final OffsetDateTime dateCreated = OffsetDateTime.parse(SFSF_EMP_TIME_CREATED_STR);
@@ -21,6 +21,9 @@
 
 package com.sap.cloud.sfsf.notification;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -38,6 +41,7 @@ import javax.xml.bind.annotation.XmlType;
  *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
  *       &lt;sequence>
  *         &lt;element name="responsePayload" type="{http://notification.event.successfactors.com}eenAlertResponsePayload" minOccurs="0" form="qualified"/>
+ *         &lt;element name="entityResponsePayload" type="{http://notification.event.successfactors.com}eenAlertResponsePayload" maxOccurs="unbounded" minOccurs="0" form="qualified"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -49,11 +53,13 @@ import javax.xml.bind.annotation.XmlType;
 @XmlRootElement(name ="ExternalEventResponse")
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(name = "ExternalEventResponse", propOrder = {
-    "responsePayload"
+    "responsePayload",
+    "entityResponsePayload"
 })
 public class ExternalEventResponse {
 
     protected EenAlertResponsePayload responsePayload;
+    protected List<EenAlertResponsePayload> entityResponsePayload;
 
     /**
      * Gets the value of the responsePayload property.
@@ -80,4 +86,25 @@ public class ExternalEventResponse {
         return this;
     }
 
+    /**
+     * Gets the value of the entityResponsePayload property.
+     *
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     *
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link EenAlertResponsePayload }
+     *
+     *
+     */
+    public List<EenAlertResponsePayload> getEntityResponsePayload() {
+        if (entityResponsePayload == null) {
+            entityResponsePayload = new ArrayList<EenAlertResponsePayload>();
+        }
+        return entityResponsePayload;
+    }
+
 }
@@ -16,13 +16,23 @@ package com.sap.cloud.sfsf.notification.autoconfigure;
 import java.util.List;
 
 import com.sap.cloud.sfsf.notification.endpoint.EventEndpoint;
+import com.sap.cloud.sfsf.notification.endpoint.StreamingEventEndpoint;
 import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.ClassUtils;
 import org.springframework.ws.config.annotation.EnableWs;
+import org.springframework.ws.soap.SoapMessageFactory;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
+import org.springframework.ws.transport.http.MessageDispatcherServlet;
 import org.springframework.ws.wsdl.wsdl11.DefaultWsdl11Definition;
 import org.springframework.xml.xsd.SimpleXsdSchema;
 import org.springframework.xml.xsd.XsdSchema;
@@ -33,6 +43,10 @@ import rx.Observable;
 @Configuration
 public class NotificationConfiguration {
 
+  static final String AXIOM_SOAP_FACTORY = "org.apache.axiom.soap.SOAPFactory";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationConfiguration.class);
+
   @ConditionalOnMissingBean(name="notification")
   @Bean(name = "notification")
   public DefaultWsdl11Definition defaultWsdl11Definition(final XsdSchema countriesSchema) {
@@ -57,9 +71,36 @@ public class NotificationConfiguration {
   }
 
   @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "sfsf.notification.streaming.enabled", havingValue = "false", matchIfMissing = true)
   @Bean
   public EventEndpoint eventEndpoint(final List<NotificationHandler> notificationHandlers) {
     return new EventEndpoint(notificationHandlers);
   }
 
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "sfsf.notification.streaming.enabled", havingValue = "true")
+  @Bean
+  public StreamingEventEndpoint streamingEventEndpoint(final List<NotificationHandler> notificationHandlers,
+      @Value("${sfsf.notification.streaming.chunk-size:100}") final int chunkSize) {
+    if (!ClassUtils.isPresent(AXIOM_SOAP_FACTORY, NotificationConfiguration.class.getClassLoader())) {
+      LOGGER.warn("Axiom is not on the classpath, the SOAP body of streamed ExternalEvents is still parsed into a DOM");
+    }
+    return new StreamingEventEndpoint(notificationHandlers, chunkSize);
+  }
+
+  /**
+   * Streaming message factory for the {@link StreamingEventEndpoint}, so the SOAP body is pulled from the request
+   * instead of being parsed into a DOM first. Needs Axiom (<code>axiom-api</code>, <code>axiom-impl</code>) on the
+   * classpath; without it SAAJ is used and memory is not bounded.
+   */
+  @ConditionalOnProperty(name = "sfsf.notification.streaming.enabled", havingValue = "true")
+  @ConditionalOnClass(name = AXIOM_SOAP_FACTORY)
+  @ConditionalOnMissingBean(name = MessageDispatcherServlet.DEFAULT_MESSAGE_FACTORY_BEAN_NAME)
+  @Bean(name = MessageDispatcherServlet.DEFAULT_MESSAGE_FACTORY_BEAN_NAME)
+  public SoapMessageFactory streamingMessageFactory() {
+    final AxiomSoapMessageFactory messageFactory = new AxiomSoapMessageFactory();
+    messageFactory.setPayloadCaching(false);
+    return messageFactory;
+  }
+
 }
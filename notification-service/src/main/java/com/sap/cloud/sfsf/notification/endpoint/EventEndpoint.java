@@ -15,7 +15,9 @@ package com.sap.cloud.sfsf.notification.endpoint;
 
 import java.util.List;
 
+import com.sap.cloud.commons.metrics.Metrics;
 import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.Events;
 import com.sap.cloud.sfsf.notification.ExternalEvent;
 import com.sap.cloud.sfsf.notification.ExternalEventResponse;
 import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
@@ -23,7 +25,6 @@ import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.util.StringUtils;
 import org.springframework.ws.server.endpoint.annotation.Endpoint;
 import org.springframework.ws.server.endpoint.annotation.PayloadRoot;
 import org.springframework.ws.server.endpoint.annotation.RequestPayload;
@@ -38,6 +39,8 @@ public class EventEndpoint {
 
   private static final String NAMESPACE_URI = "http://notification.event.successfactors.com";
 
+  static final String RECEIVE_STAGE = "soap.receive";
+
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(EventEndpoint.class);
 
   private final Observable<NotificationHandler> notificationHandlers;
@@ -51,41 +54,34 @@ public class EventEndpoint {
   @ResponsePayload
   public ExternalEventResponse externalEvent(@RequestPayload final ExternalEvent request) {
     final String requestId = MDC.get("request_id");
-    final ExternalEventResponse eer = notificationHandlers.flatMap(notification -> {
-      return notification.onNotification(request.getEvents(), requestId)
-          .doOnError(e -> LOGGER.error("NotificationHandler error while processing event.", e)).onErrorReturn(e -> {
-            final EenAlertResponsePayload resp = new EenAlertResponsePayload();
-            resp.setErrorCode("500");
-            resp.setStatus(500);
-            resp.setErrorMessage(e.getMessage());
-            return resp;
-          });
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try {
+      final ExternalEventResponse eer = notificationHandlers.flatMap(notification -> {
+        return handle(notification, request.getEvents(), requestId);
+      }).subscribeOn(Schedulers.io()).collect(() -> new ResponseAggregator(eventCount(request)), ResponseAggregator::add)
+          .map(ResponseAggregator::toResponse).toBlocking()
+          .singleOrDefault(new ExternalEventResponse());
+      outcome = ResponseAggregator.outcome(eer);
+      return eer;
+    } finally {
+      Metrics.record(RECEIVE_STAGE, "ExternalEvent", outcome, start);
+    }
+  }
 
-    }).subscribeOn(Schedulers.io()).reduce(new EenAlertResponsePayload(), (accumulator, current) -> {
-      return aggregateResponse(accumulator, current);
-    }).map(resp -> new ExternalEventResponse().setResponsePayload(resp)).toBlocking()
-        .singleOrDefault(new ExternalEventResponse());
-    return eer;
+  private static int eventCount(final ExternalEvent request) {
+    return request.getEvents() == null ? 0 : request.getEvents().getEvent().size();
   }
 
-  private EenAlertResponsePayload aggregateResponse(final EenAlertResponsePayload accumulator,
-      final EenAlertResponsePayload current) {
-    if (!StringUtils.isEmpty(current.getStatusDetails())) {
-      final StringBuilder sb =
-          new StringBuilder(StringUtils.isEmpty(accumulator.getStatusDetails()) ? "" : accumulator.getStatusDetails());
-      sb.append(current.getStatusDetails()).append("\n");
-      accumulator.setStatusDetails(sb.toString());
-    }
-    if (!StringUtils.isEmpty(current.getErrorMessage())) {
-      final StringBuilder sb =
-          new StringBuilder(StringUtils.isEmpty(accumulator.getErrorMessage()) ? "" : accumulator.getErrorMessage());
-      sb.append(current.getErrorMessage()).append("\n");
-      accumulator.setErrorMessage(sb.toString());
-    }
-    accumulator.setErrorCode(current.getErrorCode());
-    accumulator.setEntityId(current.getEntityId());
-    accumulator.setStatus(current.getStatus());
-    accumulator.setStatusDate(current.getStatusDate());
-    return accumulator;
+  static Observable<EenAlertResponsePayload> handle(final NotificationHandler notification, final Events events,
+      final String requestId) {
+    return notification.onNotification(events, requestId)
+        .doOnError(e -> LOGGER.error("NotificationHandler error while processing event.", e)).onErrorReturn(e -> {
+          final EenAlertResponsePayload resp = new EenAlertResponsePayload();
+          resp.setErrorCode("500");
+          resp.setStatus(500);
+          resp.setErrorMessage(e.getMessage());
+          return resp;
+        });
   }
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.notification.endpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Collects the handler results of a single ExternalEvent request and renders the response payload once.
+ *
+ * Status details and error messages are joined with a new line; error code, entity id, status and status date are
+ * taken from the last result. Results carrying an entity id are additionally reported per entity, so a caller can
+ * tell which entity failed without parsing the joined messages.
+ *
+ * Not thread-safe. Meant to be used from a single reduction.
+ */
+public class ResponseAggregator {
+
+  private static final char SEPARATOR = '\n';
+
+  private final List<EenAlertResponsePayload> results;
+
+  /**
+   * For a request whose number of events is not known up front, e.g. a streamed one.
+   */
+  public ResponseAggregator() {
+    results = new ArrayList<>();
+  }
+
+  /**
+   * @param eventCount the number of events in the request, one result is expected per event
+   */
+  public ResponseAggregator(final int eventCount) {
+    results = new ArrayList<>(Math.max(eventCount, 1));
+  }
+
+  public ResponseAggregator add(final EenAlertResponsePayload result) {
+    results.add(result);
+    return this;
+  }
+
+  /**
+   * One compact entry per entity id, in order of first appearance. If an entity was reported more than once, an error
+   * result wins over a successful one, otherwise the last result wins.
+   *
+   * @return the per-entity results, without status details
+   */
+  public List<EenAlertResponsePayload> getEntityResults() {
+    final Map<String, EenAlertResponsePayload> byEntity = new LinkedHashMap<>();
+    for (final EenAlertResponsePayload result : results) {
+      final String entityId = result.getEntityId();
+      if (StringUtils.isEmpty(entityId)) {
+        continue;
+      }
+      final EenAlertResponsePayload previous = byEntity.get(entityId);
+      if (previous == null || !isError(previous) || isError(result)) {
+        byEntity.put(entityId, compact(result));
+      }
+    }
+    return Collections.unmodifiableList(new ArrayList<>(byEntity.values()));
+  }
+
+  /**
+   * @return the response with the summary payload and, if any entity was reported, the per-entity payloads
+   */
+  public ExternalEventResponse toResponse() {
+    final ExternalEventResponse response = new ExternalEventResponse().setResponsePayload(render());
+    final List<EenAlertResponsePayload> entityResults = getEntityResults();
+    if (!entityResults.isEmpty()) {
+      response.getEntityResponsePayload().addAll(entityResults);
+    }
+    return response;
+  }
+
+  public EenAlertResponsePayload render() {
+    int statusDetailsLength = 0;
+    int errorMessageLength = 0;
+    for (final EenAlertResponsePayload result : results) {
+      statusDetailsLength += length(result.getStatusDetails());
+      errorMessageLength += length(result.getErrorMessage());
+    }
+
+    final StringBuilder statusDetails = statusDetailsLength > 0 ? new StringBuilder(statusDetailsLength) : null;
+    final StringBuilder errorMessage = errorMessageLength > 0 ? new StringBuilder(errorMessageLength) : null;
+    final EenAlertResponsePayload payload = new EenAlertResponsePayload();
+    for (final EenAlertResponsePayload result : results) {
+      if (!StringUtils.isEmpty(result.getStatusDetails())) {
+        statusDetails.append(result.getStatusDetails()).append(SEPARATOR);
+      }
+      if (!StringUtils.isEmpty(result.getErrorMessage())) {
+        errorMessage.append(result.getErrorMessage()).append(SEPARATOR);
+      }
+      payload.setErrorCode(result.getErrorCode());
+      payload.setEntityId(result.getEntityId());
+      payload.setStatus(result.getStatus());
+      payload.setStatusDate(result.getStatusDate());
+    }
+    if (statusDetails != null) {
+      payload.setStatusDetails(statusDetails.toString());
+    }
+    if (errorMessage != null) {
+      payload.setErrorMessage(errorMessage.toString());
+    }
+    return payload;
+  }
+
+  /**
+   * @return the metrics outcome of a rendered response; an error if any entity or the summary failed
+   */
+  static String outcome(final ExternalEventResponse response) {
+    final EenAlertResponsePayload summary = response.getResponsePayload();
+    if (summary != null && isError(summary)) {
+      return Metrics.ERROR;
+    }
+    for (final EenAlertResponsePayload entity : response.getEntityResponsePayload()) {
+      if (isError(entity)) {
+        return Metrics.ERROR;
+      }
+    }
+    return Metrics.SUCCESS;
+  }
+
+  private static boolean isError(final EenAlertResponsePayload result) {
+    return !StringUtils.isEmpty(result.getErrorCode()) || result.getStatus() != null && result.getStatus() >= 400;
+  }
+
+  private static EenAlertResponsePayload compact(final EenAlertResponsePayload result) {
+    final EenAlertResponsePayload entry = new EenAlertResponsePayload();
+    entry.setEntityId(result.getEntityId());
+    entry.setStatus(result.getStatus());
+    entry.setStatusDate(result.getStatusDate());
+    entry.setErrorCode(result.getErrorCode());
+    entry.setErrorMessage(result.getErrorMessage());
+    return entry;
+  }
+
+  private static int length(final String value) {
+    return StringUtils.isEmpty(value) ? 0 : value.length() + 1;
+  }
+}
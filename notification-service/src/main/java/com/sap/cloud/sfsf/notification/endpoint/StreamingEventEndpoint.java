@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.notification.endpoint;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.StreamFilter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sap.cloud.commons.metrics.Metrics;
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.Events;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
+
+import org.slf4j.MDC;
+import org.springframework.ws.server.endpoint.annotation.Endpoint;
+import org.springframework.ws.server.endpoint.annotation.PayloadRoot;
+import org.springframework.ws.server.endpoint.annotation.RequestPayload;
+import org.springframework.ws.server.endpoint.annotation.ResponsePayload;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+/**
+ * Streaming alternative to {@link EventEndpoint}.
+ *
+ * The request payload is pulled from a StAX reader and every <code>event</code> element is unmarshalled on its own,
+ * so the handlers receive the batch in chunks of <code>chunkSize</code> events instead of a fully materialized
+ * {@link Events} list. The <code>eventPayload</code> subtrees are skipped before they reach JAXB.
+ *
+ * Memory is only bounded end-to-end with a streaming message factory: with Axiom on the classpath the
+ * NotificationConfiguration registers one with payload caching disabled. With the default SAAJ factory the whole SOAP
+ * body is still parsed into a DOM before this endpoint runs; only the JAXB object graph of the batch is saved.
+ */
+@Endpoint
+public class StreamingEventEndpoint {
+
+  private static final String NAMESPACE_URI = "http://notification.event.successfactors.com";
+  private static final String EVENT_ELEMENT = "event";
+  private static final String EVENT_PAYLOAD_ELEMENT = "eventPayload";
+
+  private final Observable<NotificationHandler> notificationHandlers;
+  private final int chunkSize;
+  private final JAXBContext jaxbContext;
+  private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+  public StreamingEventEndpoint(final List<NotificationHandler> notificationHandlers, final int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    this.notificationHandlers = Observable.from(notificationHandlers);
+    this.chunkSize = chunkSize;
+    try {
+      jaxbContext = JAXBContext.newInstance(EenAlertRequestData.class);
+    } catch (final JAXBException e) {
+      throw new IllegalStateException("Could not create JAXB context for " + EenAlertRequestData.class.getName(), e);
+    }
+  }
+
+  @PayloadRoot(namespace = NAMESPACE_URI, localPart = "ExternalEvent")
+  @ResponsePayload
+  public ExternalEventResponse externalEvent(@RequestPayload final XMLStreamReader request)
+      throws XMLStreamException, JAXBException {
+    final String requestId = MDC.get("request_id");
+    final long start = Metrics.start();
+    String outcome = Metrics.ERROR;
+    try {
+      final XMLStreamReader reader =
+          inputFactory.createFilteredReader(request, new SkipElementFilter(EVENT_PAYLOAD_ELEMENT));
+      final Iterable<EenAlertRequestData> events = new EventIterable(reader, jaxbContext.createUnmarshaller());
+
+      final ExternalEventResponse eer = Observable.from(events).buffer(chunkSize).map(chunk -> {
+        final Events chunkEvents = new Events();
+        chunkEvents.getEvent().addAll(chunk);
+        return chunkEvents;
+      }).concatMap(chunkEvents -> notificationHandlers.flatMap(notification -> {
+        return EventEndpoint.handle(notification, chunkEvents, requestId);
+      })).subscribeOn(Schedulers.io()).collect(ResponseAggregator::new, ResponseAggregator::add)
+          .map(ResponseAggregator::toResponse).toBlocking()
+          .singleOrDefault(new ExternalEventResponse());
+      outcome = ResponseAggregator.outcome(eer);
+      return eer;
+    } finally {
+      Metrics.record(EventEndpoint.RECEIVE_STAGE, "ExternalEventStreaming", outcome, start);
+    }
+  }
+
+  /**
+   * Single-use view of the <code>event</code> elements left in the reader.
+   */
+  static class EventIterable implements Iterable<EenAlertRequestData> {
+
+    private final XMLStreamReader reader;
+    private final Unmarshaller unmarshaller;
+
+    EventIterable(final XMLStreamReader reader, final Unmarshaller unmarshaller) {
+      this.reader = reader;
+      this.unmarshaller = unmarshaller;
+    }
+
+    @Override
+    public Iterator<EenAlertRequestData> iterator() {
+      return new Iterator<EenAlertRequestData>() {
+
+        @Override
+        public boolean hasNext() {
+          try {
+            while (!(reader.isStartElement() && EVENT_ELEMENT.equals(reader.getLocalName()))) {
+              if (!reader.hasNext()) {
+                return false;
+              }
+              reader.next();
+            }
+            return true;
+          } catch (final XMLStreamException e) {
+            throw new IllegalStateException("Could not read the ExternalEvent payload", e);
+          }
+        }
+
+        @Override
+        public EenAlertRequestData next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          try {
+            // leaves the reader right after the closing event tag
+            return unmarshaller.unmarshal(reader, EenAlertRequestData.class).getValue();
+          } catch (final JAXBException e) {
+            throw new IllegalStateException("Could not unmarshal ExternalEvent event", e);
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Hides every element with the given local name together with its whole subtree.
+   */
+  static class SkipElementFilter implements StreamFilter {
+
+    private final String localName;
+    private int depth;
+
+    SkipElementFilter(final String localName) {
+      this.localName = localName;
+    }
+
+    @Override
+    public boolean accept(final XMLStreamReader reader) {
+      if (reader.isStartElement() && (depth > 0 || localName.equals(reader.getLocalName()))) {
+        depth++;
+        return false;
+      }
+      if (reader.isEndElement() && depth > 0) {
+        depth--;
+        return false;
+      }
+      return depth == 0;
+    }
+  }
+}
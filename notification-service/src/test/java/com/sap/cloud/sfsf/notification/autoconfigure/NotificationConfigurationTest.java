@@ -18,10 +18,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
 import com.sap.cloud.sfsf.notification.Events;
 import com.sap.cloud.sfsf.notification.autoconfigure.NotificationConfiguration;
+import com.sap.cloud.sfsf.notification.endpoint.EventEndpoint;
+import com.sap.cloud.sfsf.notification.endpoint.StreamingEventEndpoint;
 import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
 
 import org.junit.Test;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.util.EnvironmentTestUtils;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 
@@ -47,6 +50,15 @@ public class NotificationConfigurationTest {
     assertThat(context.getBean(NotificationHandler.class)).isInstanceOf(TestNotificationHandler.class);
   }
 
+  @Test
+  public void streamingEndpointConfiguration() {
+    EnvironmentTestUtils.addEnvironment(context, "sfsf.notification.streaming.enabled:true");
+    registerAndRefresh(NotificationConfiguration.class);
+
+    assertThat(context.getBeansOfType(StreamingEventEndpoint.class)).hasSize(1);
+    assertThat(context.getBeansOfType(EventEndpoint.class)).isEmpty();
+  }
+
 
   @TestConfiguration
   protected static class CustomNotificationHandler {
@@ -16,6 +16,7 @@ package com.sap.cloud.sfsf.notification.endpoint;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -85,6 +86,8 @@ public class EventEndpointTest {
   @After
   public void after() {
     MDC.clear();
+    // the endpoint sizes its response from the number of events
+    verify(eventsMock, atMost(1)).getEvent();
     verifyNoMoreInteractions(handler1, handler2, responseMock, eventsMock);
   }
 
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.notification.endpoint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+
+import org.junit.Test;
+
+public class ResponseAggregatorTest {
+
+  @Test
+  public void emptyAggregatorRendersEmptyPayload() {
+    // when
+    final EenAlertResponsePayload result = new ResponseAggregator(0).render();
+
+    // then
+    assertThat(result).isEqualToComparingFieldByField(new EenAlertResponsePayload());
+  }
+
+  @Test
+  public void messagesAreJoinedInArrivalOrder() {
+    // given
+    final ResponseAggregator aggregator = new ResponseAggregator(3);
+    aggregator.add(payload("1", 201, null, "created-1", null));
+    aggregator.add(payload("2", 500, "500", null, "failed-2"));
+    aggregator.add(payload("3", 204, null, "deleted-3", ""));
+
+    // when
+    final EenAlertResponsePayload result = aggregator.render();
+
+    // then
+    assertThat(result.getStatusDetails()).isEqualTo("created-1\ndeleted-3\n");
+    assertThat(result.getErrorMessage()).isEqualTo("failed-2\n");
+    assertThat(result.getEntityId()).isEqualTo("3");
+    assertThat(result.getStatus()).isEqualTo(204);
+    assertThat(result.getErrorCode()).isNull();
+  }
+
+  @Test
+  public void entityResultsSkipResultsWithoutEntity() {
+    // given
+    final ResponseAggregator aggregator = new ResponseAggregator(2);
+    aggregator.add(payload("1", 201, null, "created-1", null));
+    aggregator.add(payload(null, 500, "500", null, "batch failed"));
+
+    // when
+    final List<EenAlertResponsePayload> result = aggregator.getEntityResults();
+
+    // then
+    assertThat(result).hasSize(1);
+    assertThat(result.get(0)).isEqualToComparingFieldByField(payload("1", 201, null, null, null));
+  }
+
+  @Test
+  public void entityErrorIsNotOverriddenByLaterSuccess() {
+    // given
+    final ResponseAggregator aggregator = new ResponseAggregator(3);
+    aggregator.add(payload("1", 500, "500", null, "failed-1"));
+    aggregator.add(payload("2", 204, null, "deleted-2", null));
+    aggregator.add(payload("1", 201, null, "created-1", null));
+
+    // when
+    final List<EenAlertResponsePayload> result = aggregator.getEntityResults();
+
+    // then
+    assertThat(result).extracting(EenAlertResponsePayload::getEntityId).containsExactly("1", "2");
+    assertThat(result.get(0).getErrorMessage()).isEqualTo("failed-1");
+    assertThat(result.get(1).getStatus()).isEqualTo(204);
+  }
+
+  @Test
+  public void responseCarriesEntityPayloadsOnlyWhenReported() {
+    // given
+    final ResponseAggregator aggregator = new ResponseAggregator(1);
+    aggregator.add(payload(null, 200, null, "ok", null));
+    final ResponseAggregator entityAggregator = new ResponseAggregator(1);
+    entityAggregator.add(payload("1", 201, null, "created-1", null));
+
+    // when
+    final ExternalEventResponse result = aggregator.toResponse();
+    final ExternalEventResponse entityResult = entityAggregator.toResponse();
+
+    // then
+    assertThat(result.getResponsePayload().getStatusDetails()).isEqualTo("ok\n");
+    assertThat(result.getEntityResponsePayload()).isEmpty();
+    assertThat(entityResult.getEntityResponsePayload()).extracting(EenAlertResponsePayload::getEntityId)
+        .containsExactly("1");
+  }
+
+  private static EenAlertResponsePayload payload(final String entityId, final int status, final String errorCode,
+      final String statusDetails, final String errorMessage) {
+    final EenAlertResponsePayload payload = new EenAlertResponsePayload();
+    payload.setEntityId(entityId);
+    payload.setStatus(status);
+    payload.setErrorCode(errorCode);
+    payload.setStatusDetails(statusDetails);
+    payload.setErrorMessage(errorMessage);
+    return payload;
+  }
+}
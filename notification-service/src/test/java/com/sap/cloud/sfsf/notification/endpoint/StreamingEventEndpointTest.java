@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sap.cloud.sfsf.notification.endpoint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sap.cloud.sfsf.notification.EenAlertRequestData;
+import com.sap.cloud.sfsf.notification.EenAlertResponsePayload;
+import com.sap.cloud.sfsf.notification.Events;
+import com.sap.cloud.sfsf.notification.ExternalEventResponse;
+import com.sap.cloud.sfsf.notification.handler.NotificationHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.MDC;
+
+import rx.Observable;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamingEventEndpointTest {
+
+  private static final String REQUEST_ID = "test-request";
+
+  private static final String REQUEST = "<ExternalEvent xmlns=\"http://notification.event.successfactors.com\">"
+      + "<externalEventMeta><externalEventId>meta-1</externalEventId></externalEventMeta>"
+      + "<events>"
+      + event("1") + event("2") + event("3")
+      + "</events>"
+      + "</ExternalEvent>";
+
+  @Mock
+  private NotificationHandler handler;
+
+  private final List<Events> received = new ArrayList<>();
+
+  @Before
+  public void before() {
+    MDC.put("request_id", REQUEST_ID);
+    when(handler.onNotification(any(), eq(REQUEST_ID))).then(invocation -> {
+      final Events events = (Events) invocation.getArguments()[0];
+      received.add(events);
+      final EenAlertResponsePayload response = new EenAlertResponsePayload();
+      response.setStatus(200);
+      response.setStatusDetails("chunk-" + events.getEvent().size());
+      return Observable.just(response);
+    });
+  }
+
+  @After
+  public void after() {
+    MDC.clear();
+    verifyNoMoreInteractions(handler);
+  }
+
+  @Test
+  public void nonPositiveChunkSizeIsRejected() {
+    assertThatThrownBy(() -> new StreamingEventEndpoint(Arrays.asList(handler), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void eventsAreDispatchedInChunks() throws Exception {
+    // given
+    final StreamingEventEndpoint endpoint = new StreamingEventEndpoint(Arrays.asList(handler), 2);
+
+    // when
+    final ExternalEventResponse result = endpoint.externalEvent(reader(REQUEST));
+
+    // then
+    assertThat(received).hasSize(2);
+    assertThat(externalCodes(received.get(0))).containsExactly("1", "2");
+    assertThat(externalCodes(received.get(1))).containsExactly("3");
+    assertThat(result.getResponsePayload().getStatusDetails()).isEqualTo("chunk-2\nchunk-1\n");
+    verify(handler, times(2)).onNotification(any(), eq(REQUEST_ID));
+  }
+
+  @Test
+  public void eventPayloadIsSkipped() throws Exception {
+    // given
+    final StreamingEventEndpoint endpoint = new StreamingEventEndpoint(Arrays.asList(handler), 10);
+
+    // when
+    endpoint.externalEvent(reader(REQUEST));
+
+    // then
+    assertThat(received).hasSize(1);
+    final EenAlertRequestData first = received.get(0).getEvent().get(0);
+    assertThat(first.getEventId()).isEqualTo("event-1");
+    assertThat(first.getEntityType()).isEqualTo("EmployeeTime");
+    assertThat(first.getEventPayload()).isNull();
+    verify(handler).onNotification(any(), eq(REQUEST_ID));
+  }
+
+  @Test
+  public void emptyBatchReturnsEmptyResponse() throws Exception {
+    // given
+    final StreamingEventEndpoint endpoint = new StreamingEventEndpoint(Arrays.asList(handler), 10);
+
+    // when
+    final ExternalEventResponse result = endpoint
+        .externalEvent(reader("<ExternalEvent xmlns=\"http://notification.event.successfactors.com\"/>"));
+
+    // then
+    assertThat(received).isEmpty();
+    assertThat(result.getResponsePayload()).isEqualToComparingFieldByField(new EenAlertResponsePayload());
+  }
+
+  private static String event(final String externalCode) {
+    return "<event>"
+        + "<eventId>event-" + externalCode + "</eventId>"
+        + "<entityType>EmployeeTime</entityType>"
+        + "<entityKeys><entityKey><name xmlns=\"\">externalCode</name><value xmlns=\"\">" + externalCode
+        + "</value></entityKey></entityKeys>"
+        + "<eventPayload><EmployeeTime><event><eventId>nested</eventId></event></EmployeeTime></eventPayload>"
+        + "</event>";
+  }
+
+  private static XMLStreamReader reader(final String xml) throws Exception {
+    return XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+  }
+
+  private static List<String> externalCodes(final Events events) {
+    return events.getEvent().stream().map(e -> e.getEntityKeys().getEntityKey().get(0).getValue())
+        .collect(Collectors.toList());
+  }
+}